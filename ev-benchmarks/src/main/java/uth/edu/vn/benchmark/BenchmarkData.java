@@ -0,0 +1,38 @@
+package uth.edu.vn.benchmark;
+
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.enums.StationStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dữ liệu giả lập dùng chung cho các benchmark (seed cố định để các lần chạy so sánh được)
+ */
+final class BenchmarkData {
+
+    // Trung tâm TP.HCM
+    static final double CENTER_LAT = 10.7769;
+    static final double CENTER_LON = 106.7009;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Trạm ONLINE rải đều trong hình vuông cạnh ~2 * spreadDegrees quanh trung tâm
+     */
+    static List<TramSac> stations(int count, double spreadDegrees) {
+        Random random = new Random(42);
+        List<TramSac> stations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double lat = CENTER_LAT + (random.nextDouble() * 2 - 1) * spreadDegrees;
+            double lon = CENTER_LON + (random.nextDouble() * 2 - 1) * spreadDegrees;
+            TramSac station = new TramSac("Trạm sạc " + i, i + " Nguyễn Huệ, Quận 1", lat, lon);
+            station.setId((long) i + 1);
+            station.setStatus(StationStatus.ONLINE.name());
+            stations.add(station);
+        }
+        return stations;
+    }
+}
@@ -0,0 +1,186 @@
+package uth.edu.vn.benchmark;
+
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+import uth.edu.vn.config.EmbeddedStompBrokerConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fan-out 1 message /topic/charging/{id} tới N subscriber cho từng chế độ websocket.broker.mode
+ *
+ * simple: SimpleBrokerMessageHandler trong JVM. relay: StompBrokerRelayMessageHandler qua broker Artemis nhúng
+ * (EmbeddedStompBrokerConfig), mỗi subscriber là 1 phiên STOMP riêng tới broker như khi chạy thật.
+ * Thời gian đo gồm cả việc chờ đủ N bản sao tới kênh outbound (chưa tính ghi ra socket WebSocket).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BrokerFanOutBenchmark {
+
+    private static final String DESTINATION = "/topic/charging/1001";
+
+    @Param({"simple", "relay"})
+    private String mode;
+
+    @Param({"10", "100"})
+    private int subscribers;
+
+    private EmbeddedActiveMQ broker;
+    private AbstractBrokerMessageHandler handler;
+
+    // Số frame MESSAGE đã tới kênh outbound (tức là sẽ được gửi cho client)
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong connected = new AtomicLong();
+
+    private Message<byte[]> payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> {
+            SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+            if (type == SimpMessageType.MESSAGE) {
+                delivered.incrementAndGet();
+            } else if (type == SimpMessageType.CONNECT_ACK
+                    || StompHeaderAccessor.wrap(message).getCommand() == StompCommand.CONNECTED) {
+                connected.incrementAndGet();
+            }
+        });
+
+        if ("relay".equals(mode)) {
+            int port = freePort();
+            EmbeddedStompBrokerConfig brokerConfig = new EmbeddedStompBrokerConfig();
+            ReflectionTestUtils.setField(brokerConfig, "port", port);
+            broker = brokerConfig.embeddedStompBroker();
+
+            StompBrokerRelayMessageHandler relay = new StompBrokerRelayMessageHandler(
+                    clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+            relay.setRelayPort(port);
+            relay.start();
+            handler = relay;
+            await(relay::isBrokerAvailable, "relay chưa kết nối được tới broker");
+        } else {
+            SimpleBrokerMessageHandler simple = new SimpleBrokerMessageHandler(
+                    clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+            simple.start();
+            handler = simple;
+        }
+
+        // Như client thật: chỉ SUBSCRIBE sau khi nhận CONNECTED (relay mở 1 kết nối TCP tới broker cho mỗi phiên)
+        for (int i = 0; i < subscribers; i++) {
+            handler.handleMessage(frame(StompCommand.CONNECT, "ws-" + i, null));
+        }
+        await(() -> connected.get() >= subscribers, "chưa đủ " + subscribers + " phiên CONNECTED");
+        for (int i = 0; i < subscribers; i++) {
+            handler.handleMessage(frame(StompCommand.SUBSCRIBE, "ws-" + i, DESTINATION));
+        }
+
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+        headers.setDestination(DESTINATION);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        // Relay gắn sessionId của phiên hệ thống vào header message gửi đi
+        headers.setLeaveMutable(true);
+        payload = MessageBuilder.createMessage(
+                "{\"sessionId\":1001,\"type\":\"DELTA\",\"stateOfCharge\":64.5,\"currentCost\":70245.0}"
+                        .getBytes(StandardCharsets.UTF_8), headers.getMessageHeaders());
+
+        // Subscription tới broker là bất đồng bộ: chờ tới khi 1 message tới đủ mọi subscriber
+        await(() -> {
+            long before = delivered.get();
+            handler.handleMessage(payload);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (delivered.get() - before < subscribers && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return delivered.get() - before >= subscribers;
+        }, "chưa đủ " + subscribers + " subscriber");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        handler.stop();
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    /**
+     * 1 lần gửi = chờ đủ N bản sao tới kênh outbound
+     */
+    @Benchmark
+    public long publish() {
+        long target = delivered.get() + subscribers;
+        handler.handleMessage(payload);
+        while (delivered.get() < target) {
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String destination) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(command);
+        headers.setSessionId(sessionId);
+        if (command == StompCommand.CONNECT) {
+            headers.setAcceptVersion("1.2");
+            headers.setLogin("guest");
+            headers.setPasscode("guest");
+            headers.setHeartbeat(0, 0);
+        } else {
+            headers.setSubscriptionId("sub-0");
+            headers.setDestination(destination);
+        }
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(message);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
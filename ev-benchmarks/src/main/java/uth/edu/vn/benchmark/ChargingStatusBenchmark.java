@@ -0,0 +1,91 @@
+package uth.edu.vn.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import uth.edu.vn.dto.ActiveChargingSession;
+import uth.edu.vn.dto.ChargingStatusUpdate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.service.ChargingStatusBroadcaster;
+import uth.edu.vn.service.TelemetryIngestionService;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng ChargingStatusUpdate cho 1 phiên sạc và serialize thành payload STOMP
+ *
+ * ObjectMapper dựng giống MappingJackson2MessageConverter mặc định của broker (có JavaTimeModule).
+ * telemetry=true: điểm sạc có bản ghi telemetry mới nhất, ngược lại tiến độ được giả lập theo thời gian.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChargingStatusBenchmark {
+
+    @Param({"false", "true"})
+    private boolean telemetry;
+
+    private ChargingStatusBroadcaster broadcaster;
+    private ActiveChargingSession session;
+    private ChargingStatusUpdate update;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        TelemetryIngestionService telemetryIngestionService = new TelemetryIngestionService();
+        broadcaster = new ChargingStatusBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "telemetryIngestionService", telemetryIngestionService);
+        ReflectionTestUtils.setField(broadcaster, "telemetryMaxAgeSeconds", 3600L);
+
+        LocalDateTime startTime = LocalDateTime.now().minusMinutes(25);
+        session = new ActiveChargingSession(1001L, 17L, 3L, startTime, 20, 60.0, 3500.0,
+                "Trạm sạc Quận 1", "DC-01", "driver@example.com");
+
+        if (telemetry) {
+            // Ghi thẳng vào map bản ghi mới nhất, không đi qua hàng đợi ghi DB
+            TelemetryReading reading = new TelemetryReading();
+            reading.setPointId(session.getPointId());
+            reading.setSocPercentage(64.5);
+            reading.setCurrentPowerKw(48.2);
+            reading.setEnergyDeliveredKwh(19.7);
+            reading.setRecordedAt(LocalDateTime.now());
+            ((Map<Long, TelemetryReading>) ReflectionTestUtils.getField(telemetryIngestionService, "latestByPoint"))
+                    .put(session.getPointId(), reading);
+        }
+
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        update = broadcaster.buildStatusUpdate(session);
+    }
+
+    @Benchmark
+    public ChargingStatusUpdate buildStatusUpdate() {
+        return broadcaster.buildStatusUpdate(session);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(update);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(broadcaster.buildStatusUpdate(session));
+    }
+}
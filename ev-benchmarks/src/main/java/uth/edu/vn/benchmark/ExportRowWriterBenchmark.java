@@ -0,0 +1,76 @@
+package uth.edu.vn.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uth.edu.vn.enums.ExportFormat;
+import uth.edu.vn.util.ExportRowWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng ghi dòng export (CSV / JSON lines) của ExportRowWriter, không tính phần đọc ResultSet
+ *
+ * Kết quả tính theo dòng; stream đích bỏ dữ liệu nên chỉ đo phần format + encode UTF-8.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportRowWriterBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String[] COLUMNS = {
+            "id", "session_id", "amount", "method", "status", "transaction_id", "created_at"};
+
+    @Param({"CSV", "JSONL"})
+    private ExportFormat format;
+
+    private Object[][] rows;
+
+    @Setup
+    public void setup() {
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 8, 0);
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[] {
+                    (long) i + 1,
+                    (long) i + 5000,
+                    BigDecimal.valueOf(35_000 + i * 17L, 2),
+                    i % 3 == 0 ? "WALLET" : "CASH",
+                    "COMPLETED",
+                    // Thỉnh thoảng có ký tự cần escape (dấu phẩy, nháy kép)
+                    i % 50 == 0 ? "TXN-" + i + ",\"retry\"" : "TXN-" + i,
+                    Timestamp.valueOf(base.plusSeconds(i * 37L))};
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long writeRows() throws IOException {
+        try (ExportRowWriter writer = ExportRowWriter.create(format, OutputStream.nullOutputStream())) {
+            writer.start(COLUMNS);
+            for (Object[] row : rows) {
+                writer.writeRow(row);
+            }
+            return writer.getRows();
+        }
+    }
+}
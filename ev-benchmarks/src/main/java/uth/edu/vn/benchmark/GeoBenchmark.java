@@ -0,0 +1,94 @@
+package uth.edu.vn.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import uth.edu.vn.dto.NearbyStation;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.service.StationSpatialIndex;
+import uth.edu.vn.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tính khoảng cách (Haversine) và tìm trạm gần đây
+ *
+ * linearScan là cách StationsController làm trước khi có StationSpatialIndex
+ * (duyệt toàn bộ trạm, tính khoảng cách, lọc và sắp xếp) - giữ lại làm mốc so sánh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoBenchmark {
+
+    @Param({"1000", "20000"})
+    private int stations;
+
+    @Param({"5", "50"})
+    private double radiusKm;
+
+    private List<TramSac> allStations;
+    private StationSpatialIndex index;
+
+    private double lat;
+    private double lon;
+
+    @Setup
+    public void setup() {
+        // ~1 độ quanh trung tâm: đủ rộng để bán kính nhỏ chỉ chạm vài ô của index
+        allStations = BenchmarkData.stations(stations, 1.0);
+        index = new StationSpatialIndex();
+        ReflectionTestUtils.setField(index, "cellSizeDegrees", 0.1);
+        for (TramSac station : allStations) {
+            index.upsert(station);
+        }
+        lat = BenchmarkData.CENTER_LAT + 0.013;
+        lon = BenchmarkData.CENTER_LON - 0.021;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double haversine() {
+        return GeoUtils.haversineKm(lat, lon, 21.0285, 105.8542);
+    }
+
+    @Benchmark
+    public List<NearbyStation> indexWithinRadius() {
+        return index.findWithinRadius(lat, lon, radiusKm);
+    }
+
+    @Benchmark
+    public List<NearbyStation> indexNearest10() {
+        return index.findNearest(lat, lon, 10, radiusKm);
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        List<NearbyStation> results = new ArrayList<>();
+        for (TramSac station : allStations) {
+            double distance = GeoUtils.haversineKm(lat, lon, station.getLatitude(), station.getLongitude());
+            if (distance <= radiusKm) {
+                results.add(new NearbyStation(station.getId(), station.getName(), station.getAddress(),
+                        station.getLatitude(), station.getLongitude(), station.getStatus(), distance));
+            }
+        }
+        results.sort(Comparator.comparingDouble(NearbyStation::getDistanceKm));
+        blackhole.consume(results);
+    }
+}
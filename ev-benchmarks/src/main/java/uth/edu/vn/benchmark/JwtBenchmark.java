@@ -0,0 +1,116 @@
+package uth.edu.vn.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import uth.edu.vn.config.JwtConfig;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.UserRepository;
+import uth.edu.vn.security.JwtAuthenticationFilter;
+import uth.edu.vn.security.JwtTokenProvider;
+import uth.edu.vn.security.VerifiedTokenCache;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phát hành / verify JWT và xác thực 1 request qua JwtAuthenticationFilter
+ *
+ * verify: parse + kiểm tra chữ ký HMAC-SHA256 mỗi lần (trường hợp cache miss).
+ * cacheHit: tra VerifiedTokenCache (SHA-256 của token). filterCached: toàn bộ filter với token đã có trong cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtTokenProvider tokenProvider;
+    private VerifiedTokenCache tokenCache;
+    private JwtAuthenticationFilter filter;
+
+    private String token;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        JwtConfig jwtConfig = new JwtConfig();
+        ReflectionTestUtils.setField(jwtConfig, "secret", "benchmark-secret-key-at-least-256-bits-long-0123456789");
+        ReflectionTestUtils.setField(jwtConfig, "expiration", TimeUnit.HOURS.toMillis(24));
+        ReflectionTestUtils.setField(jwtConfig, "refreshExpiration", TimeUnit.DAYS.toMillis(7));
+
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtConfig", jwtConfig);
+        tokenProvider.init();
+
+        // Cache miss đọc tokens_valid_after: giả lập user chưa bị thu hồi lần nào (không cần DB)
+        UserRepository users = (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[] {UserRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findTokensValidAfterByEmail")) {
+                        return Collections.singletonList(null);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        tokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(tokenCache, "userRepository", users);
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 50_000);
+        ReflectionTestUtils.setField(tokenCache, "ttlSeconds", TimeUnit.MINUTES.toSeconds(5));
+        ReflectionTestUtils.setField(tokenCache, "maxTokenLifetimeMs", TimeUnit.DAYS.toMillis(7));
+
+        // Token có claim roles nên filter không cần UserDetailsService (DB)
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "tokenProvider", tokenProvider);
+        ReflectionTestUtils.setField(filter, "tokenCache", tokenCache);
+
+        token = tokenProvider.generateTokenFromUsername("driver@example.com", UserRole.EV_DRIVER);
+        request = new MockHttpServletRequest("GET", "/api/stations/nearby");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        // Lần đầu verify và đưa vào cache
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            throw new IllegalStateException("Token không được xác thực khi chuẩn bị benchmark");
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenProvider.generateTokenFromUsername("driver@example.com", UserRole.EV_DRIVER);
+    }
+
+    @Benchmark
+    public VerifiedTokenCache.VerifiedToken verify() {
+        return tokenProvider.verify(token);
+    }
+
+    @Benchmark
+    public VerifiedTokenCache.VerifiedToken cacheHit() {
+        return tokenCache.get(token);
+    }
+
+    @Benchmark
+    public Authentication filterCached() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
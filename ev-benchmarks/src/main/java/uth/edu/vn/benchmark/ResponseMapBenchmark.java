@@ -0,0 +1,101 @@
+package uth.edu.vn.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import uth.edu.vn.dto.NearbyStation;
+import uth.edu.vn.dto.StationChargerSummary;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng response dạng Map<String, Object> như các controller (mỗi phần tử 1 HashMap) và serialize JSON
+ *
+ * Mẫu lấy từ StationsController.getNearbyStations; ObjectMapper dựng giống cấu hình mặc định của Spring MVC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseMapBenchmark {
+
+    @Param({"10", "200"})
+    private int stations;
+
+    private List<NearbyStation> nearbyStations;
+    private StationChargerSummary summary;
+    private Map<String, Object> response;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        nearbyStations = new ArrayList<>(stations);
+        for (TramSac station : BenchmarkData.stations(stations, 0.1)) {
+            double distance = GeoUtils.haversineKm(BenchmarkData.CENTER_LAT, BenchmarkData.CENTER_LON,
+                    station.getLatitude(), station.getLongitude());
+            nearbyStations.add(new NearbyStation(station.getId(), station.getName(), station.getAddress(),
+                    station.getLatitude(), station.getLongitude(), station.getStatus(), distance));
+        }
+        summary = new StationChargerSummary(6, 4, Map.of("CCS2", 4, "TYPE2", 2));
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        response = buildResponse();
+    }
+
+    @Benchmark
+    public Map<String, Object> build() {
+        return buildResponse();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(buildResponse());
+    }
+
+    private Map<String, Object> buildResponse() {
+        List<Map<String, Object>> stationList = new ArrayList<>();
+        for (NearbyStation station : nearbyStations) {
+            Map<String, Object> stationData = new HashMap<>();
+            stationData.put("id", station.getId());
+            stationData.put("name", station.getName());
+            stationData.put("address", station.getAddress());
+            stationData.put("latitude", station.getLatitude());
+            stationData.put("longitude", station.getLongitude());
+            stationData.put("status", station.getStatus());
+            stationData.put("distance", Math.round(station.getDistanceKm() * 100.0) / 100.0);
+            stationData.put("totalChargers", summary.getTotalChargers());
+            stationData.put("availableChargers", summary.getAvailableChargers());
+            stationData.put("connectorTypes", summary.getConnectorTypes());
+            stationList.add(stationData);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("stations", stationList);
+        result.put("total", stationList.size());
+        result.put("searchCenter", Map.of("latitude", BenchmarkData.CENTER_LAT, "longitude", BenchmarkData.CENTER_LON));
+        result.put("radius", 10.0);
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package uth.edu.vn.benchmark;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
+import uth.edu.vn.service.TelemetryAnomalyDetector;
+import uth.edu.vn.service.TelemetryIngestionService;
+import uth.edu.vn.service.TelemetryRollupService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng nhận telemetry: submit (validate + hàng đợi) tới khi batch writer ghi xong xuống database
+ *
+ * Database là H2 trong bộ nhớ nên chỉ đo phần pipeline + JDBC batch insert, không thay cho đo trên SQL Server.
+ * Rollup (MERGE ... WITH (HOLDLOCK) chỉ chạy trên SQL Server) và phát hiện bất thường được tắt.
+ * Kết quả tính theo bản ghi / giây; mục tiêu của ingest là 20k bản ghi / giây.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TelemetryIngestionBenchmark {
+
+    private static final int READINGS = 20_000;
+    private static final int CHARGING_POINTS = 500;
+
+    private static final String DDL = "CREATE TABLE dieu_khien_tu_xa (" +
+            "telemetry_id BIGINT IDENTITY PRIMARY KEY, charging_point_id BIGINT NOT NULL, vehicle_id BIGINT, " +
+            "soc_percentage DOUBLE, current_power_kw DOUBLE, energy_delivered_kwh DOUBLE, voltage_v DOUBLE, " +
+            "current_a DOUBLE, temperature_c DOUBLE, charging_duration_minutes INT, status VARCHAR(255), " +
+            "recorded_at TIMESTAMP NOT NULL, error_code VARCHAR(255), error_message VARCHAR(255))";
+
+    private JdbcTemplate jdbcTemplate;
+    private TelemetryIngestionService service;
+    private TelemetryReading[] readings;
+
+    @Setup
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:telemetry-bench;MODE=MSSQLServer;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(DDL);
+        jdbcTemplate.execute("CREATE INDEX idx_telemetry_point_recorded_at ON dieu_khien_tu_xa (charging_point_id, recorded_at)");
+
+        TelemetryAnomalyDetector anomalyDetector = new TelemetryAnomalyDetector();
+        ReflectionTestUtils.setField(anomalyDetector, "enabled", false);
+
+        service = new TelemetryIngestionService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        // Registry chưa nạp: bỏ qua kiểm tra điểm sạc tồn tại
+        ReflectionTestUtils.setField(service, "chargerAvailabilityRegistry", new ChargerAvailabilityRegistry());
+        ReflectionTestUtils.setField(service, "telemetryRollupService", new TelemetryRollupService() {
+            @Override
+            public void applyBatch(List<TelemetryReading> batch) {
+            }
+        });
+        ReflectionTestUtils.setField(service, "telemetryAnomalyDetector", anomalyDetector);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100_000);
+        ReflectionTestUtils.setField(service, "batchSize", 1000);
+        ReflectionTestUtils.setField(service, "maxLatencyMs", 200L);
+        ReflectionTestUtils.setField(service, "writerThreads", 2);
+        ReflectionTestUtils.setField(service, "retryAttempts", 5);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 200L);
+        service.start();
+
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 8, 0);
+        readings = new TelemetryReading[READINGS];
+        for (int i = 0; i < READINGS; i++) {
+            TelemetryReading reading = new TelemetryReading();
+            reading.setPointId((long) (i % CHARGING_POINTS) + 1);
+            reading.setSocPercentage(20.0 + i % 80);
+            reading.setCurrentPowerKw(48.5);
+            reading.setEnergyDeliveredKwh(i * 0.01);
+            reading.setVoltageV(400.0);
+            reading.setCurrentA(120.0);
+            reading.setTemperatureC(35.0);
+            reading.setRecordedAt(base.plusNanos(i * 1000L));
+            readings[i] = reading;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE dieu_khien_tu_xa");
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.stop();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public long submitAndWrite() throws InterruptedException {
+        long target = written() + READINGS;
+        for (TelemetryReading reading : readings) {
+            // Hàng đợi đầy: chờ writer xả bớt như client thử lại sau 503
+            while (service.submit(reading) != null) {
+                Thread.sleep(1);
+            }
+        }
+        while (written() < target) {
+            Thread.sleep(1);
+        }
+        return target;
+    }
+
+    private long written() {
+        return (long) service.getStats().get("written");
+    }
+}
@@ -331,9 +331,9 @@ public class Main {
                 break;
                 
             case 2:
-                List<TramSac> stations = driverService.findNearbyStations(10.7769, 106.7009, 10.0);
+                List<uth.edu.vn.dto.NearbyStation> stations = driverService.findNearbyStations(10.7769, 106.7009, 10.0);
                 System.out.println("\n=== NEARBY CHARGING STATIONS ===");
-                for (TramSac station : stations) {
+                for (uth.edu.vn.dto.NearbyStation station : stations) {
                     System.out.println("📍 " + station.getName() + " - " + station.getAddress());
                     System.out.println("   Status: " + station.getStatus());
                     
@@ -0,0 +1,247 @@
+package uth.edu.vn.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import uth.edu.vn.service.ChargingStatusDeltaTracker;
+import uth.edu.vn.service.WebSocketTransportMetrics;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocket session có buffer gửi riêng, gộp các frame trạng thái sạc chưa gửi
+ *
+ * Việc ghi socket chạy trên virtual thread riêng của kết nối, nên luồng broadcast không bị client chậm chặn lại.
+ * Khi client chậm, frame /topic/charging/{sessionId} mới sẽ thay thế frame cũ chưa gửi của cùng
+ * subscription (header STOMP subscription + phiên sạc). Nếu buffer vẫn vượt giới hạn thì bỏ bớt frame
+ * trạng thái cũ nhất; nếu vẫn vượt (hoặc một lần gửi kéo dài quá sendTimeLimit) thì ngắt kết nối như
+ * ConcurrentWebSocketSessionDecorator.
+ * Khi frame bị bỏ, hoặc một DELTA thay thế frame chưa gửi (field của frame cũ sẽ mất), phiên sạc đó
+ * được yêu cầu snapshot FULL ở tick sau để client không mất field.
+ */
+class CoalescingWebSocketSession extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingWebSocketSession.class);
+
+    private static final Executor WRITER = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final String MESSAGE_FRAME = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:" + "/topic/charging/";
+    private static final String SUBSCRIPTION_HEADER = "\nsubscription:";
+    private static final String DELTA_MARKER = "\"type\":\"DELTA\"";
+
+    private final int bufferSizeLimit;
+    private final long sendTimeLimit;
+    private final ChargingStatusDeltaTracker deltaTracker;
+    private final WebSocketTransportMetrics metrics;
+
+    // key: StatusKey cho frame trạng thái, Object riêng cho các frame khác
+    private final LinkedHashMap<Object, WebSocketMessage<?>> pending = new LinkedHashMap<>();
+    private int pendingBytes;
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile long sendStartTime;
+    private volatile boolean limitExceeded;
+
+    CoalescingWebSocketSession(WebSocketSession delegate, int bufferSizeLimit, long sendTimeLimit,
+            ChargingStatusDeltaTracker deltaTracker, WebSocketTransportMetrics metrics) {
+        super(delegate);
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimit = sendTimeLimit;
+        this.deltaTracker = deltaTracker;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (limitExceeded) {
+            return;
+        }
+        enqueue(message);
+        checkLimits();
+        scheduleFlush();
+    }
+
+    private void enqueue(WebSocketMessage<?> message) {
+        StatusKey key = statusKeyOf(message);
+        synchronized (pending) {
+            if (key != null) {
+                WebSocketMessage<?> previous = pending.remove(key);
+                if (previous != null) {
+                    pendingBytes -= previous.getPayloadLength();
+                    metrics.frameCoalesced();
+                    // DELTA chỉ chứa field thay đổi so với frame trước, nên field của frame bị thay sẽ mất
+                    if (isDelta(message)) {
+                        deltaTracker.requestKeyframe(key.chargingSessionId());
+                    }
+                }
+                pending.put(key, message);
+            } else {
+                pending.put(new Object(), message);
+            }
+            pendingBytes += message.getPayloadLength();
+
+            // Vượt buffer: bỏ frame trạng thái cũ nhất (giữ frame vừa thêm)
+            Iterator<Map.Entry<Object, WebSocketMessage<?>>> it = pending.entrySet().iterator();
+            while (pendingBytes > bufferSizeLimit && it.hasNext()) {
+                Map.Entry<Object, WebSocketMessage<?>> entry = it.next();
+                if (entry.getKey() instanceof StatusKey stale && entry.getValue() != message) {
+                    it.remove();
+                    pendingBytes -= entry.getValue().getPayloadLength();
+                    metrics.frameDropped();
+                    deltaTracker.requestKeyframe(stale.chargingSessionId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ghi buffer ra socket trên virtual thread riêng của kết nối để luồng broadcast không bị chặn
+     */
+    private void scheduleFlush() {
+        if (flushing.compareAndSet(false, true)) {
+            WRITER.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> next;
+            while (!limitExceeded && (next = poll()) != null) {
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(next);
+                sendStartTime = 0;
+            }
+        } catch (Exception e) {
+            logger.debug("Error sending WebSocket message to session {}", getId(), e);
+            terminate(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            sendStartTime = 0;
+            flushing.set(false);
+        }
+        if (!limitExceeded && hasPending()) {
+            scheduleFlush();
+        }
+    }
+
+    private void checkLimits() {
+        long start = sendStartTime;
+        String reason = null;
+        if (start > 0 && System.currentTimeMillis() - start > sendTimeLimit) {
+            reason = "Send time " + (System.currentTimeMillis() - start) + " (ms) exceeded the allowed limit " + sendTimeLimit;
+        } else {
+            synchronized (pending) {
+                if (pendingBytes > bufferSizeLimit) {
+                    reason = "Buffer size " + pendingBytes + " bytes exceeded the allowed limit " + bufferSizeLimit;
+                }
+            }
+        }
+        if (reason != null && !limitExceeded) {
+            markLimitExceeded();
+            // SubProtocolWebSocketHandler bắt exception này và đóng kết nối
+            throw new SessionLimitExceededException(reason + " for session " + getId(), CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private void terminate(CloseStatus status) {
+        if (!limitExceeded) {
+            markLimitExceeded();
+            try {
+                getDelegate().close(status);
+            } catch (Exception e) {
+                logger.debug("Error closing WebSocket session {}", getId(), e);
+            }
+        }
+    }
+
+    private void markLimitExceeded() {
+        limitExceeded = true;
+        metrics.sessionTerminated();
+        synchronized (pending) {
+            pending.clear();
+            pendingBytes = 0;
+        }
+    }
+
+    private boolean hasPending() {
+        synchronized (pending) {
+            return !pending.isEmpty();
+        }
+    }
+
+    private WebSocketMessage<?> poll() {
+        synchronized (pending) {
+            Iterator<WebSocketMessage<?>> it = pending.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            WebSocketMessage<?> message = it.next();
+            it.remove();
+            pendingBytes -= message.getPayloadLength();
+            return message;
+        }
+    }
+
+    /**
+     * Lấy (subscription, sessionId phiên sạc) từ STOMP MESSAGE frame gửi tới /topic/charging/{sessionId}
+     */
+    static StatusKey statusKeyOf(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage text)) {
+            return null;
+        }
+        String payload = text.getPayload();
+        if (!payload.startsWith(MESSAGE_FRAME)) {
+            return null;
+        }
+        int headersEnd = payload.indexOf("\n\n");
+        if (headersEnd < 0) {
+            return null;
+        }
+        String destination = headerValue(payload, headersEnd, DESTINATION_HEADER);
+        String subscription = headerValue(payload, headersEnd, SUBSCRIPTION_HEADER);
+        if (destination == null || subscription == null || destination.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < destination.length(); i++) {
+            if (!Character.isDigit(destination.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return new StatusKey(subscription, Long.parseLong(destination));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String headerValue(String payload, int headersEnd, String header) {
+        int idx = payload.indexOf(header);
+        if (idx < 0 || idx > headersEnd) {
+            return null;
+        }
+        int start = idx + header.length();
+        int end = payload.indexOf('\n', start);
+        return end < 0 || end > headersEnd ? null : payload.substring(start, end);
+    }
+
+    private static boolean isDelta(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text && text.getPayload().contains(DELTA_MARKER);
+    }
+
+    /**
+     * Frame trạng thái chỉ thay thế nhau khi cùng subscription của client và cùng phiên sạc
+     */
+    record StatusKey(String subscription, long chargingSessionId) {
+    }
+}
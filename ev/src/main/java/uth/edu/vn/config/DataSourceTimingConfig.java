@@ -0,0 +1,142 @@
+package uth.edu.vn.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import uth.edu.vn.util.RequestMetrics;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bọc DataSource để đo số câu SQL, thời gian execute và câu SQL lặp lại của từng request (RequestMetrics)
+ *
+ * Chỉ các lời gọi execute* được đo; đọc ResultSet sau đó không tính. Pool gốc (Hikari) vẫn
+ * lấy được qua unwrap() nên các thành phần đọc thông tin pool không bị ảnh hưởng.
+ */
+@Configuration
+public class DataSourceTimingConfig {
+
+    @Bean
+    public static BeanPostProcessor dataSourceTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof TimingDataSource)) {
+                    return new TimingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static final class TimingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+        TimingDataSource(DataSource target) {
+            super(target);
+        }
+
+        // Bean sau khi bọc vẫn phải đóng được pool khi shutdown
+        @Override
+        public void close() throws Exception {
+            if (getTargetDataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrap(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrap(super.getConnection(username, password));
+        }
+
+        private static Connection wrap(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(DataSourceTimingConfig.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement
+                    && (method.getName().startsWith("create") || method.getName().startsWith("prepare"))) {
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                // prepareStatement / prepareCall nhận SQL ngay; createStatement thì SQL đi kèm execute
+                String sql = method.getName().startsWith("prepare") && args != null && args[0] instanceof String text
+                        ? text : null;
+                return Proxy.newProxyInstance(DataSourceTimingConfig.class.getClassLoader(),
+                        new Class<?>[] {type}, new StatementHandler((Statement) result, (Connection) proxy, sql));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final Connection connection;
+        private final String sql;
+
+        StatementHandler(Statement target, Connection connection, String sql) {
+            this.target = target;
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getConnection")) {
+                // Trả về connection đã bọc để code gọi ngược (Hibernate) không thoát khỏi lớp đo
+                return connection;
+            }
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+            String executed = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String text
+                    ? text : null;
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(target, method, args);
+            } finally {
+                RequestMetrics.recordStatement(System.nanoTime() - start, executed);
+            }
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package uth.edu.vn.config;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Embedded STOMP broker (ActiveMQ Artemis) chạy trong cùng JVM
+ *
+ * Dùng để chạy thử websocket.broker.mode=relay trên máy local / môi trường test
+ * mà không cần cài RabbitMQ hay ActiveMQ riêng. Không dùng cho production.
+ */
+@Configuration
+@ConditionalOnProperty(name = "websocket.broker.embedded.enabled", havingValue = "true")
+public class EmbeddedStompBrokerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStompBrokerConfig.class);
+
+    @Value("${websocket.broker.embedded.port:61613}")
+    private int port;
+
+    @Bean(destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedStompBroker() throws Exception {
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.setJournalDirectory("target/artemis/journal");
+        // /topic/... là multicast để mọi subscriber (trên mọi node) đều nhận được message
+        configuration.addAcceptorConfiguration("stomp",
+                "tcp://localhost:" + port + "?protocols=STOMP;multicastPrefix=/topic/");
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+
+        logger.info("Embedded STOMP broker started on port {}", port);
+        return broker;
+    }
+}
@@ -0,0 +1,172 @@
+package uth.edu.vn.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uth.edu.vn.enums.PointStatus;
+import uth.edu.vn.security.VerifiedTokenCache;
+import uth.edu.vn.service.ActiveSessionRegistry;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
+import uth.edu.vn.service.ChargingStatusBroadcaster;
+import uth.edu.vn.service.ExportService;
+import uth.edu.vn.service.IdempotencyService;
+import uth.edu.vn.service.InvoiceService;
+import uth.edu.vn.service.TelemetryAnomalyDetector;
+import uth.edu.vn.service.TelemetryArchiveService;
+import uth.edu.vn.service.TelemetryIngestionService;
+import uth.edu.vn.service.TelemetryRetentionService;
+import uth.edu.vn.service.WebSocketTransportMetrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Đưa các bộ đếm sẵn có (getStats() của từng service, registry trong bộ nhớ) lên Micrometer
+ *
+ * Latency theo endpoint (http.server.requests), timer theo method repository
+ * (spring.data.repository.invocations) và pool Hikari do Spring Boot Actuator tự cấu hình.
+ * Tất cả được scrape qua /actuator/prometheus (cần ADMIN, xem SecurityConfig).
+ * Bộ đếm chỉ tăng (LongAdder) đăng ký dạng FunctionCounter (_total, dùng được rate()), còn lại là gauge.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder chargingMetrics(ActiveSessionRegistry activeSessionRegistry,
+                                       ChargerAvailabilityRegistry chargerAvailabilityRegistry,
+                                       ChargingStatusBroadcaster broadcaster,
+                                       WebSocketTransportMetrics transportMetrics) {
+        return registry -> {
+            Gauge.builder("ev.charging.sessions.active", activeSessionRegistry, ActiveSessionRegistry::size)
+                    .description("Phiên sạc đang hoạt động")
+                    .register(registry);
+            for (PointStatus status : PointStatus.values()) {
+                Gauge.builder("ev.chargers", chargerAvailabilityRegistry, r -> r.countByStatus(status))
+                        .tag("status", status.name())
+                        .register(registry);
+            }
+
+            Gauge.builder("ev.broadcast.backlog", broadcaster, ChargingStatusBroadcaster::getBacklog).register(registry);
+            Gauge.builder("ev.broadcast.last.tick.ms", broadcaster, ChargingStatusBroadcaster::getLastTickMs)
+                    .register(registry);
+            FunctionCounter.builder("ev.broadcast.ticks.completed", broadcaster,
+                    ChargingStatusBroadcaster::getCompletedTicks).register(registry);
+            FunctionCounter.builder("ev.broadcast.ticks.skipped", broadcaster,
+                    ChargingStatusBroadcaster::getSkippedTicks).register(registry);
+
+            Gauge.builder("ev.websocket.sessions", transportMetrics, WebSocketTransportMetrics::getConnectedSessions)
+                    .description("Phiên STOMP đang kết nối")
+                    .register(registry);
+            Gauge.builder("ev.websocket.subscriptions", transportMetrics, WebSocketTransportMetrics::getSubscriptions)
+                    .register(registry);
+            FunctionCounter.builder("ev.websocket.frames.coalesced", transportMetrics,
+                    WebSocketTransportMetrics::getCoalescedFrames).register(registry);
+            FunctionCounter.builder("ev.websocket.frames.dropped", transportMetrics,
+                    WebSocketTransportMetrics::getDroppedFrames).register(registry);
+            FunctionCounter.builder("ev.websocket.sessions.terminated", transportMetrics,
+                    WebSocketTransportMetrics::getTerminatedSessions).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder serviceStatsMetrics(TelemetryIngestionService telemetryIngestionService,
+                                           TelemetryRetentionService telemetryRetentionService,
+                                           TelemetryArchiveService telemetryArchiveService,
+                                           TelemetryAnomalyDetector telemetryAnomalyDetector,
+                                           IdempotencyService idempotencyService,
+                                           InvoiceService invoiceService,
+                                           ExportService exportService,
+                                           VerifiedTokenCache verifiedTokenCache,
+                                           RequestLoggingFilter requestLoggingFilter) {
+        return registry -> {
+            bindStats(registry, "ev.telemetry.ingest", telemetryIngestionService::getStats,
+                    "accepted", "rejected", "invalid", "written", "failed", "batches");
+            bindStats(registry, "ev.telemetry.retention", telemetryRetentionService::getStats,
+                    "totalDeleted");
+            bindStats(registry, "ev.telemetry.archive", telemetryArchiveService::getStats,
+                    "rowsArchived", "filesWritten");
+            bindStats(registry, "ev.telemetry.anomaly", telemetryAnomalyDetector::getStats,
+                    "inspected", "anomalies", "incidentsRaised", "suppressedByCooldown", "dropped");
+            bindStats(registry, "ev.idempotency", idempotencyService::getStats,
+                    "executed", "replayedFromCache", "replayedFromTable", "conflicts", "abandonedTakenOver", "purged");
+            bindStats(registry, "ev.invoice", invoiceService::getStats,
+                    "enqueued", "dropped", "generated", "skipped", "failed", "batches", "swept");
+            bindStats(registry, "ev.export", exportService::getStats,
+                    "exports", "rowsExported", "failed");
+            bindStats(registry, "ev.auth.token.cache", verifiedTokenCache::getStats,
+                    "hits", "misses", "revokedRejects");
+            bindStats(registry, "ev.request.log", requestLoggingFilter::getStats,
+                    "requests", "logged", "nPlusOneRequests");
+        };
+    }
+
+    /**
+     * 1 meter cho mỗi giá trị số / boolean trong getStats() (tên key camelCase -> dạng chấm):
+     * FunctionCounter cho các key trong counters (tổng tích lũy, chỉ tăng), gauge cho phần còn lại.
+     * Kết quả getStats() được dùng lại trong 1 giây để 1 lần scrape chỉ gọi mỗi service 1 lần.
+     */
+    static void bindStats(MeterRegistry registry, String prefix, Supplier<Map<String, Object>> stats,
+                          String... counters) {
+        Set<String> counterKeys = Set.of(counters);
+        CachedStats cached = new CachedStats(stats);
+        for (Map.Entry<String, Object> entry : stats.get().entrySet()) {
+            if (entry.getValue() instanceof Number || entry.getValue() instanceof Boolean) {
+                String key = entry.getKey();
+                String name = prefix + "." + toMetricName(key);
+                if (counterKeys.contains(key)) {
+                    // FunctionCounter chỉ giữ weak reference tới object: hàm giữ cached để không bị GC
+                    FunctionCounter.builder(name, cached, c -> cached.value(key)).register(registry);
+                } else {
+                    Gauge.builder(name, cached, c -> c.value(key)).strongReference(true).register(registry);
+                }
+            }
+        }
+    }
+
+    // queueDepth -> queue.depth
+    static String toMetricName(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                name.append('.').append(Character.toLowerCase(c));
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private static final class CachedStats {
+        private static final long TTL_NANOS = 1_000_000_000L;
+
+        private final Supplier<Map<String, Object>> source;
+        private volatile Map<String, Object> snapshot;
+        private volatile long takenAt;
+
+        CachedStats(Supplier<Map<String, Object>> source) {
+            this.source = source;
+        }
+
+        double value(String key) {
+            Map<String, Object> current = snapshot;
+            if (current == null || System.nanoTime() - takenAt > TTL_NANOS) {
+                current = source.get();
+                snapshot = current;
+                takenAt = System.nanoTime();
+            }
+            Object value = current.get(key);
+            if (value instanceof Number number) {
+                return number.doubleValue();
+            }
+            if (value instanceof Boolean bool) {
+                return bool ? 1 : 0;
+            }
+            return Double.NaN;
+        }
+    }
+}
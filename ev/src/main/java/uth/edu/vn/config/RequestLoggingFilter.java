@@ -0,0 +1,246 @@
+package uth.edu.vn.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import uth.edu.vn.util.RequestMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ghi 1 dòng tóm tắt cho mỗi request được lấy mẫu: method, route, status, latency, thời gian DB, số câu SQL
+ *
+ * Tỉ lệ lấy mẫu theo route (pattern Ant, khớp với route pattern của Spring MVC), request lỗi 5xx
+ * hoặc chậm hơn slow-ms luôn được ghi. Cấu hình đổi được lúc chạy qua /api/admin/logging.
+ * Dòng log đi qua logger "uth.edu.vn.request" (appender bất đồng bộ trong logback-spring.xml).
+ *
+ * Request có 1 câu SQL lặp từ n-plus-one-threshold lần trở lên bị cảnh báo N+1 (tối đa 1 lần / phút / route).
+ * Môi trường dev bật query-count-header để trả thêm header X-Query-Count / X-Db-Time-Ms.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final Logger requestLog = LoggerFactory.getLogger("uth.edu.vn.request");
+
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String DB_TIME_HEADER = "X-Db-Time-Ms";
+
+    // Response stream / WebSocket: không được buffer để gắn header
+    private static final List<String> UNBUFFERED = List.of("/api/admin/export/**", "/ws/**");
+
+    private static final long N_PLUS_ONE_WARN_INTERVAL_MS = 60_000;
+
+    private volatile Settings settings;
+
+    private final boolean queryCountHeader;
+    private final int nPlusOneThreshold;
+
+    // route -> lần cảnh báo N+1 gần nhất
+    private final Map<String, Long> nPlusOneWarnedAt = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder nPlusOneRequests = new LongAdder();
+
+    public RequestLoggingFilter(@Value("${request-log.enabled:true}") boolean enabled,
+                                @Value("${request-log.sample-rate:0.05}") double sampleRate,
+                                @Value("${request-log.slow-ms:1000}") long slowMs,
+                                @Value("${request-log.route-rates:}") String routeRates,
+                                @Value("${request-log.query-count-header:false}") boolean queryCountHeader,
+                                @Value("${request-log.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+        this.settings = new Settings(enabled, sampleRate, slowMs, parseRouteRates(routeRates));
+        this.queryCountHeader = queryCountHeader;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        Settings current = settings;
+        boolean header = queryCountHeader && !isUnbuffered(request.getRequestURI());
+        if (!current.enabled && !header) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Header phải gắn trước khi body được gửi: buffer response (chỉ dùng ở dev)
+        ContentCachingResponseWrapper cached = header ? new ContentCachingResponseWrapper(response) : null;
+        long start = System.nanoTime();
+        RequestMetrics metrics = RequestMetrics.begin();
+        try {
+            filterChain.doFilter(request, cached != null ? cached : response);
+        } finally {
+            RequestMetrics.end();
+            if (cached != null) {
+                cached.setHeader(QUERY_COUNT_HEADER, String.valueOf(metrics.getStatementCount()));
+                cached.setHeader(DB_TIME_HEADER, String.valueOf(metrics.getDbMillis()));
+                cached.copyBodyToResponse();
+            }
+            if (current.enabled) {
+                summarize(request, response, current, metrics, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+    }
+
+    private void summarize(HttpServletRequest request, HttpServletResponse response, Settings current,
+                           RequestMetrics metrics, long latencyMs) {
+        requests.increment();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern != null ? pattern.toString() : request.getRequestURI();
+        int status = response.getStatus();
+        // Chỉ cache theo route pattern (hữu hạn); URI thô (404, file tĩnh) thì so khớp trực tiếp
+        double rate = pattern != null
+                ? current.rateByRoute.computeIfAbsent(route, current::match)
+                : current.match(route);
+        if (status >= 500 || latencyMs >= current.slowMs || ThreadLocalRandom.current().nextDouble() < rate) {
+            logged.increment();
+            requestLog.info("method={} route={} status={} latencyMs={} dbMs={} queries={} maxRepeat={} sampleRate={}",
+                    request.getMethod(), route, status, latencyMs, metrics.getDbMillis(),
+                    metrics.getStatementCount(), metrics.getMaxRepeat(), rate);
+        }
+
+        if (pattern != null && metrics.getMaxRepeat() >= nPlusOneThreshold) {
+            nPlusOneRequests.increment();
+            long now = System.currentTimeMillis();
+            Long last = nPlusOneWarnedAt.get(route);
+            if (last == null || now - last >= N_PLUS_ONE_WARN_INTERVAL_MS) {
+                nPlusOneWarnedAt.put(route, now);
+                requestLog.warn("Possible N+1 on {} {}: {} statements, {}x {}", request.getMethod(), route,
+                        metrics.getStatementCount(), metrics.getMaxRepeat(), metrics.getMaxRepeatSql());
+            }
+        }
+    }
+
+    private static boolean isUnbuffered(String uri) {
+        for (String pattern : UNBUFFERED) {
+            if (MATCHER.match(pattern, uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Object> getSettings() {
+        Settings current = settings;
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("enabled", current.enabled);
+        data.put("sampleRate", current.sampleRate);
+        data.put("slowMs", current.slowMs);
+        Map<String, Double> routeRates = new LinkedHashMap<>();
+        current.routeRates.forEach(routeRate -> routeRates.put(routeRate.pattern, routeRate.rate));
+        data.put("routeRates", routeRates);
+        return data;
+    }
+
+    /**
+     * Đổi cấu hình lúc chạy; trường null giữ nguyên giá trị cũ
+     *
+     * @param routeRates pattern -> tỉ lệ, thay toàn bộ danh sách cũ
+     */
+    public synchronized void updateSettings(Boolean enabled, Double sampleRate, Long slowMs,
+                                            Map<String, Double> routeRates) {
+        Settings current = settings;
+        List<RouteRate> rates = current.routeRates;
+        if (routeRates != null) {
+            rates = new ArrayList<>();
+            for (Map.Entry<String, Double> entry : routeRates.entrySet()) {
+                rates.add(new RouteRate(entry.getKey(), clamp(entry.getValue())));
+            }
+        }
+        settings = new Settings(enabled != null ? enabled : current.enabled,
+                sampleRate != null ? clamp(sampleRate) : current.sampleRate,
+                slowMs != null ? slowMs : current.slowMs,
+                rates);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("logged", logged.sum());
+        stats.put("nPlusOneRequests", nPlusOneRequests.sum());
+        stats.put("nPlusOneRoutes", nPlusOneWarnedAt.size());
+        return stats;
+    }
+
+    // ==================== INTERNAL ====================
+
+    // "/api/telemetry/**=0.001,/api/admin/**=1"
+    private static List<RouteRate> parseRouteRates(String value) {
+        List<RouteRate> rates = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return rates;
+        }
+        for (String part : value.split(",")) {
+            int separator = part.lastIndexOf('=');
+            if (separator > 0) {
+                rates.add(new RouteRate(part.substring(0, separator).trim(),
+                        clamp(Double.parseDouble(part.substring(separator + 1).trim()))));
+            }
+        }
+        return rates;
+    }
+
+    private static double clamp(Double rate) {
+        return rate == null ? 0 : Math.max(0, Math.min(1, rate));
+    }
+
+    private static final class Settings {
+        final boolean enabled;
+        final double sampleRate;
+        final long slowMs;
+        final List<RouteRate> routeRates;
+
+        // route -> tỉ lệ lấy mẫu đã tính, sống cùng bản cấu hình này
+        final Map<String, Double> rateByRoute = new ConcurrentHashMap<>();
+
+        Settings(boolean enabled, double sampleRate, long slowMs, List<RouteRate> routeRates) {
+            this.enabled = enabled;
+            this.sampleRate = sampleRate;
+            this.slowMs = slowMs;
+            this.routeRates = List.copyOf(routeRates);
+        }
+
+        double match(String route) {
+            for (RouteRate routeRate : routeRates) {
+                if (MATCHER.match(routeRate.pattern, route)) {
+                    return routeRate.rate;
+                }
+            }
+            return sampleRate;
+        }
+    }
+
+    private static final class RouteRate {
+        final String pattern;
+        final double rate;
+
+        RouteRate(String pattern, double rate) {
+            this.pattern = pattern;
+            this.rate = rate;
+        }
+    }
+}
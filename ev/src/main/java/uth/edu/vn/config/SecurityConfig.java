@@ -14,12 +14,14 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.expression.WebExpressionAuthorizationManager;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import uth.edu.vn.security.JwtAuthenticationEntryPoint;
 import uth.edu.vn.security.JwtAuthenticationFilter;
+import uth.edu.vn.security.MetricsScrapeTokenFilter;
 import uth.edu.vn.security.UserDetailsServiceImpl;
 
 import java.util.Arrays;
@@ -50,6 +52,14 @@ public class SecurityConfig {
     @Value("${cors.allowed-origins:http://localhost:8080}")
     private String[] allowedOrigins;
     
+    // Chỉ bật ở profile dev: /actuator/prometheus không cần đăng nhập
+    @Value("${metrics.prometheus.permit-all:false}")
+    private boolean prometheusPermitAll;
+    
+    // Token tĩnh cho Prometheus (bearer_token_file), rỗng thì chỉ dev (permit-all) mới scrape được
+    @Value("${metrics.prometheus.scrape-token:}")
+    private String prometheusScrapeToken;
+    
     /**
      * JWT Authentication Filter Bean
      */
@@ -122,7 +132,8 @@ public class SecurityConfig {
                     "/api/debug/public",      // Debug public endpoint
                     "/api/health",            // Health check
                     "/api/stations/**",       // All station endpoints
-                    "/ws/**"                  // WebSocket endpoint
+                    "/ws/**",                 // WebSocket endpoint
+                    "/actuator/health"        // Health check (actuator)
                 ).permitAll()
                 
                 // Debug endpoints - cần authentication
@@ -131,6 +142,7 @@ public class SecurityConfig {
                 // EV Driver endpoints - cần authentication
                 .requestMatchers("/api/profile/**").authenticated()
                 .requestMatchers("/api/history/**").authenticated()
+                .requestMatchers("/api/invoices/**").authenticated()
                 .requestMatchers("/api/driver/**").hasRole("EV_DRIVER")
                 .requestMatchers("/api/bookings/**").hasRole("EV_DRIVER")
                 .requestMatchers("/api/sessions/**").hasRole("EV_DRIVER")
@@ -142,6 +154,14 @@ public class SecurityConfig {
                 // Admin endpoints
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 
+                // Telemetry từ điểm sạc
+                .requestMatchers("/api/telemetry/**").hasAnyRole("ADMIN", "CS_STAFF")
+                
+                // Prometheus scrape: token tĩnh riêng (role METRICS, không phải JWT ADMIN), dev thì mở
+                .requestMatchers(MetricsScrapeTokenFilter.SCRAPE_PATH).access(
+                    new WebExpressionAuthorizationManager(
+                        prometheusPermitAll ? "permitAll" : "hasRole('" + MetricsScrapeTokenFilter.ROLE + "')"))
+                
                 // All other requests need authentication
                 .anyRequest().authenticated()
             );
@@ -152,6 +172,9 @@ public class SecurityConfig {
         // Add JWT filter before UsernamePasswordAuthenticationFilter
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
         
+        // Token scrape Prometheus, trước JWT filter (JWT filter bỏ qua request đã xác thực)
+        http.addFilterBefore(new MetricsScrapeTokenFilter(prometheusScrapeToken), JwtAuthenticationFilter.class);
+        
         return http.build(); // Return SecurityFilterChain
     }
 
@@ -181,14 +204,18 @@ public class SecurityConfig {
             "Accept",
             "Origin",
             "Access-Control-Request-Method",
-            "Access-Control-Request-Headers"
+            "Access-Control-Request-Headers",
+            "Idempotency-Key"
         ));
         
         // Expose headers
         configuration.setExposedHeaders(Arrays.asList(
             "Access-Control-Allow-Origin",
             "Access-Control-Allow-Credentials",
-            "Authorization"
+            "Authorization",
+            "Idempotent-Replayed",
+            "X-Query-Count",
+            "X-Db-Time-Ms"
         ));
         
         // Allow credentials (cookies, authorization headers)
@@ -1,10 +1,17 @@
 package uth.edu.vn.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import uth.edu.vn.service.ChargingStatusDeltaTracker;
+import uth.edu.vn.service.WebSocketTransportMetrics;
 
 /**
  * WebSocket Configuration for Real-time Charging Status Updates
@@ -13,16 +20,76 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  * - Connect: /ws
  * - Subscribe: /topic/charging/{sessionId}
  * - Send: /app/charging/update
+ *
+ * Broker mode (websocket.broker.mode):
+ * - simple: in-memory broker, subscriptions chỉ tồn tại trong 1 JVM
+ * - relay: chuyển tiếp /topic tới STOMP broker ngoài (RabbitMQ, ActiveMQ...) để fan-out qua nhiều node
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${websocket.broker.relay.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${websocket.broker.relay.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${websocket.broker.relay.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String virtualHost;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.transport.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Autowired
+    private ChargingStatusDeltaTracker deltaTracker;
+
+    @Autowired
+    private WebSocketTransportMetrics transportMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker
-        // Clients subscribe to /topic/charging/{sessionId}
-        config.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // Relay /topic tới STOMP broker ngoài để mọi node cùng nhận được message
+            var relay = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode);
+            if (virtualHost != null && !virtualHost.isBlank()) {
+                relay.setVirtualHost(virtualHost);
+            }
+        } else {
+            // Enable a simple in-memory message broker
+            // Clients subscribe to /topic/charging/{sessionId}
+            config.enableSimpleBroker("/topic");
+        }
         
         // Application destination prefix for messages from clients
         config.setApplicationDestinationPrefixes("/app");
@@ -36,4 +103,23 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS(); // Fallback for browsers that don't support WebSocket
     }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Giới hạn cho mỗi kết nối: client chậm vượt giới hạn sẽ bị ngắt thay vì giữ tài nguyên
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+
+        if (coalescingEnabled) {
+            // Gộp frame trạng thái sạc chưa gửi của cùng phiên (chỉ giữ frame mới nhất)
+            registration.addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+                @Override
+                public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                    super.afterConnectionEstablished(new CoalescingWebSocketSession(session,
+                            sendBufferSizeLimit, sendTimeLimit, deltaTracker, transportMetrics));
+                }
+            });
+        }
+    }
 }
@@ -1,14 +1,30 @@
 package uth.edu.vn.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.config.RequestLoggingFilter;
 import uth.edu.vn.entity.*;
 import uth.edu.vn.enums.*;
+import uth.edu.vn.service.ActiveSessionRegistry;
 import uth.edu.vn.service.AdminService;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
+import uth.edu.vn.service.ChargingStatusBroadcaster;
+import uth.edu.vn.service.ExportService;
+import uth.edu.vn.service.IdempotencyService;
+import uth.edu.vn.service.InvoiceService;
+import uth.edu.vn.service.MonthlySpendingService;
+import uth.edu.vn.service.TelemetryArchiveService;
+import uth.edu.vn.service.TelemetryRetentionService;
+import uth.edu.vn.service.TelemetryRollupService;
+import uth.edu.vn.service.WebSocketTransportMetrics;
 import uth.edu.vn.repository.*;
+import uth.edu.vn.security.VerifiedTokenCache;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -33,6 +49,39 @@ public class AdminController {
     @Autowired
     private ChargerRepository chargerRepository;
 
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private ChargingStatusBroadcaster chargingStatusBroadcaster;
+
+    @Autowired
+    private WebSocketTransportMetrics webSocketTransportMetrics;
+
+    @Autowired
+    private TelemetryRollupService telemetryRollupService;
+
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private TelemetryRetentionService telemetryRetentionService;
+
+    @Autowired
+    private TelemetryArchiveService telemetryArchiveService;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -42,6 +91,18 @@ public class AdminController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private RequestLoggingFilter requestLoggingFilter;
+
+    @Autowired
+    private LoggingSystem loggingSystem;
+
+    private static final List<String> LOGGING_OVERVIEW = List.of(
+            LoggingSystem.ROOT_LOGGER_NAME, "uth.edu.vn", "uth.edu.vn.request", "org.hibernate.SQL");
+
     // ==================== STATION MANAGEMENT ====================
 
     /**
@@ -477,6 +538,10 @@ public class AdminController {
                     response.put("error", "Email đã tồn tại");
                     return ResponseEntity.ok(response);
                 }
+                if (!newEmail.equalsIgnoreCase(user.getEmail())) {
+                    // Token cũ có subject là email cũ
+                    verifiedTokenCache.revokeUser(user.getEmail());
+                }
                 user.setEmail(newEmail);
             }
 
@@ -488,8 +553,10 @@ public class AdminController {
             }
 
             Object passwordObj = updateData.get("password");
+            boolean revokeTokens = false;
             if (passwordObj != null && !passwordObj.toString().isEmpty()) {
                 user.setPassword(passwordEncoder.encode(passwordObj.toString()));
+                revokeTokens = true;
             }
 
             Object roleObj = updateData.get("role");
@@ -502,6 +569,7 @@ public class AdminController {
                     } else {
                         newRole = UserRole.valueOf(roleStr.toUpperCase());
                     }
+                    revokeTokens = revokeTokens || newRole != user.getRole();
                     user.setRole(newRole);
                 }
             }
@@ -509,10 +577,15 @@ public class AdminController {
             Object activeObj = updateData.get("active");
             if (activeObj != null) {
                 Boolean active = Boolean.valueOf(activeObj.toString());
+                revokeTokens = revokeTokens || !active;
                 user.setActive(active);
             }
 
             User saved = userRepository.save(user);
+            if (revokeTokens) {
+                // Token cũ mang role cũ trong claim: buộc đăng nhập lại
+                verifiedTokenCache.revokeUser(saved.getEmail());
+            }
 
             Map<String, Object> userResp = new HashMap<>();
             userResp.put("id", saved.getId());
@@ -547,8 +620,10 @@ public class AdminController {
         try {
             Map<String, Object> response = new HashMap<>();
 
-            if (userRepository.existsById(userId)) {
+            Optional<User> existing = userRepository.findById(userId);
+            if (existing.isPresent()) {
                 userRepository.deleteById(userId);
+                verifiedTokenCache.revokeUser(existing.get().getEmail());
             }
 
             response.put("success", true);
@@ -579,6 +654,9 @@ public class AdminController {
             boolean newStatus = current == null ? false : !current;
             user.setActive(newStatus);
             userRepository.save(user);
+            if (!newStatus) {
+                verifiedTokenCache.revokeUser(user.getEmail());
+            }
 
             response.put("success", true);
             response.put("active", user.getActive());
@@ -610,11 +688,22 @@ public class AdminController {
             // tại)
             long maintenanceStations = tramSacRepository.findByStatus(StationStatus.MAINTENANCE.name()).size();
 
-            // Đếm chargers theo status
-            long totalChargers = chargerRepository.count();
-            Long availableChargers = chargerRepository.countByStatus(PointStatus.AVAILABLE);
-            Long occupiedChargers = chargerRepository.countByStatus(PointStatus.OCCUPIED);
-            Long outOfOrderChargers = chargerRepository.countByStatus(PointStatus.OUT_OF_ORDER);
+            // Đếm chargers theo status (từ registry trong bộ nhớ, fallback COUNT query)
+            long totalChargers;
+            Long availableChargers;
+            Long occupiedChargers;
+            Long outOfOrderChargers;
+            if (chargerAvailabilityRegistry.isLoaded()) {
+                totalChargers = chargerAvailabilityRegistry.totalChargers();
+                availableChargers = chargerAvailabilityRegistry.countByStatus(PointStatus.AVAILABLE);
+                occupiedChargers = chargerAvailabilityRegistry.countByStatus(PointStatus.OCCUPIED);
+                outOfOrderChargers = chargerAvailabilityRegistry.countByStatus(PointStatus.OUT_OF_ORDER);
+            } else {
+                totalChargers = chargerRepository.count();
+                availableChargers = chargerRepository.countByStatus(PointStatus.AVAILABLE);
+                occupiedChargers = chargerRepository.countByStatus(PointStatus.OCCUPIED);
+                outOfOrderChargers = chargerRepository.countByStatus(PointStatus.OUT_OF_ORDER);
+            }
 
             // Đếm users theo role
             long totalUsers = userRepository.count();
@@ -674,6 +763,263 @@ public class AdminController {
         }
     }
 
+    /**
+     * Số liệu broadcast trạng thái sạc qua WebSocket (thời gian tick, backlog, tick bị bỏ qua,
+     * frame bị gộp / bị bỏ ở tầng transport)
+     * GET /api/admin/metrics/broadcast
+     */
+    @GetMapping("/metrics/broadcast")
+    public ResponseEntity<Map<String, Object>> getBroadcastMetrics() {
+        try {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("activeSessions", activeSessionRegistry.size());
+            metrics.put("shards", chargingStatusBroadcaster.getShardCount());
+            metrics.put("completedTicks", chargingStatusBroadcaster.getCompletedTicks());
+            metrics.put("skippedTicks", chargingStatusBroadcaster.getSkippedTicks());
+            metrics.put("backlog", chargingStatusBroadcaster.getBacklog());
+            metrics.put("lastTickMs", chargingStatusBroadcaster.getLastTickMs());
+            metrics.put("shardStats", chargingStatusBroadcaster.getShardStats());
+            metrics.put("transport", webSocketTransportMetrics.snapshot());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("metrics", metrics);
+            response.put("timestamp", LocalDateTime.now());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Lỗi khi lấy số liệu broadcast: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    /**
+     * Tính lại bảng tổng hợp telemetry từ dữ liệu thô (cho dữ liệu có trước khi bật rollup)
+     * POST /api/admin/telemetry/rollups/rebuild?startDate=yyyy-MM-dd&endDate=yyyy-MM-dd
+     */
+    @PostMapping("/telemetry/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildTelemetryRollups(
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+        try {
+            LocalDateTime start = java.time.LocalDate.parse(startDate).atStartOfDay();
+            LocalDateTime end = java.time.LocalDate.parse(endDate).atStartOfDay();
+            int buckets = telemetryRollupService.rebuild(start, end);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("buckets", buckets);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Lỗi khi tính lại telemetry rollup: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    /**
+     * Tính lại bảng chi tiêu theo tháng (chi_tieu_thang) từ thanh_toan
+     * POST /api/admin/spending/rebuild
+     */
+    @PostMapping("/spending/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildMonthlySpending() {
+        try {
+            int rows = monthlySpendingService.rebuild();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("rows", rows);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Lỗi khi tính lại chi tiêu theo tháng: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    /**
+     * Số liệu Idempotency-Key (số lần chạy thật, số lần trả lại response đã lưu, xung đột)
+     * GET /api/admin/metrics/idempotency
+     */
+    @GetMapping("/metrics/idempotency")
+    public ResponseEntity<Map<String, Object>> getIdempotencyMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", idempotencyService.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Số liệu hàng đợi hóa đơn (đã tạo, đang chờ, bị rớt / quét bù)
+     * GET /api/admin/metrics/invoices
+     */
+    @GetMapping("/metrics/invoices")
+    public ResponseEntity<Map<String, Object>> getInvoiceMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", invoiceService.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Số liệu export hóa đơn / thanh toán (số lần export, tổng số dòng)
+     * GET /api/admin/metrics/exports
+     */
+    @GetMapping("/metrics/exports")
+    public ResponseEntity<Map<String, Object>> getExportMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", exportService.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Số liệu cache JWT đã verify (hit / miss, token bị thu hồi)
+     * GET /api/admin/metrics/auth
+     */
+    @GetMapping("/metrics/auth")
+    public ResponseEntity<Map<String, Object>> getAuthMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", verifiedTokenCache.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Cấu hình log request hiện tại và mức log của các logger chính
+     * GET /api/admin/logging
+     */
+    @GetMapping("/logging")
+    public ResponseEntity<Map<String, Object>> getLoggingSettings() {
+        Map<String, Object> levels = new LinkedHashMap<>();
+        for (String name : LOGGING_OVERVIEW) {
+            LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(name);
+            levels.put(name, configuration != null && configuration.getEffectiveLevel() != null
+                    ? configuration.getEffectiveLevel().name() : null);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("requestLog", requestLoggingFilter.getSettings());
+        response.put("requestLogStats", requestLoggingFilter.getStats());
+        response.put("levels", levels);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Đổi cấu hình log lúc chạy, không cần restart
+     * PUT /api/admin/logging
+     * Body: {"enabled": true, "sampleRate": 0.05, "slowMs": 1000,
+     *        "routeRates": {"/api/telemetry/**": 0.001}, "levels": {"org.hibernate.SQL": "DEBUG"}}
+     */
+    @PutMapping("/logging")
+    public ResponseEntity<Map<String, Object>> updateLoggingSettings(@RequestBody Map<String, Object> request) {
+        try {
+            Map<String, Double> routeRates = null;
+            if (request.get("routeRates") instanceof Map<?, ?> rates) {
+                routeRates = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : rates.entrySet()) {
+                    routeRates.put(entry.getKey().toString(), Double.valueOf(entry.getValue().toString()));
+                }
+            }
+            requestLoggingFilter.updateSettings(
+                    request.get("enabled") != null ? Boolean.valueOf(request.get("enabled").toString()) : null,
+                    request.get("sampleRate") != null ? Double.valueOf(request.get("sampleRate").toString()) : null,
+                    request.get("slowMs") != null ? Long.valueOf(request.get("slowMs").toString()) : null,
+                    routeRates);
+
+            if (request.get("levels") instanceof Map<?, ?> levels) {
+                for (Map.Entry<?, ?> entry : levels.entrySet()) {
+                    // null / "" = trả về mức mặc định của logger
+                    Object level = entry.getValue();
+                    loggingSystem.setLogLevel(entry.getKey().toString(),
+                            level == null || level.toString().isBlank() ? null
+                                    : LogLevel.valueOf(level.toString().trim().toUpperCase()));
+                }
+            }
+            return getLoggingSettings();
+
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Cấu hình log không hợp lệ: " + e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    /**
+     * Số liệu job xóa telemetry cũ (rows/s, độ trễ so với thời hạn lưu trữ)
+     * GET /api/admin/metrics/telemetry-retention
+     */
+    @GetMapping("/metrics/telemetry-retention")
+    public ResponseEntity<Map<String, Object>> getTelemetryRetentionMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", telemetryRetentionService.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Chạy ngay 1 lượt xóa telemetry cũ
+     * POST /api/admin/telemetry/retention/run
+     */
+    @PostMapping("/telemetry/retention/run")
+    public ResponseEntity<Map<String, Object>> runTelemetryRetention() {
+        Map<String, Object> stats = telemetryRetentionService.purge();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", stats.get("lastError") == null);
+        response.put("metrics", stats);
+        if (stats.get("lastError") != null) {
+            response.put("error", "Lỗi khi xóa telemetry cũ: " + stats.get("lastError"));
+            return ResponseEntity.internalServerError().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Trạng thái archive telemetry dạng cột (watermark, số dòng / file đã archive)
+     * GET /api/admin/metrics/telemetry-archive
+     */
+    @GetMapping("/metrics/telemetry-archive")
+    public ResponseEntity<Map<String, Object>> getTelemetryArchiveMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metrics", telemetryArchiveService.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Chạy ngay 1 lượt archive telemetry nguội
+     * POST /api/admin/telemetry/archive/run
+     */
+    @PostMapping("/telemetry/archive/run")
+    public ResponseEntity<Map<String, Object>> runTelemetryArchive() {
+        Map<String, Object> stats = telemetryArchiveService.archive();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", stats.get("lastError") == null);
+        response.put("metrics", stats);
+        if (stats.get("lastError") != null) {
+            response.put("error", "Lỗi khi archive telemetry: " + stats.get("lastError"));
+            return ResponseEntity.internalServerError().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Doanh thu theo trạm
      * GET /api/admin/revenue
@@ -3,6 +3,7 @@ package uth.edu.vn.controller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import uth.edu.vn.dto.auth.AuthResponse;
@@ -11,6 +12,7 @@ import uth.edu.vn.dto.auth.RegisterRequest;
 import uth.edu.vn.entity.User;
 import uth.edu.vn.enums.UserRole;
 import uth.edu.vn.repository.UserRepository;
+import uth.edu.vn.security.VerifiedTokenCache;
 import uth.edu.vn.service.AuthService;
 
 import jakarta.validation.Valid;
@@ -33,6 +35,9 @@ public class AuthController {
     
     @Autowired
     private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
     
     /**
      * Đăng ký user mới (EV Driver)
@@ -178,11 +183,15 @@ public class AuthController {
     }
     
     /**
-     * Logout (client-side only - xóa token khỏi localStorage)
+     * Logout: thu hồi mọi access / refresh token hiện có của user (đăng xuất trên mọi thiết bị)
+     * rồi client xóa token khỏi localStorage
      * POST /api/auth/logout
      */
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, String>> logout() {
+    public ResponseEntity<Map<String, String>> logout(Authentication authentication) {
+        if (authentication != null) {
+            verifiedTokenCache.revokeUser(authentication.getName());
+        }
         Map<String, String> response = new HashMap<>();
         response.put("message", "Đăng xuất thành công. Vui lòng xóa token ở client.");
         return ResponseEntity.ok(response);
@@ -5,9 +5,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.StationChargerSummary;
 import uth.edu.vn.entity.*;
 import uth.edu.vn.enums.*;
 import uth.edu.vn.service.CSStaffService;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
 import uth.edu.vn.repository.*;
 
 import java.time.LocalDate;
@@ -35,6 +37,9 @@ public class CSStaffController {
     @Autowired
     private ChargerRepository chargerRepository;
 
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
     @Autowired
     private PhienSacRepository phienSacRepository;
 
@@ -64,9 +69,6 @@ public class CSStaffController {
             List<Charger> chargers = staffService.getStationStatus(stationId);
 
             List<Map<String, Object>> chargerList = new ArrayList<>();
-            int availableCount = 0;
-            int occupiedCount = 0;
-            int outOfOrderCount = 0;
 
             for (Charger charger : chargers) {
                 Map<String, Object> chargerData = new HashMap<>();
@@ -76,18 +78,14 @@ public class CSStaffController {
                 chargerData.put("powerCapacity", charger.getPowerCapacity());
                 chargerData.put("status", charger.getStatus());
                 chargerData.put("pricePerKwh", charger.getPricePerKwh());
-
-                // Đếm theo status
-                if (charger.getStatus() == PointStatus.AVAILABLE)
-                    availableCount++;
-                else if (charger.getStatus() == PointStatus.OCCUPIED)
-                    occupiedCount++;
-                else if (charger.getStatus() == PointStatus.OUT_OF_ORDER)
-                    outOfOrderCount++;
-
                 chargerList.add(chargerData);
             }
 
+            // Đếm theo status từ registry trong bộ nhớ (fallback: đếm trên danh sách vừa load)
+            long availableCount = countChargers(stationId, chargers, PointStatus.AVAILABLE);
+            long occupiedCount = countChargers(stationId, chargers, PointStatus.OCCUPIED);
+            long outOfOrderCount = countChargers(stationId, chargers, PointStatus.OUT_OF_ORDER);
+
             // Lấy active sessions tại trạm
             List<PhienSac> activeSessions = staffService.getActiveSessionsAtStation(stationId);
             List<Map<String, Object>> sessionList = new ArrayList<>();
@@ -604,6 +602,11 @@ public class CSStaffController {
             List<TramSac> stations = tramSacRepository.findAll();
             List<Map<String, Object>> stationList = new ArrayList<>();
 
+            // Registry chưa nạp: 1 query group by cho mọi trạm thay vì 1 query điểm sạc / trạm
+            Map<Long, StationChargerSummary> summaries = chargerAvailabilityRegistry.isLoaded()
+                    ? null
+                    : StationChargerSummary.fromCounts(chargerRepository.countByStationAndConnectorType());
+
             for (TramSac station : stations) {
                 Map<String, Object> stationData = new HashMap<>();
                 stationData.put("id", station.getId());
@@ -612,13 +615,11 @@ public class CSStaffController {
                 stationData.put("status", station.getStatus());
 
                 // Count chargers
-                List<Charger> chargers = chargerRepository.findByChargingStationId(station.getId());
-                long availableCount = chargers.stream()
-                        .filter(c -> c.getStatus() == PointStatus.AVAILABLE)
-                        .count();
-
-                stationData.put("totalChargers", chargers.size());
-                stationData.put("availableChargers", availableCount);
+                StationChargerSummary summary = summaries == null
+                        ? chargerAvailabilityRegistry.getSummary(station.getId())
+                        : summaries.getOrDefault(station.getId(), StationChargerSummary.empty());
+                stationData.put("totalChargers", summary.getTotalChargers());
+                stationData.put("availableChargers", summary.getAvailableChargers());
 
                 stationList.add(stationData);
             }
@@ -637,4 +638,11 @@ public class CSStaffController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
+
+    private long countChargers(Long stationId, List<Charger> chargers, PointStatus status) {
+        if (chargerAvailabilityRegistry.isLoaded()) {
+            return chargerAvailabilityRegistry.countByStation(stationId, status);
+        }
+        return chargers.stream().filter(c -> c.getStatus() == status).count();
+    }
 }
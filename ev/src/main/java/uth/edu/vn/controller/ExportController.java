@@ -0,0 +1,140 @@
+package uth.edu.vn.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.enums.ExportFormat;
+import uth.edu.vn.service.ExportService;
+import uth.edu.vn.util.ExportRowWriter;
+
+import java.io.OutputStream;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Export Controller
+ * Export hóa đơn / doanh thu theo tháng dạng CSV hoặc JSON lines, ghi thẳng ra response
+ *
+ * Lỗi giữa chừng: nếu response chưa commit thì reset và trả 500; nếu đã gửi 1 phần file thì ném lại exception
+ * để container ngắt kết nối (client thấy tải lỗi thay vì nhận file thiếu với status 200).
+ */
+@RestController
+@RequestMapping("/api/admin/export")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+
+    @Autowired
+    private ExportService exportService;
+
+    /**
+     * Export hóa đơn trong tháng
+     * GET /api/admin/export/invoices?year=2025&month=10&format=csv|jsonl
+     */
+    @GetMapping("/invoices")
+    public ResponseEntity<Map<String, Object>> exportInvoices(
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) {
+        YearMonth period = parsePeriod(year, month);
+        ExportFormat exportFormat = parseFormat(format);
+        if (period == null || exportFormat == null) {
+            return error("Tham số year / month / format không hợp lệ");
+        }
+
+        LocalDateTime start = period.atDay(1).atStartOfDay();
+        LocalDateTime end = period.plusMonths(1).atDay(1).atStartOfDay();
+        return stream(response, "hoa-don-" + period, exportFormat,
+                out -> exportService.exportInvoices(start, end, exportFormat, out));
+    }
+
+    /**
+     * Export thanh toán (doanh thu) trong tháng, lọc theo status nếu có
+     * GET /api/admin/export/payments?year=2025&month=10&status=COMPLETED&format=csv|jsonl
+     */
+    @GetMapping("/payments")
+    public ResponseEntity<Map<String, Object>> exportPayments(
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) {
+        YearMonth period = parsePeriod(year, month);
+        ExportFormat exportFormat = parseFormat(format);
+        if (period == null || exportFormat == null) {
+            return error("Tham số year / month / format không hợp lệ");
+        }
+
+        LocalDateTime start = period.atDay(1).atStartOfDay();
+        LocalDateTime end = period.plusMonths(1).atDay(1).atStartOfDay();
+        String statusFilter = status != null && !status.isBlank() ? status.trim().toUpperCase() : null;
+        return stream(response, "thanh-toan-" + period, exportFormat,
+                out -> exportService.exportPayments(start, end, statusFilter, exportFormat, out));
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * Ghi file ra response; trả về null khi đã ghi xong (response do controller tự ghi)
+     */
+    private ResponseEntity<Map<String, Object>> stream(HttpServletResponse response, String fileName,
+            ExportFormat format, Consumer<OutputStream> export) {
+        try {
+            response.setContentType(ExportRowWriter.contentType(format));
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"" + fileName + "." + ExportRowWriter.extension(format) + "\"");
+            // Không close stream khi lỗi: close sẽ kết thúc response bình thường và client nhận file thiếu
+            OutputStream out = response.getOutputStream();
+            export.accept(out);
+            out.flush();
+            return null;
+        } catch (Exception e) {
+            logger.error("Error exporting {}", fileName, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Lỗi khi export " + fileName);
+                return ResponseEntity.internalServerError().body(errorResponse);
+            }
+            // Đã gửi 1 phần file: để container hủy kết nối
+            throw e instanceof RuntimeException runtime ? runtime
+                    : new IllegalStateException("Export " + fileName + " aborted after partial response", e);
+        }
+    }
+
+    // Mặc định tháng hiện tại
+    private static YearMonth parsePeriod(Integer year, Integer month) {
+        YearMonth now = YearMonth.now();
+        try {
+            return YearMonth.of(year != null ? year : now.getYear(), month != null ? month : now.getMonthValue());
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static ExportFormat parseFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+}
@@ -4,9 +4,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.ChargingHistoryItem;
+import uth.edu.vn.dto.ChargingHistorySummary;
 import uth.edu.vn.entity.*;
 import uth.edu.vn.service.EVDriverService;
 import uth.edu.vn.repository.*;
+import uth.edu.vn.util.KeysetCursor;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -37,14 +40,20 @@ public class HistoryController {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
-     * Lấy lịch sử sạc của user
-     * GET /api/history/charging
+     * Lấy lịch sử sạc của user, phân trang theo cursor (startTime, sessionId)
+     * GET /api/history/charging?limit=20&cursor=...
+     * Trang tiếp theo: gửi lại nextCursor của trang trước. count = số dòng của trang; trang đầu có thêm
+     * total (tổng số phiên), completedSessions, totalEnergy, totalCost của toàn bộ lịch sử
      */
     @GetMapping("/charging")
     public ResponseEntity<Map<String, Object>> getChargingHistory(
             Authentication authentication,
-            @RequestParam(required = false) Integer limit) {
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
         try {
             if (authentication == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -61,22 +70,37 @@ public class HistoryController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Lấy charging history
-            List<PhienSac> sessions = evDriverService.getChargingHistory(user.getId());
+            KeysetCursor after = null;
+            if (cursor != null && !cursor.isBlank()) {
+                try {
+                    after = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("success", false);
+                    errorResponse.put("error", "Cursor không hợp lệ");
+                    return ResponseEntity.badRequest().body(errorResponse);
+                }
+            }
+
+            int pageSize = limit != null && limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+            // Lấy charging history (1 query có giới hạn, đã join charger + trạm)
+            List<ChargingHistoryItem> sessions = evDriverService.getChargingHistoryPage(user.getId(), after, pageSize);
 
             if (sessions == null) {
                 sessions = new ArrayList<>();
             }
 
-            // Apply limit nếu có
-            if (limit != null && limit > 0 && sessions.size() > limit) {
-                sessions = sessions.subList(0, limit);
+            // Query lấy dư 1 dòng để biết còn trang sau
+            boolean hasMore = sessions.size() > pageSize;
+            if (hasMore) {
+                sessions = sessions.subList(0, pageSize);
             }
 
             // Convert to response format
             List<Map<String, Object>> historyList = new ArrayList<>();
 
-            for (PhienSac session : sessions) {
+            for (ChargingHistoryItem session : sessions) {
                 Map<String, Object> sessionData = new HashMap<>();
                 sessionData.put("sessionId", session.getSessionId());
                 sessionData.put("startTime",
@@ -92,24 +116,20 @@ public class HistoryController {
                 sessionData.put("endSoc", session.getEndSoc());
 
                 // Charger info
-                if (session.getChargingPoint() != null) {
-                    Charger charger = session.getChargingPoint();
-                    sessionData.put("charger", Map.of(
-                            "id", charger.getPointId(),
-                            "name", charger.getPointName(),
-                            "connectorType", charger.getConnectorType(),
-                            "powerCapacity", charger.getPowerCapacity()));
-
-                    // Station info
-                    if (charger.getChargingStation() != null) {
-                        TramSac station = charger.getChargingStation();
-                        sessionData.put("station", Map.of(
-                                "id", station.getId(),
-                                "name", station.getName(),
-                                "address", station.getAddress()));
-                        sessionData.put("stationName", station.getName());
-                    }
-                }
+                Map<String, Object> charger = new HashMap<>();
+                charger.put("id", session.getChargerId());
+                charger.put("name", session.getChargerName());
+                charger.put("connectorType", session.getConnectorType());
+                charger.put("powerCapacity", session.getPowerCapacity());
+                sessionData.put("charger", charger);
+
+                // Station info
+                Map<String, Object> station = new HashMap<>();
+                station.put("id", session.getStationId());
+                station.put("name", session.getStationName());
+                station.put("address", session.getStationAddress());
+                sessionData.put("station", station);
+                sessionData.put("stationName", session.getStationName());
 
                 historyList.add(sessionData);
             }
@@ -117,7 +137,22 @@ public class HistoryController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("history", historyList);
-            response.put("total", historyList.size());
+            response.put("count", historyList.size());
+            response.put("hasMore", hasMore);
+            if (hasMore) {
+                ChargingHistoryItem last = sessions.get(sessions.size() - 1);
+                response.put("nextCursor", new KeysetCursor(last.getStartTime(), last.getSessionId()).encode());
+            }
+            // Tổng của toàn bộ lịch sử chỉ tính ở trang đầu; total giữ nghĩa cũ (tổng số phiên, không phải số dòng trang)
+            if (after == null) {
+                ChargingHistorySummary summary = evDriverService.getChargingHistorySummary(user.getId());
+                if (summary != null) {
+                    response.put("total", summary.getTotalSessions());
+                    response.put("completedSessions", summary.getCompletedSessions());
+                    response.put("totalEnergy", summary.getTotalEnergy());
+                    response.put("totalCost", summary.getTotalCost());
+                }
+            }
 
             return ResponseEntity.ok(response);
 
@@ -216,13 +251,14 @@ public class HistoryController {
     }
 
     /**
-     * Lấy lịch sử thanh toán
-     * GET /api/history/payments
+     * Lấy lịch sử thanh toán, phân trang theo cursor (createdAt, paymentId)
+     * GET /api/history/payments?limit=20&cursor=...
      */
     @GetMapping("/payments")
     public ResponseEntity<Map<String, Object>> getPaymentHistory(
             Authentication authentication,
-            @RequestParam(required = false) Integer limit) {
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
         try {
             if (authentication == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -239,46 +275,27 @@ public class HistoryController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Lấy payments (through sessions)
-            List<PhienSac> sessions = phienSacRepository.findByUserOrderByStartTimeDesc(user.getId());
-            List<Map<String, Object>> paymentList = new ArrayList<>();
-
-            for (PhienSac session : sessions) {
-                // Tìm payment cho session này
-                List<ThanhToan> payments = thanhToanRepository.findBySessionId(session.getSessionId());
-
-                for (ThanhToan payment : payments) {
-                    Map<String, Object> paymentData = new HashMap<>();
-                    paymentData.put("paymentId", payment.getId());
-                    paymentData.put("amount", payment.getAmount());
-                    paymentData.put("paymentMethod", payment.getMethod());
-                    paymentData.put("status", payment.getStatus());
-                    paymentData.put("paymentTime", payment.getCreatedAt().format(DATE_FORMATTER));
-
-                    // Session info
-                    paymentData.put("sessionId", session.getSessionId());
-                    paymentData.put("energyConsumed", session.getEnergyConsumed());
-
-                    // Station info
-                    if (session.getChargingPoint() != null &&
-                            session.getChargingPoint().getChargingStation() != null) {
-                        TramSac station = session.getChargingPoint().getChargingStation();
-                        paymentData.put("stationName", station.getName());
-                    }
-
-                    paymentList.add(paymentData);
+            KeysetCursor after = null;
+            if (cursor != null && !cursor.isBlank()) {
+                try {
+                    after = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("success", false);
+                    errorResponse.put("error", "Cursor không hợp lệ");
+                    return ResponseEntity.badRequest().body(errorResponse);
                 }
             }
 
-            // Apply limit
-            if (limit != null && limit > 0 && paymentList.size() > limit) {
-                paymentList = paymentList.subList(0, limit);
-            }
+            int pageSize = limit != null && limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("payments", paymentList);
-            response.put("total", paymentList.size());
+            Map<String, Object> response = evDriverService.getPaymentHistory(user.getId(), after, pageSize);
+            if (response == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Lỗi khi lấy lịch sử thanh toán");
+                return ResponseEntity.internalServerError().body(errorResponse);
+            }
 
             return ResponseEntity.ok(response);
 
@@ -0,0 +1,187 @@
+package uth.edu.vn.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.entity.*;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.*;
+
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Invoice Controller
+ * REST API đọc hóa đơn; hóa đơn do InvoiceService tạo bất đồng bộ sau khi thanh toán hoàn tất
+ */
+@RestController
+@RequestMapping("/api/invoices")
+public class InvoiceController {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private HoaDonRepository hoaDonRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Hóa đơn gần nhất của user hiện tại
+     * GET /api/invoices/my?limit=20
+     */
+    @GetMapping("/my")
+    public ResponseEntity<Map<String, Object>> getMyInvoices(
+            Authentication authentication,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            User user = currentUser(authentication);
+            if (user == null) {
+                return error(HttpStatus.UNAUTHORIZED, "Yêu cầu đăng nhập");
+            }
+
+            int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            List<Map<String, Object>> invoices = new ArrayList<>();
+            for (HoaDon invoice : hoaDonRepository.findRecentByUserWithPayment(user.getId(), PageRequest.of(0, size))) {
+                invoices.add(toMap(invoice));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("invoices", invoices);
+            response.put("count", invoices.size());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lấy danh sách hóa đơn: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hóa đơn theo số hóa đơn (chủ hóa đơn, nhân viên trạm hoặc admin)
+     * GET /api/invoices/{invoiceNumber}
+     */
+    @GetMapping("/{invoiceNumber}")
+    public ResponseEntity<Map<String, Object>> getInvoice(
+            @PathVariable String invoiceNumber,
+            Authentication authentication) {
+        try {
+            User user = currentUser(authentication);
+            if (user == null) {
+                return error(HttpStatus.UNAUTHORIZED, "Yêu cầu đăng nhập");
+            }
+
+            HoaDon invoice = hoaDonRepository.findByInvoiceNumber(invoiceNumber).orElse(null);
+            if (invoice == null) {
+                return error(HttpStatus.NOT_FOUND, "Không tìm thấy hóa đơn");
+            }
+            if (!canView(user, invoice.getPayment())) {
+                return error(HttpStatus.FORBIDDEN, "Không có quyền xem hóa đơn này");
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("invoice", toMap(invoice));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lấy hóa đơn: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hóa đơn của 1 thanh toán; 202 + pending=true nếu worker chưa tạo xong
+     * GET /api/invoices/payment/{paymentId}
+     */
+    @GetMapping("/payment/{paymentId}")
+    public ResponseEntity<Map<String, Object>> getInvoiceByPayment(
+            @PathVariable Long paymentId,
+            Authentication authentication) {
+        try {
+            User user = currentUser(authentication);
+            if (user == null) {
+                return error(HttpStatus.UNAUTHORIZED, "Yêu cầu đăng nhập");
+            }
+
+            ThanhToan payment = thanhToanRepository.findById(paymentId).orElse(null);
+            if (payment == null) {
+                return error(HttpStatus.NOT_FOUND, "Không tìm thấy thanh toán");
+            }
+            if (!canView(user, payment)) {
+                return error(HttpStatus.FORBIDDEN, "Không có quyền xem hóa đơn này");
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            HoaDon invoice = hoaDonRepository.findByPaymentIdWithPayment(paymentId).orElse(null);
+            if (invoice == null) {
+                if (!"COMPLETED".equals(payment.getStatus())) {
+                    return error(HttpStatus.NOT_FOUND, "Thanh toán chưa hoàn tất, chưa có hóa đơn");
+                }
+                response.put("pending", true);
+                response.put("message", "Hóa đơn đang được tạo, vui lòng thử lại sau");
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
+
+            response.put("pending", false);
+            response.put("invoice", toMap(invoice));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lấy hóa đơn: " + e.getMessage());
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private User currentUser(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        return userRepository.findByEmail(authentication.getName()).orElse(null);
+    }
+
+    private boolean canView(User user, ThanhToan payment) {
+        if (user.getRole() == UserRole.ADMIN || user.getRole() == UserRole.CS_STAFF) {
+            return true;
+        }
+        PhienSac session = payment.getSessionId() != null
+                ? phienSacRepository.findById(payment.getSessionId()).orElse(null)
+                : null;
+        return session != null && session.getUser() != null && user.getId().equals(session.getUser().getId());
+    }
+
+    private Map<String, Object> toMap(HoaDon invoice) {
+        ThanhToan payment = invoice.getPayment();
+        Map<String, Object> data = new HashMap<>();
+        data.put("invoiceId", invoice.getInvoiceId());
+        data.put("invoiceNumber", invoice.getInvoiceNumber());
+        data.put("totalAmount", invoice.getTotalAmount());
+        data.put("issueDate", invoice.getIssueDate() != null ? invoice.getIssueDate().format(DATE_FORMATTER) : null);
+        data.put("description", invoice.getDescription());
+        data.put("paymentId", payment.getId());
+        data.put("sessionId", payment.getSessionId());
+        data.put("paymentMethod", payment.getMethod());
+        data.put("paymentStatus", payment.getStatus());
+        return data;
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
@@ -6,12 +6,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.SpendingSummary;
 import uth.edu.vn.entity.*;
 import uth.edu.vn.enums.*;
+import uth.edu.vn.exception.BadRequestException;
 import uth.edu.vn.exception.ResourceNotFoundException;
+import uth.edu.vn.service.BusinessMetrics;
 import uth.edu.vn.service.EVDriverService;
+import uth.edu.vn.service.IdempotencyService;
+import uth.edu.vn.service.InvoiceService;
+import uth.edu.vn.service.MonthlySpendingService;
+import uth.edu.vn.service.WalletService;
 import uth.edu.vn.repository.*;
+import uth.edu.vn.util.KeysetCursor;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -42,8 +51,32 @@ public class PaymentController {
     @Autowired
     private ChargerRepository chargerRepository;
 
+    @Autowired
+    private HoaDonRepository hoaDonRepository;
+
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private BusinessMetrics businessMetrics;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     // ==================== WALLET MANAGEMENT ====================
 
     /**
@@ -90,6 +123,59 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Lịch sử giao dịch ví (sổ cái giao_dich_vi), mới nhất trước
+     * GET /api/payment/wallet/transactions?limit=20
+     */
+    @GetMapping("/wallet/transactions")
+    public ResponseEntity<Map<String, Object>> getWalletTransactions(
+            Authentication authentication,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            if (authentication == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Yêu cầu đăng nhập");
+                return ResponseEntity.status(401).body(errorResponse);
+            }
+
+            String email = authentication.getName();
+            User user = userRepository.findByEmail(email).orElse(null);
+
+            if (user == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Không tìm thấy người dùng");
+                return ResponseEntity.notFound().build();
+            }
+
+            int pageSize = limit != null && limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+            List<Map<String, Object>> transactions = new ArrayList<>();
+            for (GiaoDichVi transaction : walletService.getRecentTransactions(user.getId(), pageSize)) {
+                Map<String, Object> transactionData = new HashMap<>();
+                transactionData.put("id", transaction.getId());
+                transactionData.put("type", transaction.getType());
+                transactionData.put("amount", transaction.getAmount());
+                transactionData.put("balanceAfter", transaction.getBalanceAfter());
+                transactionData.put("reference", transaction.getReference());
+                transactionData.put("createdAt", transaction.getCreatedAt().format(DATE_FORMATTER));
+                transactions.add(transactionData);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("transactions", transactions);
+            response.put("balance", walletService.getBalance(user.getId()));
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Lỗi khi lấy lịch sử giao dịch ví: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
     /**
      * Nạp tiền vào ví (alias cho frontend driverAPI.topUpWallet)
      * POST /api/payment/wallet/topup
@@ -97,8 +183,9 @@ public class PaymentController {
     @PostMapping("/wallet/topup")
     public ResponseEntity<Map<String, Object>> topUpWallet(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Object> fundData) {
-        return addFunds(authentication, fundData);
+        return addFunds(authentication, idempotencyKey, fundData);
     }
 
     /**
@@ -108,7 +195,17 @@ public class PaymentController {
     @PostMapping("/wallet/add-funds")
     public ResponseEntity<Map<String, Object>> addFunds(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Object> fundData) {
+        // Gửi lại cùng Idempotency-Key trả về kết quả lần đầu, không nạp tiền lần nữa
+        return idempotencyService.execute(authentication, idempotencyKey, "wallet/topup", fundData,
+                () -> doAddFunds(authentication, idempotencyKey, fundData));
+    }
+
+    private ResponseEntity<Map<String, Object>> doAddFunds(
+            Authentication authentication,
+            String idempotencyKey,
+            Map<String, Object> fundData) {
         try {
             if (authentication == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -134,24 +231,24 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body(errorResponse);
             }
 
-            boolean success = evDriverService.addFundsToWallet(user.getId(), amount);
+            // Có Idempotency-Key thì ghi key làm reference sổ cái: chạy lại sau khi giành khóa không cộng tiền lần 2
+            boolean success = evDriverService.addFundsToWallet(user.getId(), amount,
+                    idempotencyKey != null ? "idempotency:" + idempotencyKey : null);
 
             Map<String, Object> response = new HashMap<>();
             if (success) {
-                // Lấy số dư mới
-                User updatedUser = userRepository.findById(user.getId()).orElse(user);
-
                 response.put("success", true);
                 response.put("message", "Nạp tiền thành công");
                 response.put("amount", amount);
-                response.put("newBalance", updatedUser.getWalletBalance());
+                response.put("newBalance", walletService.getBalance(user.getId()));
                 response.put("timestamp", LocalDateTime.now().format(DATE_FORMATTER));
 
                 return ResponseEntity.ok(response);
             } else {
+                // Lỗi phía server (đã rollback): 5xx để Idempotency-Key được nhả, client gửi lại được
                 response.put("success", false);
                 response.put("error", "Không thể nạp tiền vào ví");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.internalServerError().body(response);
             }
 
         } catch (NumberFormatException e) {
@@ -183,7 +280,16 @@ public class PaymentController {
     @PostMapping("/process")
     public ResponseEntity<Map<String, Object>> processPayment(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Object> paymentData) {
+        // Gửi lại cùng Idempotency-Key trả về kết quả lần đầu, không thanh toán lần nữa
+        return idempotencyService.execute(authentication, idempotencyKey, "payment/process", paymentData,
+                () -> doProcessPayment(authentication, paymentData));
+    }
+
+    private ResponseEntity<Map<String, Object>> doProcessPayment(
+            Authentication authentication,
+            Map<String, Object> paymentData) {
         try {
             if (authentication == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -220,15 +326,15 @@ public class PaymentController {
 
                 // Số dư mới nếu thanh toán bằng ví
                 if (paymentMethod == PaymentMethod.WALLET) {
-                    User updatedUser = userRepository.findById(user.getId()).orElse(user);
-                    response.put("newWalletBalance", updatedUser.getWalletBalance());
+                    response.put("newWalletBalance", walletService.getBalance(user.getId()));
                 }
 
                 return ResponseEntity.ok(response);
             } else {
+                // Lỗi phía server (đã rollback): 5xx để Idempotency-Key được nhả, không lưu lại và replay
                 response.put("success", false);
                 response.put("error", "Không thể xử lý thanh toán");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.internalServerError().body(response);
             }
 
         } catch (NumberFormatException e) {
@@ -237,6 +343,12 @@ public class PaymentController {
             errorResponse.put("success", false);
             errorResponse.put("error", "Session ID không hợp lệ");
             return ResponseEntity.badRequest().body(errorResponse);
+        } catch (BadRequestException e) {
+            logger.warn("Payment rejected: {}", e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (ResourceNotFoundException e) {
             logger.error("Resource not found: {}", e.getMessage());
             Map<String, Object> errorResponse = new HashMap<>();
@@ -258,8 +370,9 @@ public class PaymentController {
     @PostMapping("/charge")
     public ResponseEntity<Map<String, Object>> chargeSession(
             Authentication authentication,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Object> paymentData) {
-        return processPayment(authentication, paymentData);
+        return processPayment(authentication, idempotencyKey, paymentData);
     }
 
     @PostMapping("/simulate-charge-session")
@@ -337,17 +450,23 @@ public class PaymentController {
             session.setCreatedAt(startTime);
             session.setUpdatedAt(endTime);
 
-            session = phienSacRepository.save(session);
-
             Object methodObj = request.get("paymentMethod");
             String methodStr = methodObj != null ? methodObj.toString() : "SIMULATED";
 
-            ThanhToan payment = new ThanhToan(
-                    session.getSessionId(),
-                    java.math.BigDecimal.valueOf(totalCost),
-                    methodStr);
-            payment.setStatus("COMPLETED");
-            payment = thanhToanRepository.save(payment);
+            // Phiên, thanh toán và chi tiêu tháng ghi trong cùng 1 transaction
+            ThanhToan payment = transactionTemplate.execute(status -> {
+                PhienSac saved = phienSacRepository.save(session);
+                ThanhToan completed = new ThanhToan(
+                        saved.getSessionId(),
+                        java.math.BigDecimal.valueOf(totalCost),
+                        methodStr);
+                completed.setStatus("COMPLETED");
+                completed = thanhToanRepository.save(completed);
+                monthlySpendingService.recordPayment(saved, completed);
+                invoiceService.enqueueAfterCommit(completed.getId());
+                businessMetrics.paymentCompleted(completed.getMethod(), completed.getAmount());
+                return completed;
+            });
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -407,6 +526,9 @@ public class PaymentController {
             paymentData.put("paymentMethod", latest.getMethod());
             paymentData.put("status", latest.getStatus());
             paymentData.put("paymentTime", latest.getCreatedAt().format(DATE_FORMATTER));
+            // Hóa đơn được tạo bất đồng bộ, null nghĩa là đang chờ worker
+            paymentData.put("invoiceNumber",
+                    hoaDonRepository.findInvoiceNumberByPaymentId(latest.getId()).orElse(null));
 
             PhienSac session = phienSacRepository.findById(sessionId).orElse(null);
             if (session != null) {
@@ -441,11 +563,14 @@ public class PaymentController {
     }
 
     /**
-     * Lấy lịch sử thanh toán cho người dùng hiện tại (alias tiện dụng)
-     * GET /api/payment/history
+     * Lấy lịch sử thanh toán cho người dùng hiện tại (alias tiện dụng), phân trang theo cursor
+     * GET /api/payment/history?limit=20&cursor=...
      */
     @GetMapping("/history")
-    public ResponseEntity<Map<String, Object>> getUserPaymentHistory(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getUserPaymentHistory(
+            Authentication authentication,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
         try {
             if (authentication == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -462,35 +587,27 @@ public class PaymentController {
                 return ResponseEntity.notFound().build();
             }
 
-            List<PhienSac> sessions = phienSacRepository.findByUserOrderByStartTimeDesc(user.getId());
-            List<Map<String, Object>> paymentList = new ArrayList<>();
-
-            for (PhienSac session : sessions) {
-                List<ThanhToan> payments = thanhToanRepository.findBySessionId(session.getSessionId());
-                for (ThanhToan payment : payments) {
-                    Map<String, Object> paymentData = new HashMap<>();
-                    paymentData.put("paymentId", payment.getId());
-                    paymentData.put("amount", payment.getAmount());
-                    paymentData.put("paymentMethod", payment.getMethod());
-                    paymentData.put("status", payment.getStatus());
-                    paymentData.put("paymentTime", payment.getCreatedAt().format(DATE_FORMATTER));
-                    paymentData.put("sessionId", session.getSessionId());
-                    paymentData.put("energyConsumed", session.getEnergyConsumed());
-
-                    if (session.getChargingPoint() != null &&
-                            session.getChargingPoint().getChargingStation() != null) {
-                        TramSac station = session.getChargingPoint().getChargingStation();
-                        paymentData.put("stationName", station.getName());
-                    }
-
-                    paymentList.add(paymentData);
+            KeysetCursor after = null;
+            if (cursor != null && !cursor.isBlank()) {
+                try {
+                    after = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("success", false);
+                    errorResponse.put("error", "Cursor không hợp lệ");
+                    return ResponseEntity.badRequest().body(errorResponse);
                 }
             }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("payments", paymentList);
-            response.put("total", paymentList.size());
+            int pageSize = limit != null && limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+            Map<String, Object> response = evDriverService.getPaymentHistory(user.getId(), after, pageSize);
+            if (response == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Lỗi khi lấy lịch sử thanh toán");
+                return ResponseEntity.internalServerError().body(errorResponse);
+            }
 
             return ResponseEntity.ok(response);
 
@@ -650,32 +767,22 @@ public class PaymentController {
                 end = LocalDateTime.parse(endDate + " 23:59:59", DATE_FORMATTER);
             } else {
                 // Mặc định tháng hiện tại
-                LocalDateTime now = LocalDateTime.now();
-                start = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-                end = now.withDayOfMonth(now.toLocalDate().lengthOfMonth())
-                        .withHour(23).withMinute(59).withSecond(59);
+                java.time.LocalDate today = java.time.LocalDate.now();
+                start = today.withDayOfMonth(1).atStartOfDay();
+                end = today.withDayOfMonth(today.lengthOfMonth()).atTime(23, 59, 59);
             }
 
-            // Lấy tất cả sessions trong khoảng thời gian
-            List<PhienSac> sessions = phienSacRepository.findByUserOrderByStartTimeDesc(user.getId());
-
-            double totalSpending = 0.0;
-            int sessionCount = 0;
-
-            for (PhienSac session : sessions) {
-                if (session.getStartTime().isAfter(start) &&
-                        session.getStartTime().isBefore(end) &&
-                        session.getTotalCost() != null) {
-                    totalSpending += session.getTotalCost();
-                    sessionCount++;
-                }
-            }
+            // Các tháng trọn vẹn đọc từ chi_tieu_thang, chỉ phần lẻ đầu / cuối mới truy vấn thanh_toan
+            SpendingSummary summary = monthlySpendingService.getRange(user.getId(), start, end.plusSeconds(1));
+            int sessionCount = (int) summary.getPaymentCount();
+            double totalSpending = summary.getTotalAmount().doubleValue();
 
             Map<String, Object> spendingData = new HashMap<>();
             spendingData.put("totalSpending", Math.round(totalSpending * 100.0) / 100.0);
             spendingData.put("sessionCount", sessionCount);
             spendingData.put("avgSpendingPerSession",
                     sessionCount > 0 ? Math.round((totalSpending / sessionCount) * 100.0) / 100.0 : 0.0);
+            spendingData.put("energyConsumed", Math.round(summary.getEnergyKwh() * 100.0) / 100.0);
             spendingData.put("startDate", start.format(DATE_FORMATTER));
             spendingData.put("endDate", end.format(DATE_FORMATTER));
 
@@ -4,12 +4,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.SpendingSummary;
 import uth.edu.vn.entity.User;
 import uth.edu.vn.entity.Xe;
+import uth.edu.vn.enums.WalletTransactionType;
 import uth.edu.vn.repository.UserRepository;
 import uth.edu.vn.repository.XeRepository;
+import uth.edu.vn.service.MonthlySpendingService;
+import uth.edu.vn.service.WalletService;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +30,12 @@ public class ProfileController {
     @Autowired
     private XeRepository xeRepository;
 
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private WalletService walletService;
+
     // Constructor để log khi Spring tạo instance
     public ProfileController() {
         System.out.println("=== ProfileController: CONSTRUCTOR CALLED - Spring is loading this controller ===");
@@ -75,11 +86,22 @@ public class ProfileController {
                 vehicleData.put("batteryCapacity", null);
             }
 
+            // Chi tiêu (đọc từ chi_tieu_thang, không quét lịch sử phiên sạc)
+            SpendingSummary thisMonth = monthlySpendingService.getMonth(user.getId(), YearMonth.now());
+            SpendingSummary lifetime = monthlySpendingService.getLifetime(user.getId());
+            Map<String, Object> spendingData = new HashMap<>();
+            spendingData.put("monthTotal", thisMonth.getTotalAmount());
+            spendingData.put("monthPaymentCount", thisMonth.getPaymentCount());
+            spendingData.put("lifetimeTotal", lifetime.getTotalAmount());
+            spendingData.put("lifetimePaymentCount", lifetime.getPaymentCount());
+            spendingData.put("lifetimeEnergyKwh", lifetime.getEnergyKwh());
+
             // Tạo response
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("user", userData);
             response.put("vehicle", vehicleData);
+            response.put("spending", spendingData);
 
             // Alias các field phẳng cho JS cũ (hoTen, email, sdt, diaChi)
             String firstName = user.getFirstName() != null ? user.getFirstName() : "";
@@ -233,21 +255,23 @@ public class ProfileController {
             User user = userRepository.findByEmail(userEmail)
                     .orElseThrow(() -> new RuntimeException("User not found"));
 
-            BigDecimal currentBalance = user.getWalletBalance() != null ? user.getWalletBalance() : BigDecimal.ZERO;
-            System.out.println("Current balance: " + currentBalance);
+            if (request.getAmount() == null || request.getAmount() <= 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "Amount must be greater than 0");
+                return ResponseEntity.badRequest().body(error);
+            }
 
+            // Kiểm tra số dư và trừ trong cùng 1 câu UPDATE có điều kiện
             BigDecimal amountToDeduct = BigDecimal.valueOf(request.getAmount());
-            if (currentBalance.compareTo(amountToDeduct) < 0) {
+            BigDecimal newBalance = walletService.debit(user.getId(), amountToDeduct,
+                    WalletTransactionType.PAYMENT, null);
+            if (newBalance == null) {
                 Map<String, Object> error = new HashMap<>();
                 error.put("error", "Insufficient balance");
-                error.put("currentBalance", currentBalance);
+                error.put("currentBalance", walletService.getBalance(user.getId()));
                 return ResponseEntity.badRequest().body(error);
             }
 
-            BigDecimal newBalance = currentBalance.subtract(amountToDeduct);
-            user.setWalletBalance(newBalance);
-            userRepository.save(user);
-
             System.out.println("New balance: " + newBalance);
 
             Map<String, Object> response = new HashMap<>();
@@ -4,15 +4,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.NearbyStation;
+import uth.edu.vn.dto.StationChargerSummary;
 import uth.edu.vn.entity.TramSac;
 import uth.edu.vn.entity.Charger;
 import uth.edu.vn.entity.DatCho;
 import uth.edu.vn.entity.PhienSac;
 import uth.edu.vn.entity.User;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
 import uth.edu.vn.service.EVDriverService;
 import uth.edu.vn.repository.TramSacRepository;
 import uth.edu.vn.repository.ChargerRepository;
-import uth.edu.vn.enums.PointStatus;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -38,6 +40,11 @@ public class StationsController {
     @Autowired
     private ChargerRepository chargerRepository;
     
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+    
+    private static final int SUMMARY_BATCH_SIZE = 1000;
+    
     /**
      * Lấy danh sách tất cả trạm sạc
      * GET /api/stations
@@ -55,6 +62,14 @@ public class StationsController {
                 stations = tramSacRepository.findAll();
             }
             
+            // Thống kê điểm sạc lấy từ registry trong bộ nhớ (fallback: 1 query group by)
+            Map<Long, StationChargerSummary> summaries = null;
+            if (!chargerAvailabilityRegistry.isLoaded()) {
+                summaries = (search != null && !search.trim().isEmpty())
+                        ? loadChargerSummaries(stations.stream().map(TramSac::getId).toList())
+                        : StationChargerSummary.fromCounts(chargerRepository.countByStationAndConnectorType());
+            }
+            
             // Convert to response format
             List<Map<String, Object>> stationList = new ArrayList<>();
             
@@ -69,20 +84,10 @@ public class StationsController {
                 stationData.put("operatingHours", "24/7"); // Default value
                 stationData.put("contactInfo", "Liên hệ hotline"); // Default value
                 
-                // Đếm số điểm sạc khả dụng
-                Long availableChargers = chargerRepository.countAvailableChargersByStation(station.getId());
-                List<Charger> allChargers = chargerRepository.findByChargingStationId(station.getId());
-                
-                stationData.put("totalChargers", allChargers.size());
-                stationData.put("availableChargers", availableChargers != null ? availableChargers : 0);
-                
-                // Thông tin các loại connector
-                Map<String, Integer> connectorTypes = new HashMap<>();
-                for (Charger charger : allChargers) {
-                    String type = charger.getConnectorType().toString();
-                    connectorTypes.put(type, connectorTypes.getOrDefault(type, 0) + 1);
-                }
-                stationData.put("connectorTypes", connectorTypes);
+                StationChargerSummary summary = summaryOf(station.getId(), summaries);
+                stationData.put("totalChargers", summary.getTotalChargers());
+                stationData.put("availableChargers", summary.getAvailableChargers());
+                stationData.put("connectorTypes", summary.getConnectorTypes());
                 
                 stationList.add(stationData);
             }
@@ -108,18 +113,26 @@ public class StationsController {
     public ResponseEntity<Map<String, Object>> getNearbyStations(
             @RequestParam Double latitude,
             @RequestParam Double longitude,
-            @RequestParam(defaultValue = "10.0") Double radius) {
+            @RequestParam(defaultValue = "10.0") Double radius,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<TramSac> nearbyStations = evDriverService.findNearbyStations(latitude, longitude, radius);
+            // limit != null: k trạm gần nhất trong bán kính; ngược lại: tất cả trạm trong bán kính
+            List<NearbyStation> nearbyStations = (limit != null && limit > 0)
+                    ? evDriverService.findNearestStations(latitude, longitude, limit, radius)
+                    : evDriverService.findNearbyStations(latitude, longitude, radius);
             
             if (nearbyStations == null) {
                 nearbyStations = new ArrayList<>();
             }
             
-            // Convert to response format với thông tin distance
+            Map<Long, StationChargerSummary> summaries = chargerAvailabilityRegistry.isLoaded()
+                    ? null
+                    : loadChargerSummaries(nearbyStations.stream().map(NearbyStation::getId).toList());
+            
+            // Convert to response format với thông tin distance (đã sắp xếp theo khoảng cách)
             List<Map<String, Object>> stationList = new ArrayList<>();
             
-            for (TramSac station : nearbyStations) {
+            for (NearbyStation station : nearbyStations) {
                 Map<String, Object> stationData = new HashMap<>();
                 stationData.put("id", station.getId());
                 stationData.put("name", station.getName());
@@ -127,25 +140,16 @@ public class StationsController {
                 stationData.put("latitude", station.getLatitude());
                 stationData.put("longitude", station.getLongitude());
                 stationData.put("status", station.getStatus());
+                stationData.put("distance", Math.round(station.getDistanceKm() * 100.0) / 100.0);
                 
-                // Tính khoảng cách (simplified calculation)
-                double distance = calculateDistance(latitude, longitude, 
-                    station.getLatitude(), station.getLongitude());
-                stationData.put("distance", Math.round(distance * 100.0) / 100.0);
-                
-                // Đếm số điểm sạc khả dụng
-                Long availableChargers = chargerRepository.countAvailableChargersByStation(station.getId());
-                List<Charger> allChargers = chargerRepository.findByChargingStationId(station.getId());
-                
-                stationData.put("totalChargers", allChargers.size());
-                stationData.put("availableChargers", availableChargers != null ? availableChargers : 0);
+                StationChargerSummary summary = summaryOf(station.getId(), summaries);
+                stationData.put("totalChargers", summary.getTotalChargers());
+                stationData.put("availableChargers", summary.getAvailableChargers());
+                stationData.put("connectorTypes", summary.getConnectorTypes());
                 
                 stationList.add(stationData);
             }
             
-            // Sắp xếp theo khoảng cách
-            stationList.sort((a, b) -> Double.compare((Double) a.get("distance"), (Double) b.get("distance")));
-            
             Map<String, Object> response = new HashMap<>();
             response.put("stations", stationList);
             response.put("total", stationList.size());
@@ -201,13 +205,12 @@ public class StationsController {
                 chargerList.add(chargerData);
             }
             
+            // Danh sách điểm sạc đã load sẵn nên thống kê trực tiếp, không cần thêm query
+            StationChargerSummary summary = StationChargerSummary.fromChargers(chargers);
             stationData.put("chargers", chargerList);
-            stationData.put("totalChargers", chargers.size());
-            
-            Long availableCount = chargers.stream()
-                .mapToLong(c -> c.getStatus() == PointStatus.AVAILABLE ? 1 : 0)
-                .sum();
-            stationData.put("availableChargers", availableCount);
+            stationData.put("totalChargers", summary.getTotalChargers());
+            stationData.put("availableChargers", summary.getAvailableChargers());
+            stationData.put("connectorTypes", summary.getConnectorTypes());
             
             return ResponseEntity.ok(stationData);
             
@@ -347,19 +350,21 @@ public class StationsController {
     }
     
     /**
-     * Tính khoảng cách giữa 2 điểm (Haversine formula - simplified)
+     * Load thống kê điểm sạc cho danh sách trạm, chia lô để không vượt giới hạn 2100 tham số của SQL Server
      */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distance = R * c; // convert to kilometers
-        
-        return distance;
+    private Map<Long, StationChargerSummary> loadChargerSummaries(List<Long> stationIds) {
+        List<ChargerRepository.StationConnectorCount> counts = new ArrayList<>();
+        for (int from = 0; from < stationIds.size(); from += SUMMARY_BATCH_SIZE) {
+            List<Long> batch = stationIds.subList(from, Math.min(from + SUMMARY_BATCH_SIZE, stationIds.size()));
+            counts.addAll(chargerRepository.countByStationAndConnectorType(batch));
+        }
+        return StationChargerSummary.fromCounts(counts);
+    }
+    
+    private StationChargerSummary summaryOf(Long stationId, Map<Long, StationChargerSummary> summaries) {
+        if (summaries == null) {
+            return chargerAvailabilityRegistry.getSummary(stationId);
+        }
+        return summaries.getOrDefault(stationId, StationChargerSummary.empty());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package uth.edu.vn.controller;
+
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.entity.DieuKhienTuXa;
+import uth.edu.vn.repository.DieuKhienTuXaRepository;
+import uth.edu.vn.service.TelemetryAnomalyDetector;
+import uth.edu.vn.service.TelemetryIngestionService;
+import uth.edu.vn.service.TelemetryRollupService;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Telemetry Controller
+ * REST API endpoints nhận telemetry từ điểm sạc
+ */
+@RestController
+@RequestMapping("/api/telemetry")
+public class TelemetryController {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private TelemetryIngestionService telemetryIngestionService;
+
+    @Autowired
+    private TelemetryRollupService telemetryRollupService;
+
+    @Autowired
+    private DieuKhienTuXaRepository dieuKhienTuXaRepository;
+
+    @Autowired
+    private TelemetryAnomalyDetector telemetryAnomalyDetector;
+
+    /**
+     * Gửi 1 bản ghi telemetry
+     * POST /api/telemetry
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> ingest(@Valid @RequestBody TelemetryReading reading) {
+        Map<String, Object> response = new HashMap<>();
+        String rejection = telemetryIngestionService.submit(reading);
+        response.put("success", rejection == null);
+        if (TelemetryIngestionService.OVERLOADED.equals(rejection)) {
+            response.put("error", "Không nhận được telemetry (hệ thống đang quá tải)");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        if (rejection != null) {
+            response.put("error", rejection);
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("accepted", 1);
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Gửi nhiều bản ghi telemetry
+     * POST /api/telemetry/batch
+     *
+     * Bản ghi không hợp lệ bị từ chối riêng lẻ (liệt kê trong "rejections" theo vị trí), phần còn lại vẫn được nhận.
+     * Chỉ trả 503 khi hàng đợi đầy.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> ingestBatch(@Valid @RequestBody List<@Valid TelemetryReading> readings) {
+        int accepted = 0;
+        int overloaded = 0;
+        List<Map<String, Object>> rejections = new ArrayList<>();
+        for (int i = 0; i < readings.size(); i++) {
+            TelemetryReading reading = readings.get(i);
+            String invalid = telemetryIngestionService.submit(reading);
+            if (invalid == null) {
+                accepted++;
+                continue;
+            }
+            if (TelemetryIngestionService.OVERLOADED.equals(invalid)) {
+                overloaded++;
+            }
+            Map<String, Object> rejection = new HashMap<>();
+            rejection.put("index", i);
+            rejection.put("error", invalid);
+            rejections.add(rejection);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", rejections.isEmpty());
+        response.put("accepted", accepted);
+        response.put("rejected", rejections.size());
+        if (!rejections.isEmpty()) {
+            response.put("rejections", rejections);
+        }
+        if (overloaded > 0) {
+            response.put("error", "Một số bản ghi không được nhận (hệ thống đang quá tải)");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Bản ghi telemetry mới nhất của điểm sạc
+     * GET /api/telemetry/latest/{pointId}
+     */
+    @GetMapping("/latest/{pointId}")
+    public ResponseEntity<Map<String, Object>> getLatest(@PathVariable Long pointId) {
+        TelemetryReading reading = telemetryIngestionService.getLatestReading(pointId);
+
+        Map<String, Object> response = new HashMap<>();
+        if (reading == null) {
+            response.put("success", false);
+            response.put("error", "Chưa có telemetry cho điểm sạc này");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("telemetry", reading);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Công suất trung bình và tổng năng lượng của điểm sạc
+     * GET /api/telemetry/points/{pointId}/summary?startDate=yyyy-MM-dd HH:mm:ss&endDate=...
+     */
+    @GetMapping("/points/{pointId}/summary")
+    public ResponseEntity<Map<String, Object>> getPointSummary(
+            @PathVariable Long pointId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            LocalDateTime start = LocalDateTime.parse(startDate, DATE_FORMATTER);
+            LocalDateTime end = LocalDateTime.parse(endDate, DATE_FORMATTER);
+
+            response.put("success", true);
+            response.put("pointId", pointId);
+            response.put("averagePowerKw", telemetryRollupService.getAveragePowerByChargingPoint(pointId, start, end));
+            response.put("totalEnergyKwh", telemetryRollupService.getTotalEnergyByChargingPoint(pointId, start, end));
+            return ResponseEntity.ok(response);
+
+        } catch (DateTimeParseException e) {
+            response.put("success", false);
+            response.put("error", "Định dạng thời gian không hợp lệ (yyyy-MM-dd HH:mm:ss)");
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", "Lỗi khi lấy thống kê telemetry: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * Lịch sử telemetry của điểm sạc (gộp archive và dữ liệu live) cho biểu đồ
+     * GET /api/telemetry/points/{pointId}/history?startDate=yyyy-MM-dd HH:mm:ss&endDate=...
+     */
+    @GetMapping("/points/{pointId}/history")
+    public ResponseEntity<Map<String, Object>> getPointHistory(
+            @PathVariable Long pointId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            LocalDateTime start = LocalDateTime.parse(startDate, DATE_FORMATTER);
+            LocalDateTime end = LocalDateTime.parse(endDate, DATE_FORMATTER);
+
+            List<Map<String, Object>> readings = new ArrayList<>();
+            for (DieuKhienTuXa telemetry : dieuKhienTuXaRepository.findByChargingPointAndDateRange(pointId, start, end)) {
+                Map<String, Object> reading = new HashMap<>();
+                reading.put("recordedAt", telemetry.getRecordedAt());
+                reading.put("socPercentage", telemetry.getSocPercentage());
+                reading.put("currentPowerKw", telemetry.getCurrentPowerKw());
+                reading.put("energyDeliveredKwh", telemetry.getEnergyDeliveredKwh());
+                reading.put("voltageV", telemetry.getVoltageV());
+                reading.put("currentA", telemetry.getCurrentA());
+                reading.put("temperatureC", telemetry.getTemperatureC());
+                reading.put("status", telemetry.getStatus());
+                readings.add(reading);
+            }
+
+            response.put("success", true);
+            response.put("pointId", pointId);
+            response.put("readings", readings);
+            return ResponseEntity.ok(response);
+
+        } catch (DateTimeParseException e) {
+            response.put("success", false);
+            response.put("error", "Định dạng thời gian không hợp lệ (yyyy-MM-dd HH:mm:ss)");
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", "Lỗi khi lấy lịch sử telemetry: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * Thống kê telemetry theo từng điểm sạc của trạm
+     * GET /api/telemetry/stations/{stationId}/statistics?startDate=yyyy-MM-dd HH:mm:ss&endDate=...
+     */
+    @GetMapping("/stations/{stationId}/statistics")
+    public ResponseEntity<Map<String, Object>> getStationStatistics(
+            @PathVariable Long stationId,
+            @RequestParam String startDate,
+            @RequestParam String endDate) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            LocalDateTime start = LocalDateTime.parse(startDate, DATE_FORMATTER);
+            LocalDateTime end = LocalDateTime.parse(endDate, DATE_FORMATTER);
+
+            List<Map<String, Object>> points = new ArrayList<>();
+            for (Object[] row : telemetryRollupService.getStationStatistics(stationId, start, end)) {
+                Map<String, Object> point = new HashMap<>();
+                point.put("pointId", row[0]);
+                point.put("readingCount", row[1]);
+                point.put("averagePowerKw", row[2]);
+                point.put("totalEnergyKwh", row[3]);
+                point.put("averageTemperatureC", row[4]);
+                points.add(point);
+            }
+
+            response.put("success", true);
+            response.put("stationId", stationId);
+            response.put("chargingPoints", points);
+            return ResponseEntity.ok(response);
+
+        } catch (DateTimeParseException e) {
+            response.put("success", false);
+            response.put("error", "Định dạng thời gian không hợp lệ (yyyy-MM-dd HH:mm:ss)");
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", "Lỗi khi lấy thống kê telemetry: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * Thống kê pipeline ingest
+     * GET /api/telemetry/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("stats", telemetryIngestionService.getStats());
+        response.put("anomaly", telemetryAnomalyDetector.getStats());
+        return ResponseEntity.ok(response);
+    }
+}
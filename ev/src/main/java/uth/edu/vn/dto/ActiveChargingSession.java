@@ -0,0 +1,101 @@
+package uth.edu.vn.dto;
+
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot phi chuẩn hóa của một phiên sạc ACTIVE
+ * (đủ thông tin để dựng ChargingStatusUpdate mà không cần query database)
+ */
+public class ActiveChargingSession {
+
+    private final Long sessionId;
+    private final Long pointId;
+    private final Long stationId;
+    private final LocalDateTime startTime;
+    private final Integer startSoc;
+    private final double powerCapacity;
+    private final double pricePerKwh;
+    private final String stationName;
+    private final String chargerName;
+    private final String userEmail;
+
+    public ActiveChargingSession(Long sessionId, Long pointId, Long stationId, LocalDateTime startTime,
+            Integer startSoc, double powerCapacity, double pricePerKwh, String stationName, String chargerName,
+            String userEmail) {
+        this.sessionId = sessionId;
+        this.pointId = pointId;
+        this.stationId = stationId;
+        this.startTime = startTime;
+        this.startSoc = startSoc;
+        this.powerCapacity = powerCapacity;
+        this.pricePerKwh = pricePerKwh;
+        this.stationName = stationName;
+        this.chargerName = chargerName;
+        this.userEmail = userEmail;
+    }
+
+    /**
+     * Tạo snapshot từ entity (phải gọi trong transaction để load được charger, trạm và user)
+     */
+    public static ActiveChargingSession from(PhienSac session) {
+        Charger point = session.getChargingPoint();
+        TramSac station = point != null ? point.getChargingStation() : null;
+        User user = session.getUser();
+        return new ActiveChargingSession(
+                session.getSessionId(),
+                point != null ? point.getPointId() : null,
+                station != null ? station.getId() : null,
+                session.getStartTime(),
+                session.getStartSoc(),
+                point != null && point.getPowerCapacity() != null ? point.getPowerCapacity() : 0.0,
+                point != null && point.getPricePerKwh() != null ? point.getPricePerKwh() : 0.0,
+                station != null ? station.getName() : null,
+                point != null ? point.getPointName() : null,
+                user != null ? user.getEmail() : null);
+    }
+
+    public Long getSessionId() {
+        return sessionId;
+    }
+
+    public Long getPointId() {
+        return pointId;
+    }
+
+    public Long getStationId() {
+        return stationId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public Integer getStartSoc() {
+        return startSoc;
+    }
+
+    public double getPowerCapacity() {
+        return powerCapacity;
+    }
+
+    public double getPricePerKwh() {
+        return pricePerKwh;
+    }
+
+    public String getStationName() {
+        return stationName;
+    }
+
+    public String getChargerName() {
+        return chargerName;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+}
@@ -0,0 +1,69 @@
+package uth.edu.vn.dto;
+
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.SessionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng lịch sử sạc (phiên + điểm sạc + trạm), được JPQL dựng trực tiếp bằng constructor expression
+ */
+public class ChargingHistoryItem {
+
+    private final Long sessionId;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final Double energyConsumed;
+    private final Double totalCost;
+    private final SessionStatus status;
+    private final String qrCode;
+    private final Integer startSoc;
+    private final Integer endSoc;
+    private final Long chargerId;
+    private final String chargerName;
+    private final ConnectorType connectorType;
+    private final Double powerCapacity;
+    private final Long stationId;
+    private final String stationName;
+    private final String stationAddress;
+
+    public ChargingHistoryItem(Long sessionId, LocalDateTime startTime, LocalDateTime endTime,
+            Double energyConsumed, Double totalCost, SessionStatus status, String qrCode,
+            Integer startSoc, Integer endSoc, Long chargerId, String chargerName,
+            ConnectorType connectorType, Double powerCapacity, Long stationId, String stationName,
+            String stationAddress) {
+        this.sessionId = sessionId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.energyConsumed = energyConsumed;
+        this.totalCost = totalCost;
+        this.status = status;
+        this.qrCode = qrCode;
+        this.startSoc = startSoc;
+        this.endSoc = endSoc;
+        this.chargerId = chargerId;
+        this.chargerName = chargerName;
+        this.connectorType = connectorType;
+        this.powerCapacity = powerCapacity;
+        this.stationId = stationId;
+        this.stationName = stationName;
+        this.stationAddress = stationAddress;
+    }
+
+    public Long getSessionId() { return sessionId; }
+    public LocalDateTime getStartTime() { return startTime; }
+    public LocalDateTime getEndTime() { return endTime; }
+    public Double getEnergyConsumed() { return energyConsumed; }
+    public Double getTotalCost() { return totalCost; }
+    public SessionStatus getStatus() { return status; }
+    public String getQrCode() { return qrCode; }
+    public Integer getStartSoc() { return startSoc; }
+    public Integer getEndSoc() { return endSoc; }
+    public Long getChargerId() { return chargerId; }
+    public String getChargerName() { return chargerName; }
+    public ConnectorType getConnectorType() { return connectorType; }
+    public Double getPowerCapacity() { return powerCapacity; }
+    public Long getStationId() { return stationId; }
+    public String getStationName() { return stationName; }
+    public String getStationAddress() { return stationAddress; }
+}
@@ -0,0 +1,24 @@
+package uth.edu.vn.dto;
+
+/**
+ * Tổng hợp toàn bộ lịch sử sạc của user (không chỉ trang đang xem), JPQL dựng bằng constructor expression
+ */
+public class ChargingHistorySummary {
+
+    private final long totalSessions;
+    private final long completedSessions;
+    private final double totalEnergy;
+    private final double totalCost;
+
+    public ChargingHistorySummary(Long totalSessions, Long completedSessions, Double totalEnergy, Double totalCost) {
+        this.totalSessions = totalSessions != null ? totalSessions : 0;
+        this.completedSessions = completedSessions != null ? completedSessions : 0;
+        this.totalEnergy = totalEnergy != null ? totalEnergy : 0.0;
+        this.totalCost = totalCost != null ? totalCost : 0.0;
+    }
+
+    public long getTotalSessions() { return totalSessions; }
+    public long getCompletedSessions() { return completedSessions; }
+    public double getTotalEnergy() { return totalEnergy; }
+    public double getTotalCost() { return totalCost; }
+}
@@ -0,0 +1,55 @@
+package uth.edu.vn.dto;
+
+/**
+ * Kết quả tìm kiếm trạm sạc gần đây từ StationSpatialIndex
+ * (snapshot thông tin trạm + khoảng cách tới điểm tìm kiếm)
+ */
+public class NearbyStation {
+
+    private final Long id;
+    private final String name;
+    private final String address;
+    private final Double latitude;
+    private final Double longitude;
+    private final String status;
+    private final double distanceKm;
+
+    public NearbyStation(Long id, String name, String address, Double latitude, Double longitude,
+            String status, double distanceKm) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.status = status;
+        this.distanceKm = distanceKm;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+}
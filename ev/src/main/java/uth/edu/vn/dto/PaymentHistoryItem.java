@@ -0,0 +1,53 @@
+package uth.edu.vn.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng lịch sử thanh toán (thanh toán + phiên + điểm sạc + trạm), được JPQL dựng trực tiếp bằng constructor expression
+ */
+public class PaymentHistoryItem {
+
+    private final Long paymentId;
+    private final BigDecimal amount;
+    private final String method;
+    private final String status;
+    private final LocalDateTime createdAt;
+    private final Long sessionId;
+    private final Double energyConsumed;
+    private final LocalDateTime sessionStartTime;
+    private final Long chargerId;
+    private final String chargerName;
+    private final Long stationId;
+    private final String stationName;
+
+    public PaymentHistoryItem(Long paymentId, BigDecimal amount, String method, String status,
+            LocalDateTime createdAt, Long sessionId, Double energyConsumed, LocalDateTime sessionStartTime,
+            Long chargerId, String chargerName, Long stationId, String stationName) {
+        this.paymentId = paymentId;
+        this.amount = amount;
+        this.method = method;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.sessionId = sessionId;
+        this.energyConsumed = energyConsumed;
+        this.sessionStartTime = sessionStartTime;
+        this.chargerId = chargerId;
+        this.chargerName = chargerName;
+        this.stationId = stationId;
+        this.stationName = stationName;
+    }
+
+    public Long getPaymentId() { return paymentId; }
+    public BigDecimal getAmount() { return amount; }
+    public String getMethod() { return method; }
+    public String getStatus() { return status; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public Long getSessionId() { return sessionId; }
+    public Double getEnergyConsumed() { return energyConsumed; }
+    public LocalDateTime getSessionStartTime() { return sessionStartTime; }
+    public Long getChargerId() { return chargerId; }
+    public String getChargerName() { return chargerName; }
+    public Long getStationId() { return stationId; }
+    public String getStationName() { return stationName; }
+}
@@ -0,0 +1,20 @@
+package uth.edu.vn.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng hợp toàn bộ lịch sử thanh toán của user (số thanh toán, tổng COMPLETED), JPQL dựng bằng constructor expression
+ */
+public class PaymentHistorySummary {
+
+    private final long totalPayments;
+    private final BigDecimal totalPaid;
+
+    public PaymentHistorySummary(Long totalPayments, BigDecimal totalPaid) {
+        this.totalPayments = totalPayments != null ? totalPayments : 0;
+        this.totalPaid = totalPaid != null ? totalPaid : BigDecimal.ZERO;
+    }
+
+    public long getTotalPayments() { return totalPayments; }
+    public BigDecimal getTotalPaid() { return totalPaid; }
+}
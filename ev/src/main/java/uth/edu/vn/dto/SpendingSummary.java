@@ -0,0 +1,32 @@
+package uth.edu.vn.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng chi tiêu của user trong 1 khoảng thời gian (số tiền COMPLETED, số thanh toán, kWh)
+ */
+public class SpendingSummary {
+
+    private final BigDecimal totalAmount;
+    private final long paymentCount;
+    private final double energyKwh;
+
+    public SpendingSummary(BigDecimal totalAmount, long paymentCount, double energyKwh) {
+        this.totalAmount = totalAmount;
+        this.paymentCount = paymentCount;
+        this.energyKwh = energyKwh;
+    }
+
+    public static SpendingSummary empty() {
+        return new SpendingSummary(BigDecimal.ZERO, 0, 0.0);
+    }
+
+    public SpendingSummary plus(SpendingSummary other) {
+        return new SpendingSummary(totalAmount.add(other.totalAmount), paymentCount + other.paymentCount,
+                energyKwh + other.energyKwh);
+    }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public long getPaymentCount() { return paymentCount; }
+    public double getEnergyKwh() { return energyKwh; }
+}
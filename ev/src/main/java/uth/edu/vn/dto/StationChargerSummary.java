@@ -0,0 +1,80 @@
+package uth.edu.vn.dto;
+
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.PointStatus;
+import uth.edu.vn.repository.ChargerRepository.StationConnectorCount;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thống kê điểm sạc của một trạm: tổng số, số điểm khả dụng và số điểm theo loại connector
+ */
+public class StationChargerSummary {
+
+    private static final StationChargerSummary EMPTY = new StationChargerSummary();
+
+    private long totalChargers;
+    private long availableChargers;
+    private final Map<String, Integer> connectorTypes = new HashMap<>();
+
+    private StationChargerSummary() {
+    }
+
+    public StationChargerSummary(long totalChargers, long availableChargers, Map<String, Integer> connectorTypes) {
+        this.totalChargers = totalChargers;
+        this.availableChargers = availableChargers;
+        this.connectorTypes.putAll(connectorTypes);
+    }
+
+    public static StationChargerSummary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Gom kết quả query group by (trạm, connector) thành map stationId -> summary
+     */
+    public static Map<Long, StationChargerSummary> fromCounts(List<StationConnectorCount> counts) {
+        Map<Long, StationChargerSummary> summaries = new HashMap<>();
+        for (StationConnectorCount count : counts) {
+            summaries.computeIfAbsent(count.getStationId(), id -> new StationChargerSummary())
+                    .add(count.getConnectorType(),
+                            count.getTotal() != null ? count.getTotal() : 0,
+                            count.getAvailable() != null ? count.getAvailable() : 0);
+        }
+        return summaries;
+    }
+
+    /**
+     * Tính summary từ danh sách điểm sạc đã được load sẵn
+     */
+    public static StationChargerSummary fromChargers(List<Charger> chargers) {
+        StationChargerSummary summary = new StationChargerSummary();
+        for (Charger charger : chargers) {
+            summary.add(charger.getConnectorType(), 1, charger.getStatus() == PointStatus.AVAILABLE ? 1 : 0);
+        }
+        return summary;
+    }
+
+    private void add(ConnectorType connectorType, long total, long available) {
+        totalChargers += total;
+        availableChargers += available;
+        if (connectorType != null) {
+            connectorTypes.merge(connectorType.toString(), (int) total, Integer::sum);
+        }
+    }
+
+    public long getTotalChargers() {
+        return totalChargers;
+    }
+
+    public long getAvailableChargers() {
+        return availableChargers;
+    }
+
+    public Map<String, Integer> getConnectorTypes() {
+        return new HashMap<>(connectorTypes);
+    }
+}
@@ -0,0 +1,46 @@
+package uth.edu.vn.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import uth.edu.vn.enums.TelemetryStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một bản ghi telemetry gửi từ điểm sạc (ghi vào bảng dieu_khien_tu_xa)
+ */
+@Data
+public class TelemetryReading {
+
+    @NotNull(message = "pointId không được để trống")
+    private Long pointId;
+
+    private Long vehicleId;
+
+    @Min(value = 0, message = "SOC phải từ 0 đến 100")
+    @Max(value = 100, message = "SOC phải từ 0 đến 100")
+    private Double socPercentage;
+
+    private Double currentPowerKw;
+
+    private Double energyDeliveredKwh;
+
+    private Double voltageV;
+
+    private Double currentA;
+
+    private Double temperatureC;
+
+    private Integer chargingDurationMinutes;
+
+    private TelemetryStatus status;
+
+    // Mặc định là thời điểm server nhận được bản ghi
+    private LocalDateTime recordedAt;
+
+    private String errorCode;
+
+    private String errorMessage;
+}
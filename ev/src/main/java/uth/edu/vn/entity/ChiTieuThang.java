@@ -0,0 +1,60 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng chi tiêu của 1 user trong 1 tháng (cộng dồn khi thanh toán COMPLETED)
+ * Thay cho việc SUM phien_sac / hoa_don theo MONTH() / YEAR() mỗi lần đọc
+ */
+@Entity
+@Table(name = "chi_tieu_thang",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "month_start"}))
+public class ChiTieuThang {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    // Ngày đầu tháng
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+    
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalAmount;
+    
+    @Column(name = "payment_count", nullable = false)
+    private int paymentCount;
+    
+    @Column(name = "energy_kwh", nullable = false)
+    private double energyKwh;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public LocalDate getMonthStart() { return monthStart; }
+    public void setMonthStart(LocalDate monthStart) { this.monthStart = monthStart; }
+    
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+    
+    public int getPaymentCount() { return paymentCount; }
+    public void setPaymentCount(int paymentCount) { this.paymentCount = paymentCount; }
+    
+    public double getEnergyKwh() { return energyKwh; }
+    public void setEnergyKwh(double energyKwh) { this.energyKwh = energyKwh; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
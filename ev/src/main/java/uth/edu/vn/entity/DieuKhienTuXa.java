@@ -5,7 +5,10 @@ import java.time.LocalDateTime;
 import uth.edu.vn.enums.TelemetryStatus;
 
 @Entity
-@Table(name = "dieu_khien_tu_xa")
+@Table(name = "dieu_khien_tu_xa", indexes = {
+    @Index(name = "idx_telemetry_recorded_at", columnList = "recorded_at"),
+    @Index(name = "idx_telemetry_point_recorded_at", columnList = "charging_point_id, recorded_at")
+})
 public class DieuKhienTuXa {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,64 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import uth.edu.vn.enums.WalletTransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Sổ cái ví (chỉ thêm, không sửa): mỗi lần cộng / trừ số dư ví là 1 dòng
+ * amount có dấu (+ nạp tiền / hoàn tiền, - thanh toán), balanceAfter là số dư ngay sau giao dịch
+ * Cùng precision với nguoi_dung.wallet_balance (10, 2)
+ */
+@Entity
+@Table(name = "giao_dich_vi", indexes = {
+    @Index(name = "idx_wallet_tx_user_created", columnList = "user_id, created_at")
+})
+public class GiaoDichVi {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private WalletTransactionType type;
+    
+    @Column(nullable = false, updatable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(name = "balance_after", nullable = false, updatable = false, precision = 10, scale = 2)
+    private BigDecimal balanceAfter;
+    
+    // VD: "session:123"
+    @Column(updatable = false)
+    private String reference;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public GiaoDichVi() {}
+    
+    public GiaoDichVi(Long userId, WalletTransactionType type, BigDecimal amount, BigDecimal balanceAfter,
+            String reference) {
+        this.userId = userId;
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.reference = reference;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    public Long getUserId() { return userId; }
+    public WalletTransactionType getType() { return type; }
+    public BigDecimal getAmount() { return amount; }
+    public BigDecimal getBalanceAfter() { return balanceAfter; }
+    public String getReference() { return reference; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -5,14 +5,16 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "hoa_don")
+@Table(name = "hoa_don", indexes = {
+    @Index(name = "idx_invoice_issue_date", columnList = "issue_date")
+})
 public class HoaDon {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long invoiceId;
     
     @OneToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "payment_id", nullable = false)
+    @JoinColumn(name = "payment_id", nullable = false, unique = true)
     private ThanhToan payment;
     
     @Column(name = "invoice_number", unique = true, nullable = false)
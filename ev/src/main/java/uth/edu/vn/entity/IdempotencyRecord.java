@@ -0,0 +1,78 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả đã lưu của 1 request có header Idempotency-Key (theo từng user)
+ * Dòng được tạo ở trạng thái IN_PROGRESS để giữ khóa, sau đó lưu status code + body của response
+ */
+@Entity
+@Table(name = "idempotency_key",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"principal", "idem_key"}),
+       indexes = @Index(name = "idx_idempotency_created_at", columnList = "created_at"))
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Email của user đã xác thực
+    @Column(nullable = false)
+    private String principal;
+    
+    @Column(name = "idem_key", nullable = false, length = 100)
+    private String idemKey;
+    
+    @Column(nullable = false, length = 100)
+    private String endpoint;
+    
+    // SHA-256 của request body, để phát hiện key bị dùng lại cho request khác
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+    
+    @Column(nullable = false, length = 20)
+    private String status;
+    
+    @Column(name = "response_status")
+    private Integer responseStatus;
+    
+    @Column(name = "response_body", columnDefinition = "NVARCHAR(MAX)")
+    private String responseBody;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getPrincipal() { return principal; }
+    public void setPrincipal(String principal) { this.principal = principal; }
+    
+    public String getIdemKey() { return idemKey; }
+    public void setIdemKey(String idemKey) { this.idemKey = idemKey; }
+    
+    public String getEndpoint() { return endpoint; }
+    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
+    
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public Integer getResponseStatus() { return responseStatus; }
+    public void setResponseStatus(Integer responseStatus) { this.responseStatus = responseStatus; }
+    
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
@@ -5,7 +5,9 @@ import java.time.LocalDateTime;
 import uth.edu.vn.enums.SessionStatus;
 
 @Entity
-@Table(name = "phien_sac")
+@Table(name = "phien_sac", indexes = {
+    @Index(name = "idx_session_user_start", columnList = "user_id, start_time, session_id")
+})
 public class PhienSac {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,33 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Heartbeat của từng node: id thư mục archive mà node đó đang thấy
+ * Job archive chỉ xóa telemetry khỏi database khi mọi node còn sống đều thấy cùng thư mục archive
+ */
+@Entity
+@Table(name = "telemetry_archive_node")
+public class TelemetryArchiveNode {
+    @Id
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+    
+    // null = thư mục archive của node không có file STORE_ID
+    @Column(name = "store_id", length = 36)
+    private String storeId;
+    
+    @Column(name = "seen_at", nullable = false)
+    private LocalDateTime seenAt;
+    
+    // Getters and Setters
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public LocalDateTime getSeenAt() { return seenAt; }
+    public void setSeenAt(LocalDateTime seenAt) { this.seenAt = seenAt; }
+}
@@ -0,0 +1,46 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái dùng chung giữa các node của job archive telemetry (1 dòng, id = 1)
+ * Watermark, id của thư mục archive dùng chung và lease để chỉ 1 node chạy archive tại 1 thời điểm
+ */
+@Entity
+@Table(name = "telemetry_archive_state")
+public class TelemetryArchiveState {
+    @Id
+    private Integer id;
+    
+    // Ngày cuối cùng đã archive xong
+    @Column(name = "watermark")
+    private LocalDate watermark;
+    
+    // Id ghi trong file STORE_ID của thư mục archive (mọi node phải thấy cùng 1 id)
+    @Column(name = "store_id", length = 36)
+    private String storeId;
+    
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+    
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+    
+    // Getters and Setters
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+    
+    public LocalDate getWatermark() { return watermark; }
+    public void setWatermark(LocalDate watermark) { this.watermark = watermark; }
+    
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+    
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+    
+    public LocalDateTime getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(LocalDateTime leaseUntil) { this.leaseUntil = leaseUntil; }
+}
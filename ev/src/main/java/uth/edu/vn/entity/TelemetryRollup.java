@@ -0,0 +1,73 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Bucket tổng hợp telemetry của 1 điểm sạc (dùng chung cho bảng phút / giờ / ngày)
+ * Lưu tổng và số mẫu thay vì trung bình để có thể cộng dồn nhiều bucket
+ */
+@MappedSuperclass
+public abstract class TelemetryRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "charging_point_id", nullable = false)
+    private Long chargingPointId;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(name = "sample_count", nullable = false)
+    private long sampleCount;
+    
+    @Column(name = "power_sum", nullable = false)
+    private double powerSum;
+    
+    @Column(name = "power_count", nullable = false)
+    private long powerCount;
+    
+    @Column(name = "energy_sum", nullable = false)
+    private double energySum;
+    
+    @Column(name = "energy_count", nullable = false)
+    private long energyCount;
+    
+    @Column(name = "temperature_sum", nullable = false)
+    private double temperatureSum;
+    
+    @Column(name = "temperature_count", nullable = false)
+    private long temperatureCount;
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getChargingPointId() { return chargingPointId; }
+    public void setChargingPointId(Long chargingPointId) { this.chargingPointId = chargingPointId; }
+    
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    
+    public long getSampleCount() { return sampleCount; }
+    public void setSampleCount(long sampleCount) { this.sampleCount = sampleCount; }
+    
+    public double getPowerSum() { return powerSum; }
+    public void setPowerSum(double powerSum) { this.powerSum = powerSum; }
+    
+    public long getPowerCount() { return powerCount; }
+    public void setPowerCount(long powerCount) { this.powerCount = powerCount; }
+    
+    public double getEnergySum() { return energySum; }
+    public void setEnergySum(double energySum) { this.energySum = energySum; }
+    
+    public long getEnergyCount() { return energyCount; }
+    public void setEnergyCount(long energyCount) { this.energyCount = energyCount; }
+    
+    public double getTemperatureSum() { return temperatureSum; }
+    public void setTemperatureSum(double temperatureSum) { this.temperatureSum = temperatureSum; }
+    
+    public long getTemperatureCount() { return temperatureCount; }
+    public void setTemperatureCount(long temperatureCount) { this.temperatureCount = temperatureCount; }
+}
@@ -0,0 +1,12 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Telemetry tổng hợp theo ngày
+ */
+@Entity
+@Table(name = "telemetry_rollup_day",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"charging_point_id", "bucket_start"}))
+public class TelemetryRollupDay extends TelemetryRollup {
+}
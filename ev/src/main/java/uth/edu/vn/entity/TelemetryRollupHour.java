@@ -0,0 +1,12 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Telemetry tổng hợp theo giờ
+ */
+@Entity
+@Table(name = "telemetry_rollup_hour",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"charging_point_id", "bucket_start"}))
+public class TelemetryRollupHour extends TelemetryRollup {
+}
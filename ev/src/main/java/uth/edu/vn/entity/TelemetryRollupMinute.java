@@ -0,0 +1,12 @@
+package uth.edu.vn.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Telemetry tổng hợp theo phút
+ */
+@Entity
+@Table(name = "telemetry_rollup_minute",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"charging_point_id", "bucket_start"}))
+public class TelemetryRollupMinute extends TelemetryRollup {
+}
@@ -5,7 +5,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "thanh_toan")
+@Table(name = "thanh_toan", indexes = {
+    @Index(name = "idx_payment_session", columnList = "session_id"),
+    @Index(name = "idx_payment_created_at", columnList = "created_at")
+})
 public class ThanhToan {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
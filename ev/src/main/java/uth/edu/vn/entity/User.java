@@ -32,12 +32,17 @@ public class User {
     @Column(nullable = false)
     private UserRole role;
 
-    @Column(name = "wallet_balance", precision = 10, scale = 2)
+    // Chỉ WalletService được đổi số dư (UPDATE có điều kiện), save(user) không ghi đè cột này
+    @Column(name = "wallet_balance", precision = 10, scale = 2, updatable = false)
     private BigDecimal walletBalance = BigDecimal.ZERO;
 
     @Column(name = "active")
     private Boolean active = true;
 
+    // Token có iat trước mốc này bị từ chối; chỉ VerifiedTokenCache.revokeUser ghi (UPDATE riêng), save(user) không ghi đè
+    @Column(name = "tokens_valid_after", updatable = false)
+    private LocalDateTime tokensValidAfter;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -163,6 +168,10 @@ public class User {
         this.active = active;
     }
 
+    public LocalDateTime getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,6 @@
+package uth.edu.vn.enums;
+
+public enum ExportFormat {
+    CSV,    // text/csv, có dòng tiêu đề
+    JSONL   // JSON lines, mỗi dòng 1 object
+}
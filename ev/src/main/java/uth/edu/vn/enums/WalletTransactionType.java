@@ -0,0 +1,8 @@
+package uth.edu.vn.enums;
+
+public enum WalletTransactionType {
+    TOP_UP,
+    PAYMENT,
+    REFUND,
+    ADJUSTMENT
+}
@@ -1,5 +1,6 @@
 package uth.edu.vn.exception;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -123,10 +124,16 @@ public class GlobalExceptionHandler {
     
     /**
      * Handle All Other Exceptions
+     * Response đã commit (vd. đang stream file export) thì ném lại để container hủy kết nối,
+     * không ghi thêm JSON vào sau phần body đã gửi
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGlobalException(
-            Exception ex, WebRequest request) {
+            Exception ex, WebRequest request, HttpServletResponse response) throws Exception {
+        
+        if (response.isCommitted()) {
+            throw ex;
+        }
         
         // DEBUG: Log chi tiết exception
         System.err.println("=== GLOBAL EXCEPTION CAUGHT ===");
@@ -38,4 +38,53 @@ public interface ChargerRepository extends JpaRepository<Charger, Long> {
      * Find charging points by station and status (for EVDriverService)
      */
     List<Charger> findByChargingStationIdAndStatus(Long stationId, PointStatus status);
-}
\ No newline at end of file
+
+    /**
+     * Tổng số điểm sạc và số điểm AVAILABLE theo (trạm, loại connector) - 1 query cho toàn bộ trạm
+     */
+    @Query("SELECT c.chargingStation.id AS stationId, c.connectorType AS connectorType, " +
+           "COUNT(c) AS total, SUM(CASE WHEN c.status = uth.edu.vn.enums.PointStatus.AVAILABLE THEN 1 ELSE 0 END) AS available " +
+           "FROM Charger c GROUP BY c.chargingStation.id, c.connectorType")
+    List<StationConnectorCount> countByStationAndConnectorType();
+
+    /**
+     * Như countByStationAndConnectorType nhưng giới hạn trong danh sách trạm
+     */
+    @Query("SELECT c.chargingStation.id AS stationId, c.connectorType AS connectorType, " +
+           "COUNT(c) AS total, SUM(CASE WHEN c.status = uth.edu.vn.enums.PointStatus.AVAILABLE THEN 1 ELSE 0 END) AS available " +
+           "FROM Charger c WHERE c.chargingStation.id IN :stationIds GROUP BY c.chargingStation.id, c.connectorType")
+    List<StationConnectorCount> countByStationAndConnectorType(@Param("stationIds") List<Long> stationIds);
+
+    /**
+     * Trạng thái rút gọn của tất cả điểm sạc (dùng để nạp ChargerAvailabilityRegistry)
+     */
+    @Query("SELECT c.pointId AS pointId, c.chargingStation.id AS stationId, " +
+           "c.connectorType AS connectorType, c.status AS status FROM Charger c")
+    List<ChargerStatusView> findAllStatusViews();
+
+    /**
+     * Projection trạng thái của một điểm sạc
+     */
+    interface ChargerStatusView {
+        Long getPointId();
+
+        Long getStationId();
+
+        ConnectorType getConnectorType();
+
+        PointStatus getStatus();
+    }
+
+    /**
+     * Projection cho các query thống kê theo (trạm, loại connector)
+     */
+    interface StationConnectorCount {
+        Long getStationId();
+
+        ConnectorType getConnectorType();
+
+        Long getTotal();
+
+        Long getAvailable();
+    }
+}
@@ -0,0 +1,33 @@
+package uth.edu.vn.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import uth.edu.vn.entity.ChiTieuThang;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChiTieuThangRepository extends JpaRepository<ChiTieuThang, Long> {
+
+    Optional<ChiTieuThang> findByUserIdAndMonthStart(Long userId, LocalDate monthStart);
+
+    /**
+     * Các tháng trong khoảng [fromMonth, toMonth) của user (seek trên unique user_id, month_start)
+     */
+    @Query("SELECT c FROM ChiTieuThang c WHERE c.userId = :userId " +
+           "AND c.monthStart >= :fromMonth AND c.monthStart < :toMonth ORDER BY c.monthStart")
+    List<ChiTieuThang> findMonths(@Param("userId") Long userId,
+                                  @Param("fromMonth") LocalDate fromMonth,
+                                  @Param("toMonth") LocalDate toMonth);
+
+    /**
+     * Tổng mọi tháng của user (1 dòng: total, count, energy)
+     */
+    @Query("SELECT COALESCE(SUM(c.totalAmount), 0), COALESCE(SUM(c.paymentCount), 0), COALESCE(SUM(c.energyKwh), 0) " +
+           "FROM ChiTieuThang c WHERE c.userId = :userId")
+    List<Object[]> getLifetimeTotals(@Param("userId") Long userId);
+}
@@ -1,9 +1,11 @@
 package uth.edu.vn.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import uth.edu.vn.entity.Charger;
 import uth.edu.vn.entity.DieuKhienTuXa;
 import uth.edu.vn.entity.Xe;
@@ -13,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Long> {
+public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Long>, DieuKhienTuXaRepositoryCustom {
     
     /**
      * Find telemetry by charging point
@@ -48,19 +50,9 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     List<DieuKhienTuXa> findByRecordedAtBetween(@Param("startDate") LocalDateTime startDate, 
                                                 @Param("endDate") LocalDateTime endDate);
     
-    /**
-     * Find telemetry by charging point and date range
-     */
-    @Query("SELECT t FROM DieuKhienTuXa t " +
-           "WHERE t.chargingPoint.pointId = :pointId " +
-           "AND t.recordedAt BETWEEN :startDate AND :endDate " +
-           "ORDER BY t.recordedAt ASC")
-    List<DieuKhienTuXa> findByChargingPointAndDateRange(@Param("pointId") Long pointId, 
-                                                        @Param("startDate") LocalDateTime startDate, 
-                                                        @Param("endDate") LocalDateTime endDate);
-    
     /**
      * Find telemetry with errors
+     * Quét toàn bảng; cảnh báo realtime do TelemetryAnomalyDetector xử lý
      */
     @Query("SELECT t FROM DieuKhienTuXa t " +
            "WHERE t.errorCode IS NOT NULL " +
@@ -78,6 +70,7 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     
     /**
      * Get average power for charging point in time range
+     * Quét bảng thô; dashboard nên dùng TelemetryRollupService
      */
     @Query("SELECT AVG(t.currentPowerKw) FROM DieuKhienTuXa t " +
            "WHERE t.chargingPoint.pointId = :pointId " +
@@ -88,6 +81,7 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     
     /**
      * Get total energy delivered by charging point
+     * Quét bảng thô; dashboard nên dùng TelemetryRollupService
      */
     @Query("SELECT COALESCE(SUM(t.energyDeliveredKwh), 0.0) FROM DieuKhienTuXa t " +
            "WHERE t.chargingPoint.pointId = :pointId " +
@@ -98,6 +92,7 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     
     /**
      * Find high temperature readings (warning threshold)
+     * Quét toàn bảng; cảnh báo realtime do TelemetryAnomalyDetector xử lý
      */
     @Query("SELECT t FROM DieuKhienTuXa t " +
            "WHERE t.temperatureC > :threshold " +
@@ -120,9 +115,12 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     
     /**
      * Delete old telemetry data (cleanup)
+     * Xóa 1 lần không giới hạn; job định kỳ dùng TelemetryRetentionService (xóa theo từng khúc)
      */
+    @Modifying
+    @Transactional
     @Query("DELETE FROM DieuKhienTuXa t WHERE t.recordedAt < :cutoffDate")
-    void deleteOldTelemetry(@Param("cutoffDate") LocalDateTime cutoffDate);
+    int deleteOldTelemetry(@Param("cutoffDate") LocalDateTime cutoffDate);
     
     /**
      * Find telemetry by charging point in last N hours
@@ -136,6 +134,7 @@ public interface DieuKhienTuXaRepository extends JpaRepository<DieuKhienTuXa, Lo
     
     /**
      * Get charging statistics for station
+     * Quét bảng thô; dashboard nên dùng TelemetryRollupService
      */
     @Query("SELECT t.chargingPoint.pointId, " +
            "COUNT(t), " +
@@ -0,0 +1,17 @@
+package uth.edu.vn.repository;
+
+import uth.edu.vn.entity.DieuKhienTuXa;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Truy vấn telemetry gộp dữ liệu archive (file dạng cột) và dữ liệu live trong SQL Server
+ */
+public interface DieuKhienTuXaRepositoryCustom {
+
+    /**
+     * Find telemetry by charging point and date range (archive + live), ordered by recorded time ascending
+     */
+    List<DieuKhienTuXa> findByChargingPointAndDateRange(Long pointId, LocalDateTime startDate, LocalDateTime endDate);
+}
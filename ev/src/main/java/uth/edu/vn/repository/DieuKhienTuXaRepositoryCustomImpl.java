@@ -0,0 +1,99 @@
+package uth.edu.vn.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.DieuKhienTuXa;
+import uth.edu.vn.entity.Xe;
+import uth.edu.vn.service.TelemetryArchiveService;
+import uth.edu.vn.util.TelemetryArchiveCodec;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Đọc phần trước watermark từ file archive (memory-mapped), chỉ truy vấn SQL Server cho phần còn live
+ */
+public class DieuKhienTuXaRepositoryCustomImpl implements DieuKhienTuXaRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TelemetryArchiveService telemetryArchiveService;
+
+    @Override
+    public List<DieuKhienTuXa> findByChargingPointAndDateRange(Long pointId, LocalDateTime startDate,
+            LocalDateTime endDate) {
+        List<DieuKhienTuXa> results = new ArrayList<>();
+        if (pointId == null || startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            return results;
+        }
+
+        // Phần archive: chỉ tham chiếu charger / xe bằng id, không query thêm
+        Charger chargingPoint = entityManager.getReference(Charger.class, pointId);
+        Map<Long, Xe> vehicles = new HashMap<>();
+        Set<Long> archivedIds = new HashSet<>();
+        for (TelemetryArchiveCodec.Block block : telemetryArchiveService.read(pointId, startDate, endDate)) {
+            int to = block.upperBound(endDate);
+            for (int i = block.lowerBound(startDate); i < to; i++) {
+                results.add(toEntity(block, i, chargingPoint, vehicles));
+                archivedIds.add(block.telemetryIds[i]);
+            }
+        }
+
+        // Phần live: bỏ qua hoàn toàn nếu khoảng thời gian nằm trước watermark
+        LocalDateTime liveFrom = telemetryArchiveService.getLiveFrom();
+        if (liveFrom == null || !endDate.isBefore(liveFrom)) {
+            LocalDateTime from = liveFrom != null && liveFrom.isAfter(startDate) ? liveFrom : startDate;
+            List<DieuKhienTuXa> live = entityManager.createQuery(
+                    "SELECT t FROM DieuKhienTuXa t " +
+                    "WHERE t.chargingPoint.pointId = :pointId " +
+                    "AND t.recordedAt BETWEEN :startDate AND :endDate " +
+                    "ORDER BY t.recordedAt ASC", DieuKhienTuXa.class)
+                    .setParameter("pointId", pointId)
+                    .setParameter("startDate", from)
+                    .setParameter("endDate", endDate)
+                    .getResultList();
+            for (DieuKhienTuXa telemetry : live) {
+                if (!archivedIds.contains(telemetry.getTelemetryId())) {
+                    results.add(telemetry);
+                }
+            }
+        }
+
+        results.sort(Comparator.comparing(DieuKhienTuXa::getRecordedAt));
+        return results;
+    }
+
+    private DieuKhienTuXa toEntity(TelemetryArchiveCodec.Block block, int row, Charger chargingPoint,
+            Map<Long, Xe> vehicles) {
+        DieuKhienTuXa telemetry = new DieuKhienTuXa();
+        telemetry.setTelemetryId(block.telemetryIds[row]);
+        telemetry.setChargingPoint(chargingPoint);
+        Long vehicleId = block.vehicleId(row);
+        if (vehicleId != null) {
+            telemetry.setVehicle(vehicles.computeIfAbsent(vehicleId, id -> entityManager.getReference(Xe.class, id)));
+        }
+        telemetry.setSocPercentage(block.value(TelemetryArchiveCodec.SOC, row));
+        telemetry.setCurrentPowerKw(block.value(TelemetryArchiveCodec.POWER, row));
+        telemetry.setEnergyDeliveredKwh(block.value(TelemetryArchiveCodec.ENERGY, row));
+        telemetry.setVoltageV(block.value(TelemetryArchiveCodec.VOLTAGE, row));
+        telemetry.setCurrentA(block.value(TelemetryArchiveCodec.CURRENT, row));
+        telemetry.setTemperatureC(block.value(TelemetryArchiveCodec.TEMPERATURE, row));
+        Double duration = block.value(TelemetryArchiveCodec.DURATION, row);
+        telemetry.setChargingDurationMinutes(duration != null ? duration.intValue() : null);
+        telemetry.setStatus(TelemetryArchiveService.statusOf(block.statuses[row]));
+        telemetry.setRecordedAt(block.recordedAt(row));
+        telemetry.setErrorCode(block.errorCodes[row]);
+        telemetry.setErrorMessage(block.errorMessages[row]);
+        return telemetry;
+    }
+}
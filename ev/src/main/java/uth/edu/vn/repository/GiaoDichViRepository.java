@@ -0,0 +1,26 @@
+package uth.edu.vn.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import uth.edu.vn.entity.GiaoDichVi;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GiaoDichViRepository extends JpaRepository<GiaoDichVi, Long> {
+
+    /**
+     * Giao dịch ví gần nhất của user (index user_id, created_at)
+     */
+    @Query("SELECT g FROM GiaoDichVi g WHERE g.userId = :userId ORDER BY g.createdAt DESC, g.id DESC")
+    List<GiaoDichVi> findRecentByUser(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Giao dịch đã ghi của user với reference này (nạp tiền lặp lại cùng Idempotency-Key)
+     */
+    Optional<GiaoDichVi> findFirstByUserIdAndReference(Long userId, String reference);
+}
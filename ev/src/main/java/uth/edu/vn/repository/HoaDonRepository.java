@@ -1,5 +1,6 @@
 package uth.edu.vn.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,7 @@ import uth.edu.vn.entity.ThanhToan;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +22,32 @@ public interface HoaDonRepository extends JpaRepository<HoaDon, Long> {
      */
     Optional<HoaDon> findByPayment(ThanhToan payment);
     
+    /**
+     * Các payment trong danh sách đã có hóa đơn (để worker bỏ qua)
+     */
+    @Query("SELECT h.payment.id FROM HoaDon h WHERE h.payment.id IN :paymentIds")
+    List<Long> findInvoicedPaymentIds(@Param("paymentIds") Collection<Long> paymentIds);
+    
+    /**
+     * Hóa đơn của 1 payment, kèm payment (không lazy load thêm)
+     */
+    @Query("SELECT h FROM HoaDon h JOIN FETCH h.payment t WHERE t.id = :paymentId")
+    Optional<HoaDon> findByPaymentIdWithPayment(@Param("paymentId") Long paymentId);
+    
+    /**
+     * Số hóa đơn của payment (rỗng nếu worker chưa tạo)
+     */
+    @Query("SELECT h.invoiceNumber FROM HoaDon h WHERE h.payment.id = :paymentId")
+    Optional<String> findInvoiceNumberByPaymentId(@Param("paymentId") Long paymentId);
+    
+    /**
+     * Hóa đơn của user (mới nhất trước), kèm payment
+     */
+    @Query("SELECT h FROM HoaDon h JOIN FETCH h.payment t WHERE t.sessionId IN " +
+           "(SELECT ps.sessionId FROM PhienSac ps WHERE ps.user.id = :userId) " +
+           "ORDER BY h.issueDate DESC, h.invoiceId DESC")
+    List<HoaDon> findRecentByUserWithPayment(@Param("userId") Long userId, Pageable pageable);
+    
     /**
      * Find invoice by invoice number
      */
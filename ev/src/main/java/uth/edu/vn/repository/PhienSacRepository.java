@@ -1,13 +1,19 @@
 package uth.edu.vn.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import uth.edu.vn.dto.ChargingHistoryItem;
+import uth.edu.vn.dto.ChargingHistorySummary;
 import uth.edu.vn.entity.PhienSac;
 import uth.edu.vn.enums.SessionStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +24,66 @@ public interface PhienSacRepository extends JpaRepository<PhienSac, Long> {
     
     List<PhienSac> findByStatus(SessionStatus status);
     
+    /**
+     * Find sessions by status with charger, station and user fetched in the same query
+     */
+    @Query("SELECT ps FROM PhienSac ps JOIN FETCH ps.chargingPoint cp JOIN FETCH cp.chargingStation " +
+           "JOIN FETCH ps.user WHERE ps.status = :status")
+    List<PhienSac> findByStatusWithDetails(@Param("status") SessionStatus status);
+    
+    /**
+     * Find one session with charger, station and user fetched (status of a session not in the active registry)
+     */
+    @Query("SELECT ps FROM PhienSac ps JOIN FETCH ps.chargingPoint cp JOIN FETCH cp.chargingStation " +
+           "JOIN FETCH ps.user WHERE ps.sessionId = :sessionId")
+    Optional<PhienSac> findByIdWithDetails(@Param("sessionId") Long sessionId);
+
+    /**
+     * Khóa dòng phiên sạc tới hết transaction (thanh toán: 2 request cùng phiên chạy tuần tự)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ps FROM PhienSac ps WHERE ps.sessionId = :sessionId")
+    Optional<PhienSac> findByIdForUpdate(@Param("sessionId") Long sessionId);
+    
+    String HISTORY_SELECT = "SELECT new uth.edu.vn.dto.ChargingHistoryItem(ps.sessionId, ps.startTime, ps.endTime, " +
+           "ps.energyConsumed, ps.totalCost, ps.status, ps.qrCode, ps.startSoc, ps.endSoc, " +
+           "cp.pointId, cp.pointName, cp.connectorType, cp.powerCapacity, st.id, st.name, st.address) " +
+           "FROM PhienSac ps JOIN ps.chargingPoint cp JOIN cp.chargingStation st ";
+    
+    /**
+     * Trang đầu lịch sử sạc (mới nhất trước), 1 query join charger + trạm
+     */
+    @Query(HISTORY_SELECT + "WHERE ps.user.id = :userId ORDER BY ps.startTime DESC, ps.sessionId DESC")
+    List<ChargingHistoryItem> findHistoryPage(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * Trang tiếp theo sau cursor (startTime, sessionId)
+     */
+    @Query(HISTORY_SELECT + "WHERE ps.user.id = :userId " +
+           "AND (ps.startTime < :cursorTime OR (ps.startTime = :cursorTime AND ps.sessionId < :cursorId)) " +
+           "ORDER BY ps.startTime DESC, ps.sessionId DESC")
+    List<ChargingHistoryItem> findHistoryPageAfter(@Param("userId") Long userId,
+                                                   @Param("cursorTime") LocalDateTime cursorTime,
+                                                   @Param("cursorId") Long cursorId,
+                                                   Pageable pageable);
+    
+    /**
+     * Tổng số phiên và tổng kWh / chi phí của các phiên COMPLETED (thống kê trên trang lịch sử)
+     */
+    @Query("SELECT new uth.edu.vn.dto.ChargingHistorySummary(COUNT(ps), " +
+           "SUM(CASE WHEN ps.status = uth.edu.vn.enums.SessionStatus.COMPLETED THEN 1L ELSE 0L END), " +
+           "SUM(CASE WHEN ps.status = uth.edu.vn.enums.SessionStatus.COMPLETED THEN ps.energyConsumed ELSE 0.0 END), " +
+           "SUM(CASE WHEN ps.status = uth.edu.vn.enums.SessionStatus.COMPLETED THEN ps.totalCost ELSE 0.0 END)) " +
+           "FROM PhienSac ps WHERE ps.user.id = :userId")
+    ChargingHistorySummary getHistorySummary(@Param("userId") Long userId);
+    
+    /**
+     * Phiên sạc kèm điểm sạc + trạm trong 1 query (render hóa đơn theo batch)
+     */
+    @Query("SELECT ps FROM PhienSac ps LEFT JOIN FETCH ps.chargingPoint cp LEFT JOIN FETCH cp.chargingStation " +
+           "WHERE ps.sessionId IN :sessionIds")
+    List<PhienSac> findWithStationBySessionIds(@Param("sessionIds") Collection<Long> sessionIds);
+    
     Optional<PhienSac> findByQrCode(String qrCode);
     
     @Query("SELECT ps FROM PhienSac ps WHERE ps.user.id = :userId AND ps.status = :status")
@@ -32,9 +98,6 @@ public interface PhienSacRepository extends JpaRepository<PhienSac, Long> {
     @Query("SELECT SUM(ps.energyConsumed) FROM PhienSac ps WHERE ps.user.id = :userId AND ps.status = 'COMPLETED'")
     Double getTotalEnergyConsumedByUser(@Param("userId") Long userId);
     
-    @Query("SELECT SUM(ps.totalCost) FROM PhienSac ps WHERE ps.user.id = :userId AND MONTH(ps.startTime) = :month AND YEAR(ps.startTime) = :year")
-    Double getMonthlyChargingCost(@Param("userId") Long userId, @Param("month") int month, @Param("year") int year);
-    
     // ==================== Methods for AdminService ====================
     
     /**
@@ -1,18 +1,32 @@
 package uth.edu.vn.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import uth.edu.vn.dto.PaymentHistoryItem;
+import uth.edu.vn.dto.PaymentHistorySummary;
 import uth.edu.vn.entity.ThanhToan;
 import uth.edu.vn.enums.PaymentStatus;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ThanhToanRepository extends JpaRepository<ThanhToan, Long> {
 
+    // ThanhToan chỉ giữ sessionId (không có quan hệ) nên join phiên sạc bằng ON
+    String PAYMENT_HISTORY_FROM = "FROM ThanhToan t JOIN PhienSac ps ON ps.sessionId = t.sessionId " +
+           "LEFT JOIN ps.chargingPoint cp LEFT JOIN cp.chargingStation st ";
+
+    String PAYMENT_HISTORY_SELECT = "SELECT new uth.edu.vn.dto.PaymentHistoryItem(t.id, t.amount, t.method, " +
+           "t.status, t.createdAt, ps.sessionId, ps.energyConsumed, ps.startTime, cp.pointId, cp.pointName, " +
+           "st.id, st.name) " + PAYMENT_HISTORY_FROM;
+
+    String BEFORE_CURSOR = "AND (t.createdAt < :cursorTime OR (t.createdAt = :cursorTime AND t.id < :cursorId)) ";
+
     List<ThanhToan> findBySessionIdAndStatus(Long sessionId, String status);
     // Note: ThanhToan entity doesn't have userId field, this method needs to be
     // revised
@@ -23,12 +37,58 @@ public interface ThanhToanRepository extends JpaRepository<ThanhToan, Long> {
     @Query("SELECT t FROM ThanhToan t WHERE t.sessionId = :sessionId")
     List<ThanhToan> findBySessionId(@Param("sessionId") Long sessionId);
 
+    /**
+     * Trang đầu lịch sử thanh toán của user (mới nhất trước), 1 query join phiên + charger + trạm
+     */
+    @Query(PAYMENT_HISTORY_SELECT + "WHERE ps.user.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    List<PaymentHistoryItem> findPaymentHistoryPage(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Trang tiếp theo sau cursor (createdAt, id)
+     */
+    @Query(PAYMENT_HISTORY_SELECT + "WHERE ps.user.id = :userId " + BEFORE_CURSOR +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<PaymentHistoryItem> findPaymentHistoryPageAfter(@Param("userId") Long userId,
+                                                         @Param("cursorTime") LocalDateTime cursorTime,
+                                                         @Param("cursorId") Long cursorId,
+                                                         Pageable pageable);
+
+    /**
+     * Số thanh toán và tổng đã thanh toán (COMPLETED) của user, tính 1 lần ở trang đầu
+     */
+    @Query("SELECT new uth.edu.vn.dto.PaymentHistorySummary(COUNT(t), " +
+           "SUM(CASE WHEN t.status = 'COMPLETED' THEN t.amount ELSE 0 END)) " + PAYMENT_HISTORY_FROM +
+           "WHERE ps.user.id = :userId")
+    PaymentHistorySummary getPaymentHistorySummary(@Param("userId") Long userId);
+
+    /**
+     * Tổng đã thanh toán (COMPLETED) của user tính tới trước cursor, cho cursor không mang running total
+     */
+    @Query("SELECT COALESCE(SUM(t.amount), 0) " + PAYMENT_HISTORY_FROM +
+           "WHERE ps.user.id = :userId AND t.status = 'COMPLETED' " + BEFORE_CURSOR)
+    BigDecimal getTotalPaidByUserBefore(@Param("userId") Long userId,
+                                        @Param("cursorTime") LocalDateTime cursorTime,
+                                        @Param("cursorId") Long cursorId);
+
+    /**
+     * Tổng thanh toán COMPLETED của user trong [startDate, endDate) (1 dòng: total, count, energy)
+     * Chỉ dùng cho phần lẻ đầu / cuối tháng, các tháng trọn vẹn đọc từ chi_tieu_thang
+     */
+    @Query("SELECT COALESCE(SUM(t.amount), 0), COUNT(t), COALESCE(SUM(ps.energyConsumed), 0) " +
+           "FROM ThanhToan t JOIN PhienSac ps ON ps.sessionId = t.sessionId " +
+           "WHERE ps.user.id = :userId AND t.status = 'COMPLETED' " +
+           "AND t.createdAt >= :startDate AND t.createdAt < :endDate")
+    List<Object[]> getPaidSummaryBetween(@Param("userId") Long userId,
+                                         @Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Thanh toán COMPLETED chưa có hóa đơn (job quét bù cho hàng đợi hóa đơn)
+     */
+    @Query("SELECT t.id FROM ThanhToan t WHERE t.status = 'COMPLETED' " +
+           "AND NOT EXISTS (SELECT 1 FROM HoaDon h WHERE h.payment = t) ORDER BY t.id")
+    List<Long> findUninvoicedPaymentIds(Pageable pageable);
+
     @Query("SELECT SUM(t.amount) FROM ThanhToan t WHERE t.status = 'COMPLETED' AND t.createdAt BETWEEN :startDate AND :endDate")
     Double getTotalRevenue(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-
-    // Note: ThanhToan entity doesn't have user field, this query needs to be
-    // revised based on business logic
-    // @Query("SELECT SUM(t.amount) FROM ThanhToan t WHERE t.user.id = :userId AND
-    // t.status = 'COMPLETED'")
-    // Double getTotalSpentByUser(@Param("userId") Long userId);
 }
@@ -23,17 +23,6 @@ public interface TramSacRepository extends JpaRepository<TramSac, Long> {
     @Query("SELECT t FROM TramSac t WHERE t.status = 'ONLINE'")
     List<TramSac> findAllOnlineStations();
     
-    @Query(value = "SELECT *, " +
-           "(6371 * acos(cos(radians(:latitude)) * cos(radians(latitude)) * " +
-           "cos(radians(longitude) - radians(:longitude)) + sin(radians(:latitude)) * " +
-           "sin(radians(latitude)))) AS distance " +
-           "FROM tram_sac " +
-           "HAVING distance < :radius " +
-           "ORDER BY distance", nativeQuery = true)
-    List<TramSac> findNearbyStations(@Param("latitude") Double latitude, 
-                                     @Param("longitude") Double longitude, 
-                                     @Param("radius") Double radius);
-    
     @Query("SELECT t FROM TramSac t WHERE LOWER(t.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(t.address) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<TramSac> searchStations(@Param("keyword") String keyword);
 }
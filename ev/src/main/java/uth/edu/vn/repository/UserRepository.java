@@ -1,12 +1,15 @@
 package uth.edu.vn.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import uth.edu.vn.entity.User;
 import uth.edu.vn.enums.UserRole;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,4 +29,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     @Query("SELECT COUNT(u) FROM User u WHERE u.role = :role")
     Long countByRole(@Param("role") UserRole role);
+    
+    /**
+     * Mốc tokens_valid_after của user: list rỗng nếu không còn user, phần tử null nếu chưa bị thu hồi lần nào
+     */
+    @Query("SELECT u.tokensValidAfter FROM User u WHERE u.email = :email")
+    List<LocalDateTime> findTokensValidAfterByEmail(@Param("email") String email);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.tokensValidAfter = :validAfter WHERE u.email = :email")
+    int updateTokensValidAfter(@Param("email") String email, @Param("validAfter") LocalDateTime validAfter);
 }
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -17,13 +18,14 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * JWT Authentication Filter
  * Filter này chạy trước mỗi request để:
  * 1. Đọc JWT token từ header "Authorization: Bearer <token>"
- * 2. Validate token
- * 3. Load user và set vào SecurityContext
+ * 2. Verify token (1 lần parse; token đã verify được lấy từ VerifiedTokenCache)
+ * 3. Set user + role (từ claim roles, không query DB) vào SecurityContext
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -36,64 +38,80 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
     
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+    
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, 
                                     @NonNull HttpServletResponse response, 
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
         try {
-            String requestURI = request.getRequestURI();
-            logger.info("Processing request: {}", requestURI);
-            
             // 1. Lấy JWT từ request header
             String jwt = getJwtFromRequest(request);
-            logger.info("JWT token found: {}", jwt != null ? "YES" : "NO");
             
-            // 2. Validate và lấy username
-            if (StringUtils.hasText(jwt)) {
-                logger.info("Validating JWT token...");
-                boolean isValid = tokenProvider.validateToken(jwt);
-                logger.info("JWT token valid: {}", isValid);
+            // Đã xác thực bằng cách khác (token scrape Prometheus): không parse như JWT
+            if (StringUtils.hasText(jwt) && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // 2. Verify (hoặc lấy kết quả đã verify từ cache)
+                VerifiedTokenCache.VerifiedToken verified = resolve(jwt);
                 
-                if (isValid) {
-                    String username = tokenProvider.getUsernameFromToken(jwt);
-                    logger.info("Username from token: {}", username);
-                    
-                    // 3. Load user details
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    logger.info("User details loaded: {}", userDetails != null);
-                    
-                    if (userDetails != null) {
-                        // 4. Tạo Authentication object
-                        UsernamePasswordAuthenticationToken authentication = 
-                            new UsernamePasswordAuthenticationToken(
-                                userDetails, 
-                                null, 
-                                userDetails.getAuthorities()
-                            );
+                if (verified != null && !tokenCache.isRevoked(verified)) {
+                    // 3. Tạo Authentication object, principal vẫn là UserDetails như trước
+                    UserDetails userDetails = new org.springframework.security.core.userdetails.User(
+                            verified.getUsername(), "", verified.getAuthorities());
+                    UsernamePasswordAuthenticationToken authentication = 
+                        new UsernamePasswordAuthenticationToken(
+                            userDetails, 
+                            null, 
+                            userDetails.getAuthorities()
+                        );
                     
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     
-                    // 5. Set vào SecurityContext
+                    // 4. Set vào SecurityContext
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    
-                    logger.info("Set authentication for user: {}", username);
-                    } else {
-                        logger.warn("User details not found for username: {}", username);
-                    }
                 } else {
-                    logger.warn("JWT token validation failed");
+                    logger.debug("JWT token rejected for request: {}", request.getRequestURI());
                 }
-            } else {
-                logger.warn("No JWT token found in request");
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
         }
         
-        // 6. Continue filter chain
-        logger.info("Continuing filter chain for request: {}", request.getRequestURI());
+        // 5. Continue filter chain
         filterChain.doFilter(request, response);
-        logger.info("Filter chain completed for request: {}", request.getRequestURI());
+    }
+    
+    /**
+     * Token đã verify kèm quyền; null nếu token không hợp lệ hoặc user không còn tồn tại
+     */
+    private VerifiedTokenCache.VerifiedToken resolve(String jwt) {
+        VerifiedTokenCache.VerifiedToken verified = tokenCache.get(jwt);
+        if (verified != null) {
+            return verified;
+        }
+        
+        verified = tokenProvider.verify(jwt);
+        if (verified == null) {
+            return null;
+        }
+        // Mốc thu hồi đã lưu (có thể từ instance khác): isRevoked() ở doFilterInternal dùng mốc này
+        if (!tokenCache.checkStoredRevocation(verified)) {
+            logger.warn("User no longer exists for token subject: {}", verified.getUsername());
+            return null;
+        }
+        if (verified.getAuthorities() == null) {
+            // Token cũ / refresh token không có claim roles: load role từ DB 1 lần rồi cache
+            UserDetails userDetails;
+            try {
+                userDetails = userDetailsService.loadUserByUsername(verified.getUsername());
+            } catch (UsernameNotFoundException e) {
+                logger.warn("User details not found for username: {}", verified.getUsername());
+                return null;
+            }
+            verified = verified.withAuthorities(List.copyOf(userDetails.getAuthorities()));
+        }
+        tokenCache.put(jwt, verified);
+        return verified;
     }
     
     /**
@@ -4,15 +4,22 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import uth.edu.vn.config.JwtConfig;
+import uth.edu.vn.enums.UserRole;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 /**
  * JWT Token Provider
@@ -23,30 +30,68 @@ public class JwtTokenProvider {
     
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
     
+    /**
+     * Claim chứa danh sách authority (ROLE_...) để filter không phải load user từ DB
+     */
+    public static final String ROLES_CLAIM = "roles";
+    
+    /**
+     * Thời điểm phát hành tính bằng ms (iat chỉ tới giây): so với mốc thu hồi trong cùng 1 giây
+     */
+    public static final String ISSUED_AT_MS_CLAIM = "iatMs";
+    
     @Autowired
     private JwtConfig jwtConfig;
     
+    // Key và parser được tạo 1 lần (JwtParser thread-safe)
+    private Key signingKey;
+    private JwtParser parser;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+    
     /**
      * Generate JWT Token từ Authentication object
      */
     public String generateToken(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return generateTokenFromUsername(userDetails.getUsername());
+        List<String> roles = new ArrayList<>();
+        for (GrantedAuthority authority : userDetails.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return buildAccessToken(userDetails.getUsername(), roles);
     }
     
     /**
-     * Generate JWT Token từ username
+     * Generate JWT Token từ username (không kèm role, filter sẽ load role từ DB)
      */
     public String generateTokenFromUsername(String username) {
+        return buildAccessToken(username, null);
+    }
+    
+    /**
+     * Generate JWT Token từ username, kèm role của user
+     */
+    public String generateTokenFromUsername(String username, UserRole role) {
+        return buildAccessToken(username, role != null ? List.of("ROLE_" + role.name()) : null);
+    }
+    
+    private String buildAccessToken(String username, Collection<String> roles) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtConfig.getExpiration());
         
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .claim(ISSUED_AT_MS_CLAIM, now.getTime())
+                .setExpiration(expiryDate);
+        if (roles != null) {
+            builder.claim(ROLES_CLAIM, roles);
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
     }
     
     /**
@@ -59,8 +104,9 @@ public class JwtTokenProvider {
         return Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(now)
+                .claim(ISSUED_AT_MS_CLAIM, now.getTime())
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -68,25 +114,46 @@ public class JwtTokenProvider {
      * Lấy username từ JWT token
      */
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.getSubject();
+        return parser.parseClaimsJws(token).getBody().getSubject();
     }
     
     /**
      * Validate JWT token
      */
     public boolean validateToken(String authToken) {
+        return parseClaims(authToken) != null;
+    }
+    
+    /**
+     * Verify chữ ký + hạn và đọc claims trong 1 lần parse
+     *
+     * @return token đã verify (authorities null nếu token không có claim roles), null nếu không hợp lệ
+     */
+    public VerifiedTokenCache.VerifiedToken verify(String authToken) {
+        Claims claims = parseClaims(authToken);
+        if (claims == null || claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
+        
+        List<GrantedAuthority> authorities = null;
+        Object roles = claims.get(ROLES_CLAIM);
+        if (roles instanceof Collection<?> values) {
+            authorities = new ArrayList<>(values.size());
+            for (Object value : values) {
+                authorities.add(new SimpleGrantedAuthority(value.toString()));
+            }
+        }
+        // Token cũ không có iatMs: dùng đầu giây của iat (bị thu hồi nếu mốc thu hồi rơi vào cùng giây)
+        Object issuedAtMsClaim = claims.get(ISSUED_AT_MS_CLAIM);
+        long issuedAtMs = issuedAtMsClaim instanceof Number number ? number.longValue()
+                : claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+        return new VerifiedTokenCache.VerifiedToken(claims.getSubject(), authorities, issuedAtMs,
+                claims.getExpiration().getTime());
+    }
+    
+    private Claims parseClaims(String authToken) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            return parser.parseClaimsJws(authToken).getBody();
         } catch (SecurityException ex) {
             logger.error("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
@@ -97,15 +164,10 @@ public class JwtTokenProvider {
             logger.error("Unsupported JWT token");
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty");
+        } catch (JwtException ex) {
+            // Chữ ký sai (io.jsonwebtoken.security.SignatureException) và các lỗi JWT khác
+            logger.error("Invalid JWT token: {}", ex.getMessage());
         }
-        return false;
-    }
-    
-    /**
-     * Tạo signing key từ secret
-     */
-    private Key getSigningKey() {
-        byte[] keyBytes = jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return null;
     }
 }
@@ -0,0 +1,59 @@
+package uth.edu.vn.security;
+
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Token tĩnh cho Prometheus scrape /actuator/prometheus ("Authorization: Bearer <token>")
+ *
+ * Không dùng JWT vì JWT hết hạn còn Prometheus chỉ đọc credentials cố định (bearer_token_file).
+ * Token đúng thì principal "prometheus" có ROLE_METRICS, chỉ dùng được cho endpoint này.
+ * Token chưa cấu hình thì filter không làm gì (scrape bị chặn, trừ khi metrics.prometheus.permit-all).
+ *
+ * Không đăng ký @Component: phải chạy trong security filter chain (SecurityConfig), trước JwtAuthenticationFilter
+ */
+public class MetricsScrapeTokenFilter extends OncePerRequestFilter {
+
+    public static final String SCRAPE_PATH = "/actuator/prometheus";
+    public static final String ROLE = "METRICS";
+
+    private final byte[] token;
+
+    public MetricsScrapeTokenFilter(String token) {
+        this.token = StringUtils.hasText(token) ? token.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return token == null || !SCRAPE_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            // So sánh thời gian hằng
+            byte[] presented = header.substring(7).getBytes(StandardCharsets.UTF_8);
+            if (MessageDigest.isEqual(token, presented)) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        "prometheus", null, AuthorityUtils.createAuthorityList("ROLE_" + ROLE));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
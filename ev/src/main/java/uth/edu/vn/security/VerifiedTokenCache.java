@@ -0,0 +1,202 @@
+package uth.edu.vn.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache các JWT đã verify chữ ký, khóa theo SHA-256 của token (không giữ token gốc trong bộ nhớ)
+ *
+ * Mỗi entry sống tối đa jwt.cache.ttl-seconds (và không quá hạn của token). Khi cache đầy, token mới vẫn
+ * được verify bình thường nhưng không được cache cho tới lần dọn tiếp theo.
+ *
+ * revokeUser() (đổi role / mật khẩu, khóa / xóa tài khoản, đăng xuất) lưu mốc tokens_valid_after vào nguoi_dung và từ chối ngay
+ * trên instance này; instance khác đọc mốc đó ở lần cache miss kế tiếp (checkStoredRevocation), nên token
+ * bị thu hồi chỉ còn dùng được tối đa 1 TTL của cache kể cả khi chạy nhiều node hoặc sau khi restart.
+ * Mốc thu hồi và thời điểm phát hành token (claim iatMs) tính bằng ms: token phát hành trước đó trong
+ * cùng 1 giây vẫn bị từ chối.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Map<String, Entry> tokens = new ConcurrentHashMap<>();
+
+    // username -> epoch ms: token có iatMs nhỏ hơn hoặc bằng bị từ chối
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    @Value("${jwt.cache.max-size:50000}")
+    private int maxSize;
+
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${jwt.refresh-expiration}")
+    private long maxTokenLifetimeMs;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revokedRejects = new LongAdder();
+
+    /**
+     * Token đã verify và còn hạn, null nếu chưa có trong cache
+     */
+    public VerifiedToken get(String token) {
+        String key = hash(token);
+        Entry entry = tokens.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.cachedUntilMs <= System.currentTimeMillis()) {
+            tokens.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.verified;
+    }
+
+    public void put(String token, VerifiedToken verified) {
+        if (tokens.size() < maxSize) {
+            long cachedUntilMs = Math.min(verified.expiresAtMs, System.currentTimeMillis() + ttlSeconds * 1000);
+            tokens.put(hash(token), new Entry(verified, cachedUntilMs));
+        }
+    }
+
+    /**
+     * Token phát hành trước thời điểm user bị thu hồi quyền
+     */
+    public boolean isRevoked(VerifiedToken verified) {
+        Long before = revokedBefore.get(verified.username);
+        if (before != null && verified.issuedAtMs <= before) {
+            revokedRejects.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Đọc mốc tokens_valid_after của user từ DB (gọi khi cache miss) để isRevoked() áp dụng cả thu hồi
+     * từ instance khác
+     *
+     * @return false nếu user không còn tồn tại
+     */
+    public boolean checkStoredRevocation(VerifiedToken verified) {
+        List<LocalDateTime> stored = userRepository.findTokensValidAfterByEmail(verified.username);
+        if (stored.isEmpty()) {
+            return false;
+        }
+        LocalDateTime validAfter = stored.get(0);
+        if (validAfter != null) {
+            revokedBefore.merge(verified.username, validAfter.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * Thu hồi mọi token hiện có của user (đổi role / mật khẩu, khóa hoặc xóa tài khoản, đăng xuất)
+     */
+    public void revokeUser(String username) {
+        if (username == null) {
+            return;
+        }
+        long nowMs = System.currentTimeMillis();
+        revokedBefore.merge(username, nowMs, Math::max);
+        tokens.values().removeIf(entry -> entry.verified.username.equals(username));
+        try {
+            userRepository.updateTokensValidAfter(username,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMs), ZoneId.systemDefault()));
+        } catch (Exception e) {
+            // Vẫn thu hồi trên instance này; instance khác hết cache sau tối đa 1 TTL nhưng không thấy mốc mới
+            logger.error("Error saving tokens_valid_after for {}", username, e);
+        }
+    }
+
+    /**
+     * Dọn entry hết hạn và các mốc thu hồi đã quá thời gian sống dài nhất của token
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.cleanup-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        tokens.values().removeIf(entry -> entry.cachedUntilMs <= now);
+        long oldest = now - maxTokenLifetimeMs;
+        revokedBefore.values().removeIf(before -> before < oldest);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", tokens.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("revokedUsers", revokedBefore.size());
+        stats.put("revokedRejects", revokedRejects.sum());
+        return stats;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(VerifiedToken verified, long cachedUntilMs) {
+    }
+
+    /**
+     * Kết quả verify: subject, quyền và thời hạn của token
+     */
+    public static final class VerifiedToken {
+        final String username;
+        final List<GrantedAuthority> authorities;
+        final long issuedAtMs;
+        final long expiresAtMs;
+
+        public VerifiedToken(String username, List<GrantedAuthority> authorities, long issuedAtMs, long expiresAtMs) {
+            this.username = username;
+            this.authorities = authorities;
+            this.issuedAtMs = issuedAtMs;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public List<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+
+        public VerifiedToken withAuthorities(List<GrantedAuthority> authorities) {
+            return new VerifiedToken(username, authorities, issuedAtMs, expiresAtMs);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.dto.ActiveChargingSession;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.util.TransactionCallbacks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách phiên sạc ACTIVE trong bộ nhớ cho WebSocket broadcast
+ *
+ * Được thêm khi phiên sạc bắt đầu và xóa khi phiên kết thúc (sau khi transaction commit),
+ * nên mỗi tick broadcast không cần query database. Định kỳ đối soát lại với database.
+ * Phiên được chia sẵn theo shard broadcast (sessionId mod số shard) để mỗi shard chỉ duyệt phần của nó.
+ */
+@Component
+public class ActiveSessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActiveSessionRegistry.class);
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Value("${charging.ws.broadcast.shards:4}")
+    private int partitionCount;
+
+    private Map<Long, ActiveChargingSession>[] partitions;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void loadFromDatabase() {
+        partitionCount = Math.max(1, partitionCount);
+        partitions = new Map[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new ConcurrentHashMap<>();
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Error loading active charging sessions", e);
+        }
+    }
+
+    /**
+     * Đối soát định kỳ với database
+     */
+    @Scheduled(fixedDelayString = "${charging.sessions.resync-ms:60000}",
+               initialDelayString = "${charging.sessions.resync-ms:60000}")
+    public void resync() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Error resyncing active charging sessions", e);
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ phiên ACTIVE (1 query join fetch charger, trạm và user)
+     */
+    public synchronized void reload() {
+        List<PhienSac> activeSessions = phienSacRepository.findByStatusWithDetails(SessionStatus.ACTIVE);
+
+        Map<Long, ActiveChargingSession> loaded = new HashMap<>();
+        for (PhienSac session : activeSessions) {
+            loaded.put(session.getSessionId(), ActiveChargingSession.from(session));
+        }
+
+        for (Map<Long, ActiveChargingSession> partition : partitions) {
+            partition.keySet().retainAll(loaded.keySet());
+        }
+        for (ActiveChargingSession snapshot : loaded.values()) {
+            partitionFor(snapshot.getSessionId()).put(snapshot.getSessionId(), snapshot);
+        }
+
+        logger.info("Active session registry loaded {} sessions", loaded.size());
+    }
+
+    /**
+     * Đăng ký phiên sạc vừa bắt đầu; snapshot được tạo ngay trong transaction hiện tại
+     */
+    public void register(PhienSac session) {
+        if (session == null || session.getSessionId() == null) {
+            return;
+        }
+        ActiveChargingSession snapshot = ActiveChargingSession.from(session);
+        TransactionCallbacks.afterCommit(() -> put(snapshot));
+    }
+
+    /**
+     * Xóa phiên sạc đã kết thúc khi transaction hiện tại commit
+     */
+    public void unregister(Long sessionId) {
+        if (sessionId != null) {
+            TransactionCallbacks.afterCommit(() -> remove(sessionId));
+        }
+    }
+
+    private synchronized void put(ActiveChargingSession snapshot) {
+        partitionFor(snapshot.getSessionId()).put(snapshot.getSessionId(), snapshot);
+    }
+
+    private synchronized void remove(Long sessionId) {
+        partitionFor(sessionId).remove(sessionId);
+    }
+
+    public ActiveChargingSession get(Long sessionId) {
+        return partitionFor(sessionId).get(sessionId);
+    }
+
+    /**
+     * Snapshot danh sách phiên đang ACTIVE
+     */
+    public Collection<ActiveChargingSession> getActiveSessions() {
+        List<ActiveChargingSession> all = new ArrayList<>();
+        for (Map<Long, ActiveChargingSession> partition : partitions) {
+            all.addAll(partition.values());
+        }
+        return all;
+    }
+
+    /**
+     * Snapshot các phiên ACTIVE thuộc 1 shard broadcast
+     */
+    public Collection<ActiveChargingSession> getActiveSessions(int partition) {
+        return new ArrayList<>(partitions[partition].values());
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Long, ActiveChargingSession> partition : partitions) {
+            size += partition.size();
+        }
+        return size;
+    }
+
+    private Map<Long, ActiveChargingSession> partitionFor(Long sessionId) {
+        return partitions[(int) Math.floorMod(sessionId, (long) partitionCount)];
+    }
+}
@@ -10,6 +10,7 @@ import uth.edu.vn.entity.*;
 import uth.edu.vn.enums.*;
 import uth.edu.vn.exception.ResourceNotFoundException;
 import uth.edu.vn.repository.*;
+import uth.edu.vn.util.TransactionCallbacks;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -35,6 +36,9 @@ public class AdminService {
     
     @Autowired
     private ChargerRepository chargerRepository;
+
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
     
     @Autowired
     private UserRepository userRepository;
@@ -48,6 +52,9 @@ public class AdminService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private StationSpatialIndex stationSpatialIndex;
+    
     // ==================== 1. STATION & CHARGING POINT MANAGEMENT ====================
     
     /**
@@ -58,6 +65,9 @@ public class AdminService {
             TramSac station = new TramSac(stationName, address, latitude, longitude);
             station = tramSacRepository.save(station);
             
+            TramSac created = station;
+            TransactionCallbacks.afterCommit(() -> stationSpatialIndex.upsert(created));
+            
             logger.info("Charging station created: {}", stationName);
             return station;
         } catch (Exception e) {
@@ -76,6 +86,7 @@ public class AdminService {
         
         Charger point = new Charger(pointName, connectorType, powerCapacity, pricePerKwh, station);
         point = chargerRepository.save(point);
+        chargerAvailabilityRegistry.onStatusChanged(point);
         
         logger.info("Charging point added: {} to station {}", pointName, station.getName());
         return point;
@@ -102,6 +113,8 @@ public class AdminService {
             station.setStatus(status.name());
             tramSacRepository.save(station);
             
+            TransactionCallbacks.afterCommit(() -> stationSpatialIndex.upsert(station));
+            
             logger.info("Station {} status updated to: {}", station.getName(), status);
             return true;
         } catch (Exception e) {
@@ -120,6 +133,7 @@ public class AdminService {
             
             point.setStatus(status);
             chargerRepository.save(point);
+            chargerAvailabilityRegistry.onStatusChanged(point);
             
             logger.info("Charging point {} status updated to: {}", point.getPointName(), status);
             return true;
@@ -19,6 +19,7 @@ import uth.edu.vn.exception.UnauthorizedException;
 import uth.edu.vn.repository.UserRepository;
 import uth.edu.vn.repository.XeRepository;
 import uth.edu.vn.security.JwtTokenProvider;
+import uth.edu.vn.security.VerifiedTokenCache;
 
 /**
  * Authentication Service
@@ -44,6 +45,9 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+
     /**
      * Đăng ký user mới (EV Driver)
      */
@@ -86,7 +90,7 @@ public class AuthService {
         }
 
         // 5. Generate JWT tokens
-        String accessToken = tokenProvider.generateTokenFromUsername(user.getEmail());
+        String accessToken = tokenProvider.generateTokenFromUsername(user.getEmail(), user.getRole());
         String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
 
         // 6. Trả về AuthResponse
@@ -124,7 +128,7 @@ public class AuthService {
                 .orElseThrow(() -> new UnauthorizedException("Email hoặc mật khẩu không đúng"));
 
         // 3. Generate JWT tokens
-        String accessToken = tokenProvider.generateTokenFromUsername(user.getEmail());
+        String accessToken = tokenProvider.generateTokenFromUsername(user.getEmail(), user.getRole());
         String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
 
         // 4. Trả về AuthResponse
@@ -149,20 +153,21 @@ public class AuthService {
      * Refresh access token
      */
     public AuthResponse refreshToken(String refreshToken) {
-        // 1. Validate refresh token
-        if (!tokenProvider.validateToken(refreshToken)) {
+        // 1. Validate refresh token, kể cả mốc thu hồi (đăng xuất / đổi mật khẩu sau khi token được cấp)
+        VerifiedTokenCache.VerifiedToken verified = tokenProvider.verify(refreshToken);
+        if (verified == null || !tokenCache.checkStoredRevocation(verified) || tokenCache.isRevoked(verified)) {
             throw new UnauthorizedException("Refresh token không hợp lệ hoặc đã hết hạn");
         }
 
         // 2. Lấy email từ refresh token
-        String email = tokenProvider.getUsernameFromToken(refreshToken);
+        String email = verified.getUsername();
 
         // 3. Tìm user
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UnauthorizedException("User không tồn tại"));
 
         // 4. Generate new access token
-        String newAccessToken = tokenProvider.generateTokenFromUsername(user.getEmail());
+        String newAccessToken = tokenProvider.generateTokenFromUsername(user.getEmail(), user.getRole());
 
         // 5. Trả về AuthResponse
         return AuthResponse.builder()
@@ -0,0 +1,90 @@
+package uth.edu.vn.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.enums.PaymentMethod;
+import uth.edu.vn.enums.WalletTransactionType;
+import uth.edu.vn.util.TransactionCallbacks;
+
+import java.math.BigDecimal;
+
+/**
+ * Bộ đếm nghiệp vụ: phiên sạc bắt đầu / kết thúc, thanh toán, giao dịch ví
+ *
+ * Chỉ đếm sau khi transaction commit (rollback thì không tính). Giá trị tag được giới hạn
+ * trong các enum để số time series không tăng theo dữ liệu người dùng gửi lên.
+ */
+@Component
+public class BusinessMetrics {
+
+    public static final String SOURCE_DRIVER = "driver";
+    public static final String SOURCE_STAFF = "staff";
+
+    public static final String REASON_STOPPED = "stopped";
+    public static final String REASON_FULLY_CHARGED = "fully_charged";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    public void sessionStarted(String source) {
+        Counter counter = Counter.builder("ev.charging.sessions.started")
+                .tag("source", source)
+                .register(registry);
+        TransactionCallbacks.afterCommit(counter::increment);
+    }
+
+    public void sessionStopped(String reason) {
+        Counter counter = Counter.builder("ev.charging.sessions.stopped")
+                .tag("reason", reason)
+                .register(registry);
+        TransactionCallbacks.afterCommit(counter::increment);
+    }
+
+    /**
+     * @param method tên phương thức thanh toán; giá trị ngoài PaymentMethod được gộp thành OTHER
+     */
+    public void paymentCompleted(String method, BigDecimal amount) {
+        String tag = normalize(method);
+        Counter counter = Counter.builder("ev.payments.completed")
+                .tag("method", tag)
+                .register(registry);
+        DistributionSummary summary = DistributionSummary.builder("ev.payments.amount")
+                .baseUnit("vnd")
+                .tag("method", tag)
+                .register(registry);
+        TransactionCallbacks.afterCommit(() -> {
+            counter.increment();
+            if (amount != null) {
+                summary.record(amount.doubleValue());
+            }
+        });
+    }
+
+    public void walletTransaction(WalletTransactionType type, BigDecimal amount) {
+        Counter counter = Counter.builder("ev.wallet.transactions")
+                .tag("type", type.name())
+                .register(registry);
+        DistributionSummary summary = DistributionSummary.builder("ev.wallet.amount")
+                .baseUnit("vnd")
+                .tag("type", type.name())
+                .register(registry);
+        TransactionCallbacks.afterCommit(() -> {
+            counter.increment();
+            summary.record(amount.doubleValue());
+        });
+    }
+
+    private static String normalize(String method) {
+        if (method != null) {
+            for (PaymentMethod value : PaymentMethod.values()) {
+                if (value.name().equalsIgnoreCase(method)) {
+                    return value.name();
+                }
+            }
+        }
+        return "OTHER";
+    }
+}
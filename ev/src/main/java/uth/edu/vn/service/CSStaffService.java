@@ -34,12 +34,27 @@ public class CSStaffService {
     @Autowired
     private ChargerRepository chargerRepository;
 
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
     @Autowired
     private PhienSacRepository phienSacRepository;
 
     @Autowired
     private ThanhToanRepository thanhToanRepository;
 
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private BusinessMetrics businessMetrics;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -82,6 +97,9 @@ public class CSStaffService {
         // Update charging point status
         point.setStatus(PointStatus.OCCUPIED);
         chargerRepository.save(point);
+        chargerAvailabilityRegistry.onStatusChanged(point);
+        activeSessionRegistry.register(savedSession);
+        businessMetrics.sessionStarted(BusinessMetrics.SOURCE_STAFF);
 
         logger.info("Charging session started by staff for vehicle: {}", vehiclePlate);
         return savedSession;
@@ -118,6 +136,9 @@ public class CSStaffService {
         Charger point = chargingSession.getChargingPoint();
         point.setStatus(PointStatus.AVAILABLE);
         chargerRepository.save(point);
+        chargerAvailabilityRegistry.onStatusChanged(point);
+        activeSessionRegistry.unregister(chargingSession.getSessionId());
+        businessMetrics.sessionStopped(BusinessMetrics.REASON_STOPPED);
 
         logger.info("Charging session stopped. Energy: {} kWh, Cost: ${}", energyConsumed, totalCost);
         return true;
@@ -167,6 +188,9 @@ public class CSStaffService {
         payment.setCreatedAt(LocalDateTime.now());
 
         payment = thanhToanRepository.save(payment);
+        monthlySpendingService.recordPayment(chargingSession, payment);
+        invoiceService.enqueueAfterCommit(payment.getId());
+        businessMetrics.paymentCompleted(payment.getMethod(), payment.getAmount());
 
         logger.info("Cash payment processed: ${}", chargingSession.getTotalCost());
         return payment;
@@ -206,6 +230,7 @@ public class CSStaffService {
         // Mark point as out of order
         point.setStatus(PointStatus.OUT_OF_ORDER);
         chargerRepository.save(point);
+        chargerAvailabilityRegistry.onStatusChanged(point);
 
         logger.info("Incident reported for point {}. Point marked as OUT_OF_ORDER", pointId);
         return true;
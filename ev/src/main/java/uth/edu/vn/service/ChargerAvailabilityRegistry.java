@@ -0,0 +1,246 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.dto.StationChargerSummary;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.PointStatus;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.ChargerRepository.ChargerStatusView;
+import uth.edu.vn.util.TransactionCallbacks;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bộ đếm trạng thái điểm sạc trong bộ nhớ, theo trạm và loại connector
+ *
+ * Được cập nhật tại các điểm chuyển trạng thái (đặt chỗ, bắt đầu/kết thúc sạc, báo sự cố,
+ * admin đổi trạng thái) sau khi transaction commit. Đọc số lượng là O(1), không query database.
+ * Định kỳ đối soát lại với database để sửa sai lệch do thay đổi ngoài ứng dụng.
+ */
+@Component
+public class ChargerAvailabilityRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChargerAvailabilityRegistry.class);
+
+    private static final ConnectorType[] CONNECTOR_TYPES = ConnectorType.values();
+    private static final PointStatus[] POINT_STATUSES = PointStatus.values();
+
+    // Thêm 1 ô cho connector/status null (dữ liệu cũ) để tổng số vẫn đúng
+    private static final int CONNECTOR_SLOTS = CONNECTOR_TYPES.length + 1;
+    private static final int STATUS_SLOTS = POINT_STATUSES.length + 1;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    // pointId -> trạng thái hiện tại
+    private final Map<Long, PointState> points = new ConcurrentHashMap<>();
+
+    // stationId -> bộ đếm bất biến, thay mới mỗi lần chuyển trạng thái
+    private final Map<Long, StationCounts> stations = new ConcurrentHashMap<>();
+
+    private volatile long[] globalCounts = new long[POINT_STATUSES.length];
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void loadFromDatabase() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Error loading charger availability registry", e);
+        }
+    }
+
+    /**
+     * Đối soát định kỳ với database
+     */
+    @Scheduled(fixedDelayString = "${charger.availability.resync-ms:300000}",
+               initialDelayString = "${charger.availability.resync-ms:300000}")
+    public void resync() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Error resyncing charger availability registry", e);
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ bộ đếm từ database
+     */
+    public synchronized void reload() {
+        List<ChargerStatusView> views = chargerRepository.findAllStatusViews();
+
+        Map<Long, PointState> newPoints = new HashMap<>();
+        Map<Long, int[]> newCounts = new HashMap<>();
+        long[] newGlobal = new long[POINT_STATUSES.length];
+
+        for (ChargerStatusView view : views) {
+            PointState state = new PointState(view.getStationId(), view.getConnectorType(), view.getStatus());
+            newPoints.put(view.getPointId(), state);
+            newCounts.computeIfAbsent(state.stationId, id -> new int[CONNECTOR_SLOTS * STATUS_SLOTS])
+                    [state.slot()]++;
+            if (state.status != null) {
+                newGlobal[state.status.ordinal()]++;
+            }
+        }
+
+        points.clear();
+        points.putAll(newPoints);
+        stations.clear();
+        newCounts.forEach((stationId, counts) -> stations.put(stationId, new StationCounts(counts)));
+        globalCounts = newGlobal;
+        loaded = true;
+
+        logger.info("Charger availability registry loaded {} charging points at {} stations",
+                newPoints.size(), newCounts.size());
+    }
+
+    /**
+     * Ghi nhận trạng thái mới của điểm sạc khi transaction hiện tại commit
+     */
+    public void onStatusChanged(Charger point) {
+        if (point == null || point.getPointId() == null || point.getChargingStation() == null) {
+            return;
+        }
+        Long pointId = point.getPointId();
+        PointState state = new PointState(point.getChargingStation().getId(), point.getConnectorType(),
+                point.getStatus());
+        TransactionCallbacks.afterCommit(() -> apply(pointId, state));
+    }
+
+    private synchronized void apply(Long pointId, PointState newState) {
+        PointState oldState = points.put(pointId, newState);
+        if (oldState != null) {
+            adjust(oldState, -1);
+        }
+        adjust(newState, 1);
+    }
+
+    private void adjust(PointState state, int delta) {
+        StationCounts current = stations.get(state.stationId);
+        int[] counts = current != null
+                ? current.counts.clone()
+                : new int[CONNECTOR_SLOTS * STATUS_SLOTS];
+        counts[state.slot()] += delta;
+        stations.put(state.stationId, new StationCounts(counts));
+
+        if (state.status != null) {
+            long[] global = globalCounts.clone();
+            global[state.status.ordinal()] += delta;
+            globalCounts = global;
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Điểm sạc có tồn tại hay không
+     */
+    public boolean contains(Long pointId) {
+        return points.containsKey(pointId);
+    }
+
+    /**
+     * Tổng số, số khả dụng và số điểm theo loại connector của một trạm
+     */
+    public StationChargerSummary getSummary(Long stationId) {
+        StationCounts counts = stations.get(stationId);
+        return counts != null ? counts.summary : StationChargerSummary.empty();
+    }
+
+    /**
+     * Số điểm sạc của trạm theo trạng thái
+     */
+    public long countByStation(Long stationId, PointStatus status) {
+        StationCounts counts = stations.get(stationId);
+        return counts != null ? counts.byStatus[status.ordinal()] : 0;
+    }
+
+    /**
+     * Số điểm sạc toàn hệ thống theo trạng thái
+     */
+    public long countByStatus(PointStatus status) {
+        return globalCounts[status.ordinal()];
+    }
+
+    public long totalChargers() {
+        return points.size();
+    }
+
+    /**
+     * Số điểm sạc toàn hệ thống theo từng trạng thái
+     */
+    public Map<PointStatus, Long> countsByStatus() {
+        long[] snapshot = globalCounts;
+        Map<PointStatus, Long> result = new EnumMap<>(PointStatus.class);
+        for (PointStatus status : POINT_STATUSES) {
+            result.put(status, snapshot[status.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Trạng thái của một điểm sạc (stationId, connector, status)
+     */
+    private static final class PointState {
+        final Long stationId;
+        final ConnectorType connectorType;
+        final PointStatus status;
+
+        PointState(Long stationId, ConnectorType connectorType, PointStatus status) {
+            this.stationId = stationId;
+            this.connectorType = connectorType;
+            this.status = status;
+        }
+
+        // Ô đếm trong mảng [connector][status]; giá trị null dùng ô cuối
+        int slot() {
+            int connector = connectorType != null ? connectorType.ordinal() : CONNECTOR_TYPES.length;
+            int statusIdx = status != null ? status.ordinal() : POINT_STATUSES.length;
+            return connector * STATUS_SLOTS + statusIdx;
+        }
+    }
+
+    /**
+     * Bộ đếm bất biến của một trạm, tính sẵn summary để đọc O(1)
+     */
+    private static final class StationCounts {
+        final int[] counts;
+        final long[] byStatus = new long[POINT_STATUSES.length];
+        final StationChargerSummary summary;
+
+        StationCounts(int[] counts) {
+            this.counts = counts;
+            long total = 0;
+            Map<String, Integer> connectorTypes = new HashMap<>();
+            for (int connector = 0; connector < CONNECTOR_SLOTS; connector++) {
+                int perType = 0;
+                for (int statusIdx = 0; statusIdx < STATUS_SLOTS; statusIdx++) {
+                    int value = counts[connector * STATUS_SLOTS + statusIdx];
+                    perType += value;
+                    if (statusIdx < POINT_STATUSES.length) {
+                        byStatus[statusIdx] += value;
+                    }
+                }
+                if (perType > 0 && connector < CONNECTOR_TYPES.length) {
+                    connectorTypes.put(CONNECTOR_TYPES[connector].toString(), perType);
+                }
+                total += perType;
+            }
+            this.summary = new StationChargerSummary(total, byStatus[PointStatus.AVAILABLE.ordinal()],
+                    connectorTypes);
+        }
+    }
+}
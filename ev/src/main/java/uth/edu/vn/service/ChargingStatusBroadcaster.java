@@ -0,0 +1,376 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.dto.ActiveChargingSession;
+import uth.edu.vn.dto.ChargingStatusUpdate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.repository.PhienSacRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Broadcast trạng thái sạc qua WebSocket theo shard
+ *
+ * Các phiên ACTIVE được chia vào N shard theo sessionId. Mỗi shard có lịch riêng (lệch pha + jitter)
+ * và chạy trên virtual thread, nên một lần gửi chậm chỉ làm trễ shard của nó.
+ * Nếu tick trước của shard chưa xong, tick mới bị bỏ qua thay vì dồn hàng đợi.
+ */
+@Component
+public class ChargingStatusBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChargingStatusBroadcaster.class);
+
+    public static final String CHARGING_TOPIC_PREFIX = "/topic/charging/";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private ChargingStatusDeltaTracker deltaTracker;
+
+    @Autowired
+    private TelemetryIngestionService telemetryIngestionService;
+
+    @Autowired
+    private BusinessMetrics businessMetrics;
+
+    private int shardCount;
+
+    @Value("${charging.ws.broadcast.interval-ms:5000}")
+    private long intervalMs;
+
+    @Value("${charging.ws.broadcast.jitter-ms:250}")
+    private long jitterMs;
+
+    @Value("${telemetry.live.max-age-seconds:60}")
+    private long telemetryMaxAgeSeconds;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+    private Shard[] shards;
+
+    @PostConstruct
+    public void start() {
+        // Số shard = số phần chia sẵn trong ActiveSessionRegistry (charging.ws.broadcast.shards)
+        shardCount = activeSessionRegistry.getPartitionCount();
+        shards = new Shard[shardCount];
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "charging-broadcast-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("charging-broadcast-", 0).factory());
+
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i);
+            shards[i] = shard;
+            // Lệch pha các shard đều nhau trong 1 chu kỳ để không gửi dồn cùng lúc
+            long initialDelay = intervalMs + (intervalMs * i) / shardCount;
+            scheduler.schedule(() -> trigger(shard), initialDelay, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::cleanupDeltaState, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Charging status broadcaster started: {} shards, interval {} ms", shardCount, intervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Lên lịch tick kế tiếp (có jitter) rồi chạy shard trên virtual thread nếu tick trước đã xong
+     */
+    private void trigger(Shard shard) {
+        long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0;
+        scheduler.schedule(() -> trigger(shard), Math.max(1, intervalMs + jitter), TimeUnit.MILLISECONDS);
+
+        if (!shard.running.compareAndSet(false, true)) {
+            shard.skippedTicks.incrementAndGet();
+            // Đã đếm trong skippedTicks (metrics), không log WARN mỗi tick
+            logger.debug("Skipped broadcast tick for shard {} - previous tick still running", shard.index);
+            return;
+        }
+        try {
+            workers.execute(() -> runShard(shard));
+        } catch (Exception e) {
+            shard.running.set(false);
+            logger.error("Error submitting broadcast tick for shard {}", shard.index, e);
+        }
+    }
+
+    private void runShard(Shard shard) {
+        long startNanos = System.nanoTime();
+        try {
+            Collection<ActiveChargingSession> sessions = activeSessionRegistry.getActiveSessions(shard.index);
+
+            shard.backlog.set(sessions.size());
+            for (ActiveChargingSession session : sessions) {
+                broadcast(session);
+                shard.backlog.decrementAndGet();
+            }
+        } finally {
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            shard.lastTickMs.set(durationMs);
+            shard.maxTickMs.accumulateAndGet(durationMs, Math::max);
+            shard.totalTickMs.addAndGet(durationMs);
+            shard.ticks.incrementAndGet();
+            shard.backlog.set(0);
+            shard.running.set(false);
+        }
+    }
+
+    private void broadcast(ActiveChargingSession session) {
+        try {
+            ChargingStatusUpdate update = buildStatusUpdate(session);
+
+            // Broadcast to topic for this specific session (only changed fields, full snapshot on keyframes)
+            Map<String, Object> payload = deltaTracker.encode(update);
+            if (payload != null) {
+                messagingTemplate.convertAndSend(CHARGING_TOPIC_PREFIX + session.getSessionId(), payload);
+            }
+
+            logger.debug("Broadcasted status for session {}: SOC={}%, Cost={}đ",
+                    session.getSessionId(), update.getStateOfCharge(), update.getCurrentCost());
+
+            // Check if charging complete (SOC >= 100% or target reached)
+            if (update.getStateOfCharge() >= 100.0) {
+                update.setStatus("COMPLETED");
+                update.setAlertMessage("Sạc đầy! Vui lòng ngắt kết nối.");
+
+                // Send completion notification
+                messagingTemplate.convertAndSend(CHARGING_TOPIC_PREFIX + session.getSessionId(), update);
+
+                completeSession(session.getSessionId());
+                deltaTracker.forget(session.getSessionId());
+            }
+
+        } catch (Exception e) {
+            logger.error("Error broadcasting status for session {}", session.getSessionId(), e);
+        }
+    }
+
+    /**
+     * Mark session as completed in database and drop it from the registry
+     */
+    private void completeSession(Long sessionId) {
+        PhienSac session = phienSacRepository.findById(sessionId).orElse(null);
+        if (session != null && session.getStatus() == SessionStatus.ACTIVE) {
+            session.setStatus(SessionStatus.COMPLETED);
+            session.setEndTime(LocalDateTime.now());
+            phienSacRepository.save(session);
+            businessMetrics.sessionStopped(BusinessMetrics.REASON_FULLY_CHARGED);
+            logger.info("Session {} completed - 100% charged", sessionId);
+        }
+        activeSessionRegistry.unregister(sessionId);
+    }
+
+    private void cleanupDeltaState() {
+        try {
+            deltaTracker.retainOnly(activeSessionRegistry.getActiveSessions().stream()
+                    .map(ActiveChargingSession::getSessionId)
+                    .collect(Collectors.toList()));
+        } catch (Exception e) {
+            logger.error("Error cleaning up delta state", e);
+        }
+    }
+
+    /**
+     * Build charging status update from active session snapshot
+     * Uses the latest charger telemetry when available, otherwise simulates progress
+     */
+    public ChargingStatusUpdate buildStatusUpdate(ActiveChargingSession session) {
+        LocalDateTime now = LocalDateTime.now();
+        Duration elapsed = Duration.between(session.getStartTime(), now);
+        long minutesElapsed = elapsed.toMinutes();
+
+        // Simulate charging progress based on time
+        double socPerMinute = 2.0; // 2% per minute (typical for fast charging)
+        double stateOfCharge = Math.min(100.0, minutesElapsed * socPerMinute);
+
+        // Calculate energy consumed (kWh)
+        double powerOutput = session.getPowerCapacity();
+        double hoursElapsed = minutesElapsed / 60.0;
+        double energyConsumed = powerOutput * hoursElapsed;
+
+        // Real data from charger telemetry (if fresh and belongs to this session)
+        TelemetryReading telemetry = telemetryIngestionService.getLatestReading(session.getPointId());
+        if (telemetry != null
+                && !telemetry.getRecordedAt().isBefore(session.getStartTime())
+                && !telemetry.getRecordedAt().isBefore(now.minusSeconds(telemetryMaxAgeSeconds))) {
+            if (telemetry.getSocPercentage() != null) {
+                stateOfCharge = Math.min(100.0, telemetry.getSocPercentage());
+                // Tốc độ sạc thực tế tính từ SOC ban đầu
+                int startSoc = session.getStartSoc() != null ? session.getStartSoc() : 0;
+                if (minutesElapsed > 0 && stateOfCharge > startSoc) {
+                    socPerMinute = (stateOfCharge - startSoc) / minutesElapsed;
+                }
+            }
+            if (telemetry.getEnergyDeliveredKwh() != null) {
+                energyConsumed = telemetry.getEnergyDeliveredKwh();
+            }
+            if (telemetry.getCurrentPowerKw() != null) {
+                powerOutput = telemetry.getCurrentPowerKw();
+            }
+        }
+
+        // Calculate current cost
+        double currentCost = energyConsumed * session.getPricePerKwh();
+
+        // Calculate time remaining (minutes)
+        int timeRemaining = (int) Math.max(0, (100 - stateOfCharge) / socPerMinute);
+
+        // Build update DTO
+        return ChargingStatusUpdate.builder()
+                .sessionId(session.getSessionId())
+                .stateOfCharge(Math.round(stateOfCharge * 10.0) / 10.0) // Round to 1 decimal
+                .energyConsumed(Math.round(energyConsumed * 100.0) / 100.0) // Round to 2 decimals
+                .currentCost((double) Math.round(currentCost))
+                .timeRemaining(timeRemaining)
+                .status(SessionStatus.ACTIVE.toString())
+                .powerOutput(powerOutput)
+                .startTime(session.getStartTime())
+                .updateTime(now)
+                .stationName(session.getStationName())
+                .chargerName(session.getChargerName())
+                .userEmail(session.getUserEmail())
+                .alertMessage(stateOfCharge >= 90 ? "Sắp sạc đầy!" : null)
+                .build();
+    }
+
+    /**
+     * Trạng thái cuối của phiên đã kết thúc (không còn trong registry), lấy từ database
+     */
+    public ChargingStatusUpdate buildFinalStatus(PhienSac session) {
+        Double stateOfCharge = session.getEndSoc() != null ? session.getEndSoc().doubleValue() : null;
+        return ChargingStatusUpdate.builder()
+                .sessionId(session.getSessionId())
+                .stateOfCharge(stateOfCharge)
+                .energyConsumed(session.getEnergyConsumed())
+                .currentCost(session.getTotalCost())
+                .timeRemaining(0)
+                .status(session.getStatus().toString())
+                .powerOutput(0.0)
+                .startTime(session.getStartTime())
+                .updateTime(session.getEndTime() != null ? session.getEndTime() : session.getUpdatedAt())
+                .stationName(session.getChargingPoint().getChargingStation().getName())
+                .chargerName(session.getChargingPoint().getPointName())
+                .userEmail(session.getUser().getEmail())
+                .build();
+    }
+
+    // ==================== METRICS ====================
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Tổng số phiên đang chờ gửi trong các tick đang chạy
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        for (Shard shard : shards) {
+            backlog += shard.backlog.get();
+        }
+        return backlog;
+    }
+
+    public long getSkippedTicks() {
+        long skipped = 0;
+        for (Shard shard : shards) {
+            skipped += shard.skippedTicks.get();
+        }
+        return skipped;
+    }
+
+    public long getCompletedTicks() {
+        long ticks = 0;
+        for (Shard shard : shards) {
+            ticks += shard.ticks.get();
+        }
+        return ticks;
+    }
+
+    /**
+     * Thời gian tick lớn nhất trong các lần tick gần nhất của mỗi shard (ms)
+     */
+    public long getLastTickMs() {
+        long last = 0;
+        for (Shard shard : shards) {
+            last = Math.max(last, shard.lastTickMs.get());
+        }
+        return last;
+    }
+
+    /**
+     * Thống kê chi tiết theo shard
+     */
+    public List<Map<String, Object>> getShardStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Shard shard : shards) {
+            long ticks = shard.ticks.get();
+            stats.add(Map.of(
+                    "shard", shard.index,
+                    "running", shard.running.get(),
+                    "ticks", ticks,
+                    "skippedTicks", shard.skippedTicks.get(),
+                    "backlog", shard.backlog.get(),
+                    "lastTickMs", shard.lastTickMs.get(),
+                    "maxTickMs", shard.maxTickMs.get(),
+                    "avgTickMs", ticks > 0 ? shard.totalTickMs.get() / (double) ticks : 0.0));
+        }
+        return stats;
+    }
+
+    /**
+     * Trạng thái và số liệu của một shard
+     */
+    private static final class Shard {
+        final int index;
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicLong ticks = new AtomicLong();
+        final AtomicLong skippedTicks = new AtomicLong();
+        final AtomicLong backlog = new AtomicLong();
+        final AtomicLong lastTickMs = new AtomicLong();
+        final AtomicLong maxTickMs = new AtomicLong();
+        final AtomicLong totalTickMs = new AtomicLong();
+
+        Shard(int index) {
+            this.index = index;
+        }
+    }
+}
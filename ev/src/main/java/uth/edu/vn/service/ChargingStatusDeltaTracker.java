@@ -0,0 +1,131 @@
+package uth.edu.vn.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.dto.ChargingStatusUpdate;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi nhớ payload cuối cùng đã gửi cho mỗi phiên sạc để chỉ push các field thay đổi
+ *
+ * Payload gửi đi có field "type": FULL (snapshot đầy đủ) hoặc DELTA (chỉ field thay đổi).
+ * Snapshot đầy đủ được gửi ở lần đầu, khi có client mới subscribe và sau mỗi keyframe interval.
+ * Client gộp DELTA vào state đang có; message không có "type" được coi là FULL.
+ */
+@Component
+public class ChargingStatusDeltaTracker {
+
+    public static final String TYPE_FULL = "FULL";
+    public static final String TYPE_DELTA = "DELTA";
+
+    // updateTime thay đổi mỗi tick nên không tính là thay đổi nội dung
+    private static final Set<String> ALWAYS_SENT_FIELDS = Set.of("sessionId", "updateTime");
+
+    @Value("${charging.ws.delta.enabled:true}")
+    private boolean deltaEnabled = true;
+
+    @Value("${charging.ws.delta.keyframe-interval-ticks:12}")
+    private int keyframeIntervalTicks = 12;
+
+    private final Map<Long, SessionState> states = new ConcurrentHashMap<>();
+
+    private final Set<Long> keyframeRequests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Tạo payload cần gửi cho update; trả về null nếu không có gì thay đổi
+     */
+    public Map<String, Object> encode(ChargingStatusUpdate update) {
+        Map<String, Object> fields = toFieldMap(update);
+        Long sessionId = update.getSessionId();
+
+        SessionState state = states.computeIfAbsent(sessionId, id -> new SessionState());
+        boolean requested = keyframeRequests.remove(sessionId);
+        boolean keyframe = !deltaEnabled
+                || requested
+                || state.lastSent == null
+                || state.ticksSinceKeyframe >= keyframeIntervalTicks;
+
+        Map<String, Object> payload;
+        if (keyframe) {
+            payload = new LinkedHashMap<>(fields);
+            payload.put("type", TYPE_FULL);
+            state.ticksSinceKeyframe = 0;
+        } else {
+            payload = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                if (!ALWAYS_SENT_FIELDS.contains(field.getKey())
+                        && !Objects.equals(field.getValue(), state.lastSent.get(field.getKey()))) {
+                    payload.put(field.getKey(), field.getValue());
+                }
+            }
+            state.ticksSinceKeyframe++;
+            if (payload.isEmpty()) {
+                return null;
+            }
+            payload.put("sessionId", sessionId);
+            payload.put("updateTime", update.getUpdateTime());
+            payload.put("type", TYPE_DELTA);
+        }
+
+        state.lastSent = fields;
+        return payload;
+    }
+
+    /**
+     * Yêu cầu gửi snapshot đầy đủ ở lần push kế tiếp (khi có client mới subscribe)
+     */
+    public void requestKeyframe(Long sessionId) {
+        if (sessionId != null) {
+            keyframeRequests.add(sessionId);
+        }
+    }
+
+    /**
+     * Xóa trạng thái của phiên đã kết thúc
+     */
+    public void forget(Long sessionId) {
+        states.remove(sessionId);
+        keyframeRequests.remove(sessionId);
+    }
+
+    /**
+     * Chỉ giữ trạng thái của các phiên còn ACTIVE
+     */
+    public void retainOnly(Collection<Long> activeSessionIds) {
+        Set<Long> active = Set.copyOf(activeSessionIds);
+        states.keySet().retainAll(active);
+        keyframeRequests.retainAll(active);
+    }
+
+    private static Map<String, Object> toFieldMap(ChargingStatusUpdate update) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("sessionId", update.getSessionId());
+        fields.put("stateOfCharge", update.getStateOfCharge());
+        fields.put("energyConsumed", update.getEnergyConsumed());
+        fields.put("currentCost", update.getCurrentCost());
+        fields.put("timeRemaining", update.getTimeRemaining());
+        fields.put("status", update.getStatus());
+        fields.put("powerOutput", update.getPowerOutput());
+        fields.put("startTime", update.getStartTime());
+        fields.put("updateTime", update.getUpdateTime());
+        fields.put("stationName", update.getStationName());
+        fields.put("chargerName", update.getChargerName());
+        fields.put("userEmail", update.getUserEmail());
+        fields.put("alertMessage", update.getAlertMessage());
+        return fields;
+    }
+
+    /**
+     * Payload cuối cùng đã gửi của một phiên
+     */
+    private static final class SessionState {
+        Map<String, Object> lastSent;
+        int ticksSinceKeyframe;
+    }
+}
@@ -3,18 +3,32 @@ package uth.edu.vn.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import uth.edu.vn.dto.ChargingHistoryItem;
+import uth.edu.vn.dto.ChargingHistorySummary;
+import uth.edu.vn.dto.NearbyStation;
+import uth.edu.vn.dto.PaymentHistoryItem;
+import uth.edu.vn.dto.PaymentHistorySummary;
 import uth.edu.vn.entity.*;
 import uth.edu.vn.enums.*;
 import uth.edu.vn.exception.BadRequestException;
 import uth.edu.vn.exception.ResourceNotFoundException;
 import uth.edu.vn.repository.*;
+import uth.edu.vn.util.KeysetCursor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -32,6 +46,8 @@ public class EVDriverService {
 
     private static final Logger logger = LoggerFactory.getLogger(EVDriverService.class);
 
+    private static final DateTimeFormatter HISTORY_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     @Autowired
     private UserRepository userRepository;
 
@@ -41,6 +57,12 @@ public class EVDriverService {
     @Autowired
     private ChargerRepository chargerRepository;
 
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
     @Autowired
     private PhienSacRepository phienSacRepository;
 
@@ -50,12 +72,27 @@ public class EVDriverService {
     @Autowired
     private ThanhToanRepository thanhToanRepository;
 
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private BusinessMetrics businessMetrics;
+
+    @Autowired
+    private WalletService walletService;
+
     @Autowired
     private XeRepository xeRepository;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private StationSpatialIndex stationSpatialIndex;
+
     // ==================== 1. REGISTRATION & ACCOUNT MANAGEMENT
     // ====================
 
@@ -185,17 +222,15 @@ public class EVDriverService {
     // ====================
 
     /**
-     * Find nearby charging stations
-     * In production, should use spatial queries with actual distance calculation
+     * Find nearby charging stations within radiusKm, sorted by distance
+     * Served from the in-memory StationSpatialIndex (no database query)
      */
-    @Transactional(readOnly = true)
-    public List<TramSac> findNearbyStations(Double latitude, Double longitude, Double radiusKm) {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<NearbyStation> findNearbyStations(Double latitude, Double longitude, Double radiusKm) {
         try {
-            // Simple implementation: return all online stations
-            // TODO: Implement actual spatial distance calculation
-            List<TramSac> stations = tramSacRepository.findByStatus(StationStatus.ONLINE.name());
+            List<NearbyStation> stations = stationSpatialIndex.findWithinRadius(latitude, longitude, radiusKm);
 
-            logger.info("Found {} nearby charging stations", stations.size());
+            logger.debug("Found {} nearby charging stations", stations.size());
             return stations;
 
         } catch (Exception e) {
@@ -204,6 +239,23 @@ public class EVDriverService {
         }
     }
 
+    /**
+     * Find the k nearest charging stations within maxRadiusKm, sorted by distance
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<NearbyStation> findNearestStations(Double latitude, Double longitude, int k, Double maxRadiusKm) {
+        try {
+            List<NearbyStation> stations = stationSpatialIndex.findNearest(latitude, longitude, k, maxRadiusKm);
+
+            logger.debug("Found {} nearest charging stations (k={})", stations.size(), k);
+            return stations;
+
+        } catch (Exception e) {
+            logger.error("Error finding nearest stations", e);
+            return null;
+        }
+    }
+
     /**
      * Get available charging points at a station
      */
@@ -251,6 +303,7 @@ public class EVDriverService {
             // Reserve the charging point
             point.setStatus(PointStatus.RESERVED);
             chargerRepository.save(point);
+            chargerAvailabilityRegistry.onStatusChanged(point);
 
             logger.info("Booking created successfully for user: {}", user.getEmail());
             return booking;
@@ -285,6 +338,9 @@ public class EVDriverService {
             // Update charging point status
             point.setStatus(PointStatus.OCCUPIED);
             chargerRepository.save(point);
+            chargerAvailabilityRegistry.onStatusChanged(point);
+            activeSessionRegistry.register(chargingSession);
+            businessMetrics.sessionStarted(BusinessMetrics.SOURCE_DRIVER);
 
             logger.info("Charging session started with QR Code: {}", qrCode);
             return chargingSession;
@@ -301,14 +357,22 @@ public class EVDriverService {
      * Add funds to user's wallet
      */
     public boolean addFundsToWallet(Long userId, Double amount) {
-        try {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
+        return addFundsToWallet(userId, amount, null);
+    }
 
-            user.addFunds(BigDecimal.valueOf(amount));
-            userRepository.save(user);
+    /**
+     * Add funds to user's wallet, at most once per reference (VD: "idempotency:<key>" khi client gửi lại)
+     */
+    public boolean addFundsToWallet(Long userId, Double amount, String reference) {
+        try {
+            BigDecimal newBalance = reference != null
+                    ? walletService.creditOnce(userId, BigDecimal.valueOf(amount), WalletTransactionType.TOP_UP, reference)
+                    : walletService.credit(userId, BigDecimal.valueOf(amount), WalletTransactionType.TOP_UP, null);
+            if (newBalance == null) {
+                throw new ResourceNotFoundException("User not found with id: " + userId);
+            }
 
-            logger.info("Added ${} to wallet. New balance: ${}", amount, user.getWalletBalance());
+            logger.info("Added ${} to wallet. New balance: ${}", amount, newBalance);
             return true;
 
         } catch (Exception e) {
@@ -319,31 +383,40 @@ public class EVDriverService {
 
     /**
      * Process payment for charging session
+     *
+     * Khóa dòng phiên sạc rồi mới kiểm tra: phiên đã có thanh toán COMPLETED thì trả về thanh toán đó, không trừ
+     * tiền lần nữa (client gửi lại / request chạy lại sau khi giành khóa Idempotency-Key).
+     * Phiên không tồn tại / không hợp lệ ném ResourceNotFoundException / BadRequestException;
+     * lỗi khác rollback cả phần đã trừ ví và trả về null.
      */
     public ThanhToan processPayment(Long sessionId, PaymentMethod paymentMethod) {
         try {
-            PhienSac chargingSession = phienSacRepository.findById(sessionId)
+            PhienSac chargingSession = phienSacRepository.findByIdForUpdate(sessionId)
                     .orElseThrow(
                             () -> new ResourceNotFoundException("Charging session not found with id: " + sessionId));
 
+            List<ThanhToan> completed = thanhToanRepository.findBySessionIdAndStatus(sessionId, "COMPLETED");
+            if (!completed.isEmpty()) {
+                logger.info("Session {} already paid by payment {}", sessionId, completed.get(0).getId());
+                return completed.get(0);
+            }
+
             if (chargingSession.getTotalCost() == null) {
                 logger.warn("Cannot process payment - session {} has no total cost", sessionId);
-                return null;
+                throw new BadRequestException("Charging session has no total cost");
             }
 
             User user = chargingSession.getUser();
             Double amount = chargingSession.getTotalCost();
 
-            // Check wallet balance if using wallet payment
+            // Trừ ví bằng UPDATE có điều kiện (kiểm tra số dư và trừ trong cùng 1 câu lệnh)
             if (paymentMethod == PaymentMethod.WALLET) {
-                if (user.getWalletBalance().compareTo(BigDecimal.valueOf(amount)) < 0) {
+                BigDecimal newBalance = walletService.debit(user.getId(), BigDecimal.valueOf(amount),
+                        WalletTransactionType.PAYMENT, "session:" + sessionId);
+                if (newBalance == null) {
                     logger.warn("Insufficient wallet balance for user: {}", user.getId());
                     throw new BadRequestException("Insufficient wallet balance");
                 }
-
-                // Deduct from wallet
-                user.setWalletBalance(user.getWalletBalance().subtract(BigDecimal.valueOf(amount)));
-                userRepository.save(user);
             }
 
             // Create payment record
@@ -353,12 +426,18 @@ public class EVDriverService {
                     paymentMethod.name());
             payment.setStatus("COMPLETED");
             payment = thanhToanRepository.save(payment);
+            monthlySpendingService.recordPayment(chargingSession, payment);
+            invoiceService.enqueueAfterCommit(payment.getId());
+            businessMetrics.paymentCompleted(payment.getMethod(), payment.getAmount());
 
             logger.info("Payment processed successfully: ${}", amount);
             return payment;
 
+        } catch (ResourceNotFoundException | BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error processing payment for session: {}", sessionId, e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return null;
         }
     }
@@ -383,13 +462,130 @@ public class EVDriverService {
     }
 
     /**
-     * Get monthly charging cost for user
+     * Get one page of user's charging history (keyset on startTime, sessionId)
+     * Lấy thêm 1 dòng để biết còn trang sau hay không
+     */
+    @Transactional(readOnly = true)
+    public List<ChargingHistoryItem> getChargingHistoryPage(Long userId, KeysetCursor cursor, int size) {
+        try {
+            PageRequest page = PageRequest.of(0, size + 1);
+            if (cursor == null) {
+                return phienSacRepository.findHistoryPage(userId, page);
+            }
+            return phienSacRepository.findHistoryPageAfter(userId, cursor.getTime(), cursor.getId(), page);
+
+        } catch (Exception e) {
+            logger.error("Error getting charging history page for user: {}", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get totals over the user's whole charging history (không phụ thuộc trang đang tải)
+     */
+    @Transactional(readOnly = true)
+    public ChargingHistorySummary getChargingHistorySummary(Long userId) {
+        try {
+            return phienSacRepository.getHistorySummary(userId);
+
+        } catch (Exception e) {
+            logger.error("Error getting charging history summary for user: {}", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get one page of user's payment history (keyset on createdAt, paymentId), dùng chung cho
+     * GET /api/history/payments và GET /api/payment/history
+     *
+     * Trang và tổng cùng 1 transaction read-only. Trang đầu tính tổng 1 lần (total, totalPaid); running total
+     * của trang sau lấy từ cursor nên không SUM lại toàn bộ lịch sử mỗi trang. Trả về body response, null nếu lỗi.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPaymentHistory(Long userId, KeysetCursor cursor, int size) {
+        try {
+            // Lấy thêm 1 dòng để biết còn trang sau hay không; 1 query join thanh toán + phiên + charger + trạm
+            PageRequest page = PageRequest.of(0, size + 1);
+            List<PaymentHistoryItem> payments = cursor == null
+                    ? thanhToanRepository.findPaymentHistoryPage(userId, page)
+                    : thanhToanRepository.findPaymentHistoryPageAfter(userId, cursor.getTime(), cursor.getId(), page);
+
+            boolean hasMore = payments.size() > size;
+            if (hasMore) {
+                payments = payments.subList(0, size);
+            }
+
+            // Running total: tổng COMPLETED tới dòng đầu trang, trừ dần theo từng dòng
+            PaymentHistorySummary summary = null;
+            BigDecimal runningTotal;
+            if (cursor == null) {
+                summary = thanhToanRepository.getPaymentHistorySummary(userId);
+                runningTotal = summary.getTotalPaid();
+            } else if (cursor.getRunningTotal() != null) {
+                runningTotal = cursor.getRunningTotal();
+            } else {
+                // Cursor cũ chưa mang running total
+                runningTotal = thanhToanRepository.getTotalPaidByUserBefore(userId, cursor.getTime(), cursor.getId());
+            }
+
+            List<Map<String, Object>> paymentList = new ArrayList<>();
+            for (PaymentHistoryItem payment : payments) {
+                Map<String, Object> paymentData = new HashMap<>();
+                paymentData.put("paymentId", payment.getPaymentId());
+                paymentData.put("amount", payment.getAmount());
+                paymentData.put("paymentMethod", payment.getMethod());
+                paymentData.put("status", payment.getStatus());
+                paymentData.put("paymentTime", payment.getCreatedAt().format(HISTORY_DATE_FORMATTER));
+                paymentData.put("runningTotal", runningTotal);
+
+                // Session info
+                paymentData.put("sessionId", payment.getSessionId());
+                paymentData.put("energyConsumed", payment.getEnergyConsumed());
+
+                // Station info
+                paymentData.put("chargerName", payment.getChargerName());
+                paymentData.put("stationId", payment.getStationId());
+                paymentData.put("stationName", payment.getStationName());
+
+                paymentList.add(paymentData);
+
+                if ("COMPLETED".equals(payment.getStatus()) && payment.getAmount() != null) {
+                    runningTotal = runningTotal.subtract(payment.getAmount());
+                }
+            }
+
+            String nextCursor = null;
+            if (hasMore) {
+                PaymentHistoryItem last = payments.get(payments.size() - 1);
+                nextCursor = new KeysetCursor(last.getCreatedAt(), last.getPaymentId(), runningTotal).encode();
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("payments", paymentList);
+            response.put("count", paymentList.size());
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", nextCursor);
+            if (summary != null) {
+                response.put("total", summary.getTotalPayments());
+                response.put("totalPaid", summary.getTotalPaid());
+            }
+            return response;
+
+        } catch (Exception e) {
+            logger.error("Error getting payment history for user: {}", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get monthly charging cost for user (đọc 1 dòng chi_tieu_thang)
      */
     @Transactional(readOnly = true)
     public Double getMonthlyChargingCost(Long userId, int year, int month) {
         try {
-            Double totalCost = phienSacRepository.getMonthlyChargingCost(userId, month, year);
-            totalCost = totalCost != null ? totalCost : 0.0;
+            Double totalCost = monthlySpendingService.getMonth(userId, YearMonth.of(year, month))
+                    .getTotalAmount().doubleValue();
 
             logger.info("Monthly charging cost for {}/{}: ${}", month, year, totalCost);
             return totalCost;
@@ -0,0 +1,153 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import uth.edu.vn.enums.ExportFormat;
+import uth.edu.vn.util.ExportRowWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Export hóa đơn / thanh toán số lượng lớn (CSV hoặc JSON lines)
+ *
+ * Đọc bằng ResultSet forward-only, read-only với fetch size cố định và ghi từng dòng thẳng ra
+ * OutputStream của response, nên bộ nhớ không phụ thuộc số dòng (không qua entity / List).
+ * Tên cột (header CSV / key JSON) là alias trong [ ] để giữ đúng chữ hoa / thường trên mọi database.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final String INVOICE_SQL = "SELECT h.invoice_id AS [invoiceId], " +
+            "h.invoice_number AS [invoiceNumber], h.issue_date AS [issueDate], h.total_amount AS [totalAmount], " +
+            "h.payment_id AS [paymentId], " +
+            "t.session_id AS [sessionId], ps.user_id AS [userId], t.payment_method AS [paymentMethod], " +
+            "t.status AS [paymentStatus], h.description AS [description] " +
+            "FROM hoa_don h JOIN thanh_toan t ON t.id = h.payment_id " +
+            "LEFT JOIN phien_sac ps ON ps.session_id = t.session_id " +
+            "WHERE h.issue_date >= ? AND h.issue_date < ? ORDER BY h.issue_date, h.invoice_id";
+
+    private static final String PAYMENT_SQL = "SELECT t.id AS [paymentId], t.created_at AS [createdAt], " +
+            "t.session_id AS [sessionId], ps.user_id AS [userId], st.id AS [stationId], st.name AS [stationName], " +
+            "cp.point_id AS [chargerId], ps.energy_consumed AS [energyKwh], t.amount AS [amount], " +
+            "t.payment_method AS [paymentMethod], t.status AS [status] " +
+            "FROM thanh_toan t LEFT JOIN phien_sac ps ON ps.session_id = t.session_id " +
+            "LEFT JOIN charger cp ON cp.point_id = ps.point_id LEFT JOIN tram_sac st ON st.id = cp.station_id " +
+            "WHERE t.created_at >= ? AND t.created_at < ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder rowsExported = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Hóa đơn có issue_date trong [start, end)
+     *
+     * @return số dòng đã ghi
+     */
+    public long exportInvoices(LocalDateTime start, LocalDateTime end, ExportFormat format, OutputStream out) {
+        return stream("invoices", INVOICE_SQL, List.of(Timestamp.valueOf(start), Timestamp.valueOf(end)), format, out);
+    }
+
+    /**
+     * Thanh toán có created_at trong [start, end), kèm trạm / điểm sạc; status null = mọi trạng thái
+     *
+     * @return số dòng đã ghi
+     */
+    public long exportPayments(LocalDateTime start, LocalDateTime end, String status, ExportFormat format,
+            OutputStream out) {
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(start), Timestamp.valueOf(end)));
+        String sql = PAYMENT_SQL;
+        if (status != null) {
+            sql += " AND t.status = ?";
+            params.add(status);
+        }
+        return stream("payments", sql + " ORDER BY t.created_at, t.id", params, format, out);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("exports", exports.sum());
+        stats.put("rowsExported", rowsExported.sum());
+        stats.put("failed", failed.sum());
+        stats.put("fetchSize", fetchSize);
+        return stats;
+    }
+
+    // ==================== INTERNAL ====================
+
+    private long stream(String name, String sql, List<Object> params, ExportFormat format, OutputStream out) {
+        long startedAt = System.nanoTime();
+        try {
+            Long rows = jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, rs -> {
+                try {
+                    return writeAll(rs, format, out);
+                } catch (IOException e) {
+                    // Client ngắt kết nối giữa chừng
+                    throw new UncheckedIOException(e);
+                }
+            });
+            long count = rows != null ? rows : 0;
+            exports.increment();
+            rowsExported.add(count);
+            logger.info("Exported {} {} rows as {} in {} ms", count, name, format,
+                    (System.nanoTime() - startedAt) / 1_000_000);
+            return count;
+        } catch (RuntimeException e) {
+            failed.increment();
+            throw e;
+        }
+    }
+
+    private static long writeAll(ResultSet rs, ExportFormat format, OutputStream out)
+            throws java.sql.SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        String[] columns = new String[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = meta.getColumnLabel(i + 1);
+        }
+
+        // 1 mảng giá trị dùng lại cho mọi dòng
+        Object[] values = new Object[columns.length];
+        try (ExportRowWriter writer = ExportRowWriter.create(format, out)) {
+            writer.start(columns);
+            while (rs.next()) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rs.getObject(i + 1);
+                }
+                writer.writeRow(values);
+            }
+            return writer.getRows();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package uth.edu.vn.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key cho các endpoint thanh toán / nạp tiền mà client mobile hay gửi lại khi timeout
+ *
+ * Lần đầu: chèn dòng IN_PROGRESS vào idempotency_key (unique principal + key) để giữ khóa, chạy request,
+ * rồi lưu status code + body. Lần gửi lại trả về response đã lưu, đọc từ cache LRU trong bộ nhớ
+ * hoặc từ bảng (sau restart / trên instance khác) mà không chạy lại luồng thanh toán.
+ * Response 5xx không được lưu: khóa được xóa để client thử lại.
+ * Dòng IN_PROGRESS giữ khóa theo lease (in-progress-lease-seconds): instance chết giữa chừng thì sau khi
+ * hết lease lần gửi lại cùng request sẽ giành lại khóa và chạy lại, thay vì bị 409 tới khi hết TTL.
+ * Vì vậy action có thể chạy lại dù lần trước đã commit (không lưu được kết quả, request chạy quá lease):
+ * action phải tự nhận ra kết quả đã có theo khóa nghiệp vụ (thanh toán: phiên đã có thanh toán COMPLETED,
+ * nạp tiền: sổ cái đã có reference "idempotency:<key>") và trả về kết quả đó thay vì trừ / cộng tiền lần nữa.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String TABLE = "idempotency_key";
+
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private static final TypeReference<Map<String, Object>> BODY_TYPE = new TypeReference<>() {};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.purge-chunk-size:5000}")
+    private int purgeChunkSize;
+
+    // Phải lớn hơn thời gian xử lý tối đa của 1 request, nếu không request đang chạy có thể bị giành khóa
+    @Value("${idempotency.in-progress-lease-seconds:120}")
+    private long inProgressLeaseSeconds;
+
+    private final Map<String, StoredResponse> cache;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayedFromCache = new LongAdder();
+    private final LongAdder replayedFromTable = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder abandonedTakenOver = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    public IdempotencyService(@Value("${idempotency.cache-size:10000}") int cacheSize) {
+        // LRU có giới hạn, truy cập qua synchronized map
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Chạy action 1 lần cho mỗi (user, key); không có key thì chạy bình thường
+     *
+     * @param endpoint tên logic của luồng (các alias cùng luồng dùng chung 1 tên)
+     * @param action phải idempotent theo khóa nghiệp vụ (xem mô tả class), trả 5xx khi lỗi phía server
+     */
+    public ResponseEntity<Map<String, Object>> execute(Authentication authentication, String key, String endpoint,
+            Object request, Supplier<ResponseEntity<Map<String, Object>>> action) {
+        if (key == null || authentication == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return error(HttpStatus.BAD_REQUEST, "Idempotency-Key không hợp lệ");
+        }
+
+        String principal = authentication.getName();
+        String cacheKey = principal + "\n" + key;
+        String requestHash = hash(request);
+
+        StoredResponse stored = cache.get(cacheKey);
+        if (stored != null && !stored.isExpired()) {
+            replayedFromCache.increment();
+            return replay(stored, endpoint, requestHash);
+        }
+
+        // Giữ khóa bằng unique constraint; trùng nghĩa là request trước đã chạy hoặc đang chạy
+        try {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (principal, idem_key, endpoint, request_hash, status, " +
+                    "created_at) VALUES (?, ?, ?, ?, ?, ?)", principal, key, endpoint, requestHash, IN_PROGRESS,
+                    Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            if (!takeOverAbandoned(principal, key, endpoint, requestHash)) {
+                return replayFromTable(cacheKey, principal, key, endpoint, requestHash);
+            }
+        }
+
+        executed.increment();
+        ResponseEntity<Map<String, Object>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(principal, key);
+            throw e;
+        }
+
+        if (response.getStatusCode().is5xxServerError()) {
+            release(principal, key);
+            return response;
+        }
+        try {
+            StoredResponse result = new StoredResponse(endpoint, requestHash, response.getStatusCode().value(),
+                    response.getBody(), LocalDateTime.now());
+            jdbcTemplate.update("UPDATE " + TABLE + " SET status = ?, response_status = ?, response_body = ?, " +
+                    "completed_at = ? WHERE principal = ? AND idem_key = ?", COMPLETED, result.status,
+                    objectMapper.writeValueAsString(result.body), Timestamp.valueOf(result.completedAt),
+                    principal, key);
+            cache.put(cacheKey, result);
+        } catch (Exception e) {
+            // Request đã chạy xong, chỉ không lưu được kết quả: dòng vẫn IN_PROGRESS, lần gửi lại bị 409 tới khi
+            // hết lease rồi giành khóa và chạy lại action, action trả về kết quả đã có thay vì chạy lần 2
+            logger.error("Error storing idempotent response for key {} ({})", key, endpoint, e);
+        }
+        return response;
+    }
+
+    /**
+     * Xóa khóa đã hết hạn theo từng khúc
+     */
+    @Scheduled(cron = "${idempotency.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        try {
+            Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusHours(ttlHours));
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update("DELETE TOP (?) FROM " + TABLE + " WHERE created_at < ?",
+                        purgeChunkSize, cutoff);
+                purged.add(deleted);
+            } while (deleted >= purgeChunkSize);
+        } catch (Exception e) {
+            logger.error("Error purging expired idempotency keys", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ttlHours", ttlHours);
+        stats.put("cachedResponses", cache.size());
+        stats.put("executed", executed.sum());
+        stats.put("replayedFromCache", replayedFromCache.sum());
+        stats.put("replayedFromTable", replayedFromTable.sum());
+        stats.put("conflicts", conflicts.sum());
+        stats.put("abandonedTakenOver", abandonedTakenOver.sum());
+        stats.put("purged", purged.sum());
+        return stats;
+    }
+
+    // ==================== INTERNAL ====================
+
+    /**
+     * Giành lại khóa IN_PROGRESS đã quá lease (request trước bị bỏ dở do instance chết / restart)
+     * Chỉ áp dụng cho đúng request cũ (cùng endpoint + hash); UPDATE có điều kiện nên chỉ 1 lần gửi lại thắng.
+     */
+    private boolean takeOverAbandoned(String principal, String key, String endpoint, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = jdbcTemplate.update("UPDATE " + TABLE + " SET created_at = ? WHERE principal = ? AND idem_key = ? " +
+                "AND status = ? AND endpoint = ? AND request_hash = ? AND created_at < ?",
+                Timestamp.valueOf(now), principal, key, IN_PROGRESS, endpoint, requestHash,
+                Timestamp.valueOf(now.minusSeconds(inProgressLeaseSeconds)));
+        if (updated == 0) {
+            return false;
+        }
+        logger.warn("Taking over abandoned idempotency key {} ({}) after {} s lease", key, endpoint, inProgressLeaseSeconds);
+        abandonedTakenOver.increment();
+        return true;
+    }
+
+    private ResponseEntity<Map<String, Object>> replayFromTable(String cacheKey, String principal, String key,
+            String endpoint, String requestHash) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT endpoint, request_hash, status, " +
+                "response_status, response_body, completed_at FROM " + TABLE +
+                " WHERE principal = ? AND idem_key = ?", principal, key);
+        if (rows.isEmpty()) {
+            // Dòng vừa bị xóa (request trước lỗi 5xx hoặc hết hạn): coi như đang xử lý, client gửi lại sau
+            conflicts.increment();
+            return error(HttpStatus.CONFLICT, "Yêu cầu với Idempotency-Key này đang được xử lý");
+        }
+        Map<String, Object> row = rows.get(0);
+        if (!endpoint.equals(row.get("endpoint")) || !requestHash.equals(row.get("request_hash"))) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key đã được dùng cho yêu cầu khác");
+        }
+        if (!COMPLETED.equals(row.get("status"))) {
+            conflicts.increment();
+            return error(HttpStatus.CONFLICT, "Yêu cầu với Idempotency-Key này đang được xử lý");
+        }
+
+        try {
+            StoredResponse stored = new StoredResponse(endpoint, requestHash,
+                    ((Number) row.get("response_status")).intValue(),
+                    objectMapper.readValue((String) row.get("response_body"), BODY_TYPE),
+                    ((Timestamp) row.get("completed_at")).toLocalDateTime());
+            cache.put(cacheKey, stored);
+            replayedFromTable.increment();
+            return replay(stored, endpoint, requestHash);
+        } catch (Exception e) {
+            logger.error("Error reading stored idempotent response for key {}", key, e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Không đọc được kết quả đã lưu của yêu cầu");
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> replay(StoredResponse stored, String endpoint, String requestHash) {
+        if (!stored.endpoint.equals(endpoint) || !stored.requestHash.equals(requestHash)) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key đã được dùng cho yêu cầu khác");
+        }
+        return ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true").body(stored.body);
+    }
+
+    private void release(String principal, String key) {
+        try {
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE principal = ? AND idem_key = ? AND status = ?",
+                    principal, key, IN_PROGRESS);
+        } catch (Exception e) {
+            logger.error("Error releasing idempotency key {}", key, e);
+        }
+    }
+
+    private String hash(Object request) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(request);
+        } catch (Exception e) {
+            // Không serialize được thì so theo toString
+            bytes = String.valueOf(request).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+
+    private final class StoredResponse {
+        final String endpoint;
+        final String requestHash;
+        final int status;
+        final Map<String, Object> body;
+        final LocalDateTime completedAt;
+
+        StoredResponse(String endpoint, String requestHash, int status, Map<String, Object> body,
+                LocalDateTime completedAt) {
+            this.endpoint = endpoint;
+            this.requestHash = requestHash;
+            this.status = status;
+            this.body = body;
+            this.completedAt = completedAt;
+        }
+
+        boolean isExpired() {
+            return completedAt.isBefore(LocalDateTime.now().minusHours(ttlHours));
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.HoaDon;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.repository.HoaDonRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.ThanhToanRepository;
+import uth.edu.vn.util.TransactionCallbacks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tạo hóa đơn (HoaDon) cho thanh toán COMPLETED, ngoài luồng request
+ *
+ * Luồng thanh toán chỉ đưa paymentId vào hàng đợi sau khi commit rồi trả về ngay. Worker gom theo batch,
+ * lấy 1 dải số hóa đơn từ SEQUENCE invoice_number_seq (sp_sequence_get_range, không khóa bảng hoa_don,
+ * không trùng giữa các worker / instance), render nội dung và lưu cả batch trong 1 transaction.
+ * Payment bị rớt khỏi hàng đợi (đầy, restart) được job quét bù tìm lại theo NOT EXISTS hóa đơn.
+ * H2 (profile test) không có sp_sequence_get_range: lấy từng số bằng NEXT VALUE FOR, vẫn không trùng.
+ */
+@Service
+public class InvoiceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceService.class);
+
+    private static final String SEQUENCE = "dbo.invoice_number_seq";
+
+    private static final String CREATE_SEQUENCE_SQL = "IF OBJECT_ID(N'" + SEQUENCE + "', N'SO') IS NULL " +
+            "CREATE SEQUENCE " + SEQUENCE + " AS BIGINT START WITH 1 INCREMENT BY 1 CACHE 1000";
+
+    private static final String RANGE_SQL = "SET NOCOUNT ON; DECLARE @first SQL_VARIANT; " +
+            "EXEC sys.sp_sequence_get_range @sequence_name = N'" + SEQUENCE + "', @range_size = ?, " +
+            "@range_first_value = @first OUTPUT; SELECT CAST(@first AS BIGINT)";
+
+    private static final String H2_SEQUENCE = "invoice_number_seq";
+
+    private static final String H2_CREATE_SEQUENCE_SQL = "CREATE SEQUENCE IF NOT EXISTS " + H2_SEQUENCE +
+            " AS BIGINT START WITH 1 INCREMENT BY 1 CACHE 1000";
+
+    private static final String H2_RANGE_SQL = "SELECT NEXT VALUE FOR " + H2_SEQUENCE + " FROM SYSTEM_RANGE(1, ?)";
+
+    private static final DateTimeFormatter NUMBER_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter RENDER_TIME = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final int MAX_DESCRIPTION = 2000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HoaDonRepository hoaDonRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Value("${invoice.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${invoice.batch-size:100}")
+    private int batchSize;
+
+    @Value("${invoice.max-latency-ms:500}")
+    private long maxLatencyMs;
+
+    @Value("${invoice.workers:2}")
+    private int workerThreads;
+
+    @Value("${invoice.sweep-limit:1000}")
+    private int sweepLimit;
+
+    private BlockingQueue<Long> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    // paymentId đang nằm trong hàng đợi / đang xử lý, tránh 2 worker render cùng 1 payment
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile Boolean sqlServer;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        try {
+            jdbcTemplate.execute(isSqlServer() ? CREATE_SEQUENCE_SQL : H2_CREATE_SEQUENCE_SQL);
+        } catch (Exception e) {
+            logger.error("Error creating invoice number sequence {}", SEQUENCE, e);
+        }
+
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        for (int i = 0; i < Math.max(1, workerThreads); i++) {
+            Thread worker = new Thread(this::workLoop, "invoice-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Invoice pipeline started: queue {}, batch {}, {} workers", queueCapacity, batchSize, workers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Invoice pipeline stopped, {} payments left in queue", queue.size());
+    }
+
+    /**
+     * Đưa payment vào hàng đợi hóa đơn sau khi transaction hiện tại commit
+     */
+    public void enqueueAfterCommit(Long paymentId) {
+        if (paymentId != null) {
+            TransactionCallbacks.afterCommit(() -> enqueue(paymentId));
+        }
+    }
+
+    /**
+     * Đưa payment vào hàng đợi; false nếu đã có trong hàng đợi hoặc hàng đợi đầy (job quét bù sẽ xử lý)
+     */
+    public boolean enqueue(Long paymentId) {
+        if (!pending.add(paymentId)) {
+            return false;
+        }
+        if (!queue.offer(paymentId)) {
+            pending.remove(paymentId);
+            dropped.increment();
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    /**
+     * Quét bù các thanh toán COMPLETED chưa có hóa đơn (cả lúc khởi động: hàng đợi không sống qua restart)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${invoice.sweep-cron:0 */10 * * * *}")
+    public void sweep() {
+        try {
+            int count = 0;
+            for (Long paymentId : thanhToanRepository.findUninvoicedPaymentIds(PageRequest.of(0, sweepLimit))) {
+                if (enqueue(paymentId)) {
+                    count++;
+                }
+            }
+            swept.add(count);
+            if (count > 0) {
+                logger.info("Invoice sweep enqueued {} payments without invoice", count);
+            }
+        } catch (Exception e) {
+            logger.error("Error sweeping payments without invoice", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enqueued", enqueued.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("generated", generated.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("swept", swept.sum());
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        return stats;
+    }
+
+    // ==================== WORKER ====================
+
+    private void workLoop() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Long first = queue.poll(maxLatencyMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - batch.size());
+
+                try {
+                    processBatch(batch);
+                } catch (Exception e) {
+                    // 1 payment lỗi không được chặn cả batch: thử lại từng cái
+                    logger.warn("Invoice batch of {} failed, retrying one by one", batch.size(), e);
+                    for (Long paymentId : batch) {
+                        try {
+                            processBatch(List.of(paymentId));
+                        } catch (Exception single) {
+                            logger.error("Error generating invoice for payment {}", paymentId, single);
+                            failed.increment();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.forEach(pending::remove);
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<Long> paymentIds) {
+        int created = transactionTemplate.execute(status -> {
+            Set<Long> invoiced = new HashSet<>(hoaDonRepository.findInvoicedPaymentIds(paymentIds));
+            List<ThanhToan> payments = new ArrayList<>();
+            for (ThanhToan payment : thanhToanRepository.findAllById(paymentIds)) {
+                if (!invoiced.contains(payment.getId()) && "COMPLETED".equals(payment.getStatus())) {
+                    payments.add(payment);
+                }
+            }
+            skipped.add(paymentIds.size() - payments.size());
+            if (payments.isEmpty()) {
+                return 0;
+            }
+
+            Set<Long> sessionIds = new HashSet<>();
+            payments.forEach(payment -> sessionIds.add(payment.getSessionId()));
+            Map<Long, PhienSac> sessions = new HashMap<>();
+            for (PhienSac session : phienSacRepository.findWithStationBySessionIds(sessionIds)) {
+                sessions.put(session.getSessionId(), session);
+            }
+
+            List<Long> numbers = allocateNumbers(payments.size());
+            LocalDateTime issuedAt = LocalDateTime.now();
+            List<HoaDon> invoices = new ArrayList<>(payments.size());
+            for (int i = 0; i < payments.size(); i++) {
+                ThanhToan payment = payments.get(i);
+                HoaDon invoice = new HoaDon(payment, formatNumber(issuedAt, numbers.get(i)), payment.getAmount());
+                invoice.setIssueDate(issuedAt);
+                invoice.setDescription(render(payment, sessions.get(payment.getSessionId())));
+                invoices.add(invoice);
+            }
+            hoaDonRepository.saveAll(invoices);
+            return invoices.size();
+        });
+        generated.add(created);
+        batches.increment();
+    }
+
+    /**
+     * Lấy count số từ SEQUENCE trong 1 lần gọi (SQL Server: 1 dải liên tiếp)
+     * SEQUENCE không tham gia transaction nên batch rollback chỉ để lại khoảng trống, không bao giờ trùng số
+     */
+    private List<Long> allocateNumbers(int count) {
+        if (!isSqlServer()) {
+            return jdbcTemplate.queryForList(H2_RANGE_SQL, Long.class, count);
+        }
+        Long first = jdbcTemplate.queryForObject(RANGE_SQL, Long.class, count);
+        if (first == null) {
+            throw new IllegalStateException("Cannot allocate invoice numbers from " + SEQUENCE);
+        }
+        List<Long> numbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(first + i);
+        }
+        return numbers;
+    }
+
+    private boolean isSqlServer() {
+        Boolean detected = sqlServer;
+        if (detected == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            detected = product != null && product.toLowerCase().contains("sql server");
+            sqlServer = detected;
+        }
+        return detected;
+    }
+
+    private static String formatNumber(LocalDateTime issuedAt, long number) {
+        return String.format("INV-%s-%08d", issuedAt.format(NUMBER_MONTH), number);
+    }
+
+    private static String render(ThanhToan payment, PhienSac session) {
+        StringBuilder text = new StringBuilder("Hóa đơn sạc xe điện");
+        if (session != null) {
+            Charger point = session.getChargingPoint();
+            TramSac station = point != null ? point.getChargingStation() : null;
+            if (station != null) {
+                text.append("\nTrạm: ").append(station.getName());
+                if (station.getAddress() != null) {
+                    text.append(" - ").append(station.getAddress());
+                }
+            }
+            if (point != null) {
+                text.append("\nĐiểm sạc: ").append(point.getPointName());
+                if (point.getConnectorType() != null) {
+                    text.append(" (").append(point.getConnectorType());
+                    if (point.getPowerCapacity() != null) {
+                        text.append(", ").append(point.getPowerCapacity()).append(" kW");
+                    }
+                    text.append(')');
+                }
+            }
+            text.append("\nPhiên sạc #").append(session.getSessionId());
+            if (session.getStartTime() != null) {
+                text.append(": ").append(session.getStartTime().format(RENDER_TIME));
+                if (session.getEndTime() != null) {
+                    text.append(" - ").append(session.getEndTime().format(RENDER_TIME));
+                }
+            }
+            if (session.getEnergyConsumed() != null) {
+                text.append(String.format("\nĐiện năng: %.2f kWh", session.getEnergyConsumed()));
+                if (point != null && point.getPricePerKwh() != null) {
+                    text.append(String.format(" x %,.0f đ/kWh", point.getPricePerKwh()));
+                }
+            }
+        }
+        text.append("\nThành tiền: ").append(String.format("%,.0f đ", payment.getAmount()));
+        if (payment.getMethod() != null) {
+            text.append("\nPhương thức thanh toán: ").append(payment.getMethod());
+        }
+        return text.length() > MAX_DESCRIPTION ? text.substring(0, MAX_DESCRIPTION) : text.toString();
+    }
+}
@@ -0,0 +1,245 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.SpendingSummary;
+import uth.edu.vn.entity.ChiTieuThang;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.repository.ChiTieuThangRepository;
+import uth.edu.vn.repository.ThanhToanRepository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Bảng chi tiêu theo tháng của từng user (chi_tieu_thang)
+ *
+ * Mỗi thanh toán COMPLETED được cộng vào dòng (user, tháng) bằng MERGE trong cùng transaction với
+ * việc lưu ThanhToan, nên chi phí tháng / tổng chi tiêu chỉ đọc 1 vài dòng theo unique (user_id, month_start)
+ * thay vì SUM phien_sac với MONTH() / YEAR() không dùng được index.
+ * Tháng tính theo thời điểm thanh toán (thanh_toan.created_at), không theo giờ bắt đầu phiên sạc: phiên bắt đầu
+ * cuối tháng và thanh toán sang tháng sau được tính vào tháng sau.
+ */
+@Service
+public class MonthlySpendingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlySpendingService.class);
+
+    private static final String TABLE = "chi_tieu_thang";
+
+    private static final String MERGE_SQL = "MERGE INTO " + TABLE + " WITH (HOLDLOCK) AS c " +
+            "USING (VALUES (?, ?, ?, ?)) AS s (user_id, month_start, total_amount, energy_kwh) " +
+            "ON c.user_id = s.user_id AND c.month_start = s.month_start " +
+            "WHEN MATCHED THEN UPDATE SET c.total_amount = c.total_amount + s.total_amount, " +
+            "c.payment_count = c.payment_count + 1, c.energy_kwh = c.energy_kwh + s.energy_kwh, " +
+            "c.updated_at = SYSDATETIME() " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, month_start, total_amount, payment_count, energy_kwh, updated_at) " +
+            "VALUES (s.user_id, s.month_start, s.total_amount, 1, s.energy_kwh, SYSDATETIME());";
+
+    // H2 (profile test): không có WITH (HOLDLOCK) / SYSDATETIME(), MERGE của H2 đã khóa dòng khớp
+    private static final String H2_MERGE_SQL = "MERGE INTO " + TABLE + " AS c " +
+            "USING (VALUES (?, ?, ?, ?)) AS s (user_id, month_start, total_amount, energy_kwh) " +
+            "ON c.user_id = s.user_id AND c.month_start = s.month_start " +
+            "WHEN MATCHED THEN UPDATE SET c.total_amount = c.total_amount + s.total_amount, " +
+            "c.payment_count = c.payment_count + 1, c.energy_kwh = c.energy_kwh + s.energy_kwh, " +
+            "c.updated_at = LOCALTIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, month_start, total_amount, payment_count, energy_kwh, updated_at) " +
+            "VALUES (s.user_id, s.month_start, s.total_amount, 1, s.energy_kwh, LOCALTIMESTAMP)";
+
+    // Tháng theo thời điểm thanh toán (created_at), cùng mốc với recordPayment; YEAR / MONTH chạy được cả trên H2
+    private static final String REBUILD_SELECT = "SELECT ps.user_id, YEAR(t.created_at), MONTH(t.created_at), " +
+            "SUM(t.amount), COUNT(*), COALESCE(SUM(ps.energy_consumed), 0) " +
+            "FROM thanh_toan t JOIN phien_sac ps ON ps.session_id = t.session_id " +
+            "WHERE t.status = 'COMPLETED' GROUP BY ps.user_id, YEAR(t.created_at), MONTH(t.created_at)";
+
+    private static final String REBUILD_INSERT = "INSERT INTO " + TABLE +
+            " (user_id, month_start, total_amount, payment_count, energy_kwh, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ChiTieuThangRepository chiTieuThangRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    private volatile Boolean sqlServer;
+
+    /**
+     * Cộng thanh toán COMPLETED vào tháng của nó
+     * Bắt buộc chạy trong transaction lưu ThanhToan: lỗi ở đây sẽ rollback cả thanh toán
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPayment(PhienSac session, ThanhToan payment) {
+        if (!"COMPLETED".equals(payment.getStatus()) || payment.getAmount() == null) {
+            return;
+        }
+        LocalDateTime paidAt = payment.getCreatedAt() != null ? payment.getCreatedAt() : LocalDateTime.now();
+        double energy = session.getEnergyConsumed() != null ? session.getEnergyConsumed() : 0.0;
+        jdbcTemplate.update(isSqlServer() ? MERGE_SQL : H2_MERGE_SQL, session.getUser().getId(),
+                Date.valueOf(paidAt.toLocalDate().withDayOfMonth(1)), payment.getAmount(), energy);
+    }
+
+    /**
+     * Chi tiêu của user trong 1 tháng (1 lần seek theo unique key)
+     */
+    @Transactional(readOnly = true)
+    public SpendingSummary getMonth(Long userId, YearMonth month) {
+        return chiTieuThangRepository.findByUserIdAndMonthStart(userId, month.atDay(1))
+                .map(MonthlySpendingService::toSummary)
+                .orElseGet(SpendingSummary::empty);
+    }
+
+    /**
+     * Chi tiêu của user trong [start, end)
+     * Các tháng trọn vẹn đọc từ chi_tieu_thang, chỉ phần lẻ đầu / cuối mới truy vấn thanh_toan
+     */
+    @Transactional(readOnly = true)
+    public SpendingSummary getRange(Long userId, LocalDateTime start, LocalDateTime end) {
+        LocalDate firstFullMonth = start.equals(start.toLocalDate().withDayOfMonth(1).atStartOfDay())
+                ? start.toLocalDate()
+                : start.toLocalDate().withDayOfMonth(1).plusMonths(1);
+        LocalDate lastFullMonthEnd = end.toLocalDate().withDayOfMonth(1);
+
+        if (!firstFullMonth.isBefore(lastFullMonthEnd)) {
+            return paidBetween(userId, start, end);
+        }
+
+        SpendingSummary summary = SpendingSummary.empty();
+        for (ChiTieuThang month : chiTieuThangRepository.findMonths(userId, firstFullMonth, lastFullMonthEnd)) {
+            summary = summary.plus(toSummary(month));
+        }
+        if (start.isBefore(firstFullMonth.atStartOfDay())) {
+            summary = summary.plus(paidBetween(userId, start, firstFullMonth.atStartOfDay()));
+        }
+        if (end.isAfter(lastFullMonthEnd.atStartOfDay())) {
+            summary = summary.plus(paidBetween(userId, lastFullMonthEnd.atStartOfDay(), end));
+        }
+        return summary;
+    }
+
+    /**
+     * Tổng chi tiêu từ trước tới nay (số dòng = số tháng có thanh toán)
+     */
+    @Transactional(readOnly = true)
+    public SpendingSummary getLifetime(Long userId) {
+        return toSummary(chiTieuThangRepository.getLifetimeTotals(userId));
+    }
+
+    /**
+     * Tính lại toàn bộ bảng từ thanh_toan (dữ liệu có trước khi có bảng, hoặc sau khi sửa tay thanh toán)
+     *
+     * Khóa cả bảng (TABLOCKX, HOLDLOCK) trước khi đọc thanh_toan: MERGE của thanh toán đang chạy phải chờ
+     * rebuild commit rồi mới cộng vào, nên không bị DELETE xóa mất hay bị đếm 2 lần. Thanh toán đã insert
+     * nhưng đang chờ khóa có thể deadlock với rebuild; rebuild đặt DEADLOCK_PRIORITY LOW để luôn là bên
+     * bị hủy (thanh toán không bao giờ bị rollback) và chạy lại tối đa REBUILD_ATTEMPTS lần.
+     */
+    public int rebuild() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Integer rows = transactionTemplate.execute(status -> rebuildLocked());
+                logger.info("Rebuilt {} monthly spending rows", rows);
+                return rows != null ? rows : 0;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= REBUILD_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("Monthly spending rebuild lost a lock conflict, retrying ({}/{})", attempt, REBUILD_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * Lần đầu chạy với bảng rỗng: dựng từ các thanh toán đã có
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (chiTieuThangRepository.count() == 0 && thanhToanRepository.count() > 0) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            logger.error("Error backfilling monthly spending", e);
+        }
+    }
+
+    // ==================== INTERNAL ====================
+
+    private int rebuildLocked() {
+        boolean sqlServer = isSqlServer();
+        if (sqlServer) {
+            jdbcTemplate.execute("SET DEADLOCK_PRIORITY LOW");
+        }
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE + " WITH (TABLOCKX, HOLDLOCK)", Integer.class);
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> months = jdbcTemplate.query(REBUILD_SELECT, (rs, rowNum) -> new Object[] {
+                    rs.getLong(1),
+                    Date.valueOf(LocalDate.of(rs.getInt(2), rs.getInt(3), 1)),
+                    rs.getBigDecimal(4),
+                    rs.getInt(5),
+                    rs.getDouble(6),
+                    now
+            });
+            jdbcTemplate.update("DELETE FROM " + TABLE);
+            jdbcTemplate.batchUpdate(REBUILD_INSERT, months);
+            return months.size();
+        } finally {
+            if (sqlServer) {
+                // Thiết lập theo connection: trả lại mức mặc định trước khi connection về pool
+                jdbcTemplate.execute("SET DEADLOCK_PRIORITY NORMAL");
+            }
+        }
+    }
+
+    private boolean isSqlServer() {
+        Boolean detected = sqlServer;
+        if (detected == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            detected = product != null && product.toLowerCase().contains("sql server");
+            sqlServer = detected;
+        }
+        return detected;
+    }
+
+    private SpendingSummary paidBetween(Long userId, LocalDateTime start, LocalDateTime end) {
+        return toSummary(thanhToanRepository.getPaidSummaryBetween(userId, start, end));
+    }
+
+    private static SpendingSummary toSummary(ChiTieuThang month) {
+        return new SpendingSummary(month.getTotalAmount(), month.getPaymentCount(), month.getEnergyKwh());
+    }
+
+    private static SpendingSummary toSummary(List<Object[]> rows) {
+        Object[] row = rows.isEmpty() ? null : rows.get(0);
+        if (row == null || row[0] == null) {
+            return SpendingSummary.empty();
+        }
+        BigDecimal total = row[0] instanceof BigDecimal decimal ? decimal : new BigDecimal(row[0].toString());
+        return new SpendingSummary(total, ((Number) row[1]).longValue(), ((Number) row[2]).doubleValue());
+    }
+}
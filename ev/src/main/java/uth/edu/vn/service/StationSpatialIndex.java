@@ -0,0 +1,231 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uth.edu.vn.dto.NearbyStation;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.enums.StationStatus;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index trong bộ nhớ cho tọa độ các trạm sạc ONLINE
+ *
+ * Chia bản đồ thành lưới ô vuông cố định (mặc định 0.1° ~ 11km).
+ * Tìm theo bán kính chỉ quét các ô nằm trong bounding box, sau đó lọc bằng Haversine.
+ * Tìm k trạm gần nhất mở rộng bán kính theo cấp số nhân cho tới khi đủ k kết quả.
+ *
+ * Index được nạp lúc khởi động và được AdminService cập nhật khi tạo trạm / đổi trạng thái.
+ */
+@Component
+public class StationSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StationSpatialIndex.class);
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Value("${station.index.cell-size-degrees:0.1}")
+    private double cellSizeDegrees;
+
+    private final Map<Long, StationEntry> stationsById = new ConcurrentHashMap<>();
+
+    // cellKey -> (stationId -> entry)
+    private final Map<Long, Map<Long, StationEntry>> cells = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void loadFromDatabase() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Error loading stations into spatial index", e);
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ index từ database
+     */
+    public synchronized void reload() {
+        List<TramSac> stations = tramSacRepository.findByStatus(StationStatus.ONLINE.name());
+
+        stationsById.clear();
+        cells.clear();
+        for (TramSac station : stations) {
+            if (isIndexable(station)) {
+                putInternal(new StationEntry(station));
+            }
+        }
+
+        logger.info("Spatial index loaded {} online stations", stationsById.size());
+    }
+
+    /**
+     * Thêm hoặc cập nhật trạm; trạm không ONLINE hoặc thiếu tọa độ sẽ bị loại khỏi index
+     */
+    public synchronized void upsert(TramSac station) {
+        if (station == null || station.getId() == null) {
+            return;
+        }
+        removeInternal(station.getId());
+        if (isIndexable(station)) {
+            putInternal(new StationEntry(station));
+        }
+    }
+
+    /**
+     * Xóa trạm khỏi index
+     */
+    public synchronized void remove(Long stationId) {
+        if (stationId != null) {
+            removeInternal(stationId);
+        }
+    }
+
+    public int size() {
+        return stationsById.size();
+    }
+
+    /**
+     * Tìm tất cả trạm trong bán kính radiusKm, sắp xếp theo khoảng cách tăng dần
+     */
+    public List<NearbyStation> findWithinRadius(double latitude, double longitude, double radiusKm) {
+        List<NearbyStation> results = new ArrayList<>();
+        if (radiusKm <= 0 || stationsById.isEmpty()) {
+            return results;
+        }
+
+        double latSpan = GeoUtils.latitudeSpanDegrees(radiusKm);
+        double lonSpan = GeoUtils.longitudeSpanDegrees(latitude, radiusKm);
+
+        int minLatIdx = latIndex(Math.max(-90.0, latitude - latSpan));
+        int maxLatIdx = latIndex(Math.min(90.0, latitude + latSpan));
+        int minLonIdx = lonIndex(Math.max(-180.0, longitude - lonSpan));
+        int maxLonIdx = lonIndex(Math.min(180.0, longitude + lonSpan));
+
+        long cellsInBox = (long) (maxLatIdx - minLatIdx + 1) * (maxLonIdx - minLonIdx + 1);
+
+        if (cellsInBox > cells.size()) {
+            // Bán kính lớn: duyệt các ô đang có dữ liệu thay vì toàn bộ bounding box
+            for (Map.Entry<Long, Map<Long, StationEntry>> cell : cells.entrySet()) {
+                int latIdx = (int) (cell.getKey() >> 32);
+                int lonIdx = (int) (long) cell.getKey();
+                if (latIdx >= minLatIdx && latIdx <= maxLatIdx && lonIdx >= minLonIdx && lonIdx <= maxLonIdx) {
+                    collect(cell.getValue(), latitude, longitude, radiusKm, results);
+                }
+            }
+        } else {
+            for (int latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++) {
+                for (int lonIdx = minLonIdx; lonIdx <= maxLonIdx; lonIdx++) {
+                    Map<Long, StationEntry> cell = cells.get(cellKey(latIdx, lonIdx));
+                    if (cell != null) {
+                        collect(cell, latitude, longitude, radiusKm, results);
+                    }
+                }
+            }
+        }
+
+        results.sort(Comparator.comparingDouble(NearbyStation::getDistanceKm));
+        return results;
+    }
+
+    /**
+     * Tìm tối đa k trạm gần nhất trong phạm vi maxRadiusKm
+     */
+    public List<NearbyStation> findNearest(double latitude, double longitude, int k, double maxRadiusKm) {
+        if (k <= 0 || maxRadiusKm <= 0) {
+            return new ArrayList<>();
+        }
+
+        double radius = Math.min(maxRadiusKm, cellSizeDegrees * GeoUtils.KM_PER_DEGREE_LAT);
+        while (true) {
+            List<NearbyStation> results = findWithinRadius(latitude, longitude, radius);
+            // Mọi trạm trong bán kính đã được tìm thấy, nên k trạm đầu tiên chắc chắn là k trạm gần nhất
+            if (results.size() >= k || radius >= maxRadiusKm) {
+                return results.size() > k ? new ArrayList<>(results.subList(0, k)) : results;
+            }
+            radius = Math.min(maxRadiusKm, radius * 2);
+        }
+    }
+
+    // ==================== INTERNAL ====================
+
+    private void collect(Map<Long, StationEntry> cell, double latitude, double longitude, double radiusKm,
+            List<NearbyStation> results) {
+        for (StationEntry entry : cell.values()) {
+            double distance = GeoUtils.haversineKm(latitude, longitude, entry.latitude, entry.longitude);
+            if (distance <= radiusKm) {
+                results.add(new NearbyStation(entry.id, entry.name, entry.address,
+                        entry.latitude, entry.longitude, entry.status, distance));
+            }
+        }
+    }
+
+    private boolean isIndexable(TramSac station) {
+        return station.getLatitude() != null
+                && station.getLongitude() != null
+                && StationStatus.ONLINE.name().equalsIgnoreCase(station.getStatus());
+    }
+
+    private void putInternal(StationEntry entry) {
+        stationsById.put(entry.id, entry);
+        cells.computeIfAbsent(entry.cellKey, key -> new ConcurrentHashMap<>()).put(entry.id, entry);
+    }
+
+    private void removeInternal(Long stationId) {
+        StationEntry existing = stationsById.remove(stationId);
+        if (existing != null) {
+            Map<Long, StationEntry> cell = cells.get(existing.cellKey);
+            if (cell != null) {
+                cell.remove(stationId);
+                if (cell.isEmpty()) {
+                    cells.remove(existing.cellKey);
+                }
+            }
+        }
+    }
+
+    private int latIndex(double latitude) {
+        return (int) Math.floor((latitude + 90.0) / cellSizeDegrees);
+    }
+
+    private int lonIndex(double longitude) {
+        return (int) Math.floor((longitude + 180.0) / cellSizeDegrees);
+    }
+
+    private static long cellKey(int latIdx, int lonIdx) {
+        return ((long) latIdx << 32) | (lonIdx & 0xffffffffL);
+    }
+
+    /**
+     * Snapshot bất biến của trạm trong index
+     */
+    private final class StationEntry {
+        final Long id;
+        final String name;
+        final String address;
+        final double latitude;
+        final double longitude;
+        final String status;
+        final long cellKey;
+
+        StationEntry(TramSac station) {
+            this.id = station.getId();
+            this.name = station.getName();
+            this.address = station.getAddress();
+            this.latitude = station.getLatitude();
+            this.longitude = station.getLongitude();
+            this.status = station.getStatus();
+            this.cellKey = cellKey(latIndex(latitude), lonIndex(longitude));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.SuCo;
+import uth.edu.vn.entity.ThongBao;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.IncidentSeverity;
+import uth.edu.vn.enums.NotificationType;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.SuCoRepository;
+import uth.edu.vn.repository.ThongBaoRepository;
+import uth.edu.vn.repository.UserRepository;
+import uth.edu.vn.util.TransactionCallbacks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Phát hiện bất thường trên luồng telemetry (thay cho việc quét findHighTemperatureReadings /
+ * findTelemetryWithErrors sau khi sự việc đã xảy ra)
+ *
+ * Mỗi điểm sạc giữ EWMA trung bình / phương sai của nhiệt độ, điện áp, dòng điện. Bản ghi lệch quá
+ * z-threshold độ lệch chuẩn (và quá min-deviation), vượt nhiệt độ tối đa hoặc có mã lỗi sẽ tạo SuCo,
+ * ThongBao cho staff / admin và push qua /topic/alerts ngay khi bản ghi được nhận, không cần polling.
+ */
+@Service
+public class TelemetryAnomalyDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryAnomalyDetector.class);
+
+    public static final String ALERT_TOPIC = "/topic/alerts";
+
+    private static final String[] METRIC_NAMES = { "Nhiệt độ", "Điện áp", "Dòng điện" };
+    private static final String[] METRIC_UNITS = { "°C", "V", "A" };
+    private static final int TEMPERATURE = 0;
+    private static final int METRICS = 3;
+    private static final int ERROR_CODE = METRICS; // cảnh báo mã lỗi, cooldown theo từng mã
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private SuCoRepository suCoRepository;
+
+    @Autowired
+    private ThongBaoRepository thongBaoRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${telemetry.anomaly.enabled:true}")
+    private boolean enabled;
+
+    @Value("${telemetry.anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${telemetry.anomaly.z-threshold:4.0}")
+    private double zThreshold;
+
+    @Value("${telemetry.anomaly.warmup-samples:30}")
+    private int warmupSamples;
+
+    @Value("${telemetry.anomaly.max-temperature-c:70}")
+    private double maxTemperatureC;
+
+    @Value("${telemetry.anomaly.min-deviation.temperature-c:5}")
+    private double minDeviationTemperature;
+
+    @Value("${telemetry.anomaly.min-deviation.voltage-v:20}")
+    private double minDeviationVoltage;
+
+    @Value("${telemetry.anomaly.min-deviation.current-a:10}")
+    private double minDeviationCurrent;
+
+    @Value("${telemetry.anomaly.cooldown-minutes:15}")
+    private long cooldownMinutes;
+
+    @Value("${telemetry.anomaly.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private double[] minDeviation;
+
+    private final Map<Long, PointStats> statsByPoint = new ConcurrentHashMap<>();
+
+    // Tạo SuCo / ThongBao trên 1 thread riêng để writer telemetry không bị chặn; hàng đợi có giới hạn,
+    // đầy (DB chậm, bão cảnh báo) hoặc đã dừng thì bỏ cảnh báo và đếm vào dropped
+    private ThreadPoolExecutor alertExecutor;
+
+    private final LongAdder inspected = new LongAdder();
+    private final LongAdder anomalies = new LongAdder();
+    private final LongAdder incidentsRaised = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        minDeviation = new double[] { minDeviationTemperature, minDeviationVoltage, minDeviationCurrent };
+        alertExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "telemetry-anomaly");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> {
+                    // Gọi cả khi executor đã shutdown (writer telemetry còn chạy lúc tắt ứng dụng)
+                    dropped.increment();
+                    logger.warn("Telemetry anomaly alert dropped ({})",
+                            executor.isShutdown() ? "detector stopped" : "alert queue full");
+                });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        alertExecutor.shutdown();
+        alertExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Kiểm tra 1 bản ghi vừa được nhận (trước khi ghi xuống DB, nên lỗi ghi batch không làm mất cảnh báo)
+     */
+    public void inspect(TelemetryReading reading) {
+        if (!enabled) {
+            return;
+        }
+        inspected.increment();
+        Anomaly anomaly = statsByPoint.computeIfAbsent(reading.getPointId(), id -> new PointStats())
+                .update(reading);
+        if (anomaly != null) {
+            anomalies.increment();
+            alertExecutor.execute(() -> raiseIncident(anomaly));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inspected", inspected.sum());
+        stats.put("anomalies", anomalies.sum());
+        stats.put("incidentsRaised", incidentsRaised.sum());
+        stats.put("suppressedByCooldown", suppressed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("alertQueueDepth", alertExecutor.getQueue().size());
+        stats.put("trackedChargingPoints", statsByPoint.size());
+        return stats;
+    }
+
+    // ==================== INCIDENT ====================
+
+    private void raiseIncident(Anomaly anomaly) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Charger point = chargerRepository.findById(anomaly.pointId).orElse(null);
+                if (point == null) {
+                    return;
+                }
+                List<User> admins = userRepository.findByRole(UserRole.ADMIN);
+                if (admins.isEmpty()) {
+                    logger.warn("No admin user to report telemetry anomaly on point {}", anomaly.pointId);
+                    return;
+                }
+
+                // Sự cố do hệ thống phát hiện, người báo cáo là admin đầu tiên
+                SuCo incident = new SuCo(anomaly.title, anomaly.description, anomaly.severity, admins.get(0));
+                incident.setChargingPoint(point);
+                incident.setChargingStation(point.getChargingStation());
+                suCoRepository.save(incident);
+
+                List<ThongBao> notifications = new ArrayList<>();
+                List<User> recipients = new ArrayList<>(admins);
+                recipients.addAll(userRepository.findByRole(UserRole.CS_STAFF));
+                for (User user : recipients) {
+                    notifications.add(new ThongBao(user, anomaly.title, anomaly.description, NotificationType.SYSTEM_ALERT));
+                }
+                thongBaoRepository.saveAll(notifications);
+
+                Long stationId = point.getChargingStation() != null ? point.getChargingStation().getId() : null;
+                Map<String, Object> alert = new HashMap<>();
+                alert.put("incidentId", incident.getIncidentId());
+                alert.put("stationId", stationId);
+                alert.put("pointId", anomaly.pointId);
+                alert.put("severity", anomaly.severity);
+                alert.put("title", anomaly.title);
+                alert.put("message", anomaly.description);
+                alert.put("recordedAt", anomaly.recordedAt);
+
+                TransactionCallbacks.afterCommit(() -> {
+                    messagingTemplate.convertAndSend(ALERT_TOPIC, alert);
+                    if (stationId != null) {
+                        messagingTemplate.convertAndSend(ALERT_TOPIC + "/stations/" + stationId, alert);
+                    }
+                });
+                incidentsRaised.increment();
+                logger.warn("Telemetry anomaly on point {}: {}", anomaly.pointId, anomaly.description);
+            });
+        } catch (Exception e) {
+            logger.error("Error raising incident for telemetry anomaly on point {}", anomaly.pointId, e);
+        }
+    }
+
+    // ==================== EWMA ====================
+
+    /**
+     * EWMA trung bình / phương sai cho từng chỉ số của 1 điểm sạc
+     */
+    private final class PointStats {
+        final double[] mean = new double[METRICS];
+        final double[] variance = new double[METRICS];
+        final long[] samples = new long[METRICS];
+        // Khóa cooldown: tên chỉ số hoặc "error:" + mã lỗi
+        final Map<String, Long> lastAlertAt = new HashMap<>();
+
+        synchronized Anomaly update(TelemetryReading reading) {
+            Double[] values = { reading.getTemperatureC(), reading.getVoltageV(), reading.getCurrentA() };
+            Anomaly anomaly = null;
+
+            if (reading.getErrorCode() != null) {
+                anomaly = new Anomaly(reading, IncidentSeverity.HIGH, ERROR_CODE,
+                        "Điểm sạc báo lỗi " + reading.getErrorCode(),
+                        "Điểm sạc #" + reading.getPointId() + " báo lỗi " + reading.getErrorCode()
+                                + (reading.getErrorMessage() != null ? ": " + reading.getErrorMessage() : ""));
+            }
+
+            for (int metric = 0; metric < METRICS; metric++) {
+                if (values[metric] == null) {
+                    continue;
+                }
+                double value = values[metric];
+                double previousMean = mean[metric];
+                double stdDev = Math.sqrt(variance[metric]);
+                double deviation = Math.abs(value - previousMean);
+
+                if (anomaly == null) {
+                    if (metric == TEMPERATURE && value > maxTemperatureC) {
+                        anomaly = new Anomaly(reading, IncidentSeverity.CRITICAL, metric,
+                                "Nhiệt độ điểm sạc vượt ngưỡng",
+                                String.format("Điểm sạc #%d: nhiệt độ %.1f°C vượt ngưỡng %.1f°C",
+                                        reading.getPointId(), value, maxTemperatureC));
+                    } else if (samples[metric] >= warmupSamples && deviation > minDeviation[metric]
+                            && deviation > zThreshold * stdDev) {
+                        double z = stdDev > 0 ? deviation / stdDev : Double.POSITIVE_INFINITY;
+                        anomaly = new Anomaly(reading,
+                                z > 2 * zThreshold ? IncidentSeverity.HIGH : IncidentSeverity.MEDIUM, metric,
+                                METRIC_NAMES[metric] + " điểm sạc bất thường",
+                                String.format("Điểm sạc #%d: %s %.1f%s, trung bình gần đây %.1f%s (lệch %.1f σ)",
+                                        reading.getPointId(), METRIC_NAMES[metric].toLowerCase(), value,
+                                        METRIC_UNITS[metric], previousMean, METRIC_UNITS[metric], z));
+                    }
+                }
+
+                // Cập nhật EWMA (kể cả khi bất thường, để thích nghi với mức vận hành mới)
+                if (samples[metric] == 0) {
+                    mean[metric] = value;
+                    variance[metric] = 0;
+                } else {
+                    double diff = value - previousMean;
+                    mean[metric] = previousMean + alpha * diff;
+                    variance[metric] = (1 - alpha) * (variance[metric] + alpha * diff * diff);
+                }
+                samples[metric]++;
+            }
+
+            if (anomaly == null) {
+                return null;
+            }
+            // Cooldown theo (điểm sạc, chỉ số / mã lỗi) để 1 sự cố kéo dài không tạo hàng loạt SuCo,
+            // nhưng mã lỗi khác vẫn được báo ngay
+            String key = anomaly.metric == ERROR_CODE ? "error:" + reading.getErrorCode() : METRIC_NAMES[anomaly.metric];
+            long now = System.currentTimeMillis();
+            Long last = lastAlertAt.get(key);
+            if (last != null && now - last < TimeUnit.MINUTES.toMillis(cooldownMinutes)) {
+                suppressed.increment();
+                return null;
+            }
+            lastAlertAt.put(key, now);
+            return anomaly;
+        }
+    }
+
+    private static final class Anomaly {
+        final Long pointId;
+        final LocalDateTime recordedAt;
+        final IncidentSeverity severity;
+        final int metric;
+        final String title;
+        final String description;
+
+        Anomaly(TelemetryReading reading, IncidentSeverity severity, int metric, String title, String description) {
+            this.pointId = reading.getPointId();
+            this.recordedAt = reading.getRecordedAt();
+            this.severity = severity;
+            this.metric = metric;
+            this.title = title;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.enums.TelemetryStatus;
+import uth.edu.vn.util.TelemetryArchiveCodec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Archive telemetry nguội (cũ hơn cold-after-days ngày) ra file dạng cột, 1 file / điểm sạc / ngày
+ *
+ * Job chạy theo ngày: đọc telemetry của từng điểm sạc trong ngày (index charging_point_id, recorded_at),
+ * ghi file TelemetryArchiveCodec rồi mới xóa các dòng đó khỏi dieu_khien_tu_xa.
+ * Watermark = ngày cuối cùng đã archive xong; truy vấn lịch sử trước watermark chỉ đọc file,
+ * không chạm SQL Server. Telemetry về trễ (recorded_at trước watermark) được gộp vào file ở lượt sau.
+ *
+ * Nhiều node: watermark và lease nằm trong telemetry_archive_state nên mỗi lúc chỉ 1 node archive.
+ * Thư mục archive phải là thư mục dùng chung (NFS / SMB...): file STORE_ID trong thư mục được so với
+ * store_id trong database, mỗi node báo id mình thấy qua telemetry_archive_node. Nếu có node còn sống
+ * thấy thư mục khác thì job không chạy (không xóa dòng mà node đó sẽ không đọc được).
+ * File của những ngày quá telemetry.retention.days bị xóa theo cùng thời hạn với bảng thô.
+ */
+@Service
+public class TelemetryArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryArchiveService.class);
+
+    private static final String TABLE = "dieu_khien_tu_xa";
+
+    private static final String FILE_SUFFIX = ".tlm";
+
+    // Watermark cũ (trước khi lưu trong database), chỉ đọc để chuyển sang database
+    private static final String WATERMARK_FILE = "WATERMARK";
+
+    private static final String STORE_FILE = "STORE_ID";
+
+    private static final String STATE_TABLE = "telemetry_archive_state";
+
+    private static final String NODE_TABLE = "telemetry_archive_node";
+
+    // Node không gửi heartbeat quá số phút này coi như đã dừng
+    private static final long NODE_STALE_MINUTES = 5;
+
+    private static final TelemetryStatus[] STATUSES = TelemetryStatus.values();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${telemetry.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${telemetry.archive.cold-after-days:7}")
+    private int coldAfterDays;
+
+    @Value("${telemetry.archive.dir:telemetry-archive/columnar}")
+    private String archiveDir;
+
+    @Value("${telemetry.archive.max-days-per-run:7}")
+    private int maxDaysPerRun;
+
+    @Value("${telemetry.archive.delete-chunk-size:5000}")
+    private int deleteChunkSize;
+
+    @Value("${telemetry.archive.lease-minutes:30}")
+    private long leaseMinutes;
+
+    @Value("${telemetry.retention.enabled:false}")
+    private boolean retentionEnabled;
+
+    @Value("${telemetry.retention.days:90}")
+    private int retentionDays;
+
+    private final String nodeId = nodeName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Ngày cuối cùng đã archive (null = chưa archive gì)
+    private volatile LocalDate watermark;
+
+    private final LongAdder rowsArchived = new LongAdder();
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder filesPurged = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMs;
+    private volatile String lastError;
+
+    /**
+     * Sau khi Hibernate đã tạo bảng: tạo dòng trạng thái, đăng ký thư mục archive, đọc watermark
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + STATE_TABLE + " WHERE id = 1", Integer.class) == 0) {
+                jdbcTemplate.update("INSERT INTO " + STATE_TABLE + " (id) VALUES (1)");
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Node khác vừa tạo dòng trạng thái
+        } catch (Exception e) {
+            logger.error("Error creating telemetry archive state", e);
+            return;
+        }
+        try {
+            registerStore();
+            migrateWatermarkFile();
+            heartbeat();
+        } catch (Exception e) {
+            logger.error("Error initializing telemetry archive state", e);
+        }
+    }
+
+    /**
+     * Báo id thư mục archive của node này và đọc lại watermark (node khác có thể vừa archive)
+     */
+    @Scheduled(fixedDelayString = "${telemetry.archive.heartbeat-ms:60000}",
+               initialDelayString = "${telemetry.archive.heartbeat-ms:60000}")
+    public void heartbeat() {
+        try {
+            String localStore = readStoreFile();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            if (jdbcTemplate.update("UPDATE " + NODE_TABLE + " SET store_id = ?, seen_at = ? WHERE node_id = ?",
+                    localStore, now, nodeId) == 0) {
+                jdbcTemplate.update("INSERT INTO " + NODE_TABLE + " (node_id, store_id, seen_at) VALUES (?, ?, ?)",
+                        nodeId, localStore, now);
+            }
+            Date stored = jdbcTemplate.queryForObject("SELECT watermark FROM " + STATE_TABLE + " WHERE id = 1", Date.class);
+            watermark = stored != null ? stored.toLocalDate() : null;
+        } catch (Exception e) {
+            logger.error("Error sending telemetry archive heartbeat", e);
+        }
+    }
+
+    @Scheduled(cron = "${telemetry.archive.cron:0 0 3 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Chạy 1 lượt archive (bỏ qua nếu đang có lượt khác chạy), trả về thống kê
+     */
+    public Map<String, Object> archive() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Telemetry archive already running, skipping");
+            return getStats();
+        }
+        long startNanos = System.nanoTime();
+        try {
+            lastError = null;
+            heartbeat();
+            String notShared = checkSharedStore();
+            if (notShared != null) {
+                lastError = notShared;
+                logger.error("Telemetry archive not run: {}", notShared);
+                return getStats();
+            }
+            if (!acquireLease()) {
+                logger.info("Telemetry archive lease held by another node, skipping");
+                return getStats();
+            }
+            try {
+                runArchive(LocalDate.now().minusDays(coldAfterDays + 1L));
+                purgeExpiredFiles();
+            } finally {
+                releaseLease();
+            }
+        } catch (Exception e) {
+            logger.error("Error archiving telemetry", e);
+            lastError = e.getMessage();
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            running.set(false);
+        }
+        return getStats();
+    }
+
+    /**
+     * Thời điểm bắt đầu của dữ liệu còn trong SQL Server (null = chưa archive gì, mọi thứ đều live)
+     */
+    public LocalDateTime getLiveFrom() {
+        LocalDate current = watermark;
+        return current != null ? current.plusDays(1).atStartOfDay() : null;
+    }
+
+    /**
+     * Đọc telemetry đã archive của điểm sạc trong khoảng [startDate, endDate]
+     */
+    public List<TelemetryArchiveCodec.Block> read(Long pointId, LocalDateTime startDate, LocalDateTime endDate) {
+        // Không giới hạn theo watermark: ngày đang archive dở có thể đã có file và đã bị xóa khỏi bảng thô
+        List<TelemetryArchiveCodec.Block> blocks = new ArrayList<>();
+        for (LocalDate day = startDate.toLocalDate(); !day.isAfter(endDate.toLocalDate()); day = day.plusDays(1)) {
+            Path file = fileFor(pointId, day);
+            if (Files.exists(file)) {
+                try {
+                    blocks.add(TelemetryArchiveCodec.read(file));
+                } catch (Exception e) {
+                    logger.error("Error reading telemetry archive {}", file, e);
+                }
+            }
+        }
+        return blocks;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("coldAfterDays", coldAfterDays);
+        stats.put("watermark", watermark);
+        stats.put("rowsArchived", rowsArchived.sum());
+        stats.put("filesWritten", filesWritten.sum());
+        stats.put("filesPurged", filesPurged.sum());
+        stats.put("nodeId", nodeId);
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMs", lastRunMs);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    // ==================== INTERNAL ====================
+
+    private void runArchive(LocalDate lastColdDay) throws IOException {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(recorded_at) FROM " + TABLE, Timestamp.class);
+        LocalDate day = oldest != null ? oldest.toLocalDateTime().toLocalDate() : lastColdDay.plusDays(1);
+
+        int processed = 0;
+        while (!day.isAfter(lastColdDay) && processed < maxDaysPerRun) {
+            renewLease();
+            long rows = archiveDay(day);
+            logger.info("Archived {} telemetry rows for {}", rows, day);
+            advanceWatermark(day);
+            day = day.plusDays(1);
+            processed++;
+        }
+        // Không còn dòng nào tới lastColdDay trong bảng thô
+        if (day.isAfter(lastColdDay)) {
+            advanceWatermark(lastColdDay);
+        }
+    }
+
+    private long archiveDay(LocalDate day) throws IOException {
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        List<Long> pointIds = jdbcTemplate.queryForList("SELECT DISTINCT charging_point_id FROM " + TABLE +
+                " WHERE recorded_at >= ? AND recorded_at < ?", Long.class, from, to);
+        long total = 0;
+        for (Long pointId : pointIds) {
+            renewLease();
+            total += archivePointDay(pointId, day, from, to);
+        }
+        return total;
+    }
+
+    private int archivePointDay(Long pointId, LocalDate day, Timestamp from, Timestamp to) throws IOException {
+        TelemetryArchiveCodec.Builder builder = new TelemetryArchiveCodec.Builder(pointId);
+        long[] maxId = { Long.MIN_VALUE };
+
+        jdbcTemplate.query("SELECT telemetry_id, vehicle_id, soc_percentage, current_power_kw, energy_delivered_kwh, " +
+                "voltage_v, current_a, temperature_c, charging_duration_minutes, status, recorded_at, " +
+                "error_code, error_message FROM " + TABLE +
+                " WHERE charging_point_id = ? AND recorded_at >= ? AND recorded_at < ?", rs -> {
+            long id = rs.getLong(1);
+            maxId[0] = Math.max(maxId[0], id);
+            Double[] values = new Double[TelemetryArchiveCodec.DOUBLE_COLUMNS];
+            for (int column = 0; column < TelemetryArchiveCodec.DOUBLE_COLUMNS; column++) {
+                values[column] = rs.getObject(3 + column) != null ? rs.getDouble(3 + column) : null;
+            }
+            String status = rs.getString(10);
+            builder.add(id, rs.getTimestamp(11).toLocalDateTime(),
+                    rs.getObject(2) != null ? rs.getLong(2) : null, values,
+                    status != null ? TelemetryStatus.valueOf(status).ordinal() : null,
+                    rs.getString(12), rs.getString(13));
+        }, pointId, from, to);
+
+        int rows = builder.size();
+        if (rows == 0) {
+            return 0;
+        }
+
+        // Gộp với file đã có (telemetry về trễ hoặc lượt trước bị dừng giữa chừng), trùng id bị loại.
+        // readCopy: không map file sắp bị ghi đè
+        Path file = fileFor(pointId, day);
+        if (Files.exists(file)) {
+            builder.addAll(TelemetryArchiveCodec.readCopy(file));
+        }
+        TelemetryArchiveCodec.write(file, builder.build());
+        filesWritten.increment();
+        rowsArchived.add(rows);
+
+        // File đã được ghi bền vững, giờ mới xóa khỏi bảng thô (theo từng khúc)
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE TOP (?) FROM " + TABLE + " WHERE charging_point_id = ? AND recorded_at >= ? " +
+                    "AND recorded_at < ? AND telemetry_id <= ?", deleteChunkSize, pointId, from, to, maxId[0]));
+        } while (deleted >= deleteChunkSize);
+        return rows;
+    }
+
+    private void advanceWatermark(LocalDate day) {
+        if (watermark != null && !day.isAfter(watermark)) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET watermark = ? WHERE id = 1 AND (watermark IS NULL OR watermark < ?)",
+                Date.valueOf(day), Date.valueOf(day));
+        watermark = day;
+    }
+
+    /**
+     * Xóa file của những ngày đã quá thời hạn lưu telemetry (cùng telemetry.retention.days với bảng thô)
+     */
+    private void purgeExpiredFiles() throws IOException {
+        Path root = root();
+        if (!retentionEnabled || retentionDays <= 0 || !Files.isDirectory(root)) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        long purged = 0;
+        try (DirectoryStream<Path> points = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path pointDir : points) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(pointDir, "*" + FILE_SUFFIX)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        LocalDate day = LocalDate.parse(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                        if (day.isBefore(cutoff) && Files.deleteIfExists(file)) {
+                            purged++;
+                        }
+                    }
+                }
+            }
+        }
+        filesPurged.add(purged);
+        if (purged > 0) {
+            logger.info("Purged {} telemetry archive files older than {}", purged, cutoff);
+        }
+    }
+
+    // ==================== SHARED STORE / LEASE ====================
+
+    /**
+     * Gắn thư mục archive với database: lần đầu ghi STORE_ID (giữ id cũ nếu thư mục đã có file),
+     * các node sau chỉ so sánh
+     */
+    private void registerStore() throws IOException {
+        String localStore = readStoreFile();
+        String registered = jdbcTemplate.queryForObject("SELECT store_id FROM " + STATE_TABLE + " WHERE id = 1", String.class);
+        if (registered == null) {
+            if (localStore == null) {
+                localStore = UUID.randomUUID().toString();
+                writeAtomically(root().resolve(STORE_FILE), localStore);
+            }
+            jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET store_id = ? WHERE id = 1 AND store_id IS NULL", localStore);
+            registered = jdbcTemplate.queryForObject("SELECT store_id FROM " + STATE_TABLE + " WHERE id = 1", String.class);
+        }
+        if (!registered.equals(localStore)) {
+            logger.error("Telemetry archive dir {} is not the shared archive store (expected store {}, found {}): " +
+                    "archived telemetry is not readable on this node and archiving is blocked until it is fixed",
+                    root().toAbsolutePath(), registered, localStore);
+        }
+    }
+
+    /**
+     * Watermark từ file WATERMARK của bản chạy 1 node trước đây
+     */
+    private void migrateWatermarkFile() throws IOException {
+        Path file = root().resolve(WATERMARK_FILE);
+        if (Files.exists(file)) {
+            LocalDate day = LocalDate.parse(Files.readString(file, StandardCharsets.UTF_8).trim());
+            jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET watermark = ? WHERE id = 1 AND watermark IS NULL",
+                    Date.valueOf(day));
+        }
+    }
+
+    /**
+     * null nếu mọi node còn sống đều thấy thư mục archive đã đăng ký, ngược lại là mô tả lỗi
+     */
+    private String checkSharedStore() {
+        String registered = jdbcTemplate.queryForObject("SELECT store_id FROM " + STATE_TABLE + " WHERE id = 1", String.class);
+        if (registered == null) {
+            return "Telemetry archive store is not registered";
+        }
+        List<String> nodes = jdbcTemplate.queryForList("SELECT node_id FROM " + NODE_TABLE +
+                " WHERE seen_at >= ? AND (store_id IS NULL OR store_id <> ?)", String.class,
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(NODE_STALE_MINUTES)), registered);
+        return nodes.isEmpty() ? null
+                : "Telemetry archive dir is not shared with nodes " + nodes + " (store " + registered + ")";
+    }
+
+    private boolean acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET lease_owner = ?, lease_until = ? " +
+                "WHERE id = 1 AND (lease_owner IS NULL OR lease_until < ? OR lease_owner = ?)",
+                nodeId, Timestamp.valueOf(now.plusMinutes(leaseMinutes)), Timestamp.valueOf(now), nodeId) == 1;
+    }
+
+    /**
+     * Gia hạn lease; mất lease (node khác đã lấy sau khi hết hạn) thì dừng lượt archive
+     */
+    private void renewLease() {
+        if (jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET lease_until = ? WHERE id = 1 AND lease_owner = ?",
+                Timestamp.valueOf(LocalDateTime.now().plusMinutes(leaseMinutes)), nodeId) != 1) {
+            throw new IllegalStateException("Telemetry archive lease lost by " + nodeId);
+        }
+    }
+
+    private void releaseLease() {
+        try {
+            jdbcTemplate.update("UPDATE " + STATE_TABLE + " SET lease_owner = NULL, lease_until = NULL " +
+                    "WHERE id = 1 AND lease_owner = ?", nodeId);
+        } catch (Exception e) {
+            logger.error("Error releasing telemetry archive lease", e);
+        }
+    }
+
+    private String readStoreFile() throws IOException {
+        Path file = root().resolve(STORE_FILE);
+        return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8).trim() : null;
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String nodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+
+    private Path root() {
+        return Paths.get(archiveDir);
+    }
+
+    private Path fileFor(Long pointId, LocalDate day) {
+        return root().resolve(String.valueOf(pointId)).resolve(day + FILE_SUFFIX);
+    }
+
+    /**
+     * Trạng thái telemetry từ byte lưu trong file (0 = null)
+     */
+    public static TelemetryStatus statusOf(byte stored) {
+        return stored > 0 && stored <= STATUSES.length ? STATUSES[stored - 1] : null;
+    }
+}
@@ -0,0 +1,348 @@
+package uth.edu.vn.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.enums.TelemetryStatus;
+import uth.edu.vn.repository.XeRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service nhận telemetry từ điểm sạc
+ *
+ * Bản ghi được đưa vào hàng đợi có giới hạn rồi ghi xuống dieu_khien_tu_xa bằng JDBC batch insert
+ * (flush khi đủ batch-size hoặc sau max-latency-ms), đồng thời cộng dồn vào các bảng tổng hợp
+ * phút / giờ / ngày (TelemetryRollupService). Bản ghi mới nhất của mỗi điểm sạc được giữ
+ * trong bộ nhớ để broadcast trạng thái sạc dùng dữ liệu thật thay vì giả lập.
+ * Bản ghi vi phạm khóa ngoại / độ dài cột bị từ chối ngay lúc nhận; nếu batch vẫn lỗi ràng buộc dữ liệu
+ * khi ghi thì chia đôi batch để chỉ mất đúng các bản ghi lỗi. Lỗi tạm thời (mất kết nối, deadlock, timeout)
+ * được thử lại với backoff; trong lúc đó hàng đợi đầy dần và submit trả 503 cho client.
+ */
+@Service
+public class TelemetryIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryIngestionService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO dieu_khien_tu_xa " +
+            "(charging_point_id, vehicle_id, soc_percentage, current_power_kw, energy_delivered_kwh, " +
+            "voltage_v, current_a, temperature_c, charging_duration_minutes, status, recorded_at, " +
+            "error_code, error_message) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Độ dài mặc định của cột error_code / error_message (varchar 255)
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+
+    /**
+     * Lý do từ chối khi hàng đợi đầy (submit)
+     */
+    public static final String OVERLOADED = "Hệ thống đang quá tải";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    @Autowired
+    private XeRepository xeRepository;
+
+    @Autowired
+    private TelemetryRollupService telemetryRollupService;
+
+    @Autowired
+    private TelemetryAnomalyDetector telemetryAnomalyDetector;
+
+    @Value("${telemetry.ingest.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${telemetry.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${telemetry.ingest.max-latency-ms:200}")
+    private long maxLatencyMs;
+
+    @Value("${telemetry.ingest.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${telemetry.ingest.retry-attempts:5}")
+    private int retryAttempts;
+
+    @Value("${telemetry.ingest.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<TelemetryReading> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    // pointId -> bản ghi mới nhất (cho live status)
+    private final Map<Long, TelemetryReading> latestByPoint = new ConcurrentHashMap<>();
+
+    // vehicleId đã kiểm tra là tồn tại (xe gần như không bị xóa, chỉ cache kết quả có)
+    private final Set<Long> knownVehicleIds = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        for (int i = 0; i < Math.max(1, writerThreads); i++) {
+            Thread writer = new Thread(this::writeLoop, "telemetry-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("Telemetry ingestion started: queue {}, batch {}, max latency {} ms, {} writers",
+                queueCapacity, batchSize, maxLatencyMs, writers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Telemetry ingestion stopped, {} readings left in queue", queue.size());
+    }
+
+    /**
+     * Kiểm tra bản ghi trước khi nhận; trả về lý do từ chối, null nếu hợp lệ
+     */
+    public String validate(TelemetryReading reading) {
+        if (reading == null || reading.getPointId() == null) {
+            return "pointId không được để trống";
+        }
+        if (chargerAvailabilityRegistry.isLoaded() && !chargerAvailabilityRegistry.contains(reading.getPointId())) {
+            return "Điểm sạc " + reading.getPointId() + " không tồn tại";
+        }
+        Long vehicleId = reading.getVehicleId();
+        if (vehicleId != null && !knownVehicleIds.contains(vehicleId)) {
+            if (!xeRepository.existsById(vehicleId)) {
+                return "Xe " + vehicleId + " không tồn tại";
+            }
+            knownVehicleIds.add(vehicleId);
+        }
+        if (reading.getErrorCode() != null && reading.getErrorCode().length() > MAX_TEXT_LENGTH) {
+            return "errorCode dài quá " + MAX_TEXT_LENGTH + " ký tự";
+        }
+        if (reading.getErrorMessage() != null && reading.getErrorMessage().length() > MAX_TEXT_LENGTH) {
+            return "errorMessage dài quá " + MAX_TEXT_LENGTH + " ký tự";
+        }
+        return null;
+    }
+
+    /**
+     * Kiểm tra (validate) rồi đưa bản ghi vào hàng đợi
+     * Trả về null nếu đã nhận, lý do từ chối nếu không hợp lệ, OVERLOADED nếu hàng đợi đầy
+     */
+    public String submit(TelemetryReading reading) {
+        String invalidReason = validate(reading);
+        if (invalidReason != null) {
+            invalid.increment();
+            return invalidReason;
+        }
+        if (reading.getRecordedAt() == null) {
+            reading.setRecordedAt(LocalDateTime.now());
+        }
+        if (reading.getStatus() == null) {
+            reading.setStatus(reading.getErrorCode() != null ? TelemetryStatus.ERROR : TelemetryStatus.NORMAL);
+        }
+
+        if (!queue.offer(reading)) {
+            rejected.increment();
+            return OVERLOADED;
+        }
+        accepted.increment();
+        latestByPoint.merge(reading.getPointId(), reading,
+                (current, incoming) -> incoming.getRecordedAt().isBefore(current.getRecordedAt()) ? current : incoming);
+
+        // Phát hiện bất thường ngay lúc nhận, không phụ thuộc việc ghi batch thành công
+        telemetryAnomalyDetector.inspect(reading);
+        return null;
+    }
+
+    /**
+     * Bản ghi mới nhất của điểm sạc (null nếu chưa có)
+     */
+    public TelemetryReading getLatestReading(Long pointId) {
+        return pointId != null ? latestByPoint.get(pointId) : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("invalid", invalid.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        stats.put("retries", retries.sum());
+        stats.put("batches", batches.sum());
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("trackedChargingPoints", latestByPoint.size());
+        return stats;
+    }
+
+    // ==================== WRITER ====================
+
+    private void writeLoop() {
+        List<TelemetryReading> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TelemetryReading first = queue.poll(maxLatencyMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Gom thêm tới khi đủ batch hoặc hết max-latency
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    TelemetryReading next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                try {
+                    writeWithRetry(batch);
+                } catch (DataIntegrityViolationException e) {
+                    // 1 bản ghi lỗi không được làm mất cả batch: chia đôi tới khi tách được bản ghi lỗi
+                    logger.warn("Telemetry batch of {} readings violates a constraint, splitting", batch.size(), e);
+                    writeSplit(batch);
+                } catch (RuntimeException e) {
+                    failed.add(batch.size());
+                    logger.error("Dropping telemetry batch of {} readings after {} attempts",
+                            batch.size(), retryAttempts, e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<TelemetryReading> batch) {
+        // Bản ghi thô và bucket tổng hợp được ghi trong cùng transaction
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+            telemetryRollupService.applyBatch(batch);
+        });
+        written.add(batch.size());
+        batches.increment();
+    }
+
+    /**
+     * Ghi batch, thử lại với backoff khi lỗi không phải do dữ liệu (lỗi ràng buộc được ném ra ngay)
+     */
+    private void writeWithRetry(List<TelemetryReading> batch) throws InterruptedException {
+        long backoffMs = Math.max(1, retryBackoffMs);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt >= retryAttempts) {
+                    throw e;
+                }
+                retries.increment();
+                logger.warn("Telemetry batch of {} readings failed (attempt {}/{}), retrying in {} ms: {}",
+                        batch.size(), attempt, retryAttempts, backoffMs, e.toString());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    private void writeSplit(List<TelemetryReading> readings) throws InterruptedException {
+        int middle = readings.size() / 2;
+        for (List<TelemetryReading> half : List.of(readings.subList(0, middle), readings.subList(middle, readings.size()))) {
+            try {
+                writeWithRetry(half);
+            } catch (DataIntegrityViolationException e) {
+                if (half.size() == 1) {
+                    failed.increment();
+                    logger.error("Dropping telemetry reading of point {} at {}",
+                            half.get(0).getPointId(), half.get(0).getRecordedAt(), e);
+                } else {
+                    writeSplit(half);
+                }
+            } catch (RuntimeException e) {
+                failed.add(half.size());
+                logger.error("Dropping telemetry batch of {} readings after {} attempts",
+                        half.size(), retryAttempts, e);
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, TelemetryReading reading) throws java.sql.SQLException {
+        ps.setLong(1, reading.getPointId());
+        setNullable(ps, 2, reading.getVehicleId(), Types.BIGINT);
+        setNullable(ps, 3, reading.getSocPercentage(), Types.DOUBLE);
+        setNullable(ps, 4, reading.getCurrentPowerKw(), Types.DOUBLE);
+        setNullable(ps, 5, reading.getEnergyDeliveredKwh(), Types.DOUBLE);
+        setNullable(ps, 6, reading.getVoltageV(), Types.DOUBLE);
+        setNullable(ps, 7, reading.getCurrentA(), Types.DOUBLE);
+        setNullable(ps, 8, reading.getTemperatureC(), Types.DOUBLE);
+        setNullable(ps, 9, reading.getChargingDurationMinutes(), Types.INTEGER);
+        ps.setString(10, reading.getStatus().name());
+        ps.setTimestamp(11, Timestamp.valueOf(reading.getRecordedAt()));
+        ps.setString(12, reading.getErrorCode());
+        ps.setString(13, reading.getErrorMessage());
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType)
+            throws java.sql.SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+}
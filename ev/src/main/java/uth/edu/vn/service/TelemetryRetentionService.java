@@ -0,0 +1,193 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Job xóa telemetry cũ theo thời hạn lưu trữ
+ *
+ * Xóa theo từng khúc recorded_at (index idx_telemetry_recorded_at) thay vì 1 câu DELETE lớn, mỗi khúc
+ * 1 transaction ngắn và nghỉ pause-ms giữa các khúc để không giữ lock / phình transaction log.
+ * recorded_at do điểm sạc gửi lên nên không tăng theo telemetry_id: khúc được cắt theo recorded_at
+ * (chunk-size dòng cũ nhất), lặp tới khi không còn dòng quá hạn.
+ * Khi bật archive dạng cột (TelemetryArchiveService) chỉ xóa những ngày đã archive (trước getLiveFrom),
+ * file archive của ngày quá hạn do TelemetryArchiveService xóa theo cùng telemetry.retention.days.
+ */
+@Service
+public class TelemetryRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryRetentionService.class);
+
+    private static final String TABLE = "dieu_khien_tu_xa";
+
+    // Khúc = các dòng có recorded_at <= mốc của khúc; telemetry_id <= max id lúc bắt đầu để không đuổi theo
+    // dòng ingest trong lúc đang xóa
+    private static final String CHUNK_PREDICATE = "recorded_at <= ? AND telemetry_id <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TelemetryArchiveService telemetryArchiveService;
+
+    @Value("${telemetry.retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${telemetry.retention.days:90}")
+    private int retentionDays;
+
+    @Value("${telemetry.retention.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${telemetry.retention.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${telemetry.retention.max-run-minutes:30}")
+    private long maxRunMinutes;
+
+    @Value("${telemetry.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder totalDeleted = new LongAdder();
+
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunDeleted;
+    private volatile long lastRunChunks;
+    private volatile long lastRunMs;
+    private volatile double lastRowsPerSecond;
+    private volatile long lagSeconds;
+    private volatile String lastError;
+
+    @Scheduled(cron = "${telemetry.retention.cron:0 30 2 * * *}")
+    public void scheduledPurge() {
+        if (enabled) {
+            purge();
+        }
+    }
+
+    /**
+     * Chạy 1 lượt xóa (bỏ qua nếu đang có lượt khác chạy), trả về thống kê
+     */
+    public Map<String, Object> purge() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Telemetry retention purge already running, skipping");
+            return getStats();
+        }
+        try {
+            lastError = null;
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            if (archiveEnabled) {
+                // Ngày chưa archive xong còn cần trong bảng thô để TelemetryArchiveService ghi ra file
+                LocalDateTime liveFrom = telemetryArchiveService.getLiveFrom();
+                if (liveFrom == null) {
+                    logger.info("Telemetry archive has no watermark yet, skipping retention purge");
+                    return getStats();
+                }
+                if (liveFrom.isBefore(cutoff)) {
+                    cutoff = liveFrom;
+                }
+            }
+            runPurge(cutoff);
+        } catch (Exception e) {
+            logger.error("Error purging old telemetry", e);
+            lastError = e.getMessage();
+        } finally {
+            running.set(false);
+        }
+        return getStats();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("retentionDays", retentionDays);
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunDeleted", lastRunDeleted);
+        stats.put("lastRunChunks", lastRunChunks);
+        stats.put("lastRunMs", lastRunMs);
+        stats.put("rowsPerSecond", lastRowsPerSecond);
+        stats.put("lagSeconds", lagSeconds);
+        stats.put("totalDeleted", totalDeleted.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    // ==================== INTERNAL ====================
+
+    private void runPurge(LocalDateTime cutoff) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.MINUTES.toNanos(maxRunMinutes);
+        Timestamp cutoffTs = Timestamp.valueOf(cutoff);
+
+        // Chốt max id lúc bắt đầu để không đuổi theo dữ liệu mới ingest
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(telemetry_id) FROM " + TABLE, Long.class);
+
+        long deleted = 0;
+        long chunks = 0;
+        while (maxId != null && System.nanoTime() < deadline) {
+            // Mốc của khúc: recorded_at của dòng thứ chunk-size tính từ dòng cũ nhất (seek trên idx_telemetry_recorded_at)
+            Timestamp upper = jdbcTemplate.queryForObject(
+                    "SELECT MAX(recorded_at) FROM (SELECT TOP (?) recorded_at FROM " + TABLE +
+                    " WHERE recorded_at < ? AND telemetry_id <= ? ORDER BY recorded_at) k",
+                    Timestamp.class, chunkSize, cutoffTs, maxId);
+            if (upper == null) {
+                break;
+            }
+
+            deleted += purgeChunk(upper, maxId);
+            chunks++;
+            Thread.sleep(pauseMs);
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        lastRunAt = LocalDateTime.now();
+        lastRunDeleted = deleted;
+        lastRunChunks = chunks;
+        lastRunMs = elapsedMs;
+        lastRowsPerSecond = elapsedMs > 0 ? deleted * 1000.0 / elapsedMs : deleted;
+        updateLag(cutoff);
+
+        logger.info("Telemetry retention purged {} rows older than {} in {} chunks, {} ms ({} rows/s), lag {} s",
+                deleted, cutoff, chunks, elapsedMs, Math.round(lastRowsPerSecond), lagSeconds);
+    }
+
+    /**
+     * Xóa các dòng có recorded_at <= upper (và id <= maxId) trong 1 transaction
+     */
+    private int purgeChunk(Timestamp upper, long maxId) {
+        Integer count = transactionTemplate.execute(status ->
+                jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE " + CHUNK_PREDICATE, upper, maxId));
+        int deleted = count != null ? count : 0;
+        totalDeleted.add(deleted);
+        return deleted;
+    }
+
+    private void updateLag(LocalDateTime cutoff) {
+        // MIN(recorded_at) dùng index idx_telemetry_recorded_at
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(recorded_at) FROM " + TABLE, Timestamp.class);
+        lagSeconds = oldest != null && oldest.toLocalDateTime().isBefore(cutoff)
+                ? Duration.between(oldest.toLocalDateTime(), cutoff).getSeconds()
+                : 0;
+    }
+}
@@ -0,0 +1,372 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uth.edu.vn.dto.TelemetryReading;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bảng tổng hợp telemetry theo phút / giờ / ngày cho từng điểm sạc
+ *
+ * Bucket được cộng dồn ngay lúc ingest (cùng transaction với batch insert telemetry thô).
+ * Khi truy vấn, khoảng [startDate, endDate] được tách thành các đoạn: phần giữa dùng bucket
+ * ngày, hai bên dùng bucket giờ rồi phút, chỉ phần lẻ dưới 1 phút ở hai đầu mới quét bảng thô.
+ * Tất cả các đoạn được gộp trong 1 câu UNION ALL.
+ */
+@Service
+public class TelemetryRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryRollupService.class);
+
+    private static final String RAW_TABLE = "dieu_khien_tu_xa";
+
+    private static final String ROLLUP_COLUMNS = "charging_point_id, bucket_start, sample_count, power_sum, " +
+            "power_count, energy_sum, energy_count, temperature_sum, temperature_count";
+
+    /**
+     * Độ phân giải bucket, từ mịn tới thô
+     */
+    enum Granularity {
+        MINUTE("telemetry_rollup_minute", ChronoUnit.MINUTES, "minute"),
+        HOUR("telemetry_rollup_hour", ChronoUnit.HOURS, "hour"),
+        DAY("telemetry_rollup_day", ChronoUnit.DAYS, "day");
+
+        final String table;
+        final ChronoUnit unit;
+        final String datePart;
+
+        Granularity(String table, ChronoUnit unit, String datePart) {
+            this.table = table;
+            this.unit = unit;
+            this.datePart = datePart;
+        }
+
+        LocalDateTime floor(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+
+        LocalDateTime ceil(LocalDateTime time) {
+            LocalDateTime floor = floor(time);
+            return floor.equals(time) ? time : floor.plus(1, unit);
+        }
+
+        String mergeSql() {
+            return "MERGE INTO " + table + " WITH (HOLDLOCK) AS r " +
+                    "USING (VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)) AS s (" + ROLLUP_COLUMNS + ") " +
+                    "ON r.charging_point_id = s.charging_point_id AND r.bucket_start = s.bucket_start " +
+                    "WHEN MATCHED THEN UPDATE SET " +
+                    "r.sample_count = r.sample_count + s.sample_count, " +
+                    "r.power_sum = r.power_sum + s.power_sum, " +
+                    "r.power_count = r.power_count + s.power_count, " +
+                    "r.energy_sum = r.energy_sum + s.energy_sum, " +
+                    "r.energy_count = r.energy_count + s.energy_count, " +
+                    "r.temperature_sum = r.temperature_sum + s.temperature_sum, " +
+                    "r.temperature_count = r.temperature_count + s.temperature_count " +
+                    "WHEN NOT MATCHED THEN INSERT (" + ROLLUP_COLUMNS + ") VALUES (" +
+                    "s.charging_point_id, s.bucket_start, s.sample_count, s.power_sum, s.power_count, " +
+                    "s.energy_sum, s.energy_count, s.temperature_sum, s.temperature_count);";
+        }
+
+        String rebuildSql() {
+            String bucket = "DATEADD(" + datePart + ", DATEDIFF(" + datePart + ", 0, recorded_at), 0)";
+            return "INSERT INTO " + table + " (" + ROLLUP_COLUMNS + ") " +
+                    "SELECT charging_point_id, " + bucket + ", COUNT(*), " +
+                    "COALESCE(SUM(current_power_kw), 0), COUNT(current_power_kw), " +
+                    "COALESCE(SUM(energy_delivered_kwh), 0), COUNT(energy_delivered_kwh), " +
+                    "COALESCE(SUM(temperature_c), 0), COUNT(temperature_c) " +
+                    "FROM " + RAW_TABLE + " WHERE recorded_at >= ? AND recorded_at < ? " +
+                    "GROUP BY charging_point_id, " + bucket;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TelemetryArchiveService telemetryArchiveService;
+
+    @Value("${telemetry.rollup.rebuild-lag-minutes:60}")
+    private long rebuildLagMinutes;
+
+    // ==================== INGEST ====================
+
+    /**
+     * Cộng dồn batch telemetry vào các bảng tổng hợp
+     * Gọi trong cùng transaction với batch insert bản ghi thô
+     */
+    public void applyBatch(List<TelemetryReading> batch) {
+        for (Granularity granularity : Granularity.values()) {
+            // TreeMap: MERGE theo thứ tự khóa cố định để các writer không deadlock lẫn nhau
+            Map<BucketKey, Aggregate> buckets = new TreeMap<>(BucketKey.ORDER);
+            for (TelemetryReading reading : batch) {
+                BucketKey key = new BucketKey(reading.getPointId(), granularity.floor(reading.getRecordedAt()));
+                buckets.computeIfAbsent(key, k -> new Aggregate()).add(reading);
+            }
+
+            List<Object[]> args = new ArrayList<>(buckets.size());
+            for (Map.Entry<BucketKey, Aggregate> entry : buckets.entrySet()) {
+                Aggregate agg = entry.getValue();
+                args.add(new Object[] {
+                        entry.getKey().pointId, Timestamp.valueOf(entry.getKey().bucketStart),
+                        agg.sampleCount, agg.powerSum, agg.powerCount, agg.energySum, agg.energyCount,
+                        agg.temperatureSum, agg.temperatureCount });
+            }
+            jdbcTemplate.batchUpdate(granularity.mergeSql(), args);
+        }
+    }
+
+    /**
+     * Tính lại bucket từ bảng thô cho các ngày trong khoảng [from, to]
+     * Dùng cho dữ liệu có trước khi bật rollup. Ngày đang nhận telemetry (chứa now - rebuild-lag-minutes
+     * tới nay) bị cắt khỏi khoảng vì applyBatch vẫn đang MERGE vào bucket của nó.
+     * Các ngày không còn đủ dữ liệu thô (đã archive, hoặc trước / chứa MIN(recorded_at) vì có thể đã bị
+     * retention xóa một phần) bị bỏ qua để không xóa mất bucket lịch sử.
+     */
+    @Transactional
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = Granularity.DAY.floor(from);
+        LocalDateTime end = Granularity.DAY.floor(to).plusDays(1);
+
+        LocalDateTime rebuildable = rebuildableFrom();
+        if (rebuildable == null) {
+            logger.info("No raw telemetry to rebuild rollups from");
+            return 0;
+        }
+        // Bản ghi tới trễ tối đa rebuild-lag-minutes, nên ngày chứa mốc đó vẫn coi là đang nhận
+        LocalDateTime live = Granularity.DAY.floor(LocalDateTime.now().minusMinutes(rebuildLagMinutes));
+        if (end.isAfter(live)) {
+            logger.warn("Telemetry rollup rebuild to {} clamped to {} (buckets still receiving telemetry)", end, live);
+            end = live;
+        }
+        if (start.isBefore(rebuildable)) {
+            logger.warn("Telemetry rollup rebuild from {} clamped to {} (raw data archived or purged before it)",
+                    start, rebuildable);
+            start = rebuildable;
+        }
+        if (!start.isBefore(end)) {
+            return 0;
+        }
+
+        Timestamp startTs = Timestamp.valueOf(start);
+        Timestamp endTs = Timestamp.valueOf(end);
+
+        int rows = 0;
+        for (Granularity granularity : Granularity.values()) {
+            jdbcTemplate.update("DELETE FROM " + granularity.table + " WHERE bucket_start >= ? AND bucket_start < ?",
+                    startTs, endTs);
+            rows += jdbcTemplate.update(granularity.rebuildSql(), startTs, endTs);
+        }
+        logger.info("Rebuilt telemetry rollups from {} to {}: {} buckets", start, end, rows);
+        return rows;
+    }
+
+    /**
+     * Ngày đầu tiên còn đủ dữ liệu thô: sau watermark archive và từ ngày tròn đầu tiên >= MIN(recorded_at)
+     */
+    private LocalDateTime rebuildableFrom() {
+        // MIN(recorded_at) dùng index idx_telemetry_recorded_at
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(recorded_at) FROM " + RAW_TABLE, Timestamp.class);
+        if (oldest == null) {
+            return null;
+        }
+        LocalDateTime from = Granularity.DAY.ceil(oldest.toLocalDateTime());
+        LocalDateTime liveFrom = telemetryArchiveService.getLiveFrom();
+        return liveFrom != null && liveFrom.isAfter(from) ? liveFrom : from;
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Công suất trung bình của điểm sạc trong khoảng thời gian (null nếu không có dữ liệu)
+     */
+    public Double getAveragePowerByChargingPoint(Long pointId, LocalDateTime startDate, LocalDateTime endDate) {
+        Aggregate agg = aggregate(pointId, startDate, endDate);
+        return agg != null && agg.powerCount > 0 ? agg.powerSum / agg.powerCount : null;
+    }
+
+    /**
+     * Tổng năng lượng đã sạc của điểm sạc trong khoảng thời gian
+     */
+    public Double getTotalEnergyByChargingPoint(Long pointId, LocalDateTime startDate, LocalDateTime endDate) {
+        Aggregate agg = aggregate(pointId, startDate, endDate);
+        return agg != null ? agg.energySum : 0.0;
+    }
+
+    /**
+     * Thống kê theo điểm sạc của trạm, cùng dạng với DieuKhienTuXaRepository.getStationStatistics:
+     * [pointId, số bản ghi, công suất TB, tổng năng lượng, nhiệt độ TB]
+     */
+    public List<Object[]> getStationStatistics(Long stationId, LocalDateTime startDate, LocalDateTime endDate) {
+        List<Object[]> results = new ArrayList<>();
+        if (stationId == null || startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            return results;
+        }
+        String filter = "charging_point_id IN (SELECT point_id FROM charger WHERE station_id = ?)";
+        for (Map.Entry<Long, Aggregate> entry : query(filter, stationId, startDate, endDate).entrySet()) {
+            Aggregate agg = entry.getValue();
+            results.add(new Object[] {
+                    entry.getKey(),
+                    agg.sampleCount,
+                    agg.powerCount > 0 ? agg.powerSum / agg.powerCount : null,
+                    agg.energyCount > 0 ? agg.energySum : null,
+                    agg.temperatureCount > 0 ? agg.temperatureSum / agg.temperatureCount : null });
+        }
+        return results;
+    }
+
+    private Aggregate aggregate(Long pointId, LocalDateTime startDate, LocalDateTime endDate) {
+        if (pointId == null || startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            return null;
+        }
+        return query("charging_point_id = ?", pointId, startDate, endDate).get(pointId);
+    }
+
+    /**
+     * Gộp các đoạn (thô + bucket) thành 1 câu UNION ALL, nhóm theo điểm sạc
+     */
+    private Map<Long, Aggregate> query(String filter, Long filterId, LocalDateTime startDate, LocalDateTime endDate) {
+        List<String> parts = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+
+        for (Segment segment : decompose(startDate, endDate)) {
+            if (segment.granularity == null) {
+                parts.add("SELECT charging_point_id, COUNT(*) AS sample_count, " +
+                        "SUM(current_power_kw) AS power_sum, COUNT(current_power_kw) AS power_count, " +
+                        "SUM(energy_delivered_kwh) AS energy_sum, COUNT(energy_delivered_kwh) AS energy_count, " +
+                        "SUM(temperature_c) AS temperature_sum, COUNT(temperature_c) AS temperature_count " +
+                        "FROM " + RAW_TABLE + " WHERE " + filter + " AND recorded_at >= ? AND recorded_at " +
+                        (segment.inclusiveEnd ? "<=" : "<") + " ? GROUP BY charging_point_id");
+            } else {
+                parts.add("SELECT charging_point_id, SUM(sample_count) AS sample_count, " +
+                        "SUM(power_sum) AS power_sum, SUM(power_count) AS power_count, " +
+                        "SUM(energy_sum) AS energy_sum, SUM(energy_count) AS energy_count, " +
+                        "SUM(temperature_sum) AS temperature_sum, SUM(temperature_count) AS temperature_count " +
+                        "FROM " + segment.granularity.table + " WHERE " + filter +
+                        " AND bucket_start >= ? AND bucket_start < ? GROUP BY charging_point_id");
+            }
+            params.add(filterId);
+            params.add(Timestamp.valueOf(segment.from));
+            params.add(Timestamp.valueOf(segment.to));
+        }
+
+        String sql = "SELECT charging_point_id, SUM(sample_count), SUM(power_sum), SUM(power_count), " +
+                "SUM(energy_sum), SUM(energy_count), SUM(temperature_sum), SUM(temperature_count) FROM (" +
+                String.join(" UNION ALL ", parts) + ") s GROUP BY charging_point_id";
+
+        Map<Long, Aggregate> results = new TreeMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            Aggregate agg = new Aggregate();
+            agg.sampleCount = rs.getLong(2);
+            agg.powerSum = rs.getDouble(3);
+            agg.powerCount = rs.getLong(4);
+            agg.energySum = rs.getDouble(5);
+            agg.energyCount = rs.getLong(6);
+            agg.temperatureSum = rs.getDouble(7);
+            agg.temperatureCount = rs.getLong(8);
+            if (agg.sampleCount > 0) {
+                results.put(rs.getLong(1), agg);
+            }
+        }, params.toArray());
+        return results;
+    }
+
+    /**
+     * Tách [startDate, endDate] thành các đoạn dùng bucket thô nhất có thể
+     * (granularity == null nghĩa là quét bảng thô)
+     */
+    static List<Segment> decompose(LocalDateTime startDate, LocalDateTime endDate) {
+        List<Segment> segments = new ArrayList<>();
+        LocalDateTime lo = startDate;
+        LocalDateTime hi = endDate;
+        Granularity finer = null;
+
+        for (Granularity granularity : Granularity.values()) {
+            LocalDateTime alignedLo = granularity.ceil(lo);
+            LocalDateTime alignedHi = granularity.floor(hi);
+            if (!alignedLo.isBefore(alignedHi)) {
+                break;
+            }
+            if (lo.isBefore(alignedLo)) {
+                segments.add(new Segment(finer, lo, alignedLo, false));
+            }
+            if (alignedHi.isBefore(hi) || finer == null) {
+                // Đoạn thô cuối luôn được thêm vì endDate là mốc bao gồm
+                segments.add(new Segment(finer, alignedHi, hi, finer == null));
+            }
+            lo = alignedLo;
+            hi = alignedHi;
+            finer = granularity;
+        }
+        segments.add(new Segment(finer, lo, hi, finer == null));
+        return segments;
+    }
+
+    // ==================== INTERNAL ====================
+
+    static final class Segment {
+        final Granularity granularity;
+        final LocalDateTime from;
+        final LocalDateTime to;
+        final boolean inclusiveEnd;
+
+        Segment(Granularity granularity, LocalDateTime from, LocalDateTime to, boolean inclusiveEnd) {
+            this.granularity = granularity;
+            this.from = from;
+            this.to = to;
+            this.inclusiveEnd = inclusiveEnd;
+        }
+    }
+
+    private static final class BucketKey {
+        static final Comparator<BucketKey> ORDER = Comparator
+                .comparingLong((BucketKey key) -> key.pointId)
+                .thenComparing(key -> key.bucketStart);
+
+        final long pointId;
+        final LocalDateTime bucketStart;
+
+        BucketKey(long pointId, LocalDateTime bucketStart) {
+            this.pointId = pointId;
+            this.bucketStart = bucketStart;
+        }
+    }
+
+    private static final class Aggregate {
+        long sampleCount;
+        double powerSum;
+        long powerCount;
+        double energySum;
+        long energyCount;
+        double temperatureSum;
+        long temperatureCount;
+
+        void add(TelemetryReading reading) {
+            sampleCount++;
+            if (reading.getCurrentPowerKw() != null) {
+                powerSum += reading.getCurrentPowerKw();
+                powerCount++;
+            }
+            if (reading.getEnergyDeliveredKwh() != null) {
+                energySum += reading.getEnergyDeliveredKwh();
+                energyCount++;
+            }
+            if (reading.getTemperatureC() != null) {
+                temperatureSum += reading.getTemperatureC();
+                temperatureCount++;
+            }
+        }
+    }
+}
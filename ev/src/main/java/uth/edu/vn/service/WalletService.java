@@ -0,0 +1,144 @@
+package uth.edu.vn.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uth.edu.vn.entity.GiaoDichVi;
+import uth.edu.vn.enums.WalletTransactionType;
+import uth.edu.vn.repository.GiaoDichViRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cộng / trừ số dư ví bằng 1 câu UPDATE có điều kiện trên nguoi_dung.wallet_balance
+ *
+ * Không đọc - sửa - ghi trên entity User: SQL Server khóa đúng 1 dòng trong lúc UPDATE nên các lần nạp
+ * tiền / thanh toán đồng thời không ghi đè lẫn nhau, và điều kiện wallet_balance >= ? đảm bảo không âm.
+ * Số dư sau giao dịch lấy từ OUTPUT inserted.wallet_balance và được ghi vào sổ cái giao_dich_vi
+ * trong cùng transaction. User.walletBalance là updatable = false nên save(user) không ghi đè số dư.
+ *
+ * H2 (profile test) không có UPDATE ... OUTPUT nên dùng SELECT ... FROM FINAL TABLE (UPDATE ...) tương đương.
+ */
+@Service
+public class WalletService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletService.class);
+
+    private static final String CREDIT_SQL = "UPDATE nguoi_dung SET wallet_balance = COALESCE(wallet_balance, 0) + ? " +
+            "OUTPUT inserted.wallet_balance WHERE id = ?";
+
+    private static final String DEBIT_SQL = "UPDATE nguoi_dung SET wallet_balance = wallet_balance - ? " +
+            "OUTPUT inserted.wallet_balance WHERE id = ? AND wallet_balance >= ?";
+
+    // UPDATE không đổi giá trị, chỉ để giữ khóa dòng nguoi_dung tới hết transaction
+    private static final String LOCK_USER_SQL = "UPDATE nguoi_dung SET wallet_balance = wallet_balance WHERE id = ?";
+
+    private static final String H2_CREDIT_SQL = "SELECT wallet_balance FROM FINAL TABLE (UPDATE nguoi_dung " +
+            "SET wallet_balance = COALESCE(wallet_balance, 0) + ? WHERE id = ?)";
+
+    private static final String H2_DEBIT_SQL = "SELECT wallet_balance FROM FINAL TABLE (UPDATE nguoi_dung " +
+            "SET wallet_balance = wallet_balance - ? WHERE id = ? AND wallet_balance >= ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private GiaoDichViRepository giaoDichViRepository;
+
+    @Autowired
+    private BusinessMetrics businessMetrics;
+
+    private volatile Boolean sqlServer;
+
+    /**
+     * Cộng tiền vào ví, trả về số dư mới (null nếu không tìm thấy user)
+     */
+    @Transactional
+    public BigDecimal credit(Long userId, BigDecimal amount, WalletTransactionType type, String reference) {
+        requirePositive(amount);
+        List<BigDecimal> balance = jdbcTemplate.queryForList(isSqlServer() ? CREDIT_SQL : H2_CREDIT_SQL,
+                BigDecimal.class, amount, userId);
+        if (balance.isEmpty()) {
+            logger.warn("Cannot credit wallet - user {} not found", userId);
+            return null;
+        }
+        giaoDichViRepository.save(new GiaoDichVi(userId, type, amount, balance.get(0), reference));
+        businessMetrics.walletTransaction(type, amount);
+        return balance.get(0);
+    }
+
+    /**
+     * Như credit nhưng chỉ cộng 1 lần cho mỗi (user, reference): đã có giao dịch cùng reference thì trả về
+     * balanceAfter của giao dịch đó. Khóa dòng user trước khi kiểm tra nên 2 lần gửi đồng thời không cùng cộng.
+     */
+    @Transactional
+    public BigDecimal creditOnce(Long userId, BigDecimal amount, WalletTransactionType type, String reference) {
+        requirePositive(amount);
+        if (jdbcTemplate.update(LOCK_USER_SQL, userId) == 0) {
+            logger.warn("Cannot credit wallet - user {} not found", userId);
+            return null;
+        }
+        Optional<GiaoDichVi> existing = giaoDichViRepository.findFirstByUserIdAndReference(userId, reference);
+        if (existing.isPresent()) {
+            logger.info("Wallet credit {} of user {} already applied", reference, userId);
+            return existing.get().getBalanceAfter();
+        }
+        return credit(userId, amount, type, reference);
+    }
+
+    /**
+     * Trừ tiền trong ví nếu đủ số dư, trả về số dư mới (null nếu không đủ số dư hoặc không tìm thấy user)
+     */
+    @Transactional
+    public BigDecimal debit(Long userId, BigDecimal amount, WalletTransactionType type, String reference) {
+        requirePositive(amount);
+        List<BigDecimal> balance = jdbcTemplate.queryForList(isSqlServer() ? DEBIT_SQL : H2_DEBIT_SQL,
+                BigDecimal.class, amount, userId, amount);
+        if (balance.isEmpty()) {
+            logger.warn("Cannot debit {} from wallet of user {} - insufficient balance", amount, userId);
+            return null;
+        }
+        giaoDichViRepository.save(new GiaoDichVi(userId, type, amount.negate(), balance.get(0), reference));
+        businessMetrics.walletTransaction(type, amount);
+        return balance.get(0);
+    }
+
+    /**
+     * Số dư hiện tại đọc thẳng từ DB (entity User trong persistence context có thể đã cũ)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(Long userId) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(
+                "SELECT COALESCE(wallet_balance, 0) FROM nguoi_dung WHERE id = ?", BigDecimal.class, userId);
+        return balance.isEmpty() ? null : balance.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<GiaoDichVi> getRecentTransactions(Long userId, int limit) {
+        return giaoDichViRepository.findRecentByUser(userId, PageRequest.of(0, limit));
+    }
+
+    private boolean isSqlServer() {
+        Boolean detected = sqlServer;
+        if (detected == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            detected = product != null && product.toLowerCase().contains("sql server");
+            sqlServer = detected;
+        }
+        return detected;
+    }
+
+    private static void requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Wallet amount must be positive: " + amount);
+        }
+    }
+}
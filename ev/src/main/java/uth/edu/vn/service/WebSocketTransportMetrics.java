@@ -0,0 +1,116 @@
+package uth.edu.vn.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm frame bị gộp / bị bỏ và số kết nối bị ngắt ở tầng WebSocket transport,
+ * cùng số phiên STOMP đang kết nối và số subscription đang mở
+ */
+@Component
+public class WebSocketTransportMetrics {
+
+    private final LongAdder coalescedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder terminatedSessions = new LongAdder();
+
+    // STOMP sessionId -> các subscription id đang mở
+    private final Map<String, Set<String>> subscriptions = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId != null) {
+            subscriptions.putIfAbsent(sessionId, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        subscriptions.remove(event.getSessionId());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            subscriptions.computeIfAbsent(accessor.getSessionId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(accessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Set<String> subscribed = accessor.getSessionId() != null ? subscriptions.get(accessor.getSessionId()) : null;
+        if (subscribed != null && accessor.getSubscriptionId() != null) {
+            subscribed.remove(accessor.getSubscriptionId());
+        }
+    }
+
+    /**
+     * Frame trạng thái cũ chưa gửi bị thay bằng frame mới hơn của cùng phiên sạc
+     */
+    public void frameCoalesced() {
+        coalescedFrames.increment();
+    }
+
+    /**
+     * Frame trạng thái bị bỏ vì vượt giới hạn buffer của kết nối
+     */
+    public void frameDropped() {
+        droppedFrames.increment();
+    }
+
+    /**
+     * Kết nối bị ngắt vì vượt giới hạn buffer hoặc thời gian gửi
+     */
+    public void sessionTerminated() {
+        terminatedSessions.increment();
+    }
+
+    public long getCoalescedFrames() {
+        return coalescedFrames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getTerminatedSessions() {
+        return terminatedSessions.sum();
+    }
+
+    public int getConnectedSessions() {
+        return subscriptions.size();
+    }
+
+    public int getSubscriptions() {
+        int count = 0;
+        for (Set<String> subscribed : subscriptions.values()) {
+            count += subscribed.size();
+        }
+        return count;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("coalescedFrames", getCoalescedFrames());
+        metrics.put("droppedFrames", getDroppedFrames());
+        metrics.put("terminatedSessions", getTerminatedSessions());
+        metrics.put("connectedSessions", getConnectedSessions());
+        metrics.put("subscriptions", getSubscriptions());
+        return metrics;
+    }
+}
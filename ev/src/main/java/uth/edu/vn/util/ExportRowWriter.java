@@ -0,0 +1,185 @@
+package uth.edu.vn.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import uth.edu.vn.enums.ExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Ghi từng dòng export (CSV / JSON lines) thẳng ra OutputStream qua buffer cố định,
+ * không giữ dòng nào trong bộ nhớ
+ *
+ * Dùng: start(columns) 1 lần, writeRow(values) cho mỗi dòng, rồi close() (flush, không đóng stream gốc).
+ */
+public abstract class ExportRowWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final Writer writer;
+    protected String[] columns;
+    private long rows;
+
+    protected ExportRowWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public static ExportRowWriter create(ExportFormat format, OutputStream out) throws IOException {
+        return format == ExportFormat.JSONL ? new JsonLines(out) : new Csv(out);
+    }
+
+    public static String contentType(ExportFormat format) {
+        return format == ExportFormat.JSONL ? "application/x-ndjson; charset=UTF-8" : "text/csv; charset=UTF-8";
+    }
+
+    public static String extension(ExportFormat format) {
+        return format == ExportFormat.JSONL ? "jsonl" : "csv";
+    }
+
+    public void start(String[] columns) throws IOException {
+        this.columns = columns;
+    }
+
+    /**
+     * values theo đúng thứ tự columns; mảng có thể được tái sử dụng giữa các dòng
+     */
+    public void writeRow(Object[] values) throws IOException {
+        doWriteRow(values);
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    protected abstract void doWriteRow(Object[] values) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private static String text(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return value.toString();
+    }
+
+    // ==================== CSV ====================
+
+    private static final class Csv extends ExportRowWriter {
+
+        Csv(OutputStream out) throws IOException {
+            super(out);
+            // BOM để Excel đọc đúng tiếng Việt
+            writer.write('\uFEFF');
+        }
+
+        @Override
+        public void start(String[] columns) throws IOException {
+            super.start(columns);
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(columns[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        protected void doWriteRow(Object[] values) throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeField(text(values[i]));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: chỉ bọc nháy khi có dấu phẩy, nháy kép hoặc xuống dòng
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+    }
+
+    // ==================== JSON LINES ====================
+
+    private static final class JsonLines extends ExportRowWriter {
+
+        private final JsonGenerator generator;
+
+        JsonLines(OutputStream out) throws IOException {
+            super(out);
+            // Generator ghi vào cùng buffer, không tự đóng writer
+            generator = JSON_FACTORY.createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Tự xuống dòng sau mỗi object thay cho dấu cách mặc định giữa các root value
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void doWriteRow(Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                Object value = values[i];
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+                    generator.writeNumber(((Number) value).longValue());
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.doubleValue());
+                } else if (value instanceof Boolean bool) {
+                    generator.writeBoolean(bool);
+                } else {
+                    generator.writeString(text(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.flush();
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package uth.edu.vn.util;
+
+/**
+ * Các hàm tính toán địa lý dùng chung (khoảng cách, bounding box)
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** Số km trên một độ vĩ (xấp xỉ, dùng cho bounding box) */
+    public static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Khoảng cách giữa 2 điểm theo công thức Haversine (km)
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(latDistance / 2);
+        double sinLon = Math.sin(lonDistance / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * Nửa chiều rộng (theo độ kinh) của bounding box bán kính radiusKm tại vĩ độ latitude
+     */
+    public static double longitudeSpanDegrees(double latitude, double radiusKm) {
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        if (cosLat < 0.01) {
+            return 180.0; // Gần cực: quét toàn bộ kinh độ
+        }
+        return Math.min(180.0, radiusKm / (KM_PER_DEGREE_LAT * cosLat));
+    }
+
+    /**
+     * Nửa chiều cao (theo độ vĩ) của bounding box bán kính radiusKm
+     */
+    public static double latitudeSpanDegrees(double radiusKm) {
+        return radiusKm / KM_PER_DEGREE_LAT;
+    }
+}
@@ -0,0 +1,65 @@
+package uth.edu.vn.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Con trỏ phân trang keyset (thời gian, id) dạng chuỗi base64url để client gửi lại nguyên vẹn
+ *
+ * Có thể mang thêm runningTotal (tổng cộng dồn tới dòng kế tiếp) để trang sau không phải SUM lại từ đầu.
+ */
+public final class KeysetCursor {
+
+    private final LocalDateTime time;
+    private final Long id;
+    private final BigDecimal runningTotal;
+
+    public KeysetCursor(LocalDateTime time, Long id) {
+        this(time, id, null);
+    }
+
+    public KeysetCursor(LocalDateTime time, Long id, BigDecimal runningTotal) {
+        this.time = time;
+        this.id = id;
+        this.runningTotal = runningTotal;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * null nếu cursor không mang running total
+     */
+    public BigDecimal getRunningTotal() {
+        return runningTotal;
+    }
+
+    public String encode() {
+        String raw = time + "|" + id + (runningTotal != null ? "|" + runningTotal.toPlainString() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã cursor; ném IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Expected 2 or 3 parts");
+            }
+            return new KeysetCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]),
+                    parts.length == 3 ? new BigDecimal(parts[2]) : null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uth.edu.vn.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bộ đếm theo request (số câu SQL, thời gian DB, câu SQL lặp nhiều nhất) gắn với thread đang xử lý request
+ *
+ * RequestLoggingFilter gọi begin() / end(); DataSource được bọc (DataSourceTimingConfig)
+ * gọi recordStatement() sau mỗi lần execute. Ngoài request (job, worker) không ghi nhận gì.
+ * Cùng 1 câu SQL lặp lại nhiều lần trong 1 request là dấu hiệu N+1.
+ */
+public final class RequestMetrics {
+
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+
+    private int statementCount;
+    private long dbNanos;
+
+    // SQL -> số lần chạy trong request
+    private final Map<String, Integer> repeats = new HashMap<>();
+    private int maxRepeat;
+    private String maxRepeatSql;
+
+    private RequestMetrics() {
+    }
+
+    public static RequestMetrics begin() {
+        RequestMetrics metrics = new RequestMetrics();
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    // Khôi phục bộ đếm ngoài sau 1 đoạn đo lồng bên trong (QueryBudget trong src/test)
+    static void restore(RequestMetrics previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Bộ đếm của request hiện tại, null nếu không ở trong request
+     */
+    public static RequestMetrics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param sql câu SQL (có placeholder ?), null nếu không biết
+     */
+    public static void recordStatement(long nanos, String sql) {
+        RequestMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.statementCount++;
+            metrics.dbNanos += nanos;
+            if (sql != null) {
+                int count = metrics.repeats.merge(sql, 1, Integer::sum);
+                if (count > metrics.maxRepeat) {
+                    metrics.maxRepeat = count;
+                    metrics.maxRepeatSql = sql;
+                }
+            }
+        }
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public long getDbMillis() {
+        return dbNanos / 1_000_000;
+    }
+
+    /**
+     * Số lần chạy của câu SQL lặp nhiều nhất
+     */
+    public int getMaxRepeat() {
+        return maxRepeat;
+    }
+
+    public String getMaxRepeatSql() {
+        return maxRepeatSql;
+    }
+}
@@ -0,0 +1,553 @@
+package uth.edu.vn.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Định dạng file archive telemetry dạng cột (1 file / điểm sạc / ngày)
+ *
+ * Header: magic, version, pointId, số dòng; sau đó lần lượt từng cột, mỗi cột có độ dài byte ở đầu:
+ * - telemetry_id, vehicle_id, recorded_at (epoch micro): delta + zigzag varint
+ * - các cột số thực: nén XOR kiểu Gorilla (giá trị lặp lại chỉ tốn 1 bit), null lưu bằng NaN
+ * - status: 1 byte / dòng; mã lỗi / thông điệp lỗi: danh sách thưa theo số dòng
+ */
+public final class TelemetryArchiveCodec {
+
+    public static final int MAGIC = 0x45565441; // "EVTA"
+    public static final byte VERSION = 1;
+
+    // Thứ tự các cột số thực
+    public static final int SOC = 0;
+    public static final int POWER = 1;
+    public static final int ENERGY = 2;
+    public static final int VOLTAGE = 3;
+    public static final int CURRENT = 4;
+    public static final int TEMPERATURE = 5;
+    public static final int DURATION = 6;
+    public static final int DOUBLE_COLUMNS = 7;
+
+    private TelemetryArchiveCodec() {
+    }
+
+    // ==================== FILE IO ====================
+
+    /**
+     * Ghi block ra file (ghi file tạm rồi rename để reader không bao giờ thấy file dở dang)
+     */
+    public static void write(Path file, Block block) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = encode(block);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Đọc file qua FileChannel.map và decode thẳng từ vùng map (không copy file vào heap)
+     *
+     * Dùng cho truy vấn lịch sử. Vùng map chỉ được giải phóng khi GC và trên Windows giữ file bị khóa,
+     * nên khi sắp ghi đè chính file đó (archive lại ngày) dùng readCopy.
+     */
+    public static Block read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Đọc cả file vào heap buffer rồi decode, file không còn bị giữ sau khi trả về
+     */
+    public static Block readCopy(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Telemetry archive file too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of telemetry archive file " + file);
+                }
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    // ==================== ENCODE / DECODE ====================
+
+    public static ByteBuffer encode(Block block) {
+        int n = block.size;
+        List<Out> sections = new ArrayList<>();
+
+        sections.add(deltaVarints(block.telemetryIds, n));
+        sections.add(deltaVarints(block.recordedAtMicros, n));
+        sections.add(deltaVarints(block.vehicleIds, n));
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            sections.add(xorDoubles(block.values[column], n));
+        }
+
+        Out statuses = new Out(n);
+        for (int i = 0; i < n; i++) {
+            statuses.writeByte(block.statuses[i]);
+        }
+        sections.add(statuses);
+
+        Out errors = new Out(16);
+        int errorRows = 0;
+        for (int i = 0; i < n; i++) {
+            if (block.errorCodes[i] != null || block.errorMessages[i] != null) {
+                errorRows++;
+            }
+        }
+        errors.writeVarLong(errorRows);
+        for (int i = 0; i < n; i++) {
+            if (block.errorCodes[i] != null || block.errorMessages[i] != null) {
+                errors.writeVarLong(i);
+                errors.writeString(block.errorCodes[i]);
+                errors.writeString(block.errorMessages[i]);
+            }
+        }
+        sections.add(errors);
+
+        int total = 4 + 1 + 8 + 4;
+        for (Out section : sections) {
+            total += 4 + section.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).put(VERSION).putLong(block.pointId).putInt(n);
+        for (Out section : sections) {
+            buffer.putInt(section.length).put(section.bytes, 0, section.length);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public static Block decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a telemetry archive file");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported telemetry archive version " + version);
+        }
+        long pointId = in.getLong();
+        int n = in.getInt();
+
+        Block block = new Block(pointId, n);
+        readDeltaVarints(section(in), block.telemetryIds, n);
+        readDeltaVarints(section(in), block.recordedAtMicros, n);
+        readDeltaVarints(section(in), block.vehicleIds, n);
+        for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+            readXorDoubles(section(in), block.values[column], n);
+        }
+
+        ByteBuffer statuses = section(in);
+        statuses.get(block.statuses, 0, n);
+
+        ByteBuffer errors = section(in);
+        long errorRows = readVarLong(errors);
+        for (long e = 0; e < errorRows; e++) {
+            int row = (int) readVarLong(errors);
+            block.errorCodes[row] = readString(errors);
+            block.errorMessages[row] = readString(errors);
+        }
+        return block;
+    }
+
+    private static ByteBuffer section(ByteBuffer in) {
+        int length = in.getInt();
+        ByteBuffer slice = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return slice;
+    }
+
+    // ==================== VARINT ====================
+
+    private static Out deltaVarints(long[] values, int n) {
+        Out out = new Out(n * 2);
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            long delta = values[i] - prev;
+            out.writeVarLong((delta << 1) ^ (delta >> 63));
+            prev = values[i];
+        }
+        return out;
+    }
+
+    private static void readDeltaVarints(ByteBuffer in, long[] values, int n) {
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            long zigzag = readVarLong(in);
+            prev += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = prev;
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== XOR DOUBLES ====================
+
+    private static Out xorDoubles(double[] values, int n) {
+        Out out = new Out(n);
+        BitWriter writer = new BitWriter(out);
+        long prev = 0;
+        int prevLeading = -1;
+        int prevTrailing = 0;
+
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToLongBits(values[i]);
+            if (i == 0) {
+                writer.write(bits, 64);
+            } else {
+                long xor = bits ^ prev;
+                if (xor == 0) {
+                    writer.write(0, 1);
+                } else {
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                        // Phần bit có nghĩa nằm trong cửa sổ của giá trị trước
+                        writer.write(0b10, 2);
+                        writer.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int length = 64 - leading - trailing;
+                        writer.write(0b11, 2);
+                        writer.write(leading, 5);
+                        writer.write(length - 1, 6);
+                        writer.write(xor >>> trailing, length);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+            prev = bits;
+        }
+        writer.flush();
+        return out;
+    }
+
+    private static void readXorDoubles(ByteBuffer in, double[] values, int n) {
+        BitReader reader = new BitReader(in);
+        long prev = 0;
+        int prevLeading = 0;
+        int prevTrailing = 0;
+
+        for (int i = 0; i < n; i++) {
+            long bits;
+            if (i == 0) {
+                bits = reader.read(64);
+            } else if (reader.read(1) == 0) {
+                bits = prev;
+            } else if (reader.read(1) == 0) {
+                bits = prev ^ (reader.read(64 - prevLeading - prevTrailing) << prevTrailing);
+            } else {
+                prevLeading = (int) reader.read(5);
+                int length = (int) reader.read(6) + 1;
+                prevTrailing = 64 - prevLeading - length;
+                bits = prev ^ (reader.read(length) << prevTrailing);
+            }
+            values[i] = Double.longBitsToDouble(bits);
+            prev = bits;
+        }
+    }
+
+    // ==================== BLOCK ====================
+
+    /**
+     * Telemetry của 1 điểm sạc dạng cột, sắp xếp theo recorded_at
+     */
+    public static final class Block {
+        public final long pointId;
+        public final int size;
+        public final long[] telemetryIds;
+        public final long[] recordedAtMicros;
+        public final long[] vehicleIds;       // 0 = không có xe
+        public final double[][] values;       // NaN = null
+        public final byte[] statuses;         // ordinal + 1, 0 = null
+        public final String[] errorCodes;
+        public final String[] errorMessages;
+
+        Block(long pointId, int size) {
+            this.pointId = pointId;
+            this.size = size;
+            this.telemetryIds = new long[size];
+            this.recordedAtMicros = new long[size];
+            this.vehicleIds = new long[size];
+            this.values = new double[DOUBLE_COLUMNS][size];
+            this.statuses = new byte[size];
+            this.errorCodes = new String[size];
+            this.errorMessages = new String[size];
+        }
+
+        public LocalDateTime recordedAt(int row) {
+            return fromMicros(recordedAtMicros[row]);
+        }
+
+        public Double value(int column, int row) {
+            double value = values[column][row];
+            return Double.isNaN(value) ? null : value;
+        }
+
+        public Long vehicleId(int row) {
+            return vehicleIds[row] != 0 ? vehicleIds[row] : null;
+        }
+
+        /**
+         * Dòng đầu tiên có recorded_at >= time
+         */
+        public int lowerBound(LocalDateTime time) {
+            long micros = toMicros(time);
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (recordedAtMicros[mid] < micros) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Dòng đầu tiên có recorded_at > time
+         */
+        public int upperBound(LocalDateTime time) {
+            long micros = toMicros(time);
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (recordedAtMicros[mid] <= micros) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Gom dòng (có thể trùng telemetry_id khi archive lại 1 ngày) thành Block đã sắp xếp
+     */
+    public static final class Builder {
+        private final long pointId;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        public Builder(long pointId) {
+            this.pointId = pointId;
+        }
+
+        public Builder add(long telemetryId, LocalDateTime recordedAt, Long vehicleId, Double[] values,
+                Integer statusOrdinal, String errorCode, String errorMessage) {
+            rows.add(new Object[] { telemetryId, toMicros(recordedAt), vehicleId, values, statusOrdinal,
+                    errorCode, errorMessage });
+            return this;
+        }
+
+        public Builder addAll(Block block) {
+            for (int i = 0; i < block.size; i++) {
+                Double[] values = new Double[DOUBLE_COLUMNS];
+                for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                    values[column] = block.value(column, i);
+                }
+                rows.add(new Object[] { block.telemetryIds[i], block.recordedAtMicros[i], block.vehicleId(i), values,
+                        block.statuses[i] != 0 ? block.statuses[i] - 1 : null,
+                        block.errorCodes[i], block.errorMessages[i] });
+            }
+            return this;
+        }
+
+        public int size() {
+            return rows.size();
+        }
+
+        public Block build() {
+            rows.sort(Comparator.comparingLong((Object[] row) -> (Long) row[1]).thenComparingLong(row -> (Long) row[0]));
+            Set<Long> seen = new HashSet<>();
+            List<Object[]> unique = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                if (seen.add((Long) row[0])) {
+                    unique.add(row);
+                }
+            }
+
+            Block block = new Block(pointId, unique.size());
+            for (int i = 0; i < unique.size(); i++) {
+                Object[] row = unique.get(i);
+                block.telemetryIds[i] = (Long) row[0];
+                block.recordedAtMicros[i] = (Long) row[1];
+                block.vehicleIds[i] = row[2] != null ? (Long) row[2] : 0;
+                Double[] values = (Double[]) row[3];
+                for (int column = 0; column < DOUBLE_COLUMNS; column++) {
+                    block.values[column][i] = values[column] != null ? values[column] : Double.NaN;
+                }
+                block.statuses[i] = row[4] != null ? (byte) ((Integer) row[4] + 1) : 0;
+                block.errorCodes[i] = (String) row[5];
+                block.errorMessages[i] = (String) row[6];
+            }
+            return block;
+        }
+    }
+
+    public static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    // ==================== BUFFERS ====================
+
+    private static final class Out {
+        byte[] bytes;
+        int length;
+
+        Out(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeByte(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(data.length + 1L);
+            for (byte b : data) {
+                writeByte(b);
+            }
+        }
+    }
+
+    private static final class BitWriter {
+        private final Out out;
+        private int current;
+        private int used;
+
+        BitWriter(Out out) {
+            this.out = out;
+        }
+
+        void write(long value, int bits) {
+            while (bits > 0) {
+                int free = 8 - used;
+                int take = Math.min(free, bits);
+                int chunk = (int) ((value >>> (bits - take)) & ((1L << take) - 1));
+                current |= chunk << (free - take);
+                used += take;
+                bits -= take;
+                if (used == 8) {
+                    out.writeByte(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        void flush() {
+            if (used > 0) {
+                out.writeByte(current);
+                current = 0;
+                used = 0;
+            }
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private int current;
+        private int used = 8;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            while (bits > 0) {
+                if (used == 8) {
+                    current = in.get() & 0xff;
+                    used = 0;
+                }
+                int available = 8 - used;
+                int take = Math.min(available, bits);
+                int chunk = (current >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                used += take;
+                bits -= take;
+            }
+            return value;
+        }
+    }
+}
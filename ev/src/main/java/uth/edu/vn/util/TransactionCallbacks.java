@@ -0,0 +1,31 @@
+package uth.edu.vn.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tiện ích chạy callback sau khi transaction hiện tại commit thành công.
+ * Dùng để đồng bộ các cache/index trong bộ nhớ với database:
+ * nếu transaction rollback thì cache không bị cập nhật sai.
+ */
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Chạy action sau khi commit; nếu không có transaction thì chạy ngay
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
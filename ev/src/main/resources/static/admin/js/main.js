@@ -9,6 +9,7 @@ import { renderAccountsPage } from './accounts.js';
 import { renderRevenuePage } from './revenue.js';
 import { renderSupportPage } from './support.js';
 import { renderStaffManagementPage } from './staff-management.js';
+import { API_BASE_URL } from './api-client.js';
 
 export function renderPage() {
   const mainContent = document.querySelector('.main-content');
@@ -47,6 +48,15 @@ export function renderPage() {
 
 function handleLogout() {
   if (confirm('Bạn có chắc chắn muốn đăng xuất?')) {
+    // Thu hồi token phía server (không chờ kết quả)
+    const token = localStorage.getItem('accessToken');
+    if (token) {
+      fetch(`${API_BASE_URL}/auth/logout`, {
+        method: 'POST',
+        headers: { 'Authorization': `Bearer ${token}` },
+        keepalive: true
+      }).catch(() => {});
+    }
     localStorage.clear();
     window.location.href = './login.html';
   }
@@ -27,6 +27,16 @@ export function redirectToLogin(redirectUrl = null) {
     window.location.href = url;
 }
 
+/**
+ * Khóa cho header Idempotency-Key: tạo 1 lần cho mỗi thao tác, gửi lại nguyên khóa khi retry
+ */
+export function newIdempotencyKey() {
+    if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+        return window.crypto.randomUUID();
+    }
+    return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+}
+
 // ============= HTTP Client =============
 async function apiRequest(endpoint, options = {}) {
     const token = getAuthToken();
@@ -84,8 +94,9 @@ export const driverAPI = {
 
     // Wallet
     getWallet: () => apiRequest('/profile/wallet'),
-    topUpWallet: (amount, method) => apiRequest('/payment/wallet/topup', {
+    topUpWallet: (amount, method, idempotencyKey = newIdempotencyKey()) => apiRequest('/payment/wallet/topup', {
         method: 'POST',
+        headers: { 'Idempotency-Key': idempotencyKey },
         body: JSON.stringify({ amount, paymentMethod: method })
     }),
 
@@ -114,16 +125,27 @@ export const driverAPI = {
     }),
 
     // History
+    // Lịch sử sạc phân trang theo cursor: đi hết các trang (mỗi trang tối đa 100 phiên)
     getChargingHistory: async (userId) => {
-        const data = await apiRequest('/history/charging');
-        const sessions = Array.isArray(data) ? data : (data.history || data.sessions || []);
+        let sessions = [];
+        let cursor = null;
+        do {
+            const query = cursor ? `?limit=100&cursor=${encodeURIComponent(cursor)}` : '?limit=100';
+            const data = await apiRequest(`/history/charging${query}`);
+            if (Array.isArray(data)) {
+                return data;
+            }
+            sessions = sessions.concat(data.history || data.sessions || []);
+            cursor = data.nextCursor || null;
+        } while (cursor);
         return sessions;
     },
     getSessionDetail: (sessionId) => apiRequest(`/charging/session/${sessionId}`),
 
     // Payment
-    paySession: (sessionId, paymentMethod) => apiRequest('/payment/charge', {
+    paySession: (sessionId, paymentMethod, idempotencyKey = newIdempotencyKey()) => apiRequest('/payment/charge', {
         method: 'POST',
+        headers: { 'Idempotency-Key': idempotencyKey },
         body: JSON.stringify({ sessionId, paymentMethod })
     }),
     getInvoice: (sessionId) => apiRequest(`/payment/invoice/${sessionId}`)
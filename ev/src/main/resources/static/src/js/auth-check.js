@@ -86,6 +86,9 @@ function updateNavbar() {
 function handleLogout(e) {
   if (e) e.preventDefault();
 
+  // Thu hồi token phía server (không chờ kết quả)
+  revokeTokensOnServer(localStorage.getItem('accessToken'));
+
   // Clear all auth data
   localStorage.removeItem('accessToken');
   localStorage.removeItem('refreshToken');
@@ -109,6 +112,16 @@ function requireAuth() {
 // API call helper with automatic token injection
 const API_BASE_URL = window.API_BASE_URL || 'http://localhost:8080/api';
 const API_ORIGIN = API_BASE_URL.replace(/\/$/, '').replace(/\/api$/, '');
+
+// POST /auth/logout: access / refresh token hiện có bị từ chối kể cả khi đã bị lộ
+function revokeTokensOnServer(token) {
+  if (!token) return;
+  fetch(`${API_BASE_URL}/auth/logout`, {
+    method: 'POST',
+    headers: { 'Authorization': `Bearer ${token}` },
+    keepalive: true
+  }).catch(() => {});
+}
 async function apiCall(endpoint, options = {}) {
   const auth = checkAuthStatus();
   
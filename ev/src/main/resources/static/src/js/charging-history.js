@@ -7,6 +7,10 @@ const API_BASE_URL = window.API_BASE_URL || 'http://localhost:8080/api';
 
 let allSessions = [];
 let filteredSessions = [];
+let nextCursor = null;
+// Tổng của toàn bộ lịch sử do server trả ở trang đầu (không chỉ các trang đã tải)
+let serverTotals = null;
+const PAGE_SIZE = 50;
 
 // DOM Elements
 const sessionsList = document.getElementById('sessionsList');
@@ -28,15 +32,18 @@ function checkAuth() {
     return true;
 }
 
-// Fetch charging history from API
-async function fetchChargingHistory() {
+// Fetch charging history from API (phân trang theo cursor, append khi bấm "Xem thêm")
+async function fetchChargingHistory(cursor = null) {
     if (!checkAuth()) return;
 
     try {
         const token = localStorage.getItem('accessToken');
         const userId = localStorage.getItem('userId');
 
-        const endpoint = `${API_BASE_URL}/history/charging`;
+        let endpoint = `${API_BASE_URL}/history/charging?limit=${PAGE_SIZE}`;
+        if (cursor) {
+            endpoint += `&cursor=${encodeURIComponent(cursor)}`;
+        }
 
         const response = await fetch(endpoint, {
             method: 'GET',
@@ -58,17 +65,27 @@ async function fetchChargingHistory() {
         const data = await response.json();
         // Accept either { history: [...] }, { sessions: [...] } or a raw array
         const sessions = Array.isArray(data) ? data : (data.history || data.sessions || []);
-        allSessions = sessions;
-        filteredSessions = [...allSessions];
+        allSessions = cursor ? allSessions.concat(sessions) : sessions;
+        nextCursor = data.nextCursor || null;
+        if (!cursor) {
+            serverTotals = data.completedSessions !== undefined ? {
+                completedSessions: data.completedSessions,
+                totalEnergy: data.totalEnergy,
+                totalCost: data.totalCost
+            } : null;
+        }
 
-        renderHistory();
-        updateStats();
+        applyFilters();
 
     } catch (error) {
         console.error('Error fetching history:', error);
-        // Show empty state on error
-        allSessions = [];
-        filteredSessions = [];
+        // Show empty state on error (giữ lại các trang đã tải nếu lỗi khi tải thêm)
+        if (!cursor) {
+            allSessions = [];
+            filteredSessions = [];
+            nextCursor = null;
+            serverTotals = null;
+        }
         renderHistory();
         updateStats();
     }
@@ -76,7 +93,7 @@ async function fetchChargingHistory() {
 
 // Render history list
 function renderHistory() {
-    if (filteredSessions.length === 0) {
+    if (filteredSessions.length === 0 && !nextCursor) {
         sessionsList.innerHTML = `
             <div class="empty-state">
                 <i class="fas fa-inbox"></i>
@@ -132,21 +149,55 @@ function renderHistory() {
         `;
     }).join('');
 
-    sessionsList.innerHTML = html;
+    const loadMore = nextCursor
+        ? `<div class="load-more"><button class="export-btn" id="loadMoreBtn">Xem thêm</button></div>`
+        : '';
+
+    sessionsList.innerHTML = html + loadMore;
+
+    const loadMoreBtn = document.getElementById('loadMoreBtn');
+    if (loadMoreBtn) {
+        loadMoreBtn.addEventListener('click', () => {
+            loadMoreBtn.disabled = true;
+            fetchChargingHistory(nextCursor);
+        });
+    }
 }
 
 // Update statistics
+// Không lọc: tổng toàn bộ lịch sử từ server; đang lọc: chỉ tính được trên các phiên đã tải, ghi rõ trên nhãn
 function updateStats() {
-    const completedSessions = filteredSessions.filter(s => s.status === 'COMPLETED');
+    const filtering = statusFilter.value || dateFrom.value || dateTo.value;
+    let count, totalEnergy, totalCost;
+
+    if (serverTotals && !filtering) {
+        count = serverTotals.completedSessions;
+        totalEnergy = serverTotals.totalEnergy;
+        totalCost = serverTotals.totalCost;
+    } else {
+        const completedSessions = filteredSessions.filter(s => s.status === 'COMPLETED');
+        count = completedSessions.length;
+        totalEnergy = completedSessions.reduce((sum, s) => sum + s.energyConsumed, 0);
+        totalCost = completedSessions.reduce((sum, s) => sum + s.totalCost, 0);
+    }
 
-    const totalEnergy = completedSessions.reduce((sum, s) => sum + s.energyConsumed, 0);
-    const totalCost = completedSessions.reduce((sum, s) => sum + s.totalCost, 0);
+    const suffix = serverTotals && !filtering ? '' : ' (đã tải)';
+    setStatLabel(totalSessionsEl, 'Tổng phiên sạc' + suffix);
+    setStatLabel(totalEnergyEl, 'Tổng năng lượng' + suffix);
+    setStatLabel(totalCostEl, 'Tổng chi phí' + suffix);
 
-    totalSessionsEl.textContent = completedSessions.length;
+    totalSessionsEl.textContent = count;
     totalEnergyEl.textContent = totalEnergy.toFixed(2) + ' kWh';
     totalCostEl.textContent = formatCurrency(totalCost);
 }
 
+function setStatLabel(valueEl, text) {
+    const label = valueEl.parentElement.querySelector('.label');
+    if (label) {
+        label.textContent = text;
+    }
+}
+
 // Filter sessions
 function applyFilters() {
     filteredSessions = allSessions.filter(session => {
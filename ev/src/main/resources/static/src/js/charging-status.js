@@ -8,6 +8,7 @@
 let stompClient = null;
 let sessionId = null;
 let isConnected = false;
+let currentStatus = {}; // State đã gộp từ các message FULL/DELTA
 
 // Get session ID from URL parameter
 function getSessionIdFromUrl() {
@@ -77,8 +78,15 @@ function onMessageReceived(payload) {
     const update = JSON.parse(payload.body);
     console.log('Received update:', update);
     
+    // DELTA chỉ chứa các field thay đổi -> gộp vào state hiện tại; FULL (hoặc không có type) thay thế toàn bộ
+    if (update.type === 'DELTA') {
+        currentStatus = Object.assign({}, currentStatus, update);
+    } else {
+        currentStatus = update;
+    }
+    
     // Update UI with new data
-    updateUI(update);
+    updateUI(currentStatus);
 }
 
 // Update UI with charging status
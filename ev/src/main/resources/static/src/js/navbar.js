@@ -161,6 +161,16 @@ class Navbar {
 
     handleLogout() {
         if (confirm('Bạn có chắc muốn đăng xuất?')) {
+            // Thu hồi token phía server (không chờ kết quả)
+            const token = localStorage.getItem('accessToken');
+            if (token) {
+                fetch(`${window.API_BASE_URL}/auth/logout`, {
+                    method: 'POST',
+                    headers: { 'Authorization': `Bearer ${token}` },
+                    keepalive: true
+                }).catch(() => {});
+            }
+
             // Clear localStorage
             localStorage.removeItem('accessToken');
             localStorage.removeItem('refreshToken');
@@ -104,6 +104,14 @@ async function displayProfile() {
             if (editEmail) editEmail.value = finalEmail;
             if (editPhone) editPhone.value = finalPhone;
 
+            // Tổng số giao dịch / chi tiêu tháng này lấy từ server (không đếm trên 5 dòng lịch sử)
+            const spending = data.spending;
+            const historyCount = document.getElementById('historyCount');
+            if (spending && historyCount) {
+                const monthTotal = Number(spending.monthTotal || 0);
+                historyCount.textContent = `${spending.lifetimePaymentCount || 0} giao dịch · Tháng này ${monthTotal.toLocaleString('vi-VN')}đ`;
+            }
+
             // Fetch and update wallet balance separately
             const balance = await fetchAndUpdateWalletBalance();
             updateProfileWalletDisplay(balance);
@@ -241,8 +249,6 @@ async function loadChargingHistorySummary() {
             return;
         }
 
-        historyCount.textContent = sessions.length + ' giao dịch';
-
         listContent.innerHTML = sessions.map(session => {
             const start = session.startTime ? new Date(session.startTime) : null;
             const dateStr = start ? start.toLocaleString('vi-VN') : '';
@@ -388,6 +388,15 @@ document.addEventListener('DOMContentLoaded', () => {
     logoutBtn.className = 'btn danger';
     logoutBtn.innerHTML = '<i class="fas fa-sign-out-alt"></i> Đăng xuất';
     logoutBtn.onclick = () => {
+      // Thu hồi token phía server (không chờ kết quả)
+      const token = localStorage.getItem('accessToken');
+      if (token) {
+        fetch(`${API_BASE_URL}/auth/logout`, {
+          method: 'POST',
+          headers: { 'Authorization': `Bearer ${token}` },
+          keepalive: true
+        }).catch(() => {});
+      }
       localStorage.clear();
       window.location.href = '../login.html';
     };
@@ -0,0 +1,114 @@
+package uth.edu.vn.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import uth.edu.vn.service.ChargingStatusDeltaTracker;
+import uth.edu.vn.service.WebSocketTransportMetrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Gộp frame trạng thái khi client chậm: delegate bị chặn ở frame đầu tiên để các frame sau nằm trong buffer
+ */
+class CoalescingWebSocketSessionTest {
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final ChargingStatusDeltaTracker deltaTracker = mock(ChargingStatusDeltaTracker.class);
+    private final WebSocketTransportMetrics metrics = new WebSocketTransportMetrics();
+
+    private CoalescingWebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("ws-1");
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            sent.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any(WebSocketMessage.class));
+        session = new CoalescingWebSocketSession(delegate, 64 * 1024, 10_000, deltaTracker, metrics);
+
+        // Frame đầu tiên giữ luồng ghi, các frame sau nằm lại trong buffer
+        session.sendMessage(new TextMessage("CONNECTED\nversion:1.2\n\n\0"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void deltaReplacingFullFrameRequestsKeyframe() throws Exception {
+        session.sendMessage(frame("sub-0", 7, "FULL", 40.0));
+        session.sendMessage(frame("sub-0", 7, "DELTA", 41.0));
+
+        verify(deltaTracker).requestKeyframe(7L);
+        assertThat(metrics.getCoalescedFrames()).isEqualTo(1);
+        assertDelivered(2);
+        assertThat(sent.get(1)).contains("41.0");
+    }
+
+    @Test
+    void fullFrameReplacingDeltaDoesNotRequestKeyframe() throws Exception {
+        session.sendMessage(frame("sub-0", 7, "DELTA", 40.0));
+        session.sendMessage(frame("sub-0", 7, "FULL", 41.0));
+
+        verify(deltaTracker, never()).requestKeyframe(anyLong());
+        assertThat(metrics.getCoalescedFrames()).isEqualTo(1);
+        assertDelivered(2);
+    }
+
+    @Test
+    void framesOfDifferentSubscriptionsAreNotCoalesced() throws Exception {
+        session.sendMessage(frame("sub-0", 7, "DELTA", 40.0));
+        session.sendMessage(frame("sub-1", 7, "DELTA", 40.0));
+
+        verify(deltaTracker, never()).requestKeyframe(anyLong());
+        assertThat(metrics.getCoalescedFrames()).isZero();
+        assertDelivered(3);
+    }
+
+    @Test
+    void statusKeyIsSubscriptionAndChargingSession() {
+        assertThat(CoalescingWebSocketSession.statusKeyOf(frame("sub-3", 42, "FULL", 1.0)))
+                .isEqualTo(new CoalescingWebSocketSession.StatusKey("sub-3", 42));
+        assertThat(CoalescingWebSocketSession.statusKeyOf(new TextMessage(
+                "MESSAGE\ndestination:/topic/charging/abc\nsubscription:sub-0\n\n{}\0"))).isNull();
+        assertThat(CoalescingWebSocketSession.statusKeyOf(new TextMessage(
+                "MESSAGE\ndestination:/topic/stations\nsubscription:sub-0\n\n{}\0"))).isNull();
+    }
+
+    private void assertDelivered(int frames) {
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sent.size() == frames);
+    }
+
+    private static TextMessage frame(String subscription, long chargingSessionId, String type, double soc) {
+        return new TextMessage("MESSAGE\ndestination:/topic/charging/" + chargingSessionId
+                + "\nsubscription:" + subscription + "\nmessage-id:m-" + System.nanoTime()
+                + "\ncontent-type:application/json\n\n"
+                + "{\"sessionId\":" + chargingSessionId + ",\"type\":\"" + type + "\",\"stateOfCharge\":" + soc + "}\0");
+    }
+}
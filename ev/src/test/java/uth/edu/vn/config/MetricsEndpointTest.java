@@ -0,0 +1,63 @@
+package uth.edu.vn.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /actuator/prometheus: cần token scrape tĩnh (không phải JWT ADMIN), có các series ev_* và latency http_server_requests
+ */
+@SpringBootTest(properties = "metrics.prometheus.scrape-token=" + MetricsEndpointTest.SCRAPE_TOKEN)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricsEndpointTest {
+
+    static final String SCRAPE_TOKEN = "scrape-secret-for-test";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void scrapeRequiresScrapeToken() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer wrong-token"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(user("driver@test.vn").roles("EV_DRIVER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").with(user("admin@test.vn").roles("ADMIN")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void scrapeTokenOnlyAppliesToPrometheus() throws Exception {
+        mockMvc.perform(get("/api/admin/logging").header("Authorization", "Bearer " + SCRAPE_TOKEN))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void scrapeExposesServiceMetricsAndRequestLatency() throws Exception {
+        mockMvc.perform(get("/api/stations")).andExpect(status().isOk());
+
+        String body = mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer " + SCRAPE_TOKEN))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body)
+                .contains("ev_charging_sessions_active{")
+                .contains("# TYPE ev_telemetry_ingest_accepted_total counter")
+                .contains("# TYPE ev_telemetry_ingest_queue_depth gauge")
+                .contains("# TYPE ev_auth_token_cache_hits_total counter")
+                .contains("# TYPE ev_broadcast_ticks_completed_total counter")
+                .containsPattern("http_server_requests_seconds_count\\{[^}]*uri=\"/api/stations\"");
+    }
+}
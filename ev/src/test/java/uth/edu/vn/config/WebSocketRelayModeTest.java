@@ -0,0 +1,159 @@
+package uth.edu.vn.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * websocket.broker.mode=relay với broker STOMP Artemis nhúng trong cùng JVM
+ *
+ * "Node khác" được giả lập bằng 1 client STOMP TCP nối thẳng vào broker: message nó gửi phải tới
+ * được subscriber WebSocket của node này, và message node này gửi phải tới được subscriber trên broker.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class WebSocketRelayModeTest {
+
+    private static final int BROKER_PORT = freePort();
+
+    @DynamicPropertySource
+    static void relayProperties(DynamicPropertyRegistry registry) {
+        registry.add("websocket.broker.mode", () -> "relay");
+        registry.add("websocket.broker.embedded.enabled", () -> "true");
+        registry.add("websocket.broker.embedded.port", () -> BROKER_PORT);
+        registry.add("websocket.broker.relay.port", () -> BROKER_PORT);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    @Qualifier("stompBrokerRelayMessageHandler")
+    private AbstractBrokerMessageHandler relayHandler;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    private WebSocketStompClient webSocketClient;
+    private ReactorNettyTcpStompClient otherNode;
+
+    @BeforeEach
+    void connectClients() {
+        await().atMost(20, TimeUnit.SECONDS).until(relayHandler::isBrokerAvailable);
+
+        webSocketClient = new WebSocketStompClient(new StandardWebSocketClient());
+        webSocketClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        otherNode = new ReactorNettyTcpStompClient("localhost", BROKER_PORT);
+        otherNode.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterEach
+    void stopClients() {
+        webSocketClient.stop();
+        otherNode.shutdown();
+    }
+
+    @Test
+    void messageFromAnotherNodeReachesWebSocketSubscriber() throws Exception {
+        StompSession browser = webSocketClient
+                .connectAsync("ws://localhost:" + port + "/ws/websocket", new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+        BlockingQueue<Map<String, Object>> received = subscribe(browser, "/topic/charging/77");
+
+        StompSession node = otherNode.connectAsync(brokerHeaders(), new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+        // SUBSCRIBE tới broker là bất đồng bộ (không chờ receipt): gửi lại cho tới khi nhận được
+        Map<String, Object> message = null;
+        for (int attempt = 0; attempt < 20 && message == null; attempt++) {
+            node.send("/topic/charging/77", Map.of("sessionId", 77, "stateOfCharge", 42.5));
+            message = received.poll(500, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(message).isNotNull();
+        assertThat(message).containsEntry("sessionId", 77).containsEntry("stateOfCharge", 42.5);
+        browser.disconnect();
+        node.disconnect();
+    }
+
+    @Test
+    void messageFromThisNodeIsRelayedToBroker() throws Exception {
+        StompSession node = otherNode.connectAsync(brokerHeaders(), new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+        BlockingQueue<Map<String, Object>> received = subscribe(node, "/topic/charging/78");
+
+        Map<String, Object> message = null;
+        for (int attempt = 0; attempt < 20 && message == null; attempt++) {
+            messagingTemplate.convertAndSend("/topic/charging/78", Map.of("sessionId", 78, "status", "ACTIVE"));
+            message = received.poll(500, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(message).isNotNull();
+        assertThat(message).containsEntry("sessionId", 78).containsEntry("status", "ACTIVE");
+        node.disconnect();
+    }
+
+    private static BlockingQueue<Map<String, Object>> subscribe(StompSession session, String destination) {
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, frameHandler(received));
+        return received;
+    }
+
+    private static StompFrameHandler frameHandler(BlockingQueue<Map<String, Object>> received) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<String, Object>) payload);
+            }
+        };
+    }
+
+    private static StompHeaders brokerHeaders() {
+        StompHeaders headers = new StompHeaders();
+        headers.setLogin("guest");
+        headers.setPasscode("guest");
+        return headers;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
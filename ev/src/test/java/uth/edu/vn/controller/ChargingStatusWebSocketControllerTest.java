@@ -0,0 +1,76 @@
+package uth.edu.vn.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import uth.edu.vn.dto.ChargingStatusUpdate;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /app/charging/status/{sessionId}: phiên đã kết thúc trả trạng thái cuối, không phải NOT_FOUND
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChargingStatusWebSocketControllerTest {
+
+    @Autowired
+    private ChargingStatusWebSocketController controller;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Test
+    void finishedSessionReturnsFinalStatus() {
+        User driver = userRepository.save(new User("driver-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "A", UserRole.EV_DRIVER));
+        TramSac station = tramSacRepository.save(new TramSac("Trạm Q1", "1 Lê Lợi", 10.77, 106.70));
+        Charger charger = chargerRepository.save(new Charger("P1", ConnectorType.values()[0], 50.0, 3500.0, station));
+
+        PhienSac session = new PhienSac(driver, charger, "QR-" + UUID.randomUUID());
+        session.setStartTime(LocalDateTime.now().minusHours(1));
+        session.setEndTime(LocalDateTime.now().minusMinutes(10));
+        session.setEnergyConsumed(20.0);
+        session.setTotalCost(70000.0);
+        session.setEndSoc(80);
+        session.setStatus(SessionStatus.COMPLETED);
+        session = phienSacRepository.save(session);
+
+        ChargingStatusUpdate update = controller.getChargingStatus(session.getSessionId());
+
+        assertThat(update.getStatus()).isEqualTo("COMPLETED");
+        assertThat(update.getStateOfCharge()).isEqualTo(80.0);
+        assertThat(update.getCurrentCost()).isEqualTo(70000.0);
+        assertThat(update.getStationName()).isEqualTo("Trạm Q1");
+        assertThat(update.getTimeRemaining()).isZero();
+    }
+
+    @Test
+    void unknownSessionReturnsNotFound() {
+        assertThat(controller.getChargingStatus(Long.MAX_VALUE).getStatus()).isEqualTo("NOT_FOUND");
+    }
+}
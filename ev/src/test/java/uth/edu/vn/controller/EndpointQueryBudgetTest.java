@@ -0,0 +1,197 @@
+package uth.edu.vn.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.PointStatus;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.ThanhToanRepository;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.repository.UserRepository;
+import uth.edu.vn.service.ChargerAvailabilityRegistry;
+import uth.edu.vn.util.QueryBudget;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Số câu SQL của các endpoint danh sách không tăng theo số dòng trả về (bắt N+1)
+ *
+ * Dữ liệu: ROWS trạm x CHARGERS_PER_STATION điểm sạc, 1 driver có ROWS phiên sạc đã thanh toán.
+ * Budget nhỏ hơn ROWS nên 1 query / dòng sẽ làm test fail.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class EndpointQueryBudgetTest {
+
+    private static final int ROWS = 8;
+    private static final int CHARGERS_PER_STATION = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    @Autowired
+    private ChargerAvailabilityRegistry chargerAvailabilityRegistry;
+
+    private User driver;
+
+    @BeforeEach
+    void seed() {
+        driver = userRepository.save(new User("driver-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "A", UserRole.EV_DRIVER));
+
+        List<Charger> chargers = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            TramSac station = tramSacRepository.save(new TramSac("Trạm " + i, "Số " + i + " Nguyễn Huệ",
+                    10.77 + i * 0.01, 106.70));
+            for (int j = 0; j < CHARGERS_PER_STATION; j++) {
+                Charger charger = new Charger("P" + i + "-" + j, ConnectorType.values()[j % ConnectorType.values().length],
+                        50.0, 3500.0, station);
+                charger.setStatus(j == 0 ? PointStatus.OCCUPIED : PointStatus.AVAILABLE);
+                chargers.add(chargerRepository.save(charger));
+            }
+        }
+
+        LocalDateTime start = LocalDateTime.now().minusDays(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            PhienSac session = new PhienSac(driver, chargers.get(i * CHARGERS_PER_STATION), "QR-" + UUID.randomUUID());
+            session.setStartTime(start.plusDays(i));
+            session.setEndTime(start.plusDays(i).plusHours(1));
+            session.setTotalCost(70000.0);
+            session.setStatus(SessionStatus.COMPLETED);
+            session = phienSacRepository.save(session);
+
+            ThanhToan payment = new ThanhToan(session.getSessionId(), new BigDecimal("70000"), "WALLET");
+            payment.setStatus("COMPLETED");
+            payment.setCreatedAt(start.plusDays(i).plusHours(1));
+            thanhToanRepository.save(payment);
+        }
+        chargerAvailabilityRegistry.reload();
+    }
+
+    @AfterEach
+    void reloadRegistry() {
+        chargerAvailabilityRegistry.reload();
+    }
+
+    @Test
+    void stationList() throws Exception {
+        JsonNode body = perform(1, get("/api/stations"));
+        assertThat(body.get("stations").size()).isGreaterThanOrEqualTo(ROWS);
+        assertThat(body.get("stations").get(0).get("totalChargers").asInt()).isEqualTo(CHARGERS_PER_STATION);
+    }
+
+    @Test
+    void stationListWithoutRegistry() throws Exception {
+        ReflectionTestUtils.setField(chargerAvailabilityRegistry, "loaded", false);
+
+        JsonNode body = perform(2, get("/api/stations"));
+        assertThat(body.get("stations").size()).isGreaterThanOrEqualTo(ROWS);
+        assertThat(body.get("stations").get(0).get("totalChargers").asInt()).isEqualTo(CHARGERS_PER_STATION);
+    }
+
+    @Test
+    void staffStationList() throws Exception {
+        JsonNode body = perform(1, get("/api/staff/stations").with(user("staff@test.vn").roles("CS_STAFF")));
+        assertThat(body.get("stations").size()).isGreaterThanOrEqualTo(ROWS);
+    }
+
+    @Test
+    void staffStationListWithoutRegistry() throws Exception {
+        ReflectionTestUtils.setField(chargerAvailabilityRegistry, "loaded", false);
+
+        JsonNode body = perform(2, get("/api/staff/stations").with(user("staff@test.vn").roles("CS_STAFF")));
+        assertThat(body.get("stations").size()).isGreaterThanOrEqualTo(ROWS);
+        assertThat(body.get("stations").get(0).get("totalChargers").asInt()).isEqualTo(CHARGERS_PER_STATION);
+        assertThat(body.get("stations").get(0).get("availableChargers").asInt()).isEqualTo(CHARGERS_PER_STATION - 1);
+    }
+
+    @Test
+    void chargingHistory() throws Exception {
+        // Trang đầu thêm 1 query tổng hợp toàn bộ lịch sử
+        JsonNode first = perform(3, get("/api/history/charging").param("limit", "5").with(asDriver()));
+        assertThat(first.get("history").size()).isEqualTo(5);
+        assertThat(first.get("history").get(0).get("station").get("name").asText()).startsWith("Trạm");
+        assertThat(first.get("count").asInt()).isEqualTo(5);
+        assertThat(first.get("total").asInt()).isEqualTo(ROWS);
+        assertThat(first.get("completedSessions").asInt()).isEqualTo(ROWS);
+        assertThat(first.get("totalCost").asDouble()).isEqualTo(ROWS * 70000.0);
+
+        JsonNode next = perform(2, get("/api/history/charging").param("limit", "5")
+                .param("cursor", first.get("nextCursor").asText()).with(asDriver()));
+        assertThat(next.get("history").size()).isEqualTo(ROWS - 5);
+        assertThat(next.has("total")).isFalse();
+    }
+
+    @Test
+    void paymentHistory() throws Exception {
+        JsonNode first = perform(3, get("/api/payment/history").param("limit", "5").with(asDriver()));
+        assertThat(first.get("payments").size()).isEqualTo(5);
+        assertThat(first.get("total").asInt()).isEqualTo(ROWS);
+        assertThat(first.get("totalPaid").decimalValue()).isEqualByComparingTo(BigDecimal.valueOf(ROWS * 70000L));
+
+        // Running total của trang sau đi theo cursor, không SUM lại
+        JsonNode next = perform(2, get("/api/history/payments").param("limit", "5")
+                .param("cursor", first.get("nextCursor").asText()).with(asDriver()));
+        assertThat(next.get("payments").size()).isEqualTo(ROWS - 5);
+        assertThat(next.get("payments").get(0).get("runningTotal").decimalValue())
+                .isEqualByComparingTo(BigDecimal.valueOf((ROWS - 5) * 70000L));
+    }
+
+    private RequestPostProcessor asDriver() {
+        return user(driver.getEmail()).roles("EV_DRIVER");
+    }
+
+    private JsonNode perform(int budget, RequestBuilder request) throws Exception {
+        MvcResult result = QueryBudget.assertAtMost(budget, () -> mockMvc.perform(request).andReturn());
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        return objectMapper.readTree(result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package uth.edu.vn.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import uth.edu.vn.service.ExportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Export lỗi giữa chừng không được trả về 200 kèm file thiếu
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ExportService exportService;
+
+    @Test
+    void exportWritesFile() throws Exception {
+        when(exportService.exportInvoices(any(), any(), any(), any())).thenAnswer(invocation -> {
+            write(invocation.getArgument(3), "id,total\n1,1000\n");
+            return 1L;
+        });
+
+        mockMvc.perform(get("/api/admin/export/invoices").param("year", "2025").param("month", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"hoa-don-2025-10.csv\""))
+                .andExpect(content().string("id,total\n1,1000\n"));
+    }
+
+    @Test
+    void failureBeforeCommitReturns500() throws Exception {
+        when(exportService.exportInvoices(any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("Cannot open cursor"));
+
+        mockMvc.perform(get("/api/admin/export/invoices").param("year", "2025").param("month", "10"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(header().doesNotExist("Content-Disposition"))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void failureAfterCommitPropagatesToContainer() throws Exception {
+        when(exportService.exportPayments(any(), any(), eq(null), any(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            write(out, "id,amount\n1,1000\n");
+            out.flush();
+            throw new IllegalStateException("Query timed out");
+        });
+
+        // Không có GlobalExceptionHandler ghi JSON vào sau phần file đã gửi: exception tới được container
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/admin/export/payments")
+                .param("year", "2025").param("month", "10")))
+                .rootCause()
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Query timed out");
+    }
+
+    private static void write(OutputStream out, String text) {
+        try {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
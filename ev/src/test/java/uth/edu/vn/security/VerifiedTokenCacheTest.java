@@ -0,0 +1,162 @@
+package uth.edu.vn.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.exception.UnauthorizedException;
+import uth.edu.vn.repository.UserRepository;
+import uth.edu.vn.service.AuthService;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Thu hồi token qua mốc tokens_valid_after lưu trong nguoi_dung (H2), so theo ms; đăng xuất thu hồi cả refresh token
+ *
+ * "Node khác" là 1 VerifiedTokenCache riêng dùng chung database, không thấy revokedBefore trong bộ nhớ của bean.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class VerifiedTokenCacheTest {
+
+    private static final List<GrantedAuthority> DRIVER = List.of(new SimpleGrantedAuthority("ROLE_EV_DRIVER"));
+
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = userRepository.save(new User("driver-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "A", UserRole.EV_DRIVER));
+    }
+
+    @Test
+    void revocationOnOneNodeIsSeenByAnotherOnCacheMiss() {
+        VerifiedTokenCache otherNode = newNode(300);
+        VerifiedTokenCache.VerifiedToken before = token(nowMs() - 10_000);
+
+        assertThat(otherNode.checkStoredRevocation(before)).isTrue();
+        assertThat(otherNode.isRevoked(before)).isFalse();
+
+        tokenCache.revokeUser(user.getEmail());
+
+        assertThat(userRepository.findById(user.getId()).orElseThrow().getTokensValidAfter()).isNotNull();
+        assertThat(otherNode.checkStoredRevocation(before)).isTrue();
+        assertThat(otherNode.isRevoked(before)).isTrue();
+        // Token đăng nhập lại sau khi thu hồi vẫn dùng được
+        assertThat(otherNode.isRevoked(token(nowMs() + 1_000))).isFalse();
+    }
+
+    @Test
+    void saveUserKeepsTokensValidAfter() {
+        tokenCache.revokeUser(user.getEmail());
+        User loaded = userRepository.findById(user.getId()).orElseThrow();
+        loaded.setPhone("0900000000");
+        userRepository.save(loaded);
+
+        VerifiedTokenCache otherNode = newNode(300);
+        VerifiedTokenCache.VerifiedToken before = token(nowMs() - 10_000);
+        otherNode.checkStoredRevocation(before);
+        assertThat(otherNode.isRevoked(before)).isTrue();
+    }
+
+    @Test
+    void deletedUserFailsStoredCheck() {
+        userRepository.deleteById(user.getId());
+
+        assertThat(newNode(300).checkStoredRevocation(token(nowMs()))).isFalse();
+    }
+
+    @Test
+    void revocationIsComparedInMilliseconds() {
+        tokenCache.revokeUser(user.getEmail());
+        long revokedAtMs = userRepository.findById(user.getId()).orElseThrow().getTokensValidAfter()
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        VerifiedTokenCache otherNode = newNode(300);
+        otherNode.checkStoredRevocation(token(revokedAtMs));
+        // Cùng giây với mốc thu hồi: phát hành trước (hoặc đúng mốc) bị từ chối, sau đó thì dùng được
+        assertThat(otherNode.isRevoked(token(revokedAtMs - 1))).isTrue();
+        assertThat(otherNode.isRevoked(token(revokedAtMs))).isTrue();
+        assertThat(otherNode.isRevoked(token(revokedAtMs + 1))).isFalse();
+    }
+
+    @Test
+    void logoutRevokesAccessAndRefreshTokens() throws Exception {
+        String accessToken = tokenProvider.generateTokenFromUsername(user.getEmail(), UserRole.EV_DRIVER);
+        String refreshToken = tokenProvider.generateRefreshToken(user.getEmail());
+        assertThat(authService.refreshToken(refreshToken).getAccessToken()).isNotBlank();
+
+        mockMvc.perform(post("/api/auth/logout").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+
+        assertThat(tokenCache.isRevoked(tokenProvider.verify(accessToken))).isTrue();
+        assertThatThrownBy(() -> authService.refreshToken(refreshToken)).isInstanceOf(UnauthorizedException.class);
+        // Đăng nhập lại sau khi đăng xuất
+        Thread.sleep(2);
+        assertThat(authService.refreshToken(tokenProvider.generateRefreshToken(user.getEmail())).getAccessToken())
+                .isNotBlank();
+    }
+
+    @Test
+    void cachedEntryLivesAtMostTtl() {
+        VerifiedTokenCache.VerifiedToken verified = token(nowMs());
+
+        VerifiedTokenCache cached = newNode(300);
+        cached.put("jwt", verified);
+        assertThat(cached.get("jwt")).isSameAs(verified);
+
+        // Token còn hạn 1 giờ nhưng TTL của cache đã hết: phải verify lại (và đọc lại mốc thu hồi)
+        VerifiedTokenCache expired = newNode(0);
+        expired.put("jwt", verified);
+        assertThat(expired.get("jwt")).isNull();
+    }
+
+    private VerifiedTokenCache newNode(long ttlSeconds) {
+        VerifiedTokenCache node = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(node, "userRepository", userRepository);
+        ReflectionTestUtils.setField(node, "maxSize", 100);
+        ReflectionTestUtils.setField(node, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(node, "maxTokenLifetimeMs", 604800000L);
+        return node;
+    }
+
+    private VerifiedTokenCache.VerifiedToken token(long issuedAtMs) {
+        return new VerifiedTokenCache.VerifiedToken(user.getEmail(), DRIVER, issuedAtMs,
+                System.currentTimeMillis() + 3_600_000);
+    }
+
+    private static long nowMs() {
+        return System.currentTimeMillis();
+    }
+}
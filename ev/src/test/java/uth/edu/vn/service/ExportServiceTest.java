@@ -0,0 +1,129 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import uth.edu.vn.enums.ExportFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Export qua JDBC thật trên H2 (chế độ MSSQLServer): so từng byte file CSV / JSON lines
+ */
+class ExportServiceTest {
+
+    private static final LocalDateTime OCTOBER = LocalDateTime.of(2025, 10, 1, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private ExportService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:export-" + UUID.randomUUID() +
+                ";MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE tram_sac (id BIGINT PRIMARY KEY, name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE charger (point_id BIGINT PRIMARY KEY, station_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE phien_sac (session_id BIGINT PRIMARY KEY, user_id BIGINT, point_id BIGINT, " +
+                "energy_consumed FLOAT)");
+        jdbcTemplate.execute("CREATE TABLE thanh_toan (id BIGINT PRIMARY KEY, session_id BIGINT, amount DECIMAL(10,2), " +
+                "payment_method VARCHAR(20), status VARCHAR(20), created_at DATETIME2)");
+        jdbcTemplate.execute("CREATE TABLE hoa_don (invoice_id BIGINT PRIMARY KEY, invoice_number VARCHAR(50), " +
+                "issue_date DATETIME2, total_amount DECIMAL(10,2), payment_id BIGINT, description VARCHAR(2000))");
+
+        jdbcTemplate.update("INSERT INTO tram_sac VALUES (1, 'Trạm \"Số 1\", Quận 1')");
+        jdbcTemplate.update("INSERT INTO charger VALUES (10, 1)");
+        jdbcTemplate.update("INSERT INTO phien_sac VALUES (100, 7, 10, 12.5)");
+        payment(1000, 100, "43750.00", "WALLET", "COMPLETED", OCTOBER.plusHours(8));
+        payment(1001, 100, "20000.50", "CARD", "FAILED", OCTOBER.plusDays(1));
+        // Ngoài khoảng [tháng 10, tháng 11)
+        payment(1002, 100, "1.00", "WALLET", "COMPLETED", OCTOBER.minusSeconds(1));
+        jdbcTemplate.update("INSERT INTO hoa_don VALUES (1, 'INV-202510-00000001', ?, 43750.00, 1000, ?)",
+                Timestamp.valueOf(OCTOBER.plusHours(9)), "Hóa đơn sạc xe điện\nTrạm: \"Số 1\", Quận 1");
+
+        service = new ExportService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "fetchSize", 1);
+    }
+
+    @Test
+    void invoiceCsvQuotesCommasQuotesAndNewlines() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = service.exportInvoices(OCTOBER, OCTOBER.plusMonths(1), ExportFormat.CSV, out);
+
+        assertThat(rows).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("\uFEFF" +
+                "invoiceId,invoiceNumber,issueDate,totalAmount,paymentId,sessionId,userId,paymentMethod," +
+                "paymentStatus,description\r\n" +
+                "1,INV-202510-00000001,2025-10-01T09:00,43750.00,1000,100,7,WALLET,COMPLETED," +
+                "\"Hóa đơn sạc xe điện\nTrạm: \"\"Số 1\"\", Quận 1\"\r\n");
+        // BOM UTF-8 cho Excel
+        assertThat(out.toByteArray()).startsWith(0xEF, 0xBB, 0xBF);
+    }
+
+    @Test
+    void paymentJsonLinesKeepsTypesAndFiltersByStatus() {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        ByteArrayOutputStream completed = new ByteArrayOutputStream();
+
+        // fetch size 1 < số dòng: cursor đọc qua nhiều lần fetch
+        assertThat(service.exportPayments(OCTOBER, OCTOBER.plusMonths(1), null, ExportFormat.JSONL, all)).isEqualTo(2);
+        service.exportPayments(OCTOBER, OCTOBER.plusMonths(1), "COMPLETED", ExportFormat.JSONL, completed);
+
+        String first = "{\"paymentId\":1000,\"createdAt\":\"2025-10-01T08:00\",\"sessionId\":100,\"userId\":7," +
+                "\"stationId\":1,\"stationName\":\"Trạm \\\"Số 1\\\", Quận 1\",\"chargerId\":10,\"energyKwh\":12.5," +
+                "\"amount\":43750.00,\"paymentMethod\":\"WALLET\",\"status\":\"COMPLETED\"}\n";
+        assertThat(all.toString(StandardCharsets.UTF_8)).isEqualTo(first +
+                "{\"paymentId\":1001,\"createdAt\":\"2025-10-02T00:00\",\"sessionId\":100,\"userId\":7," +
+                "\"stationId\":1,\"stationName\":\"Trạm \\\"Số 1\\\", Quận 1\",\"chargerId\":10,\"energyKwh\":12.5," +
+                "\"amount\":20000.50,\"paymentMethod\":\"CARD\",\"status\":\"FAILED\"}\n");
+        assertThat(completed.toString(StandardCharsets.UTF_8)).isEqualTo(first);
+    }
+
+    @Test
+    void emptyRangeWritesOnlyHeader() {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ByteArrayOutputStream jsonl = new ByteArrayOutputStream();
+
+        service.exportPayments(OCTOBER.plusYears(1), OCTOBER.plusYears(2), null, ExportFormat.CSV, csv);
+        service.exportPayments(OCTOBER.plusYears(1), OCTOBER.plusYears(2), null, ExportFormat.JSONL, jsonl);
+
+        assertThat(csv.toString(StandardCharsets.UTF_8)).isEqualTo("\uFEFF" +
+                "paymentId,createdAt,sessionId,userId,stationId,stationName,chargerId,energyKwh,amount," +
+                "paymentMethod,status\r\n");
+        assertThat(jsonl.size()).isZero();
+    }
+
+    @Test
+    void clientDisconnectFailsExport() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> service.exportPayments(OCTOBER, OCTOBER.plusMonths(1), null, ExportFormat.CSV, broken))
+                .hasRootCauseInstanceOf(IOException.class)
+                .isInstanceOf(UncheckedIOException.class);
+        assertThat(service.getStats()).containsEntry("failed", 1L).containsEntry("exports", 0L);
+    }
+
+    private void payment(long id, long sessionId, String amount, String method, String status, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO thanh_toan VALUES (?, ?, ?, ?, ?, ?)", id, sessionId,
+                new BigDecimal(amount), method, status, Timestamp.valueOf(createdAt));
+    }
+}
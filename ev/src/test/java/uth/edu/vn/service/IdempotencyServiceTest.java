@@ -0,0 +1,131 @@
+package uth.edu.vn.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Idempotency-Key trên H2 (chế độ MSSQLServer), đặc biệt là khóa IN_PROGRESS bị bỏ dở
+ */
+class IdempotencyServiceTest {
+
+    private static final String ENDPOINT = "wallet-top-up";
+    private static final Map<String, Object> REQUEST = Map.of("amount", 50000);
+
+    private final Authentication driver = new UsernamePasswordAuthenticationToken("driver@test.vn", null);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:idempotency-" + UUID.randomUUID() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE idempotency_key (id BIGINT IDENTITY PRIMARY KEY, principal VARCHAR(255) NOT NULL, " +
+                "idem_key VARCHAR(100) NOT NULL, endpoint VARCHAR(100) NOT NULL, request_hash VARCHAR(64) NOT NULL, " +
+                "status VARCHAR(20) NOT NULL, response_status INT, response_body VARCHAR(MAX), " +
+                "created_at DATETIME2 NOT NULL, completed_at DATETIME2, UNIQUE (principal, idem_key))");
+
+        service = new IdempotencyService(100);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "ttlHours", 24L);
+        ReflectionTestUtils.setField(service, "inProgressLeaseSeconds", 120L);
+    }
+
+    @Test
+    void retryReplaysStoredResponse() {
+        ResponseEntity<Map<String, Object>> first = execute("key-1", REQUEST);
+        ResponseEntity<Map<String, Object>> retry = execute("key-1", REQUEST);
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void inProgressWithinLeaseIsConflict() {
+        abandonedRow("key-2", LocalDateTime.now().minusSeconds(30));
+
+        ResponseEntity<Map<String, Object>> response = execute("key-2", REQUEST);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void inProgressPastLeaseIsTakenOverAndCompleted() {
+        abandonedRow("key-3", LocalDateTime.now().minusMinutes(10));
+
+        ResponseEntity<Map<String, Object>> response = execute("key-3", REQUEST);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(executions).hasValue(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM idempotency_key WHERE idem_key = ?",
+                String.class, "key-3")).isEqualTo("COMPLETED");
+        assertThat(service.getStats()).containsEntry("abandonedTakenOver", 1L);
+
+        // Lần gửi lại tiếp theo chỉ replay
+        execute("key-3", REQUEST);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void abandonedKeyIsNotTakenOverByDifferentRequest() {
+        abandonedRow("key-4", LocalDateTime.now().minusMinutes(10));
+
+        ResponseEntity<Map<String, Object>> response = execute("key-4", Map.of("amount", 99000));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void serverErrorIsNotStoredAndKeyIsReleased() {
+        ResponseEntity<Map<String, Object>> failed = service.execute(driver, "key-5", ENDPOINT, REQUEST,
+                () -> ResponseEntity.internalServerError().body(Map.of("success", false)));
+
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_key WHERE idem_key = ?",
+                Integer.class, "key-5")).isZero();
+
+        // Lần gửi lại chạy lại action thay vì replay lỗi
+        assertThat(execute("key-5", REQUEST).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(executions).hasValue(1);
+    }
+
+    private ResponseEntity<Map<String, Object>> execute(String key, Map<String, Object> request) {
+        return service.execute(driver, key, ENDPOINT, request, () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok(Map.of("success", true, "balance", 150000));
+        });
+    }
+
+    /**
+     * Dòng IN_PROGRESS của 1 request trước đó cho cùng REQUEST (instance chết trước khi lưu kết quả)
+     */
+    private void abandonedRow(String key, LocalDateTime createdAt) {
+        // Lấy đúng request_hash bằng cách chạy 1 lần trên key tạm rồi đổi lại thành IN_PROGRESS
+        service.execute(driver, "probe-" + key, ENDPOINT, REQUEST, () -> ResponseEntity.ok(Map.of()));
+        jdbcTemplate.update("UPDATE idempotency_key SET idem_key = ?, status = 'IN_PROGRESS', response_status = NULL, " +
+                "response_body = NULL, completed_at = NULL, created_at = ? WHERE idem_key = ?",
+                key, Timestamp.valueOf(createdAt), "probe-" + key);
+    }
+}
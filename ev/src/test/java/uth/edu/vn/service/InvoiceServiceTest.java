@@ -0,0 +1,169 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.HoaDonRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.ThanhToanRepository;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hàng đợi hóa đơn trên H2: chỉ enqueue sau commit, số hóa đơn INV-yyyyMM-%08d lấy từ SEQUENCE
+ * (rollback để lại khoảng trống, không trùng số)
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class InvoiceServiceTest {
+
+    private static final long WAIT_MS = 10_000;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HoaDonRepository hoaDonRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    private PhienSac session;
+
+    @BeforeEach
+    void seed() {
+        User driver = userRepository.save(new User("invoice-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "C", UserRole.EV_DRIVER));
+        TramSac station = tramSacRepository.save(new TramSac("Trạm hóa đơn", "3 Lê Lợi", 10.77, 106.70));
+        Charger charger = chargerRepository.save(new Charger("P-3", ConnectorType.values()[0], 50.0, 3500.0, station));
+        session = new PhienSac(driver, charger, "QR-" + UUID.randomUUID());
+        session.setStartTime(LocalDateTime.now().minusHours(1));
+        session.setEndTime(LocalDateTime.now());
+        session.setEnergyConsumed(12.5);
+        session.setTotalCost(43750.0);
+        session.setStatus(SessionStatus.COMPLETED);
+        session = phienSacRepository.save(session);
+    }
+
+    @Test
+    void enqueueWaitsForCommitAndSkipsRollback() {
+        long before = enqueued();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            invoiceService.enqueueAfterCommit(payment().getId());
+            assertThat(enqueued()).isEqualTo(before);
+        });
+        assertThat(enqueued()).isEqualTo(before + 1);
+
+        Long[] rolledBack = new Long[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            rolledBack[0] = payment().getId();
+            invoiceService.enqueueAfterCommit(rolledBack[0]);
+            status.setRollbackOnly();
+        });
+        assertThat(enqueued()).isEqualTo(before + 1);
+        assertThat(thanhToanRepository.findById(rolledBack[0])).isEmpty();
+    }
+
+    @Test
+    void invoiceNumberHasMonthAndEightDigitSequence() {
+        ThanhToan payment = payment();
+        invoiceService.enqueue(payment.getId());
+
+        String number = awaitInvoiceNumber(payment.getId());
+
+        String month = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMM"));
+        assertThat(number).matches("INV-" + month + "-\\d{8}");
+        assertThat(hoaDonRepository.findByPaymentIdWithPayment(payment.getId()).orElseThrow().getDescription())
+                .contains("Trạm hóa đơn", "Phiên sạc #" + session.getSessionId(), "Điện năng");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rolledBackAllocationLeavesGapButNoDuplicate() {
+        List<Long> lost = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return (List<Long>) ReflectionTestUtils.invokeMethod(invoiceService, "allocateNumbers", 5);
+        });
+        assertThat(lost).hasSize(5).doesNotHaveDuplicates();
+
+        List<Long> paymentIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            paymentIds.add(payment().getId());
+        }
+        paymentIds.forEach(invoiceService::enqueue);
+
+        List<Long> issued = new ArrayList<>();
+        for (Long paymentId : paymentIds) {
+            String number = awaitInvoiceNumber(paymentId);
+            issued.add(Long.parseLong(number.substring(number.lastIndexOf('-') + 1)));
+        }
+        assertThat(issued).doesNotHaveDuplicates().allMatch(n -> n > Collections.max(lost));
+    }
+
+    private ThanhToan payment() {
+        ThanhToan payment = new ThanhToan(session.getSessionId(), new BigDecimal("43750"), "WALLET");
+        payment.setStatus("COMPLETED");
+        return thanhToanRepository.save(payment);
+    }
+
+    private long enqueued() {
+        return (Long) invoiceService.getStats().get("enqueued");
+    }
+
+    private String awaitInvoiceNumber(Long paymentId) {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<String> number = hoaDonRepository.findInvoiceNumberByPaymentId(paymentId);
+            if (number.isPresent()) {
+                return number.get();
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new AssertionError("No invoice for payment " + paymentId + " after " + WAIT_MS + " ms");
+    }
+}
@@ -0,0 +1,163 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import uth.edu.vn.dto.SpendingSummary;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.ThanhToanRepository;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * chi_tieu_thang trên H2: rebuild / backfill từ thanh_toan và getRange ghép tháng trọn vẹn + phần lẻ đầu / cuối
+ *
+ * Tháng được tính theo thời điểm thanh toán (created_at), không theo giờ bắt đầu phiên sạc.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MonthlySpendingServiceTest {
+
+    @Autowired
+    private MonthlySpendingService monthlySpendingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    @Autowired
+    private ThanhToanRepository thanhToanRepository;
+
+    private User driver;
+    private final List<ThanhToan> payments = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        driver = userRepository.save(new User("driver-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "A", UserRole.EV_DRIVER));
+        TramSac station = tramSacRepository.save(new TramSac("Trạm chi tiêu", "1 Lê Lợi", 10.77, 106.70));
+        Charger charger = chargerRepository.save(new Charger("P-1", ConnectorType.values()[0], 50.0, 3500.0, station));
+
+        payments.clear();
+        // Sát ranh giới tháng: 31/01 23:59:59, 01/02 00:00, 29/02 (năm nhuận), 01/03 00:00:00.5, 15/03
+        // Phiên bắt đầu 31/01 22:00 nhưng thanh toán 01/02 00:00 thuộc tháng 2
+        pay(charger, LocalDateTime.of(2024, 1, 31, 22, 0), LocalDateTime.of(2024, 1, 31, 23, 59, 59), "100000", "COMPLETED");
+        pay(charger, LocalDateTime.of(2024, 1, 31, 22, 0), LocalDateTime.of(2024, 2, 1, 0, 0), "20000", "COMPLETED");
+        pay(charger, LocalDateTime.of(2024, 2, 29, 12, 0), LocalDateTime.of(2024, 2, 29, 13, 0), "30000", "COMPLETED");
+        pay(charger, LocalDateTime.of(2024, 2, 29, 23, 0), LocalDateTime.of(2024, 3, 1, 0, 0, 0, 500_000_000), "40000", "COMPLETED");
+        pay(charger, LocalDateTime.of(2024, 3, 15, 8, 0), LocalDateTime.of(2024, 3, 15, 9, 0), "50000", "COMPLETED");
+        // Không tính: chưa hoàn tất
+        pay(charger, LocalDateTime.of(2024, 2, 10, 8, 0), LocalDateTime.of(2024, 2, 10, 9, 0), "999000", "PENDING");
+
+        monthlySpendingService.rebuild();
+    }
+
+    @Test
+    void rebuildBucketsByPaymentMonth() {
+        assertThat(monthlySpendingService.getMonth(driver.getId(), YearMonth.of(2024, 1)).getTotalAmount())
+                .isEqualByComparingTo("100000");
+        SpendingSummary february = monthlySpendingService.getMonth(driver.getId(), YearMonth.of(2024, 2));
+        assertThat(february.getTotalAmount()).isEqualByComparingTo("50000");
+        assertThat(february.getPaymentCount()).isEqualTo(2);
+        assertThat(monthlySpendingService.getMonth(driver.getId(), YearMonth.of(2024, 3)).getTotalAmount())
+                .isEqualByComparingTo("90000");
+        assertThat(monthlySpendingService.getLifetime(driver.getId()).getTotalAmount()).isEqualByComparingTo("240000");
+    }
+
+    @Test
+    void rebuildIsIdempotent() {
+        int rows = monthlySpendingService.rebuild();
+
+        assertThat(rows).isGreaterThanOrEqualTo(3);
+        assertThat(monthlySpendingService.getLifetime(driver.getId()).getPaymentCount()).isEqualTo(5);
+    }
+
+    @Test
+    void getRangeMatchesRawPaymentsAcrossMonthBoundaries() {
+        LocalDateTime[][] ranges = {
+                // Trọn các tháng
+                { LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0) },
+                // Lẻ đầu và lẻ cuối
+                { LocalDateTime.of(2024, 1, 31, 23, 59, 59), LocalDateTime.of(2024, 3, 1, 0, 0, 0, 500_000_000) },
+                { LocalDateTime.of(2024, 1, 31, 23, 59, 59, 1), LocalDateTime.of(2024, 3, 1, 0, 0, 0, 500_000_001) },
+                // Trong cùng 1 tháng
+                { LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 2, 29, 13, 0) },
+                { LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 3, 1, 0, 0) },
+                // Khoảng rỗng và khoảng ngoài dữ liệu
+                { LocalDateTime.of(2024, 2, 15, 0, 0), LocalDateTime.of(2024, 2, 15, 0, 0) },
+                { LocalDateTime.of(2023, 11, 5, 0, 0), LocalDateTime.of(2024, 1, 2, 0, 0) },
+        };
+        for (LocalDateTime[] range : ranges) {
+            SpendingSummary summary = monthlySpendingService.getRange(driver.getId(), range[0], range[1]);
+            assertThat(summary.getTotalAmount())
+                    .as("[%s, %s)", range[0], range[1])
+                    .isEqualByComparingTo(expectedPaid(range[0], range[1]));
+        }
+    }
+
+    @Test
+    void backfillRunsOnlyWhenTableIsEmpty() {
+        jdbcTemplate.update("UPDATE chi_tieu_thang SET total_amount = 1 WHERE user_id = ?", driver.getId());
+        monthlySpendingService.backfillIfEmpty();
+        assertThat(monthlySpendingService.getLifetime(driver.getId()).getTotalAmount()).isEqualByComparingTo("3");
+
+        jdbcTemplate.update("DELETE FROM chi_tieu_thang");
+        monthlySpendingService.backfillIfEmpty();
+        assertThat(monthlySpendingService.getLifetime(driver.getId()).getTotalAmount()).isEqualByComparingTo("240000");
+    }
+
+    private void pay(Charger charger, LocalDateTime sessionStart, LocalDateTime paidAt, String amount, String status) {
+        PhienSac session = new PhienSac(driver, charger, "QR-" + UUID.randomUUID());
+        session.setStartTime(sessionStart);
+        session.setEndTime(paidAt);
+        session.setEnergyConsumed(10.0);
+        session.setTotalCost(Double.valueOf(amount));
+        session.setStatus(SessionStatus.COMPLETED);
+        session = phienSacRepository.save(session);
+
+        ThanhToan payment = new ThanhToan(session.getSessionId(), new BigDecimal(amount), "WALLET");
+        payment.setStatus(status);
+        payment.setCreatedAt(paidAt);
+        payments.add(thanhToanRepository.save(payment));
+    }
+
+    private BigDecimal expectedPaid(LocalDateTime start, LocalDateTime end) {
+        return payments.stream()
+                .filter(p -> "COMPLETED".equals(p.getStatus()))
+                .filter(p -> !p.getCreatedAt().isBefore(start) && p.getCreatedAt().isBefore(end))
+                .map(ThanhToan::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,152 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.PhienSac;
+import uth.edu.vn.entity.ThanhToan;
+import uth.edu.vn.entity.TramSac;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.ConnectorType;
+import uth.edu.vn.enums.PaymentMethod;
+import uth.edu.vn.enums.SessionStatus;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.enums.WalletTransactionType;
+import uth.edu.vn.exception.BadRequestException;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.PhienSacRepository;
+import uth.edu.vn.repository.TramSacRepository;
+import uth.edu.vn.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Thanh toán / nạp tiền chạy lại (giành khóa Idempotency-Key sau lease) không trừ / cộng tiền lần 2
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentIdempotencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private EVDriverService evDriverService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TramSacRepository tramSacRepository;
+
+    @Autowired
+    private ChargerRepository chargerRepository;
+
+    @Autowired
+    private PhienSacRepository phienSacRepository;
+
+    private User driver;
+    private PhienSac session;
+
+    @BeforeEach
+    void seed() {
+        driver = userRepository.save(new User("pay-" + UUID.randomUUID() + "@test.vn", "{noop}secret",
+                "Van", "B", UserRole.EV_DRIVER));
+        walletService.credit(driver.getId(), new BigDecimal("500000.00"), WalletTransactionType.TOP_UP, "initial");
+        TramSac station = tramSacRepository.save(new TramSac("Trạm thanh toán", "2 Lê Lợi", 10.77, 106.70));
+        Charger charger = chargerRepository.save(new Charger("P-2", ConnectorType.values()[0], 50.0, 3500.0, station));
+        session = new PhienSac(driver, charger, "QR-" + UUID.randomUUID());
+        session.setEnergyConsumed(20.0);
+        session.setTotalCost(70000.0);
+        session.setStatus(SessionStatus.COMPLETED);
+        session = phienSacRepository.save(session);
+    }
+
+    @Test
+    void secondPaymentOfSameSessionReturnsFirstWithoutCharging() {
+        ThanhToan first = evDriverService.processPayment(session.getSessionId(), PaymentMethod.WALLET);
+        ThanhToan retry = evDriverService.processPayment(session.getSessionId(), PaymentMethod.WALLET);
+
+        assertThat(retry.getId()).isEqualTo(first.getId());
+        assertThat(walletService.getBalance(driver.getId())).isEqualByComparingTo("430000");
+        assertThat(ledgerRows("session:" + session.getSessionId())).isEqualTo(1);
+    }
+
+    @Test
+    void parallelPaymentsOfSameSessionChargeOnce() throws Exception {
+        List<ThanhToan> results = runConcurrently(() ->
+                evDriverService.processPayment(session.getSessionId(), PaymentMethod.WALLET));
+
+        assertThat(results).doesNotContainNull();
+        assertThat(results.stream().map(ThanhToan::getId).distinct()).hasSize(1);
+        assertThat(walletService.getBalance(driver.getId())).isEqualByComparingTo("430000");
+        assertThat(ledgerRows("session:" + session.getSessionId())).isEqualTo(1);
+    }
+
+    @Test
+    void insufficientBalanceIsBadRequest() {
+        session.setTotalCost(900000.0);
+        phienSacRepository.save(session);
+
+        assertThatThrownBy(() -> evDriverService.processPayment(session.getSessionId(), PaymentMethod.WALLET))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(walletService.getBalance(driver.getId())).isEqualByComparingTo("500000");
+    }
+
+    @Test
+    void parallelTopUpsWithSameReferenceCreditOnce() throws Exception {
+        List<Boolean> results = runConcurrently(() ->
+                evDriverService.addFundsToWallet(driver.getId(), 25000.0, "idempotency:key-1"));
+
+        assertThat(results).containsOnly(true);
+        assertThat(walletService.getBalance(driver.getId())).isEqualByComparingTo("525000");
+        assertThat(ledgerRows("idempotency:key-1")).isEqualTo(1);
+    }
+
+    private <T> List<T> runConcurrently(Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int ledgerRows(String reference) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM giao_dich_vi WHERE user_id = ? AND reference = ?",
+                Integer.class, driver.getId(), reference);
+    }
+}
@@ -0,0 +1,178 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.entity.Charger;
+import uth.edu.vn.entity.SuCo;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.IncidentSeverity;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.repository.ChargerRepository;
+import uth.edu.vn.repository.SuCoRepository;
+import uth.edu.vn.repository.ThongBaoRepository;
+import uth.edu.vn.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * EWMA / z-score, warm-up, min-deviation, cooldown theo (điểm sạc, chỉ số / mã lỗi) và hàng đợi cảnh báo có giới hạn
+ */
+class TelemetryAnomalyDetectorTest {
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final ChargerRepository chargerRepository = mock(ChargerRepository.class);
+    private final SuCoRepository suCoRepository = mock(SuCoRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private TelemetryAnomalyDetector detector;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(chargerRepository.findById(anyLong())).thenReturn(Optional.of(new Charger()));
+        when(userRepository.findByRole(UserRole.ADMIN))
+                .thenReturn(List.of(new User("admin@test.vn", "x", "A", "B", UserRole.ADMIN)));
+
+        detector = new TelemetryAnomalyDetector();
+        ReflectionTestUtils.setField(detector, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(detector, "messagingTemplate", mock(SimpMessagingTemplate.class));
+        ReflectionTestUtils.setField(detector, "chargerRepository", chargerRepository);
+        ReflectionTestUtils.setField(detector, "suCoRepository", suCoRepository);
+        ReflectionTestUtils.setField(detector, "thongBaoRepository", mock(ThongBaoRepository.class));
+        ReflectionTestUtils.setField(detector, "userRepository", userRepository);
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "alpha", 0.05);
+        ReflectionTestUtils.setField(detector, "zThreshold", 4.0);
+        ReflectionTestUtils.setField(detector, "warmupSamples", 30);
+        ReflectionTestUtils.setField(detector, "maxTemperatureC", 70.0);
+        ReflectionTestUtils.setField(detector, "minDeviationTemperature", 5.0);
+        ReflectionTestUtils.setField(detector, "minDeviationVoltage", 20.0);
+        ReflectionTestUtils.setField(detector, "minDeviationCurrent", 10.0);
+        ReflectionTestUtils.setField(detector, "cooldownMinutes", 15L);
+        ReflectionTestUtils.setField(detector, "queueCapacity", 100);
+        detector.start();
+    }
+
+    @Test
+    void noZScoreAlertDuringWarmup() throws Exception {
+        for (int i = 0; i < 29; i++) {
+            detector.inspect(voltage(1L, 230 + (i % 2)));
+        }
+        detector.inspect(voltage(1L, 400));
+        detector.stop();
+
+        assertThat(detector.getStats()).containsEntry("anomalies", 0L);
+        verify(suCoRepository, never()).save(any());
+    }
+
+    @Test
+    void zScoreAlertAfterWarmup() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            detector.inspect(voltage(1L, 230 + (i % 2)));
+        }
+        detector.inspect(voltage(1L, 300));
+        detector.stop();
+
+        ArgumentCaptor<SuCo> incident = ArgumentCaptor.forClass(SuCo.class);
+        verify(suCoRepository).save(incident.capture());
+        assertThat(incident.getValue().getSeverity()).isEqualTo(IncidentSeverity.HIGH);
+        assertThat(incident.getValue().getTitle()).startsWith("Điện áp");
+    }
+
+    @Test
+    void deviationBelowMinimumIsIgnored() throws Exception {
+        // Phương sai 0 nên z vô hạn, nhưng lệch 5 V < min-deviation 20 V
+        for (int i = 0; i < 40; i++) {
+            detector.inspect(voltage(1L, 230));
+        }
+        detector.inspect(voltage(1L, 235));
+        detector.stop();
+
+        assertThat(detector.getStats()).containsEntry("anomalies", 0L);
+    }
+
+    @Test
+    void cooldownIsPerErrorCodeAndPoint() throws Exception {
+        detector.inspect(error(1L, "E01"));
+        detector.inspect(error(1L, "E01"));
+        detector.inspect(error(1L, "E02"));
+        detector.inspect(error(2L, "E01"));
+        detector.stop();
+
+        assertThat(detector.getStats()).containsEntry("anomalies", 3L).containsEntry("suppressedByCooldown", 1L);
+        verify(suCoRepository, times(3)).save(any());
+    }
+
+    @Test
+    void fullQueueDropsAlerts() throws Exception {
+        ReflectionTestUtils.setField(detector, "queueCapacity", 1);
+        detector.start();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            running.countDown();
+            blocked.await();
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // 1 đang chạy (bị chặn), 1 trong hàng đợi, còn lại bị bỏ
+        detector.inspect(error(1L, "E00"));
+        running.await();
+        for (int i = 1; i < 5; i++) {
+            detector.inspect(error(1L, "E0" + i));
+        }
+        blocked.countDown();
+        detector.stop();
+
+        assertThat(detector.getStats()).containsEntry("dropped", 3L);
+    }
+
+    @Test
+    void inspectAfterStopDoesNotThrow() throws Exception {
+        detector.stop();
+
+        assertThatCode(() -> detector.inspect(error(1L, "E01"))).doesNotThrowAnyException();
+        assertThat(detector.getStats()).containsEntry("dropped", 1L);
+    }
+
+    private static TelemetryReading voltage(Long pointId, double value) {
+        TelemetryReading reading = new TelemetryReading();
+        reading.setPointId(pointId);
+        reading.setVoltageV(value);
+        reading.setRecordedAt(LocalDateTime.now());
+        return reading;
+    }
+
+    private static TelemetryReading error(Long pointId, String code) {
+        TelemetryReading reading = new TelemetryReading();
+        reading.setPointId(pointId);
+        reading.setErrorCode(code);
+        reading.setRecordedAt(LocalDateTime.now());
+        return reading;
+    }
+}
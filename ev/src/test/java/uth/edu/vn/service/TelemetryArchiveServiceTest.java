@@ -0,0 +1,151 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archive nhiều node trên H2 (chế độ MSSQLServer): lease + watermark trong database, thư mục archive dùng chung
+ */
+class TelemetryArchiveServiceTest {
+
+    @TempDir
+    Path shared;
+
+    @TempDir
+    Path local;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archive-" + UUID.randomUUID() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE dieu_khien_tu_xa (telemetry_id BIGINT IDENTITY PRIMARY KEY, " +
+                "charging_point_id BIGINT NOT NULL, vehicle_id BIGINT, soc_percentage FLOAT, current_power_kw FLOAT, " +
+                "energy_delivered_kwh FLOAT, voltage_v FLOAT, current_a FLOAT, temperature_c FLOAT, " +
+                "charging_duration_minutes INT, status VARCHAR(20), recorded_at DATETIME2 NOT NULL, " +
+                "error_code VARCHAR(255), error_message VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE telemetry_archive_state (id INT PRIMARY KEY, watermark DATE, " +
+                "store_id VARCHAR(36), lease_owner VARCHAR(100), lease_until DATETIME2)");
+        jdbcTemplate.execute("CREATE TABLE telemetry_archive_node (node_id VARCHAR(100) PRIMARY KEY, " +
+                "store_id VARCHAR(36), seen_at DATETIME2 NOT NULL)");
+    }
+
+    @Test
+    void archivesToSharedDirAndStoresWatermarkInDatabase() {
+        insertDays(1L, 20, 10);
+        TelemetryArchiveService first = node(shared);
+        TelemetryArchiveService second = node(shared);
+
+        first.archive();
+
+        assertThat(first.getStats()).containsEntry("lastError", null).containsEntry("rowsArchived", 10L);
+        assertThat(rawRows()).isZero();
+        LocalDate lastCold = LocalDate.now().minusDays(8);
+        assertThat(jdbcTemplate.queryForObject("SELECT watermark FROM telemetry_archive_state WHERE id = 1",
+                java.sql.Date.class).toLocalDate()).isEqualTo(lastCold);
+
+        // Node kia đọc watermark từ database ở heartbeat và đọc được file qua thư mục dùng chung
+        second.heartbeat();
+        assertThat(second.getLiveFrom()).isEqualTo(lastCold.plusDays(1).atStartOfDay());
+        assertThat(second.read(1L, LocalDateTime.now().minusDays(25), LocalDateTime.now())).hasSize(10);
+    }
+
+    @Test
+    void refusesToDeleteWhenAnotherNodeSeesDifferentDir() {
+        insertDays(1L, 20, 3);
+        TelemetryArchiveService first = node(shared);
+        node(local);
+
+        first.archive();
+
+        assertThat((String) first.getStats().get("lastError")).contains("not shared");
+        assertThat(rawRows()).isEqualTo(3);
+        assertThat(Files.exists(local.resolve("STORE_ID"))).isFalse();
+    }
+
+    @Test
+    void leaseHeldByAnotherNodeSkipsRun() {
+        insertDays(1L, 20, 3);
+        TelemetryArchiveService first = node(shared);
+        jdbcTemplate.update("UPDATE telemetry_archive_state SET lease_owner = ?, lease_until = ? WHERE id = 1",
+                "other-node", Timestamp.valueOf(LocalDateTime.now().plusMinutes(10)));
+
+        first.archive();
+        assertThat(rawRows()).isEqualTo(3);
+
+        // Lease hết hạn (node kia chết giữa chừng): node này lấy lại và nhả lease sau khi chạy
+        jdbcTemplate.update("UPDATE telemetry_archive_state SET lease_until = ? WHERE id = 1",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+        first.archive();
+        assertThat(rawRows()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT lease_owner FROM telemetry_archive_state WHERE id = 1",
+                String.class)).isNull();
+    }
+
+    @Test
+    void purgesArchiveFilesPastRetention() {
+        insertDays(1L, 100, 3);
+        insertDays(1L, 20, 3);
+        TelemetryArchiveService service = node(shared);
+        ReflectionTestUtils.setField(service, "maxDaysPerRun", 200);
+        ReflectionTestUtils.setField(service, "retentionEnabled", true);
+        ReflectionTestUtils.setField(service, "retentionDays", 90);
+
+        service.archive();
+
+        assertThat(service.getStats()).containsEntry("filesPurged", 3L).containsEntry("lastError", null);
+        assertThat(service.read(1L, LocalDateTime.now().minusDays(110), LocalDateTime.now())).hasSize(3);
+    }
+
+    private TelemetryArchiveService node(Path dir) {
+        TelemetryArchiveService service = new TelemetryArchiveService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "coldAfterDays", 7);
+        ReflectionTestUtils.setField(service, "archiveDir", dir.toString());
+        ReflectionTestUtils.setField(service, "maxDaysPerRun", 30);
+        ReflectionTestUtils.setField(service, "deleteChunkSize", 1000);
+        ReflectionTestUtils.setField(service, "leaseMinutes", 30L);
+        service.init();
+        return service;
+    }
+
+    /**
+     * 1 dòng / ngày trong `days` ngày, ngày cũ nhất là `daysAgo` ngày trước
+     */
+    private void insertDays(Long pointId, int daysAgo, int days) {
+        List<Object[]> rows = new ArrayList<>();
+        LocalDateTime start = LocalDate.now().minusDays(daysAgo).atTime(10, 0);
+        for (int i = 0; i < days; i++) {
+            rows.add(new Object[] { pointId, "NORMAL", 40.0 + i, Timestamp.valueOf(start.plusDays(i)) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dieu_khien_tu_xa (charging_point_id, status, soc_percentage, recorded_at) " +
+                "VALUES (?, ?, ?, ?)", rows);
+    }
+
+    private int rawRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dieu_khien_tu_xa", Integer.class);
+    }
+}
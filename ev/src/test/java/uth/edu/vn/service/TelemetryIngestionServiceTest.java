@@ -0,0 +1,200 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import uth.edu.vn.dto.TelemetryReading;
+import uth.edu.vn.repository.XeRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kiểm tra bản ghi lúc nhận, chia đôi batch khi lỗi ràng buộc và thử lại khi lỗi tạm thời
+ * (JDBC / transaction được giả lập)
+ */
+class TelemetryIngestionServiceTest {
+
+    private static final String POISON = "poison";
+
+    // Số lần ghi batch còn lại sẽ lỗi kiểu mất kết nối database
+    private final AtomicInteger transientFailures = new AtomicInteger();
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final ChargerAvailabilityRegistry chargers = mock(ChargerAvailabilityRegistry.class);
+    private final XeRepository xeRepository = mock(XeRepository.class);
+    private final TelemetryRollupService rollupService = mock(TelemetryRollupService.class);
+    private final TelemetryAnomalyDetector anomalyDetector = mock(TelemetryAnomalyDetector.class);
+
+    private TelemetryIngestionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(chargers.isLoaded()).thenReturn(true);
+        when(chargers.contains(1L)).thenReturn(true);
+        when(xeRepository.existsById(10L)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        // Giả lập lỗi ràng buộc của SQL Server: cả batch chứa bản ghi lỗi bị rollback
+        doAnswer(invocation -> {
+            if (transientFailures.getAndDecrement() > 0) {
+                throw new CannotGetJdbcConnectionException("Connection refused");
+            }
+            Collection<TelemetryReading> batch = invocation.getArgument(1);
+            if (batch.stream().anyMatch(reading -> POISON.equals(reading.getErrorMessage()))) {
+                throw new DataIntegrityViolationException("constraint violation");
+            }
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+
+        service = new TelemetryIngestionService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(service, "chargerAvailabilityRegistry", chargers);
+        ReflectionTestUtils.setField(service, "xeRepository", xeRepository);
+        ReflectionTestUtils.setField(service, "telemetryRollupService", rollupService);
+        ReflectionTestUtils.setField(service, "telemetryAnomalyDetector", anomalyDetector);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(service, "batchSize", 1000);
+        ReflectionTestUtils.setField(service, "maxLatencyMs", 100L);
+        ReflectionTestUtils.setField(service, "writerThreads", 1);
+        ReflectionTestUtils.setField(service, "retryAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void rejectsUnknownPointVehicleAndOverlongText() {
+        service.start();
+
+        assertThat(service.validate(reading(1L, 10L))).isNull();
+        assertThat(service.validate(reading(2L, null))).contains("Điểm sạc 2");
+        assertThat(service.validate(reading(1L, 99L))).contains("Xe 99");
+        TelemetryReading longCode = reading(1L, null);
+        longCode.setErrorCode("E".repeat(256));
+        assertThat(service.validate(longCode)).contains("errorCode");
+
+        assertThat(service.submit(reading(1L, 99L))).contains("Xe 99");
+        assertThat(service.getStats()).containsEntry("invalid", 1L).containsEntry("accepted", 0L);
+    }
+
+    @Test
+    void fullQueueIsReportedAsOverloaded() {
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        service.start();
+        // Writer đã dừng nên hàng đợi (1 chỗ) không được xả
+        service.stop();
+
+        assertThat(service.submit(reading(1L, 10L))).isNull();
+        assertThat(service.submit(reading(1L, 10L))).isEqualTo(TelemetryIngestionService.OVERLOADED);
+        assertThat(service.getStats()).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void submitValidatesOnce() {
+        when(xeRepository.existsById(11L)).thenReturn(true);
+        service.start();
+
+        assertThat(service.submit(reading(1L, 11L))).isNull();
+        verify(xeRepository, times(1)).existsById(11L);
+    }
+
+    @Test
+    void knownVehicleIsLookedUpOnce() {
+        service.start();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.validate(reading(1L, 10L))).isNull();
+        }
+        verify(xeRepository, times(1)).existsById(10L);
+    }
+
+    @Test
+    void failedBatchLosesOnlyTheBadReading() {
+        // max-latency dài để 100 bản ghi nằm chung 1 batch
+        ReflectionTestUtils.setField(service, "maxLatencyMs", 1000L);
+        service.start();
+        for (int i = 0; i < 100; i++) {
+            TelemetryReading reading = reading(1L, 10L);
+            if (i == 37) {
+                reading.setErrorMessage(POISON);
+            }
+            assertThat(service.submit(reading)).isNull();
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> (long) service.getStats().get("written") == 99L);
+        assertThat(service.getStats()).containsEntry("failed", 1L);
+        // 1 batch lỗi + các nửa được chia ra
+        assertThat((long) service.getStats().get("batches")).isLessThan(20);
+        // Bản ghi không ghi được vẫn đi qua bộ phát hiện bất thường
+        verify(anomalyDetector, times(100)).inspect(any(TelemetryReading.class));
+    }
+
+    @Test
+    void transientFailureIsRetriedWithoutSplitting() {
+        transientFailures.set(2);
+        ReflectionTestUtils.setField(service, "maxLatencyMs", 1000L);
+        service.start();
+        for (int i = 0; i < 100; i++) {
+            assertThat(service.submit(reading(1L, 10L))).isNull();
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> (long) service.getStats().get("written") == 100L);
+        assertThat(service.getStats()).containsEntry("failed", 0L).containsEntry("retries", 2L);
+        // 2 lần lỗi + 1 lần thành công, không chia đôi batch
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void batchIsDroppedOnceAfterRetriesRunOut() {
+        transientFailures.set(Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(service, "maxLatencyMs", 1000L);
+        service.start();
+        for (int i = 0; i < 100; i++) {
+            assertThat(service.submit(reading(1L, 10L))).isNull();
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> (long) service.getStats().get("failed") == 100L);
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    private static TelemetryReading reading(Long pointId, Long vehicleId) {
+        TelemetryReading reading = new TelemetryReading();
+        reading.setPointId(pointId);
+        reading.setVehicleId(vehicleId);
+        reading.setTemperatureC(35.0);
+        return reading;
+    }
+}
@@ -0,0 +1,105 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Purge theo recorded_at trên H2 (chế độ MSSQLServer): recorded_at do client gửi nên không tăng theo telemetry_id,
+ * khi bật archive dạng cột chỉ xóa những ngày đã archive
+ */
+class TelemetryRetentionServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TelemetryArchiveService archiveService;
+    private TelemetryRetentionService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:retention-" + UUID.randomUUID() + ";MODE=MSSQLServer;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE dieu_khien_tu_xa (telemetry_id BIGINT IDENTITY PRIMARY KEY, " +
+                "charging_point_id BIGINT NOT NULL, vehicle_id BIGINT, soc_percentage FLOAT, current_power_kw FLOAT, " +
+                "energy_delivered_kwh FLOAT, voltage_v FLOAT, current_a FLOAT, temperature_c FLOAT, " +
+                "charging_duration_minutes INT, status VARCHAR(20), recorded_at DATETIME2 NOT NULL, " +
+                "error_code VARCHAR(255), error_message VARCHAR(255))");
+        jdbcTemplate.execute("CREATE INDEX idx_telemetry_recorded_at ON dieu_khien_tu_xa (recorded_at)");
+
+        archiveService = mock(TelemetryArchiveService.class);
+        service = new TelemetryRetentionService();
+        ReflectionTestUtils.setField(service, "telemetryArchiveService", archiveService);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(service, "retentionDays", 90);
+        ReflectionTestUtils.setField(service, "chunkSize", 7);
+        ReflectionTestUtils.setField(service, "pauseMs", 0L);
+        ReflectionTestUtils.setField(service, "maxRunMinutes", 1L);
+    }
+
+    @Test
+    void purgesLateUploadedReadingsBehindFreshOnes() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>();
+        // Id nhỏ: dữ liệu mới; id lớn: dữ liệu cũ gửi lên trễ (điểm sạc offline lâu)
+        for (int i = 0; i < 20; i++) {
+            rows.add(row(now.minusDays(1).plusMinutes(i)));
+        }
+        for (int i = 0; i < 30; i++) {
+            rows.add(row(now.minusDays(120).plusMinutes(i)));
+        }
+        for (int i = 0; i < 5; i++) {
+            rows.add(row(now.minusHours(i)));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dieu_khien_tu_xa (charging_point_id, status, recorded_at) VALUES (?, ?, ?)", rows);
+
+        service.purge();
+
+        assertThat(service.getStats()).containsEntry("lastRunDeleted", 30L).containsEntry("lastError", null);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dieu_khien_tu_xa", Integer.class)).isEqualTo(25);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dieu_khien_tu_xa WHERE recorded_at < ?",
+                Integer.class, Timestamp.valueOf(now.minusDays(90)))).isZero();
+        assertThat(service.getStats()).containsEntry("lagSeconds", 0L);
+    }
+
+    @Test
+    void keepsDaysNotYetArchived() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row(now.minusDays(100 + i)));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dieu_khien_tu_xa (charging_point_id, status, recorded_at) VALUES (?, ?, ?)", rows);
+        ReflectionTestUtils.setField(service, "archiveEnabled", true);
+
+        // Archive chưa chạy lần nào: không xóa gì
+        when(archiveService.getLiveFrom()).thenReturn(null);
+        service.purge();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dieu_khien_tu_xa", Integer.class)).isEqualTo(10);
+
+        // Archive mới xong tới 105 ngày trước: chỉ xóa những ngày đó dù retention là 90 ngày
+        when(archiveService.getLiveFrom()).thenReturn(now.minusDays(105).toLocalDate().atStartOfDay());
+        service.purge();
+        assertThat(service.getStats()).containsEntry("lastRunDeleted", 4L).containsEntry("lastError", null);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dieu_khien_tu_xa", Integer.class)).isEqualTo(6);
+    }
+
+    private static Object[] row(LocalDateTime recordedAt) {
+        return new Object[] { 1L, "NORMAL", Timestamp.valueOf(recordedAt) };
+    }
+}
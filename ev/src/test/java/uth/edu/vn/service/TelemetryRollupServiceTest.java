@@ -0,0 +1,103 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * rebuild không được xóa bucket của những ngày đã archive / purge khỏi bảng thô,
+ * cũng không đụng vào ngày đang nhận telemetry
+ */
+class TelemetryRollupServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TelemetryArchiveService archiveService = mock(TelemetryArchiveService.class);
+
+    private TelemetryRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TelemetryRollupService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "telemetryArchiveService", archiveService);
+        ReflectionTestUtils.setField(service, "rebuildLagMinutes", 60L);
+    }
+
+    @Test
+    void clampsStartToFirstFullDayOfRawData() {
+        oldestRawReading(LocalDateTime.of(2026, 1, 3, 10, 15));
+
+        service.rebuild(LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 10, 0, 0));
+
+        verifyDeleted(LocalDateTime.of(2026, 1, 4, 0, 0), LocalDateTime.of(2026, 1, 11, 0, 0));
+    }
+
+    @Test
+    void clampsStartToArchiveWatermark() {
+        oldestRawReading(LocalDateTime.of(2026, 1, 3, 0, 0));
+        when(archiveService.getLiveFrom()).thenReturn(LocalDateTime.of(2026, 1, 6, 0, 0));
+
+        service.rebuild(LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 10, 0, 0));
+
+        verifyDeleted(LocalDateTime.of(2026, 1, 6, 0, 0), LocalDateTime.of(2026, 1, 11, 0, 0));
+    }
+
+    @Test
+    void rangeWithoutRawDataIsLeftUntouched() {
+        oldestRawReading(LocalDateTime.of(2026, 2, 1, 8, 0));
+
+        int buckets = service.rebuild(LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 31, 0, 0));
+
+        assertThat(buckets).isZero();
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void clampsEndBeforeLiveDay() {
+        LocalDateTime now = LocalDateTime.now();
+        oldestRawReading(now.minusDays(10));
+        LocalDateTime live = now.minusMinutes(60).truncatedTo(ChronoUnit.DAYS);
+
+        service.rebuild(now.minusDays(5), now);
+
+        verifyDeleted(now.minusDays(5).truncatedTo(ChronoUnit.DAYS), live);
+    }
+
+    @Test
+    void liveRangeIsLeftUntouched() {
+        LocalDateTime now = LocalDateTime.now();
+        oldestRawReading(now.minusDays(10));
+
+        int buckets = service.rebuild(now.minusMinutes(30), now);
+
+        assertThat(buckets).isZero();
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    private void oldestRawReading(LocalDateTime recordedAt) {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT MIN(recorded_at)"), eq(Timestamp.class)))
+                .thenReturn(Timestamp.valueOf(recordedAt));
+    }
+
+    private void verifyDeleted(LocalDateTime start, LocalDateTime end) {
+        // 1 câu DELETE cho mỗi bảng minute / hour / day
+        verify(jdbcTemplate, times(3)).update(startsWith("DELETE FROM telemetry_rollup_"),
+                eq(Timestamp.valueOf(start)), eq(Timestamp.valueOf(end)));
+    }
+}
@@ -0,0 +1,123 @@
+package uth.edu.vn.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import uth.edu.vn.entity.User;
+import uth.edu.vn.enums.UserRole;
+import uth.edu.vn.enums.WalletTransactionType;
+import uth.edu.vn.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cộng / trừ ví song song trên cùng 1 user: số dư cuối = tổng kỳ vọng = SUM(giao_dich_vi.amount)
+ *
+ * Chạy trên H2 (FINAL TABLE thay cho OUTPUT); WalletServiceSqlServerConcurrencyTest chạy lại trên SQL Server thật.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class WalletServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    void createUser() {
+        User user = new User("wallet-" + UUID.randomUUID() + "@test.vn", "secret", "Ví", "Song Song", UserRole.EV_DRIVER);
+        userId = userRepository.save(user).getId();
+    }
+
+    @Test
+    void parallelCreditsAndDebitsKeepBalanceAndLedgerInSync() throws Exception {
+        walletService.credit(userId, new BigDecimal("1000000.00"), WalletTransactionType.TOP_UP, "initial");
+
+        List<Callable<BigDecimal>> calls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            calls.add(() -> walletService.credit(userId, new BigDecimal("10000.00"), WalletTransactionType.TOP_UP, "top-up"));
+            calls.add(() -> walletService.debit(userId, new BigDecimal("7000.50"), WalletTransactionType.PAYMENT, "payment"));
+        }
+        List<BigDecimal> results = runConcurrently(calls);
+
+        assertThat(results).doesNotContainNull();
+        BigDecimal expected = new BigDecimal("1000000.00")
+                .add(new BigDecimal("10000.00").multiply(BigDecimal.valueOf(100)))
+                .subtract(new BigDecimal("7000.50").multiply(BigDecimal.valueOf(100)));
+        assertThat(walletService.getBalance(userId)).isEqualByComparingTo(expected);
+        assertThat(ledgerSum()).isEqualByComparingTo(expected);
+        assertThat(ledgerCount()).isEqualTo(201);
+    }
+
+    @Test
+    void parallelDebitsNeverOverdraw() throws Exception {
+        walletService.credit(userId, new BigDecimal("100000.00"), WalletTransactionType.TOP_UP, "initial");
+
+        List<Callable<BigDecimal>> calls = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            calls.add(() -> walletService.debit(userId, new BigDecimal("10000.00"), WalletTransactionType.PAYMENT, "payment"));
+        }
+        List<BigDecimal> results = runConcurrently(calls);
+
+        // Đủ tiền cho đúng 10 lần trừ, các lần còn lại bị từ chối
+        assertThat(results.stream().filter(balance -> balance != null).count()).isEqualTo(10);
+        assertThat(walletService.getBalance(userId)).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(ledgerSum()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT MIN(balance_after) FROM giao_dich_vi WHERE user_id = ?", BigDecimal.class, userId))
+                .isGreaterThanOrEqualTo(BigDecimal.ZERO);
+    }
+
+    private List<BigDecimal> runConcurrently(List<Callable<BigDecimal>> calls) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BigDecimal>> futures = new ArrayList<>();
+            for (Callable<BigDecimal> call : calls) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<BigDecimal> results = new ArrayList<>();
+            for (Future<BigDecimal> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BigDecimal ledgerSum() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM giao_dich_vi WHERE user_id = ?", BigDecimal.class, userId);
+    }
+
+    private int ledgerCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM giao_dich_vi WHERE user_id = ?", Integer.class, userId);
+    }
+}
@@ -0,0 +1,29 @@
+package uth.edu.vn.service;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MSSQLServerContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Cùng các test của WalletServiceConcurrencyTest trên SQL Server thật (UPDATE ... OUTPUT, khóa dòng của SQL Server)
+ *
+ * Bỏ qua khi không có Docker; H2 vẫn chạy các test này ở WalletServiceConcurrencyTest.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class WalletServiceSqlServerConcurrencyTest extends WalletServiceConcurrencyTest {
+
+    @Container
+    static final MSSQLServerContainer<?> SQL_SERVER =
+            new MSSQLServerContainer<>("mcr.microsoft.com/mssql/server:2022-latest").acceptLicense();
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", SQL_SERVER::getJdbcUrl);
+        registry.add("spring.datasource.username", SQL_SERVER::getUsername);
+        registry.add("spring.datasource.password", SQL_SERVER::getPassword);
+        registry.add("spring.datasource.driver-class-name", SQL_SERVER::getDriverClassName);
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.SQLServerDialect");
+    }
+}
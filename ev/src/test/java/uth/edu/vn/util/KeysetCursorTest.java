@@ -0,0 +1,87 @@
+package uth.edu.vn.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Mã hóa / giải mã cursor keyset (thời gian, id, running total tùy chọn)
+ */
+class KeysetCursorTest {
+
+    @Test
+    void roundTripKeepsTimeToTheNanosecondAndId() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_793_238), 42L);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.getTime()).isEqualTo(cursor.getTime());
+        assertThat(decoded.getId()).isEqualTo(42L);
+        // Dùng được trực tiếp trên query string
+        assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void runningTotalRoundTrips() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 3, 14, 9, 0), 7L, new BigDecimal("1234500.50"));
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.getId()).isEqualTo(7L);
+        assertThat(decoded.getRunningTotal()).isEqualByComparingTo("1234500.50");
+        assertThat(KeysetCursor.decode(new KeysetCursor(cursor.getTime(), 7L).encode()).getRunningTotal()).isNull();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        String notBase64 = "%%%";
+        String noSeparator = Base64.getUrlEncoder().encodeToString("2026-03-14T09:26".getBytes());
+        String badId = Base64.getUrlEncoder().encodeToString("2026-03-14T09:26|abc".getBytes());
+        String badTime = Base64.getUrlEncoder().encodeToString("yesterday|1".getBytes());
+        String badTotal = Base64.getUrlEncoder().encodeToString("2026-03-14T09:26|1|many".getBytes());
+        String extraPart = Base64.getUrlEncoder().encodeToString("2026-03-14T09:26|1|5|6".getBytes());
+
+        for (String cursor : new String[] { notBase64, noSeparator, badId, badTime, badTotal, extraPart, "" }) {
+            assertThatThrownBy(() -> KeysetCursor.decode(cursor))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rowsWithSameTimeArePagedByIdWithoutGapsOrRepeats() {
+        // 7 dòng cùng thời điểm: thứ tự và điểm dừng của trang chỉ phân biệt bằng id
+        LocalDateTime same = LocalDateTime.of(2026, 3, 14, 10, 0);
+        List<KeysetCursor> rows = new ArrayList<>();
+        for (long id = 1; id <= 7; id++) {
+            rows.add(new KeysetCursor(same, id));
+        }
+        rows.add(new KeysetCursor(same.plusSeconds(1), 8L));
+        rows.add(new KeysetCursor(same.minusSeconds(1), 9L));
+        rows.sort(Comparator.comparing(KeysetCursor::getTime).thenComparing(KeysetCursor::getId).reversed());
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor) : null;
+            // Cùng điều kiện với PhienSacRepository.findHistoryPageAfter
+            List<KeysetCursor> page = rows.stream()
+                    .filter(r -> after == null || r.getTime().isBefore(after.getTime())
+                            || (r.getTime().equals(after.getTime()) && r.getId() < after.getId()))
+                    .limit(3)
+                    .toList();
+            page.forEach(r -> seen.add(r.getId()));
+            cursor = page.size() == 3 ? page.get(2).encode() : null;
+        } while (cursor != null);
+
+        assertThat(seen).containsExactly(8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L, 9L);
+    }
+}
@@ -0,0 +1,34 @@
+package uth.edu.vn.util;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Giới hạn số câu SQL cho 1 đoạn code, dùng trong test endpoint / service để bắt N+1
+ *
+ * Ví dụ: QueryBudget.assertAtMost(3, () -> mockMvc.perform(get("/api/history/charging")));
+ * Đếm qua DataSource đã bọc (DataSourceTimingConfig) nên chỉ dùng được trong test có Spring context.
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    /**
+     * Chạy action và ném AssertionError nếu số câu SQL vượt budget
+     */
+    public static <T> T assertAtMost(int budget, Callable<T> action) throws Exception {
+        RequestMetrics previous = RequestMetrics.current();
+        RequestMetrics metrics = RequestMetrics.begin();
+        try {
+            T result = action.call();
+            if (metrics.getStatementCount() > budget) {
+                throw new AssertionError("Expected at most " + budget + " SQL statements but executed "
+                        + metrics.getStatementCount() + " (most repeated " + metrics.getMaxRepeat() + "x: "
+                        + metrics.getMaxRepeatSql() + ")");
+            }
+            return result;
+        } finally {
+            RequestMetrics.restore(previous);
+        }
+    }
+}
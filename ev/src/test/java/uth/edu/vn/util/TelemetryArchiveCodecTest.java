@@ -0,0 +1,120 @@
+package uth.edu.vn.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ghi / đọc lại file archive telemetry dạng cột
+ */
+class TelemetryArchiveCodecTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 14, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsEveryColumn() throws Exception {
+        TelemetryArchiveCodec.Block original = sampleBlock(500);
+        Path file = dir.resolve("7").resolve("2026-03-14.tlm");
+
+        TelemetryArchiveCodec.write(file, original);
+        TelemetryArchiveCodec.Block read = TelemetryArchiveCodec.read(file);
+
+        assertSameBlock(read, original);
+        assertThat(Files.exists(file.resolveSibling("2026-03-14.tlm.tmp"))).isFalse();
+    }
+
+    @Test
+    void rewriteAfterReadReplacesFile() throws Exception {
+        Path file = dir.resolve("2026-03-14.tlm");
+        TelemetryArchiveCodec.write(file, sampleBlock(10));
+
+        // Archive lại ngày đó: đọc file cũ, gộp dòng mới rồi ghi đè (file cũ không được còn bị giữ)
+        TelemetryArchiveCodec.Block merged = new TelemetryArchiveCodec.Builder(7)
+                .addAll(TelemetryArchiveCodec.readCopy(file))
+                .addAll(sampleBlock(20))
+                .build();
+        TelemetryArchiveCodec.write(file, merged);
+
+        TelemetryArchiveCodec.Block read = TelemetryArchiveCodec.read(file);
+        assertThat(read.size).isEqualTo(20);
+        assertSameBlock(read, sampleBlock(20));
+    }
+
+    @Test
+    void emptyBlockRoundTrips() throws Exception {
+        Path file = dir.resolve("empty.tlm");
+        TelemetryArchiveCodec.write(file, new TelemetryArchiveCodec.Builder(3).build());
+
+        TelemetryArchiveCodec.Block read = TelemetryArchiveCodec.read(file);
+        assertThat(read.pointId).isEqualTo(3);
+        assertThat(read.size).isZero();
+    }
+
+    @Test
+    void rejectsForeignFile() throws Exception {
+        Path file = dir.resolve("foreign.tlm");
+        Files.write(file, ByteBuffer.allocate(32).putInt(0xCAFEBABE).array());
+
+        assertThatThrownBy(() -> TelemetryArchiveCodec.read(file)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void lowerAndUpperBoundsFollowRecordedAt() {
+        TelemetryArchiveCodec.Block block = sampleBlock(100);
+
+        assertThat(block.lowerBound(block.recordedAt(30))).isEqualTo(30);
+        assertThat(block.upperBound(block.recordedAt(30))).isEqualTo(31);
+        assertThat(block.lowerBound(DAY.plusMinutes(30))).isEqualTo(30);
+        assertThat(block.upperBound(DAY.plusMinutes(30))).isEqualTo(30);
+        assertThat(block.lowerBound(DAY.minusDays(1))).isZero();
+        assertThat(block.upperBound(DAY.plusDays(1))).isEqualTo(100);
+    }
+
+    /**
+     * 1 dòng / phút; giá trị lặp lại, null, xe có / không, vài dòng có lỗi, id không theo thứ tự thời gian
+     */
+    private static TelemetryArchiveCodec.Block sampleBlock(int rows) {
+        TelemetryArchiveCodec.Builder builder = new TelemetryArchiveCodec.Builder(7);
+        for (int i = rows - 1; i >= 0; i--) {
+            Double[] values = new Double[TelemetryArchiveCodec.DOUBLE_COLUMNS];
+            values[TelemetryArchiveCodec.SOC] = Math.min(100.0, 20.0 + i * 0.25);
+            values[TelemetryArchiveCodec.POWER] = i % 10 == 0 ? null : 50.0;
+            values[TelemetryArchiveCodec.ENERGY] = i * 0.8333;
+            values[TelemetryArchiveCodec.VOLTAGE] = 400.0 + (i % 7) * 0.5;
+            values[TelemetryArchiveCodec.CURRENT] = -1.5 * i;
+            values[TelemetryArchiveCodec.TEMPERATURE] = 31.2;
+            values[TelemetryArchiveCodec.DURATION] = (double) i;
+            builder.add(100_000L + (i * 37L) % 1000, DAY.plusMinutes(i).plusNanos(i * 1_000L),
+                    i % 3 == 0 ? null : 900L + i % 4, values, i % 5 == 0 ? null : i % 2,
+                    i % 50 == 7 ? "E-" + i : null, i % 50 == 7 ? "Quá nhiệt, \"ngắt\" sạc" : null);
+        }
+        return builder.build();
+    }
+
+    private static void assertSameBlock(TelemetryArchiveCodec.Block actual, TelemetryArchiveCodec.Block expected) {
+        assertThat(actual.pointId).isEqualTo(expected.pointId);
+        assertThat(actual.size).isEqualTo(expected.size);
+        assertThat(actual.telemetryIds).isEqualTo(expected.telemetryIds);
+        assertThat(actual.recordedAtMicros).isEqualTo(expected.recordedAtMicros);
+        assertThat(actual.vehicleIds).isEqualTo(expected.vehicleIds);
+        for (int column = 0; column < TelemetryArchiveCodec.DOUBLE_COLUMNS; column++) {
+            for (int row = 0; row < expected.size; row++) {
+                assertThat(actual.value(column, row)).as("column %d row %d", column, row)
+                        .isEqualTo(expected.value(column, row));
+            }
+        }
+        assertThat(actual.statuses).isEqualTo(expected.statuses);
+        assertThat(actual.errorCodes).isEqualTo(expected.errorCodes);
+        assertThat(actual.errorMessages).isEqualTo(expected.errorMessages);
+    }
+}